@@ -0,0 +1,107 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.leonardo.coelho;
+
+import com.twilio.rest.api.v2010.account.Message;
+import com.twilio.rest.api.v2010.account.MessageCreator;
+import com.twilio.type.PhoneNumber;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.pentaho.di.core.row.RowDataUtil;
+import org.pentaho.di.core.row.RowMeta;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.row.value.ValueMetaInteger;
+import org.pentaho.di.core.row.value.ValueMetaString;
+import org.pentaho.di.core.util.Utils;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the separate parts of the per-row work of {@link SmsSender}, to tell which one a regression of
+ * {@link SmsSenderProcessRowBenchmark} comes from.
+ */
+@State( Scope.Thread )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.NANOSECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+public class SmsSenderHotPathBenchmark {
+
+  private RowMetaInterface rowMeta;
+  private Object[] row;
+  private int outputSize;
+
+  @Setup
+  public void setUp() {
+    rowMeta = new RowMeta();
+    rowMeta.addValueMeta( new ValueMetaInteger( "id" ) );
+    rowMeta.addValueMeta( new ValueMetaString( "to" ) );
+    rowMeta.addValueMeta( new ValueMetaString( "from" ) );
+    rowMeta.addValueMeta( new ValueMetaString( "message" ) );
+    row = new Object[] { 1L, "+15551234567", "+15557654321", "Hello" };
+    outputSize = rowMeta.size() + 5;
+  }
+
+  /**
+   * Field lookup as done on the first row, which would cost this much on every row if it wasn't cached.
+   */
+  @Benchmark
+  public int fieldLookup() {
+    return Arrays.asList( rowMeta.getFieldNames() ).indexOf( "message" );
+  }
+
+  @Benchmark
+  public boolean validation() {
+    return !Utils.isEmpty( (String) row[ 1 ] ) && !Utils.isEmpty( (String) row[ 2 ] )
+      && !Utils.isEmpty( (String) row[ 3 ] );
+  }
+
+  @Benchmark
+  public PhoneNumber phoneNumber() {
+    return new PhoneNumber( (String) row[ 1 ] );
+  }
+
+  @Benchmark
+  public MessageCreator messageCreator() {
+    return Message.creator( new PhoneNumber( (String) row[ 1 ] ), new PhoneNumber( (String) row[ 2 ] ),
+      (String) row[ 3 ] );
+  }
+
+  @Benchmark
+  public Object[] outputRowResize() {
+    return RowDataUtil.resizeArray( row, outputSize );
+  }
+
+  @Benchmark
+  public long messageKey() {
+    return MessageHash.combine( MessageHash.combine(
+      MessageHash.hash( (String) row[ 1 ] ), MessageHash.hash( (String) row[ 2 ] ) ),
+      MessageHash.hash( (String) row[ 3 ] ) );
+  }
+}
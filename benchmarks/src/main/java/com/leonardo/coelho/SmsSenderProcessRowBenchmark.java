@@ -0,0 +1,163 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.leonardo.coelho;
+
+import com.twilio.http.Request;
+import com.twilio.http.Response;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.pentaho.di.core.KettleEnvironment;
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.row.RowMeta;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.row.value.ValueMetaInteger;
+import org.pentaho.di.core.row.value.ValueMetaString;
+import org.pentaho.di.trans.Trans;
+import org.pentaho.di.trans.TransMeta;
+import org.pentaho.di.trans.step.StepDataInterface;
+import org.pentaho.di.trans.step.StepMeta;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of {@link SmsSender#processRow} for one row, from reading the input row to writing the output row,
+ * with a sender answering from memory instead of the Twilio API.
+ * <p>
+ * Run with {@code -prof gc} to also get the bytes allocated per row.
+ */
+@State( Scope.Thread )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.NANOSECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+public class SmsSenderProcessRowBenchmark {
+
+  private static final String RESPONSE = "{\"sid\": \"SM00000000000000000000000000000000\", "
+    + "\"account_sid\": \"AC00000000000000000000000000000000\", \"to\": \"+15551234567\", "
+    + "\"from\": \"+15557654321\", \"body\": \"Hello\", \"status\": \"queued\", \"direction\": \"outbound-api\", "
+    + "\"api_version\": \"2010-04-01\", \"num_segments\": \"1\", \"num_media\": \"0\", \"price\": null, "
+    + "\"price_unit\": \"USD\", \"error_code\": null, \"error_message\": null, "
+    + "\"date_created\": \"Mon, 16 Aug 2010 03:45:01 +0000\", \"date_updated\": \"Mon, 16 Aug 2010 03:45:01 +0000\", "
+    + "\"date_sent\": null}";
+
+  @Param( { "false", "true" } )
+  public boolean deduplicate;
+
+  private SmsSenderMeta meta;
+  private SmsSenderData data;
+  private BenchmarkSmsSender step;
+
+  @Setup( Level.Trial )
+  public void setUp() throws KettleException {
+    KettleEnvironment.init( false );
+
+    meta = new SmsSenderMeta();
+    meta.setDefault();
+    meta.setAccountSid( "AC00000000000000000000000000000000" );
+    meta.setAuthToken( "token" );
+    meta.setToField( "to" );
+    meta.setFromField( "from" );
+    meta.setMessageField( "message" );
+    meta.setStatusField( "status" );
+    meta.setPriceField( "price" );
+    meta.setErrorCodeField( "errorCode" );
+    meta.setErrorMessageField( "errorMessage" );
+    meta.setAttemptsField( "attempts" );
+    meta.setDeduplicate( deduplicate );
+    // A Bloom filter, so the filter doesn't grow over the millions of invocations.
+    meta.setDedupFalsePositiveRate( "0.0001" );
+
+    TransMeta transMeta = new TransMeta();
+    StepMeta stepMeta = new StepMeta( "SmsSender", "SMS Sender", meta );
+    transMeta.addStep( stepMeta );
+
+    RowMetaInterface rowMeta = new RowMeta();
+    rowMeta.addValueMeta( new ValueMetaInteger( "id" ) );
+    rowMeta.addValueMeta( new ValueMetaString( "to" ) );
+    rowMeta.addValueMeta( new ValueMetaString( "from" ) );
+    rowMeta.addValueMeta( new ValueMetaString( "message" ) );
+
+    data = new SmsSenderData();
+    step = new BenchmarkSmsSender( stepMeta, data, transMeta, new Trans( transMeta ) );
+    step.setInputRowMeta( rowMeta );
+    if ( !step.init( meta, data ) ) {
+      throw new IllegalStateException( "SMS Sender failed to initialize" );
+    }
+  }
+
+  @TearDown( Level.Trial )
+  public void tearDown() {
+    step.dispose( meta, data );
+  }
+
+  @Benchmark
+  public Object[] processRow() throws KettleException {
+    step.processRow( meta, data );
+    return step.output;
+  }
+
+  /**
+   * Step reading the same row over and over and keeping the last row written.
+   */
+  static class BenchmarkSmsSender extends SmsSender {
+    private final Object[] input = new Object[] { 1L, "+15551234567", "+15557654321", "Hello" };
+    private long id;
+    Object[] output;
+
+    BenchmarkSmsSender( StepMeta stepMeta, StepDataInterface data, TransMeta transMeta, Trans trans ) {
+      super( stepMeta, data, 0, transMeta, trans );
+    }
+
+    @Override
+    public Object[] getRow() {
+      // A different body every row, so duplicates are looked up but not found.
+      input[ 0 ] = id;
+      input[ 3 ] = "Hello " + id++;
+      return input;
+    }
+
+    @Override
+    public void putRow( RowMetaInterface rowMeta, Object[] row ) {
+      output = row;
+    }
+
+    @Override
+    PooledHttpClient createHttpClient( String baseUrl, int maxConnections, int idleTimeout, int connectTimeout,
+                                       int readTimeout ) {
+      return new PooledHttpClient( baseUrl, maxConnections, idleTimeout, connectTimeout, readTimeout ) {
+        @Override
+        public Response makeRequest( Request request ) {
+          return new Response( RESPONSE, 201 );
+        }
+      };
+    }
+  }
+}
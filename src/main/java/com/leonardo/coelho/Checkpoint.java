@@ -0,0 +1,287 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.leonardo.coelho;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+
+/**
+ * Progress of a run through its input, so a later attempt of the same run can leave out the rows already done.
+ * <p>
+ * Rows are identified by an integer key increasing along the input. Each row read is tracked until it is
+ * acknowledged, i.e. passed on with its outcome, and the checkpoint is the highest key below which every row was
+ * acknowledged. It is written with the counters of the run to a properties file, replaced atomically, so a crash
+ * leaves either the previous checkpoint or the new one. An attempt opening the file with the same run id resumes
+ * from it and only has to compare the keys of the rows it reads, while another run id starts over.
+ * <p>
+ * The keys of the rows tracked are kept in a ring of primitive longs of at most {@code maxTracked} rows. Rows read
+ * past it are only counted, and the checkpoint doesn't move past them until they are all acknowledged, so memory
+ * stays bounded however many rows wait in a backlog or for their send window.
+ */
+class Checkpoint {
+
+  private final File file;
+  private final String runId;
+  private final int maxTracked;
+  private final boolean resumed;
+  private final long resumedKey;
+  private final long resumedRows;
+  private final long resumedSent;
+  private final long resumedFailed;
+  private final long resumedSkipped;
+
+  // Keys of the rows read and not yet checkpointed in input order, as a ring growing up to maxTracked.
+  private long[] keys = new long[ 16 ];
+  private boolean[] acknowledged = new boolean[ 16 ];
+  private int head;
+  private int size;
+  private int pending;
+  // Rows read while the ring was full, from the first key of which the checkpoint can't move on.
+  private long untracked;
+  private long untrackedAcknowledged;
+  private long firstUntracked;
+  private boolean hasRead;
+  private long lastRead;
+  private boolean hasKey;
+  private long key;
+  private long rows;
+  private boolean finished;
+
+  private Checkpoint( File file, String runId, int maxTracked, Properties properties ) throws IOException {
+    this.file = file;
+    this.runId = runId;
+    this.maxTracked = maxTracked;
+    boolean sameRun = runId.equals( properties.getProperty( "runId" ) );
+    try {
+      resumed = sameRun && properties.getProperty( "key" ) != null;
+      resumedKey = resumed ? Long.parseLong( properties.getProperty( "key" ) ) : 0;
+      resumedRows = sameRun ? Long.parseLong( properties.getProperty( "rows", "0" ) ) : 0;
+      resumedSent = sameRun ? Long.parseLong( properties.getProperty( "sent", "0" ) ) : 0;
+      resumedFailed = sameRun ? Long.parseLong( properties.getProperty( "failed", "0" ) ) : 0;
+      resumedSkipped = sameRun ? Long.parseLong( properties.getProperty( "skipped", "0" ) ) : 0;
+    } catch ( NumberFormatException e ) {
+      throw new IOException( file + ": " + e.getMessage(), e );
+    }
+    hasKey = resumed;
+    key = resumedKey;
+  }
+
+  /**
+   * @param maxTracked max. rows whose keys are kept until they are acknowledged.
+   * @return the checkpoint of the given run, resuming from the file if it holds one of the same run.
+   */
+  static Checkpoint open( File file, String runId, int maxTracked ) throws IOException {
+    Properties properties = new Properties();
+    if ( file.exists() ) {
+      try ( InputStream in = new FileInputStream( file ) ) {
+        properties.load( in );
+      }
+    }
+    return new Checkpoint( file, runId, maxTracked, properties );
+  }
+
+  /**
+   * @return whether an earlier attempt of the run acknowledged some rows.
+   */
+  boolean isResumed() {
+    return resumed;
+  }
+
+  long getResumedKey() {
+    return resumedKey;
+  }
+
+  long getResumedRows() {
+    return resumedRows;
+  }
+
+  long getResumedSent() {
+    return resumedSent;
+  }
+
+  long getResumedFailed() {
+    return resumedFailed;
+  }
+
+  /**
+   * @return whether the row of a key was acknowledged by an earlier attempt of the run.
+   */
+  boolean isDone( long key ) {
+    return resumed && key <= resumedKey;
+  }
+
+  /**
+   * Tracks a row read from the input.
+   *
+   * @return false if its key is lower than the one of the row read before.
+   */
+  synchronized boolean read( long key ) {
+    if ( hasRead && key < lastRead ) {
+      return false;
+    }
+    hasRead = true;
+    lastRead = key;
+    if ( untracked > 0 || size == maxTracked ) {
+      if ( untracked++ == 0 ) {
+        firstUntracked = key;
+      }
+      return true;
+    }
+    track( key, false );
+    advance();
+    return true;
+  }
+
+  private void track( long key, boolean done ) {
+    if ( size == keys.length ) {
+      int capacity = (int) Math.min( (long) keys.length * 2, maxTracked );
+      long[] grownKeys = new long[ capacity ];
+      boolean[] grownAcknowledged = new boolean[ capacity ];
+      for ( int i = 0; i < size; i++ ) {
+        grownKeys[ i ] = keys[ ( head + i ) % keys.length ];
+        grownAcknowledged[ i ] = acknowledged[ ( head + i ) % keys.length ];
+      }
+      keys = grownKeys;
+      acknowledged = grownAcknowledged;
+      head = 0;
+    }
+    int tail = ( head + size ) % keys.length;
+    keys[ tail ] = key;
+    acknowledged[ tail ] = done;
+    size++;
+    if ( !done ) {
+      pending++;
+    }
+  }
+
+  /**
+   * @return the key of the last row read.
+   */
+  synchronized long getLastRead() {
+    return lastRead;
+  }
+
+  /**
+   * Marks a row read as done, in any order.
+   */
+  synchronized void acknowledge( long key ) {
+    // Find the first row of the key not acknowledged yet, keys are sorted from the head.
+    int low = 0;
+    int high = size;
+    while ( low < high ) {
+      int middle = ( low + high ) >>> 1;
+      if ( keys[ ( head + middle ) % keys.length ] < key ) {
+        low = middle + 1;
+      } else {
+        high = middle;
+      }
+    }
+    for ( int i = low; i < size && keys[ ( head + i ) % keys.length ] == key; i++ ) {
+      int index = ( head + i ) % keys.length;
+      if ( !acknowledged[ index ] ) {
+        acknowledged[ index ] = true;
+        pending--;
+        rows++;
+        advance();
+        return;
+      }
+    }
+    if ( untrackedAcknowledged >= untracked || key < firstUntracked || key > lastRead ) {
+      throw new IllegalStateException( "Row not read: " + key );
+    }
+    untrackedAcknowledged++;
+    rows++;
+    advance();
+  }
+
+  /**
+   * Records the end of the input, so the rows of the last key read can be checkpointed too.
+   */
+  synchronized void finish() {
+    finished = true;
+    advance();
+  }
+
+  /**
+   * Moves the checkpoint past the acknowledged rows at the head, but not past a key other rows of which are still
+   * pending or may still come.
+   */
+  private void advance() {
+    while ( size > 0 && acknowledged[ head ] && ( finished || keys[ head ] < lastRead )
+      && ( untracked == 0 || keys[ head ] < firstUntracked ) ) {
+      long done = keys[ head ];
+      head = ( head + 1 ) % keys.length;
+      size--;
+      if ( size == 0 || keys[ head ] != done ) {
+        hasKey = true;
+        key = done;
+      }
+    }
+    // Once the untracked rows are all acknowledged too, every row read is done: the keys being integers, the
+    // checkpoint is right below the last one, tracked again until no more rows of its key may come.
+    if ( untracked > 0 && untrackedAcknowledged == untracked && pending == 0 ) {
+      if ( !hasKey || key < lastRead - 1 ) {
+        hasKey = true;
+        key = lastRead - 1;
+      }
+      size = 0;
+      head = 0;
+      untracked = 0;
+      untrackedAcknowledged = 0;
+      track( lastRead, true );
+      advance();
+    }
+  }
+
+  /**
+   * Replaces the checkpoint file with the current checkpoint and counters, those of the earlier attempts included.
+   *
+   * @param sent messages sent by this attempt.
+   * @param failed messages failed in this attempt.
+   * @param skipped messages skipped by this attempt.
+   */
+  void write( long sent, long failed, long skipped ) throws IOException {
+    Properties properties = new Properties();
+    properties.setProperty( "runId", runId );
+    synchronized ( this ) {
+      if ( hasKey ) {
+        properties.setProperty( "key", String.valueOf( key ) );
+      }
+      properties.setProperty( "rows", String.valueOf( resumedRows + rows ) );
+      properties.setProperty( "complete", String.valueOf( finished && size == 0 && untracked == 0 ) );
+    }
+    properties.setProperty( "sent", String.valueOf( resumedSent + sent ) );
+    properties.setProperty( "failed", String.valueOf( resumedFailed + failed ) );
+    properties.setProperty( "skipped", String.valueOf( resumedSkipped + skipped ) );
+
+    File temporary = new File( file.getPath() + ".tmp" );
+    try ( FileOutputStream out = new FileOutputStream( temporary ) ) {
+      properties.store( out, "SMS Sender checkpoint" );
+      out.getFD().sync();
+    }
+    Files.move( temporary.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE,
+      StandardCopyOption.REPLACE_EXISTING );
+  }
+}
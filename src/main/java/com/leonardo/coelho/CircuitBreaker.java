@@ -0,0 +1,193 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.leonardo.coelho;
+
+import com.twilio.exception.ApiConnectionException;
+import com.twilio.exception.ApiException;
+import org.pentaho.di.core.logging.LogChannelInterface;
+import org.pentaho.di.i18n.BaseMessages;
+
+/**
+ * Stops sending while the API looks down.
+ * <p>
+ * While closed, the outcomes of the last {@code window} sends are kept. Once the share of outages among
+ * them reaches the threshold the breaker opens and no send is let through for the open duration. It then
+ * goes half-open and lets a few probe sends through: if they all succeed it closes again, if one fails it
+ * opens for another open duration.
+ */
+class CircuitBreaker {
+
+  private static Class<?> PKG = SmsSenderMeta.class; // for i18n purposes, needed by Translator2!!   $NON-NLS-1$
+
+  // How long a paused send sleeps before checking again whether it may go through.
+  private static final long PAUSE_INTERVAL = 100;
+
+  enum State {
+    CLOSED, OPEN, HALF_OPEN
+  }
+
+  private final int failureRateThreshold;
+  private final boolean[] outcomes;
+  private final long openDuration;
+  private final int halfOpenProbes;
+  private final boolean pauseWhenOpen;
+  private final LogChannelInterface log;
+
+  private State state = State.CLOSED;
+  private int calls;
+  private int failures;
+  private int next;
+  private long openUntil;
+  private int probesStarted;
+  private int probesSucceeded;
+
+  /**
+   * @param failureRateThreshold percentage of failed sends that opens the breaker.
+   * @param window number of recent sends the failure rate is computed on.
+   * @param openDuration milliseconds the breaker stays open.
+   * @param halfOpenProbes number of successful probe sends needed to close the breaker.
+   * @param pauseWhenOpen whether sends wait for the breaker to let them through instead of failing.
+   */
+  CircuitBreaker( int failureRateThreshold, int window, long openDuration, int halfOpenProbes,
+                  boolean pauseWhenOpen, LogChannelInterface log ) {
+    this.failureRateThreshold = failureRateThreshold;
+    this.outcomes = new boolean[ window ];
+    this.openDuration = openDuration;
+    this.halfOpenProbes = halfOpenProbes;
+    this.pauseWhenOpen = pauseWhenOpen;
+    this.log = log;
+  }
+
+  /**
+   * @return whether the failure means the API or the way to it is down, rather than a rejected message.
+   */
+  static boolean isOutage( RuntimeException error ) {
+    if ( error instanceof ApiConnectionException ) {
+      return true;
+    }
+    return error instanceof ApiException && ( (ApiException) error ).getStatusCode() != null
+      && ( (ApiException) error ).getStatusCode() >= 500;
+  }
+
+  /**
+   * Asks to let a send through, waiting for it while the breaker is open if sends are paused.
+   *
+   * @return false if the send must fail without being attempted.
+   */
+  boolean acquire() throws InterruptedException {
+    while ( !tryAcquire() ) {
+      if ( !pauseWhenOpen ) {
+        return false;
+      }
+      Thread.sleep( PAUSE_INTERVAL );
+    }
+    return true;
+  }
+
+  synchronized boolean tryAcquire() {
+    if ( state == State.OPEN ) {
+      if ( System.currentTimeMillis() < openUntil ) {
+        return false;
+      }
+      probesStarted = 0;
+      probesSucceeded = 0;
+      transition( State.HALF_OPEN );
+    }
+    if ( state == State.HALF_OPEN ) {
+      if ( probesStarted >= halfOpenProbes ) {
+        return false;
+      }
+      probesStarted++;
+    }
+    return true;
+  }
+
+  /**
+   * Gives back a send let through but never attempted, such as one interrupted while waiting for the rate
+   * limits, so the probe it took while half-open can be started by another send.
+   */
+  synchronized void release() {
+    if ( state == State.HALF_OPEN && probesStarted > probesSucceeded ) {
+      probesStarted--;
+    }
+  }
+
+  synchronized void onSuccess() {
+    if ( state == State.HALF_OPEN ) {
+      if ( ++probesSucceeded >= halfOpenProbes ) {
+        calls = 0;
+        failures = 0;
+        next = 0;
+        transition( State.CLOSED );
+      }
+    } else if ( state == State.CLOSED ) {
+      record( false );
+    }
+  }
+
+  synchronized void onFailure() {
+    if ( state == State.HALF_OPEN ) {
+      open();
+    } else if ( state == State.CLOSED ) {
+      record( true );
+      if ( calls == outcomes.length && failures * 100 >= failureRateThreshold * calls ) {
+        open();
+      }
+    }
+  }
+
+  synchronized State getState() {
+    return state;
+  }
+
+  private void record( boolean failure ) {
+    if ( calls == outcomes.length ) {
+      if ( outcomes[ next ] ) {
+        failures--;
+      }
+    } else {
+      calls++;
+    }
+    outcomes[ next ] = failure;
+    if ( failure ) {
+      failures++;
+    }
+    next = ( next + 1 ) % outcomes.length;
+  }
+
+  private void open() {
+    openUntil = System.currentTimeMillis() + openDuration;
+    transition( State.OPEN );
+  }
+
+  private void transition( State to ) {
+    State from = state;
+    state = to;
+    switch ( to ) {
+      case OPEN:
+        log.logError( BaseMessages.getString( PKG, "SmsSender.CircuitBreaker.Opened", from, openDuration ) );
+        break;
+      case HALF_OPEN:
+        log.logBasic( BaseMessages.getString( PKG, "SmsSender.CircuitBreaker.HalfOpen", halfOpenProbes ) );
+        break;
+      default:
+        log.logBasic( BaseMessages.getString( PKG, "SmsSender.CircuitBreaker.Closed" ) );
+    }
+  }
+}
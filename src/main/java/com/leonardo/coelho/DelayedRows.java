@@ -0,0 +1,206 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.leonardo.coelho;
+
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.row.RowMetaInterface;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Rows held until a release time, e.g. the opening of their recipient's send window.
+ * <p>
+ * Rows released at the same time are kept together, and there are few such times: one per time zone and day.
+ * Past the memory limit, the rows released last are written to a temporary file of their release time and read
+ * back when it comes. Not thread safe, each step copy has its own.
+ */
+class DelayedRows implements Closeable {
+
+  private final RowMetaInterface rowMeta;
+  private final int memoryLimit;
+  private final File directory;
+  private final TreeMap<Long, Batch> batches = new TreeMap<>();
+  private int inMemory;
+  private long size;
+  private long spilled;
+
+  /**
+   * @param rowMeta layout of the rows held.
+   * @param memoryLimit max. rows kept in memory.
+   * @param directory directory of the temporary files.
+   */
+  DelayedRows( RowMetaInterface rowMeta, int memoryLimit, File directory ) {
+    this.rowMeta = rowMeta;
+    this.memoryLimit = memoryLimit;
+    this.directory = directory;
+  }
+
+  /**
+   * Holds a row until the given time.
+   */
+  void add( long releaseTime, Object[] row ) throws KettleException {
+    Batch batch = batches.get( releaseTime );
+    if ( batch == null ) {
+      batch = new Batch();
+      batches.put( releaseTime, batch );
+    }
+    batch.rows.add( row );
+    inMemory++;
+    size++;
+    if ( inMemory > memoryLimit ) {
+      // Spill the rows needed last.
+      for ( Batch last : batches.descendingMap().values() ) {
+        if ( !last.rows.isEmpty() ) {
+          last.spill();
+          break;
+        }
+      }
+    }
+  }
+
+  /**
+   * @return the next row released at the given time, or null if there is none.
+   */
+  Object[] poll( long now ) throws KettleException {
+    for ( Map.Entry<Long, Batch> first = batches.firstEntry(); first != null && first.getKey() <= now;
+          first = batches.firstEntry() ) {
+      Object[] row = first.getValue().next();
+      if ( row != null ) {
+        size--;
+        return row;
+      }
+      first.getValue().close();
+      batches.pollFirstEntry();
+    }
+    return null;
+  }
+
+  /**
+   * @return the time the next rows are released at in epoch millis, or Long.MAX_VALUE if there are none.
+   */
+  long getNextReleaseTime() {
+    return batches.isEmpty() ? Long.MAX_VALUE : batches.firstKey();
+  }
+
+  boolean isEmpty() {
+    return size == 0;
+  }
+
+  long size() {
+    return size;
+  }
+
+  /**
+   * @return the number of rows written to disk so far.
+   */
+  long getSpilled() {
+    return spilled;
+  }
+
+  /**
+   * Drops the rows still held and deletes the temporary files.
+   */
+  @Override
+  public void close() {
+    for ( Batch batch : batches.values() ) {
+      batch.close();
+    }
+    batches.clear();
+    inMemory = 0;
+    size = 0;
+  }
+
+  /**
+   * Rows released at the same time, the ones in memory and the ones in its file.
+   */
+  private class Batch {
+
+    final ArrayDeque<Object[]> rows = new ArrayDeque<>();
+    File file;
+    DataOutputStream out;
+    DataInputStream in;
+    long fileRows;
+
+    void spill() throws KettleException {
+      try {
+        if ( out == null ) {
+          file = File.createTempFile( "sms-delayed-", ".rows", directory );
+          out = new DataOutputStream( new BufferedOutputStream( new FileOutputStream( file ) ) );
+        }
+      } catch ( IOException e ) {
+        throw new KettleException( e.getMessage(), e );
+      }
+      for ( Object[] row = rows.poll(); row != null; row = rows.poll() ) {
+        rowMeta.writeData( out, row );
+        fileRows++;
+        spilled++;
+        inMemory--;
+      }
+    }
+
+    Object[] next() throws KettleException {
+      Object[] row = rows.poll();
+      if ( row != null ) {
+        inMemory--;
+        return row;
+      }
+      if ( fileRows == 0 ) {
+        return null;
+      }
+      try {
+        if ( in == null ) {
+          out.close();
+          out = null;
+          in = new DataInputStream( new BufferedInputStream( new FileInputStream( file ) ) );
+        }
+        fileRows--;
+        return rowMeta.readData( in );
+      } catch ( IOException e ) {
+        throw new KettleException( e.getMessage(), e );
+      }
+    }
+
+    void close() {
+      try {
+        if ( out != null ) {
+          out.close();
+        }
+        if ( in != null ) {
+          in.close();
+        }
+      } catch ( IOException e ) {
+        // Nothing left to read from it.
+      }
+      if ( file != null ) {
+        file.delete();
+      }
+    }
+  }
+}
@@ -0,0 +1,233 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.leonardo.coelho;
+
+import org.pentaho.di.core.logging.LogChannelInterface;
+import org.pentaho.di.i18n.BaseMessages;
+
+import java.util.Arrays;
+
+/**
+ * Remembers the message keys seen during a run to tell repeated messages apart.
+ * <p>
+ * Keys are kept either exactly, in a {@link LongHashSet}, or in a Bloom filter sized for an expected number
+ * of messages and false positive rate, whose memory doesn't grow at all. With a window, keys are kept in two
+ * generations that are rotated every window, so a repeat is caught if it comes within one window of the
+ * first message, and possibly up to two windows after it; older keys are forgotten. Exact generations are also
+ * rotated once they hold the expected number of messages, so at least that many of the last keys are
+ * remembered and memory stays bounded. Without a window, the exact set grows to hold every key of the run.
+ * <p>
+ * The expected number of messages being exceeded is logged once: exact keys then take more memory or are
+ * forgotten within their window, and a Bloom filter takes more new messages for repeats than its rate.
+ * <p>
+ * Keys are checked and added apart, so a message is only recorded once it was actually sent.
+ */
+class DuplicateFilter {
+
+  private static Class<?> PKG = SmsSenderMeta.class; // for i18n purposes, needed by Translator2!!   $NON-NLS-1$
+
+  private final long window;
+  private final int expectedMessages;
+  private final double falsePositiveRate;
+  private final LogChannelInterface log;
+  private boolean exceeded;
+
+  private KeySet current;
+  private KeySet previous;
+  private long generationStart = System.currentTimeMillis();
+
+  /**
+   * @param window milliseconds a key is remembered for, 0 to remember keys for the whole run.
+   * @param expectedMessages number of distinct messages per window the Bloom filter is sized for.
+   * @param falsePositiveRate share of new messages a Bloom filter may take for repeats, 0 to keep keys exactly.
+   * @param log log told when more messages than expected are recorded.
+   */
+  DuplicateFilter( long window, int expectedMessages, double falsePositiveRate, LogChannelInterface log ) {
+    this.window = window;
+    this.expectedMessages = expectedMessages;
+    this.falsePositiveRate = falsePositiveRate;
+    this.log = log;
+    this.current = newKeySet();
+  }
+
+  /**
+   * @return true if the key of a message was already recorded.
+   */
+  boolean contains( long key ) {
+    rotate();
+    return current.contains( key ) || ( previous != null && previous.contains( key ) );
+  }
+
+  /**
+   * Records the key of a message sent.
+   */
+  void add( long key ) {
+    rotate();
+    if ( current.add( key ) && current.size() > expectedMessages ) {
+      exceeded( falsePositiveRate > 0 ? "SmsSender.Dedup.BloomExceeded" : "SmsSender.Dedup.Growing" );
+    }
+  }
+
+  /**
+   * Tells once that more messages than expected were recorded.
+   */
+  private void exceeded( String warning ) {
+    if ( !exceeded ) {
+      exceeded = true;
+      log.logBasic( BaseMessages.getString( PKG, warning, String.valueOf( expectedMessages ) ) );
+    }
+  }
+
+  /**
+   * Drops the keys older than a window, or the oldest generation once the current exact one is full, and
+   * starts a new generation. Without a window, keys are never dropped.
+   */
+  private void rotate() {
+    if ( window <= 0 ) {
+      return;
+    }
+    long now = System.currentTimeMillis();
+    boolean expired = now - generationStart >= window;
+    if ( !expired && !current.isFull() ) {
+      return;
+    }
+    if ( !expired ) {
+      exceeded( "SmsSender.Dedup.WindowExceeded" );
+    }
+    KeySet recycled = previous;
+    previous = expired && now - generationStart >= 2 * window ? null : current;
+    if ( recycled != null ) {
+      recycled.clear();
+      current = recycled;
+    } else {
+      current = newKeySet();
+    }
+    generationStart = now;
+  }
+
+  private KeySet newKeySet() {
+    if ( falsePositiveRate > 0 ) {
+      return new BloomKeySet( expectedMessages, falsePositiveRate );
+    }
+    final LongHashSet set = new LongHashSet();
+    return new KeySet() {
+      public boolean add( long key ) {
+        return set.add( key );
+      }
+
+      public boolean contains( long key ) {
+        return set.contains( key );
+      }
+
+      public int size() {
+        return set.size();
+      }
+
+      public boolean isFull() {
+        return set.size() >= expectedMessages;
+      }
+
+      public void clear() {
+        set.clear();
+      }
+    };
+  }
+
+  private interface KeySet {
+    /**
+     * @return false if the key may already be in the set.
+     */
+    boolean add( long key );
+
+    boolean contains( long key );
+
+    /**
+     * @return the number of keys added, approximate for a Bloom filter.
+     */
+    int size();
+
+    /**
+     * @return true if the set should not take more keys.
+     */
+    boolean isFull();
+
+    void clear();
+  }
+
+  /**
+   * Bloom filter over 64 bit keys, deriving its bit positions from the two halves of the key.
+   */
+  private static class BloomKeySet implements KeySet {
+    private final long[] bits;
+    private final long bitCount;
+    private final int hashCount;
+    private int size;
+
+    BloomKeySet( int expectedMessages, double falsePositiveRate ) {
+      double m = -expectedMessages * Math.log( falsePositiveRate ) / ( Math.log( 2 ) * Math.log( 2 ) );
+      bits = new long[ (int) Math.max( 1, Math.min( Math.ceil( m / 64 ), Integer.MAX_VALUE - 8 ) ) ];
+      bitCount = (long) bits.length << 6;
+      hashCount = Math.max( 1, (int) Math.round( (double) bitCount / expectedMessages * Math.log( 2 ) ) );
+    }
+
+    public boolean add( long key ) {
+      boolean added = false;
+      int hash1 = (int) key;
+      int hash2 = (int) ( key >>> 32 );
+      for ( int i = 1; i <= hashCount; i++ ) {
+        long bit = ( ( hash1 + (long) i * hash2 ) & Long.MAX_VALUE ) % bitCount;
+        long mask = 1L << bit;
+        int word = (int) ( bit >>> 6 );
+        if ( ( bits[ word ] & mask ) == 0 ) {
+          bits[ word ] |= mask;
+          added = true;
+        }
+      }
+      if ( added ) {
+        size++;
+      }
+      return added;
+    }
+
+    public boolean contains( long key ) {
+      int hash1 = (int) key;
+      int hash2 = (int) ( key >>> 32 );
+      for ( int i = 1; i <= hashCount; i++ ) {
+        long bit = ( ( hash1 + (long) i * hash2 ) & Long.MAX_VALUE ) % bitCount;
+        if ( ( bits[ (int) ( bit >>> 6 ) ] & ( 1L << bit ) ) == 0 ) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    public int size() {
+      return size;
+    }
+
+    public boolean isFull() {
+      return false;
+    }
+
+    public void clear() {
+      Arrays.fill( bits, 0 );
+      size = 0;
+    }
+  }
+}
@@ -0,0 +1,107 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.leonardo.coelho;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free histogram of latencies in nanoseconds, with log-linear buckets in the manner of HdrHistogram.
+ * <p>
+ * Values below {@value #SUB_BUCKETS} are counted exactly; above, every power of two is split into
+ * {@value #SUB_BUCKETS} buckets of equal width, so percentiles are off by at most ~3% whatever the range,
+ * in a fixed 15 KB.
+ */
+class LatencyHistogram {
+
+  private static final int SUB_BUCKET_BITS = 5;
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+  private final AtomicLongArray counts = new AtomicLongArray( ( 64 - SUB_BUCKET_BITS ) * SUB_BUCKETS );
+  private final LongAdder count = new LongAdder();
+  private final LongAdder sum = new LongAdder();
+  private final AtomicLong max = new AtomicLong();
+
+  void record( long value ) {
+    value = Math.max( 0, value );
+    counts.incrementAndGet( index( value ) );
+    count.increment();
+    sum.add( value );
+    if ( value > max.get() ) {
+      max.accumulateAndGet( value, Math::max );
+    }
+  }
+
+  long getCount() {
+    return count.sum();
+  }
+
+  long getMax() {
+    return max.get();
+  }
+
+  double getMean() {
+    long n = count.sum();
+    return n == 0 ? 0 : (double) sum.sum() / n;
+  }
+
+  /**
+   * @param percentile between 0 and 100.
+   * @return the value below which the given percent of the recorded values fall, 0 if there are none.
+   */
+  long getValueAtPercentile( double percentile ) {
+    long total = 0;
+    for ( int i = 0; i < counts.length(); i++ ) {
+      total += counts.get( i );
+    }
+    long target = Math.max( 1, (long) Math.ceil( percentile / 100 * total ) );
+    long seen = 0;
+    for ( int i = 0; i < counts.length() && total > 0; i++ ) {
+      seen += counts.get( i );
+      if ( seen >= target ) {
+        // The middle of the bucket, but never beyond the largest value seen.
+        return Math.min( lowestValue( i ) + bucketWidth( i ) / 2, max.get() );
+      }
+    }
+    return 0;
+  }
+
+  private static int index( long value ) {
+    if ( value < SUB_BUCKETS ) {
+      return (int) value;
+    }
+    int exponent = 63 - Long.numberOfLeadingZeros( value );
+    int subBucket = (int) ( value >>> ( exponent - SUB_BUCKET_BITS ) ) - SUB_BUCKETS;
+    return ( exponent - SUB_BUCKET_BITS + 1 ) * SUB_BUCKETS + subBucket;
+  }
+
+  private static long lowestValue( int index ) {
+    int group = index / SUB_BUCKETS;
+    if ( group == 0 ) {
+      return index;
+    }
+    return (long) ( SUB_BUCKETS + index % SUB_BUCKETS ) << ( group - 1 );
+  }
+
+  private static long bucketWidth( int index ) {
+    int group = index / SUB_BUCKETS;
+    return group == 0 ? 1 : 1L << ( group - 1 );
+  }
+}
@@ -0,0 +1,119 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.leonardo.coelho;
+
+import java.util.Arrays;
+
+/**
+ * Set of primitive longs using open addressing, taking 8 to 16 bytes per entry instead of the
+ * ~50 of a {@code HashSet<Long>}.
+ */
+class LongHashSet {
+
+  private static final int MIN_CAPACITY = 16;
+
+  // 0 marks a free slot, so the value 0 itself is tracked apart.
+  private long[] table;
+  private boolean containsZero;
+  private int size;
+
+  LongHashSet() {
+    this( MIN_CAPACITY );
+  }
+
+  /**
+   * @param expectedSize number of values the set can hold before growing.
+   */
+  LongHashSet( int expectedSize ) {
+    int capacity = MIN_CAPACITY;
+    while ( capacity < expectedSize * 2 && capacity < ( 1 << 30 ) ) {
+      capacity <<= 1;
+    }
+    table = new long[ capacity ];
+  }
+
+  /**
+   * @return false if the value was already in the set.
+   */
+  boolean add( long value ) {
+    if ( value == 0 ) {
+      if ( containsZero ) {
+        return false;
+      }
+      containsZero = true;
+      size++;
+      return true;
+    }
+    int mask = table.length - 1;
+    int slot = slot( value, mask );
+    while ( table[ slot ] != 0 ) {
+      if ( table[ slot ] == value ) {
+        return false;
+      }
+      slot = ( slot + 1 ) & mask;
+    }
+    table[ slot ] = value;
+    if ( ++size * 2 > table.length ) {
+      grow();
+    }
+    return true;
+  }
+
+  boolean contains( long value ) {
+    if ( value == 0 ) {
+      return containsZero;
+    }
+    int mask = table.length - 1;
+    for ( int slot = slot( value, mask ); table[ slot ] != 0; slot = ( slot + 1 ) & mask ) {
+      if ( table[ slot ] == value ) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  int size() {
+    return size;
+  }
+
+  void clear() {
+    Arrays.fill( table, 0 );
+    containsZero = false;
+    size = 0;
+  }
+
+  private static int slot( long value, int mask ) {
+    return (int) ( ( value * 0x9E3779B97F4A7C15L ) >>> 32 ) & mask;
+  }
+
+  private void grow() {
+    long[] old = table;
+    table = new long[ old.length * 2 ];
+    int mask = table.length - 1;
+    for ( long value : old ) {
+      if ( value != 0 ) {
+        int slot = slot( value, mask );
+        while ( table[ slot ] != 0 ) {
+          slot = ( slot + 1 ) & mask;
+        }
+        table[ slot ] = value;
+      }
+    }
+  }
+}
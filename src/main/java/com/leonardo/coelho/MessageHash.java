@@ -0,0 +1,64 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.leonardo.coelho;
+
+/**
+ * 64 bit hashes of message values, computed without allocating so they can be taken for every row.
+ */
+final class MessageHash {
+
+  private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+  private static final long FNV_PRIME = 0x100000001b3L;
+
+  private MessageHash() {
+  }
+
+  /**
+   * @return the FNV-1a hash of the characters, finalized for a better spread of the bits. Null hashes to 0.
+   */
+  static long hash( CharSequence value ) {
+    if ( value == null ) {
+      return 0;
+    }
+    long hash = FNV_OFFSET_BASIS;
+    for ( int i = 0; i < value.length(); i++ ) {
+      char c = value.charAt( i );
+      hash = ( hash ^ ( c & 0xff ) ) * FNV_PRIME;
+      hash = ( hash ^ ( c >>> 8 ) ) * FNV_PRIME;
+    }
+    return mix( hash );
+  }
+
+  /**
+   * @return a hash of both hashes, which depends on their order.
+   */
+  static long combine( long first, long second ) {
+    return mix( first * 31 + second );
+  }
+
+  // Murmur3 64 bit finalizer.
+  private static long mix( long hash ) {
+    hash ^= hash >>> 33;
+    hash *= 0xff51afd7ed558ccdL;
+    hash ^= hash >>> 33;
+    hash *= 0xc4ceb9fe1a85ec53L;
+    hash ^= hash >>> 33;
+    return hash;
+  }
+}
@@ -0,0 +1,144 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.leonardo.coelho;
+
+/**
+ * Works out how a message body is encoded and into how many segments it is split, which Twilio bills per.
+ * <p>
+ * Bodies made only of GSM-7 characters take 160 septets in a single segment, or 153 per segment once split,
+ * the extension characters like the euro sign or {@code [} taking two septets. Any other character turns the whole
+ * body into UCS-2, with 70 UTF-16 code units in a single segment or 67 per segment once split. Escape sequences
+ * and surrogate pairs are never split across segments.
+ * <p>
+ * An instance holds the result of the last body analyzed, so one step copy can reuse it for every row.
+ */
+class MessageSegments {
+
+  static final String GSM_7 = "GSM-7";
+  static final String UCS_2 = "UCS-2";
+
+  private static final int GSM_7_SINGLE = 160;
+  private static final int GSM_7_MULTIPART = 153;
+  private static final int UCS_2_SINGLE = 70;
+  private static final int UCS_2_MULTIPART = 67;
+
+  private static final String GSM_7_BASIC = "@\u00A3$\u00A5\u00E8\u00E9\u00F9\u00EC\u00F2\u00C7\n\u00D8\u00F8\r"
+    + "\u00C5\u00E5\u0394_\u03A6\u0393\u039B\u03A9\u03A0\u03A8\u03A3\u0398\u039E\u00C6\u00E6\u00DF\u00C9"
+    + " !\"#\u00A4%&'()*+,-./0123456789:;<=>?\u00A1ABCDEFGHIJKLMNOPQRSTUVWXYZ\u00C4\u00D6\u00D1\u00DC\u00A7\u00BF"
+    + "abcdefghijklmnopqrstuvwxyz\u00E4\u00F6\u00F1\u00FC\u00E0";
+  private static final String GSM_7_EXTENSION = "\f^{}\\[~]|\u20AC";
+  private static final char EURO = '\u20AC';
+
+  // Septets taken by each character up to capital omega, 0 for the ones outside of GSM-7.
+  private static final byte[] SEPTETS = new byte[ '\u03A9' + 1 ];
+
+  static {
+    for ( int i = 0; i < GSM_7_BASIC.length(); i++ ) {
+      SEPTETS[ GSM_7_BASIC.charAt( i ) ] = 1;
+    }
+    for ( int i = 0; i < GSM_7_EXTENSION.length(); i++ ) {
+      char c = GSM_7_EXTENSION.charAt( i );
+      if ( c != EURO ) {
+        SEPTETS[ c ] = 2;
+      }
+    }
+  }
+
+  private boolean unicode;
+  private int length;
+  private int segments;
+
+  /**
+   * Analyzes a message body, replacing the result of the previous one.
+   */
+  void analyze( CharSequence body ) {
+    int septets = 0;
+    int segmentSeptets = 0;
+    int multipartSegments = 1;
+    for ( int i = 0; i < body.length(); i++ ) {
+      int size = septets( body.charAt( i ) );
+      if ( size == 0 ) {
+        analyzeUcs2( body );
+        return;
+      }
+      septets += size;
+      if ( segmentSeptets + size > GSM_7_MULTIPART ) {
+        multipartSegments++;
+        segmentSeptets = size;
+      } else {
+        segmentSeptets += size;
+      }
+    }
+    unicode = false;
+    length = septets;
+    segments = septets <= GSM_7_SINGLE ? 1 : multipartSegments;
+  }
+
+  private void analyzeUcs2( CharSequence body ) {
+    int units = body.length();
+    int segmentUnits = 0;
+    int multipartSegments = 1;
+    for ( int i = 0; i < units; i++ ) {
+      int size = Character.isHighSurrogate( body.charAt( i ) ) && i + 1 < units
+        && Character.isLowSurrogate( body.charAt( i + 1 ) ) ? 2 : 1;
+      if ( segmentUnits + size > UCS_2_MULTIPART ) {
+        multipartSegments++;
+        segmentUnits = size;
+      } else {
+        segmentUnits += size;
+      }
+      i += size - 1;
+    }
+    unicode = true;
+    length = units;
+    segments = units <= UCS_2_SINGLE ? 1 : multipartSegments;
+  }
+
+  private static int septets( char c ) {
+    if ( c < SEPTETS.length ) {
+      return SEPTETS[ c ];
+    }
+    return c == EURO ? 2 : 0;
+  }
+
+  /**
+   * @return true if the body has to be sent as UCS-2.
+   */
+  boolean isUnicode() {
+    return unicode;
+  }
+
+  /**
+   * @return {@link #GSM_7} or {@link #UCS_2}.
+   */
+  String getEncoding() {
+    return unicode ? UCS_2 : GSM_7;
+  }
+
+  /**
+   * @return the length of the body in septets for GSM-7, or in UTF-16 code units for UCS-2.
+   */
+  int getLength() {
+    return length;
+  }
+
+  int getSegments() {
+    return segments;
+  }
+}
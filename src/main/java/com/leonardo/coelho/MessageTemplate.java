@@ -0,0 +1,123 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.leonardo.coelho;
+
+import org.pentaho.di.core.exception.KettleValueException;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.row.ValueMetaInterface;
+import org.pentaho.di.core.variables.VariableSpace;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Message body built from a template with {@code ${name}} placeholders, replaced by the value of the row field of
+ * that name, or of the variable of that name if there is no such field.
+ * <p>
+ * The template is split into literal parts and placeholders once, the placeholders are bound to field indexes
+ * on the first row, and each row is rendered into the same builder. Not thread safe, each step copy has its own.
+ */
+class MessageTemplate {
+
+  private static final String OPEN = "${";
+  private static final String CLOSE = "}";
+
+  // Literal text before each placeholder, and after the last one.
+  private final String[] literals;
+  private final String[] names;
+  private final StringBuilder builder = new StringBuilder();
+
+  // Bound placeholders: the field index and its meta, or the value of a variable with index -1.
+  private int[] indexes;
+  private ValueMetaInterface[] valueMetas;
+  private String[] values;
+
+  private MessageTemplate( String[] literals, String[] names ) {
+    this.literals = literals;
+    this.names = names;
+  }
+
+  /**
+   * Splits a template into its literal parts and placeholders, a {@code ${} without a closing brace is literal.
+   */
+  static MessageTemplate compile( String template ) {
+    List<String> literals = new ArrayList<>();
+    List<String> names = new ArrayList<>();
+    int start = 0;
+    for ( int open = template.indexOf( OPEN ); open >= 0; open = template.indexOf( OPEN, start ) ) {
+      int close = template.indexOf( CLOSE, open + OPEN.length() );
+      if ( close < 0 ) {
+        break;
+      }
+      literals.add( template.substring( start, open ) );
+      names.add( template.substring( open + OPEN.length(), close ).trim() );
+      start = close + CLOSE.length();
+    }
+    literals.add( template.substring( start ) );
+    return new MessageTemplate( literals.toArray( new String[ 0 ] ), names.toArray( new String[ 0 ] ) );
+  }
+
+  /**
+   * Binds the placeholders to the fields of the input rows, or to variables.
+   *
+   * @return the name of a placeholder that is neither a field nor a variable, or null if all of them are bound.
+   */
+  String bind( RowMetaInterface rowMeta, VariableSpace variables ) {
+    indexes = new int[ names.length ];
+    valueMetas = new ValueMetaInterface[ names.length ];
+    values = new String[ names.length ];
+    for ( int i = 0; i < names.length; i++ ) {
+      indexes[ i ] = rowMeta.indexOfValue( names[ i ] );
+      if ( indexes[ i ] >= 0 ) {
+        valueMetas[ i ] = rowMeta.getValueMeta( indexes[ i ] );
+      } else {
+        values[ i ] = variables.getVariable( names[ i ] );
+        if ( values[ i ] == null ) {
+          return names[ i ];
+        }
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Renders the message of a row, null values are left empty.
+   */
+  String render( Object[] row ) throws KettleValueException {
+    builder.setLength( 0 );
+    for ( int i = 0; i < names.length; i++ ) {
+      builder.append( literals[ i ] );
+      if ( indexes[ i ] < 0 ) {
+        builder.append( values[ i ] );
+        continue;
+      }
+      Object value = row[ indexes[ i ] ];
+      if ( value instanceof String ) {
+        builder.append( (String) value );
+      } else if ( value != null ) {
+        String text = valueMetas[ i ].getString( value );
+        if ( text != null ) {
+          builder.append( text );
+        }
+      }
+    }
+    builder.append( literals[ names.length ] );
+    return builder.toString();
+  }
+}
@@ -0,0 +1,154 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.leonardo.coelho;
+
+import com.google.i18n.phonenumbers.NumberParseException;
+import com.google.i18n.phonenumbers.PhoneNumberUtil;
+import com.google.i18n.phonenumbers.Phonenumber;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Normalizes phone numbers to E.164 with libphonenumber, rejecting the invalid ones before they reach the API.
+ * <p>
+ * Parsing is expensive and recipient lists repeat a lot, so the results, invalid numbers included, are kept
+ * in a cache dropping the least recently used ones. Not thread safe, each step copy has its own.
+ */
+class PhoneNumberNormalizer {
+
+  // Cached result of a number that failed to parse or isn't valid.
+  private static final String INVALID = "";
+
+  private final PhoneNumberUtil util = PhoneNumberUtil.getInstance();
+  private final String defaultRegion;
+  private final Map<String, String> cache;
+  private long hits;
+  private long misses;
+
+  /**
+   * @param defaultRegion ISO 3166 code of the region of numbers without a country code, or null to require one.
+   * @param cacheSize max. numbers to keep the result of, 0 for no cache.
+   */
+  PhoneNumberNormalizer( String defaultRegion, final int cacheSize ) {
+    this.defaultRegion = defaultRegion;
+    this.cache = new LinkedHashMap<String, String>( 16, 0.75f, true ) {
+      @Override
+      protected boolean removeEldestEntry( Map.Entry<String, String> eldest ) {
+        return size() > cacheSize;
+      }
+    };
+  }
+
+  /**
+   * @return whether libphonenumber knows the region code.
+   */
+  static boolean isSupportedRegion( String region ) {
+    return PhoneNumberUtil.getInstance().getSupportedRegions().contains( region );
+  }
+
+  /**
+   * @return whether the sender is an alphanumeric sender ID such as a brand name rather than a number.
+   */
+  static boolean isAlphanumericSender( String sender ) {
+    if ( sender.indexOf( ':' ) >= 0 ) {
+      return false;
+    }
+    for ( int i = 0; i < sender.length(); i++ ) {
+      if ( Character.isLetter( sender.charAt( i ) ) ) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * @return whether the sender is a short code, 3 to 8 digits with no country code, which isn't a valid E.164
+   * number but is sent as it is.
+   */
+  static boolean isShortCode( String sender ) {
+    if ( sender.length() < 3 || sender.length() > 8 ) {
+      return false;
+    }
+    for ( int i = 0; i < sender.length(); i++ ) {
+      if ( sender.charAt( i ) < '0' || sender.charAt( i ) > '9' ) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Normalizes a number, keeping a channel prefix such as {@code whatsapp:} in front of it.
+   *
+   * @return the number in E.164, or null if it isn't a valid number.
+   */
+  String normalize( String number ) {
+    String result = cache.get( number );
+    if ( result != null ) {
+      hits++;
+    } else {
+      misses++;
+      result = parse( number );
+      cache.put( number, result );
+    }
+    return result == INVALID ? null : result;
+  }
+
+  /**
+   * Normalizes a sender, keeping alphanumeric sender IDs and short codes as they are.
+   *
+   * @return the sender to use, or null if it isn't a valid number.
+   */
+  String normalizeSender( String sender ) {
+    if ( isAlphanumericSender( sender ) || isShortCode( sender ) ) {
+      return sender;
+    }
+    return normalize( sender );
+  }
+
+  private String parse( String number ) {
+    int channel = number.indexOf( ':' );
+    String prefix = channel < 0 ? "" : number.substring( 0, channel + 1 );
+    try {
+      Phonenumber.PhoneNumber parsed = util.parse( number.substring( channel + 1 ), defaultRegion );
+      if ( !util.isValidNumber( parsed ) ) {
+        return INVALID;
+      }
+      return prefix + util.format( parsed, PhoneNumberUtil.PhoneNumberFormat.E164 );
+    } catch ( NumberParseException e ) {
+      return INVALID;
+    }
+  }
+
+  /**
+   * @return the region of the numbers without a country code, or null.
+   */
+  String getDefaultRegion() {
+    return defaultRegion;
+  }
+
+  long getHits() {
+    return hits;
+  }
+
+  long getMisses() {
+    return misses;
+  }
+}
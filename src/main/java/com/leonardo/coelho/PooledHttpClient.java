@@ -0,0 +1,137 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.leonardo.coelho;
+
+import com.twilio.Twilio;
+import com.twilio.exception.ApiConnectionException;
+import com.twilio.http.HttpClient;
+import com.twilio.http.HttpMethod;
+import com.twilio.http.Request;
+import com.twilio.http.Response;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpVersion;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.RequestBuilder;
+import org.apache.http.entity.BufferedHttpEntity;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.message.BasicHeader;
+import org.apache.http.pool.PoolStats;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Twilio HTTP client backed by a keep-alive connection pool owned by a single step copy.
+ * <p>
+ * Unlike the SDK's default network client, the pool size, idle eviction and timeouts are configurable
+ * and the pool is shut down when the step is disposed.
+ */
+class PooledHttpClient extends HttpClient implements Closeable {
+
+  private static final String USER_AGENT = "twilio-java/" + Twilio.VERSION + " (" + Twilio.JAVA_VERSION + ")";
+
+  private final PoolingHttpClientConnectionManager connectionManager;
+  private final CloseableHttpClient client;
+  private final String baseUrl;
+
+  /**
+   * @param baseUrl scheme, host and port to send requests to instead of the Twilio API, or null.
+   * @param maxConnections max. open connections to the API.
+   * @param idleTimeout seconds after which an unused connection is closed.
+   * @param connectTimeout milliseconds to wait for a connection to be established.
+   * @param readTimeout milliseconds to wait for data on an open connection.
+   */
+  PooledHttpClient( String baseUrl, int maxConnections, int idleTimeout, int connectTimeout, int readTimeout ) {
+    this.baseUrl = baseUrl != null && baseUrl.endsWith( "/" ) ? baseUrl.substring( 0, baseUrl.length() - 1 ) : baseUrl;
+    connectionManager = new PoolingHttpClientConnectionManager();
+    connectionManager.setDefaultMaxPerRoute( maxConnections );
+    connectionManager.setMaxTotal( maxConnections );
+
+    RequestConfig requestConfig = RequestConfig.custom()
+      .setConnectTimeout( connectTimeout )
+      .setConnectionRequestTimeout( connectTimeout )
+      .setSocketTimeout( readTimeout )
+      .build();
+
+    client = HttpClientBuilder.create()
+      .useSystemProperties()
+      .setConnectionManager( connectionManager )
+      .setDefaultRequestConfig( requestConfig )
+      .setDefaultHeaders( Arrays.asList(
+        new BasicHeader( HttpHeaders.ACCEPT, "application/json" ),
+        new BasicHeader( HttpHeaders.ACCEPT_ENCODING, "utf-8" ) ) )
+      .setUserAgent( USER_AGENT )
+      .evictExpiredConnections()
+      .evictIdleConnections( idleTimeout, TimeUnit.SECONDS )
+      .build();
+  }
+
+  @Override
+  public Response makeRequest( Request request ) {
+    HttpMethod method = request.getMethod();
+    URL url = request.constructURL();
+    RequestBuilder builder = RequestBuilder.create( method.toString() )
+      .setUri( baseUrl == null ? url.toString() : baseUrl + url.getFile() )
+      .setVersion( HttpVersion.HTTP_1_1 )
+      .setCharset( StandardCharsets.UTF_8 );
+
+    if ( request.requiresAuthentication() ) {
+      builder.addHeader( HttpHeaders.AUTHORIZATION, request.getAuthString() );
+    }
+    if ( method == HttpMethod.POST ) {
+      builder.addHeader( HttpHeaders.CONTENT_TYPE, "application/x-www-form-urlencoded" );
+      for ( Map.Entry<String, List<String>> entry : request.getPostParams().entrySet() ) {
+        for ( String value : entry.getValue() ) {
+          builder.addParameter( entry.getKey(), value );
+        }
+      }
+    }
+
+    try ( CloseableHttpResponse response = client.execute( builder.build() ) ) {
+      // Read the whole entity so the connection goes back to the pool before returning.
+      HttpEntity entity = response.getEntity();
+      return new Response( entity == null ? null : new BufferedHttpEntity( entity ).getContent(),
+        response.getStatusLine().getStatusCode() );
+    } catch ( IOException e ) {
+      throw new ApiConnectionException( e.getMessage(), e );
+    }
+  }
+
+  /**
+   * @return the number of leased, idle and pending connections of the pool.
+   */
+  PoolStats getPoolStats() {
+    return connectionManager.getTotalStats();
+  }
+
+  @Override
+  public void close() throws IOException {
+    client.close();
+  }
+}
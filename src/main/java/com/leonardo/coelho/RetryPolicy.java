@@ -0,0 +1,127 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.leonardo.coelho;
+
+import com.twilio.exception.ApiConnectionException;
+import com.twilio.exception.ApiException;
+import org.apache.http.conn.ConnectTimeoutException;
+
+import java.net.ConnectException;
+import java.net.UnknownHostException;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Decides whether a failed send is worth another attempt and how long to wait before it.
+ * <p>
+ * Delays grow exponentially from the base delay up to the max. delay, and a random part of up to
+ * {@code jitter} times the delay is taken off so copies failing together don't retry together.
+ */
+class RetryPolicy {
+
+  /**
+   * Codes answered before a request is processed: too many requests and service unavailable. Retrying them is
+   * safe even when the request is not idempotent, such as creating a message.
+   */
+  static final String THROTTLED_CODES = "429,503,20429";
+
+  /**
+   * Server errors which may come after the request was processed, only safe to retry when it is idempotent.
+   */
+  static final String SERVER_ERROR_CODES = "500,502,504";
+
+  private final int maxAttempts;
+  private final long baseDelay;
+  private final long maxDelay;
+  private final double jitter;
+  private final Set<Integer> retryableCodes;
+
+  /**
+   * @param maxAttempts max. number of attempts, including the first one.
+   * @param baseDelay milliseconds to wait before the first retry.
+   * @param maxDelay max. milliseconds to wait before any retry.
+   * @param jitter fraction of the delay that is randomized, between 0 and 1.
+   * @param retryableCodes HTTP status codes and Twilio error codes worth retrying.
+   */
+  RetryPolicy( int maxAttempts, long baseDelay, long maxDelay, double jitter, Set<Integer> retryableCodes ) {
+    this.maxAttempts = maxAttempts;
+    this.baseDelay = baseDelay;
+    this.maxDelay = maxDelay;
+    this.jitter = jitter;
+    this.retryableCodes = retryableCodes;
+  }
+
+  /**
+   * Parses a comma separated list of codes.
+   *
+   * @throws NumberFormatException if a code is not a number.
+   */
+  static Set<Integer> parseCodes( String codes ) {
+    Set<Integer> result = new HashSet<>();
+    if ( codes != null ) {
+      for ( String code : codes.split( "," ) ) {
+        if ( !code.trim().isEmpty() ) {
+          result.add( Integer.valueOf( code.trim() ) );
+        }
+      }
+    }
+    return result;
+  }
+
+  /**
+   * @return milliseconds to wait before retrying the failed task, or -1 if it should not be retried.
+   */
+  long getRetryDelay( SmsSendTask task ) {
+    return getRetryDelay( task.getAttempts(), task.getError() );
+  }
+
+  /**
+   * @param attempts number of attempts made so far.
+   * @param error failure of the last attempt, or null if it succeeded.
+   * @return milliseconds to wait before retrying, or -1 if the request should not be retried.
+   */
+  long getRetryDelay( int attempts, RuntimeException error ) {
+    if ( error == null || attempts >= maxAttempts || !isRetryable( error ) ) {
+      return -1;
+    }
+    long delay = maxDelay;
+    int retry = attempts - 1;
+    if ( retry < 62 && baseDelay <= maxDelay >> retry ) {
+      delay = baseDelay << retry;
+    }
+    return delay - (long) ( delay * jitter * ThreadLocalRandom.current().nextDouble() );
+  }
+
+  boolean isRetryable( RuntimeException error ) {
+    if ( error instanceof ApiException ) {
+      ApiException ex = (ApiException) error;
+      return ( ex.getStatusCode() != null && retryableCodes.contains( ex.getStatusCode() ) )
+        || ( ex.getCode() != null && retryableCodes.contains( ex.getCode() ) );
+    }
+    if ( error instanceof ApiConnectionException ) {
+      // Only when the request can't have reached the API. After a read timeout or a connection closed without a
+      // response the message may have been sent, and creating a message is not idempotent.
+      Throwable cause = error.getCause();
+      return cause instanceof ConnectException || cause instanceof ConnectTimeoutException
+        || cause instanceof UnknownHostException;
+    }
+    return false;
+  }
+}
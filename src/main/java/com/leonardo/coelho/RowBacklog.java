@@ -0,0 +1,426 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.leonardo.coelho;
+
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.logging.LogChannelInterface;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.i18n.BaseMessages;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+
+/**
+ * First in, first out queue of input rows between a thread reading the input of the step as fast as it comes
+ * and the step thread sending at its own pace.
+ * <p>
+ * Rows are kept in memory up to a number of rows, then serialized into segment files up to a number of bytes;
+ * only then does adding a row wait, holding back the steps before as their row sets would. Rows go to disk as
+ * long as any is there, so they come out in the order they came in. A segment is closed and deleted once read,
+ * or reused if it is the one being written. Segments are read and written through their channel rather than
+ * mapped, since a mapped file can't be deleted on every platform until the mapping is garbage collected.
+ * <p>
+ * Backlogs can share a lock to serve as the lanes of different priorities, taken from in order by
+ * {@link #poll(RowBacklog[], long)}. Each one records how long its rows waited.
+ */
+class RowBacklog implements Closeable {
+
+  private static Class<?> PKG = SmsSenderMeta.class; // for i18n purposes, needed by Translator2!!   $NON-NLS-1$
+
+  // Size of the segment files, unless the disk limit is smaller.
+  private static final int SEGMENT_SIZE = 64 * 1024 * 1024;
+
+  // Bytes of the length and the time added of each row written.
+  private static final int HEADER_SIZE = 12;
+
+  private final int memoryLimit;
+  private final long diskLimit;
+  private final int segmentSize;
+  private final File directory;
+  private final Object lock;
+  private final LogChannelInterface log;
+  private final LatencyHistogram waits = new LatencyHistogram();
+
+  private RowMetaInterface rowMeta;
+  private final ArrayDeque<Object[]> memory = new ArrayDeque<>();
+  private long[] memoryTimes = new long[ 16 ];
+  private int memoryTimesHead;
+  private final ArrayDeque<Segment> segments = new ArrayDeque<>();
+  private long diskRows;
+  private long diskBytes;
+  private long spilled;
+  private long maxRows;
+  private boolean finished;
+  private boolean closed;
+
+  private final RowOutput rowOutput = new RowOutput();
+  private final DataOutputStream dataOutput = new DataOutputStream( rowOutput );
+  private ByteBuffer record = ByteBuffer.allocate( 256 );
+  private final ByteBuffer header = ByteBuffer.allocate( HEADER_SIZE );
+  private final RowInput rowInput = new RowInput();
+  private final DataInputStream dataInput = new DataInputStream( rowInput );
+
+  /**
+   * @param memoryLimit max. rows kept in memory.
+   * @param diskLimit max. bytes of rows kept on disk, 0 to keep rows in memory only.
+   * @param directory directory of the segment files.
+   * @param log log of the step, told about segment files that can't be deleted.
+   */
+  RowBacklog( int memoryLimit, long diskLimit, File directory, LogChannelInterface log ) {
+    this( memoryLimit, diskLimit, directory, new Object(), log );
+  }
+
+  /**
+   * @param lock lock shared by the lanes polled together.
+   */
+  RowBacklog( int memoryLimit, long diskLimit, File directory, Object lock, LogChannelInterface log ) {
+    this.memoryLimit = memoryLimit;
+    this.diskLimit = diskLimit;
+    this.segmentSize = (int) Math.min( SEGMENT_SIZE, diskLimit );
+    this.directory = directory;
+    this.lock = lock;
+    this.log = log;
+  }
+
+  /**
+   * Adds a row, waiting while memory and disk are full.
+   *
+   * @param rowMeta layout of the rows, the same for all of them.
+   * @return false if the backlog was closed meanwhile.
+   */
+  boolean put( RowMetaInterface rowMeta, Object[] row ) throws KettleException, InterruptedException {
+    synchronized ( lock ) {
+      if ( this.rowMeta == null ) {
+        this.rowMeta = rowMeta;
+      }
+      long now = System.nanoTime();
+      int recordSize = -1;
+      while ( !closed ) {
+        if ( diskRows == 0 && memory.size() < memoryLimit ) {
+          addMemoryTime( now );
+          memory.add( row );
+          added();
+          return true;
+        }
+        if ( recordSize < 0 && diskLimit > 0 ) {
+          rowOutput.reset();
+          rowMeta.writeData( dataOutput, row );
+          recordSize = HEADER_SIZE + rowOutput.size();
+          if ( recordSize > segmentSize ) {
+            throw new KettleException( BaseMessages.getString( PKG, "SmsSender.Backlog.RowTooLarge",
+              String.valueOf( rowOutput.size() ), String.valueOf( segmentSize ) ) );
+          }
+        }
+        if ( recordSize > 0 && diskBytes + recordSize <= diskLimit ) {
+          write( recordSize, now );
+          added();
+          return true;
+        }
+        lock.wait();
+      }
+      return false;
+    }
+  }
+
+  /**
+   * Takes the oldest row of the first lane holding any, waiting for one if they are all empty.
+   *
+   * @param lanes backlogs sharing a lock, from the highest priority to the lowest.
+   * @return the row, or null if there was none within the timeout or there won't be any more.
+   */
+  static Object[] poll( RowBacklog[] lanes, long timeout ) throws KettleException, InterruptedException {
+    Object lock = lanes[ 0 ].lock;
+    synchronized ( lock ) {
+      long deadline = System.currentTimeMillis() + timeout;
+      while ( true ) {
+        boolean done = true;
+        for ( RowBacklog lane : lanes ) {
+          if ( !lane.memory.isEmpty() || lane.diskRows > 0 ) {
+            Object[] row = lane.take();
+            lock.notifyAll();
+            return row;
+          }
+          done &= lane.finished || lane.closed;
+        }
+        long wait = deadline - System.currentTimeMillis();
+        if ( done || wait <= 0 ) {
+          return null;
+        }
+        lock.wait( wait );
+      }
+    }
+  }
+
+  /**
+   * Tells no more rows will be added.
+   */
+  void finish() {
+    synchronized ( lock ) {
+      finished = true;
+      lock.notifyAll();
+    }
+  }
+
+  /**
+   * @return whether no more rows will be added and all were taken.
+   */
+  boolean isDone() {
+    synchronized ( lock ) {
+      return finished && memory.isEmpty() && diskRows == 0;
+    }
+  }
+
+  /**
+   * @return the number of rows waiting.
+   */
+  long size() {
+    synchronized ( lock ) {
+      return memory.size() + diskRows;
+    }
+  }
+
+  /**
+   * @return the bytes of the rows waiting on disk.
+   */
+  long getDiskBytes() {
+    synchronized ( lock ) {
+      return diskBytes;
+    }
+  }
+
+  /**
+   * @return the largest number of rows waiting at once so far.
+   */
+  long getMaxRows() {
+    synchronized ( lock ) {
+      return maxRows;
+    }
+  }
+
+  /**
+   * @return the number of rows written to disk so far.
+   */
+  long getSpilled() {
+    synchronized ( lock ) {
+      return spilled;
+    }
+  }
+
+  /**
+   * @return how long the rows taken so far waited, in nanoseconds.
+   */
+  LatencyHistogram getWaits() {
+    return waits;
+  }
+
+  /**
+   * Drops the rows waiting, deletes the segment files and wakes up a thread waiting to add a row.
+   */
+  @Override
+  public void close() {
+    synchronized ( lock ) {
+      closed = true;
+      memory.clear();
+      for ( Segment segment : segments ) {
+        segment.delete();
+      }
+      segments.clear();
+      diskRows = 0;
+      diskBytes = 0;
+      lock.notifyAll();
+    }
+  }
+
+  private void added() {
+    maxRows = Math.max( maxRows, memory.size() + diskRows );
+    lock.notifyAll();
+  }
+
+  private Object[] take() throws KettleException {
+    Object[] row = memory.poll();
+    long added;
+    if ( row != null ) {
+      added = memoryTimes[ memoryTimesHead ];
+      memoryTimesHead = ( memoryTimesHead + 1 ) % memoryTimes.length;
+    } else {
+      Segment segment = segments.peekFirst();
+      header.clear();
+      segment.read( header );
+      header.flip();
+      int length = header.getInt();
+      added = header.getLong();
+      row = read( segment, length );
+    }
+    waits.record( System.nanoTime() - added );
+    return row;
+  }
+
+  /**
+   * Keeps the time a row is added to memory in a ring following the rows, grown as needed.
+   */
+  private void addMemoryTime( long now ) {
+    int size = memory.size();
+    if ( size == memoryTimes.length ) {
+      long[] grown = new long[ memoryTimes.length * 2 ];
+      for ( int i = 0; i < size; i++ ) {
+        grown[ i ] = memoryTimes[ ( memoryTimesHead + i ) % memoryTimes.length ];
+      }
+      memoryTimes = grown;
+      memoryTimesHead = 0;
+    }
+    memoryTimes[ ( memoryTimesHead + size ) % memoryTimes.length ] = now;
+  }
+
+  private void write( int recordSize, long now ) throws KettleException {
+    Segment segment = segments.peekLast();
+    if ( segment == null || segmentSize - segment.writePosition < recordSize ) {
+      segment = new Segment();
+      segments.add( segment );
+    }
+    if ( record.capacity() < recordSize ) {
+      record = ByteBuffer.allocate( Math.max( recordSize, record.capacity() * 2 ) );
+    }
+    record.clear();
+    record.putInt( rowOutput.size() );
+    record.putLong( now );
+    record.put( rowOutput.getBuffer(), 0, rowOutput.size() );
+    record.flip();
+    segment.write( record );
+    segment.rows++;
+    diskRows++;
+    diskBytes += recordSize;
+    spilled++;
+  }
+
+  private Object[] read( Segment segment, int length ) throws KettleException {
+    rowInput.fill( segment, length );
+    segment.rows--;
+    diskRows--;
+    diskBytes -= HEADER_SIZE + length;
+    if ( segment.rows == 0 ) {
+      if ( segment == segments.peekLast() ) {
+        // Start writing the segment over rather than creating a new one.
+        segment.writePosition = 0;
+        segment.readPosition = 0;
+      } else {
+        segments.poll().delete();
+      }
+    }
+    return rowMeta.readData( dataInput );
+  }
+
+  /**
+   * A file holding rows, written at one position and read at another.
+   */
+  private class Segment {
+
+    final File file;
+    final FileChannel channel;
+    long writePosition;
+    long readPosition;
+    long rows;
+
+    Segment() throws KettleException {
+      try {
+        file = File.createTempFile( "sms-backlog-", ".rows", directory );
+        channel = FileChannel.open( file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE );
+      } catch ( IOException e ) {
+        throw new KettleException( e.getMessage(), e );
+      }
+    }
+
+    void write( ByteBuffer source ) throws KettleException {
+      try {
+        while ( source.hasRemaining() ) {
+          writePosition += channel.write( source, writePosition );
+        }
+      } catch ( IOException e ) {
+        throw new KettleException( e.getMessage(), e );
+      }
+    }
+
+    void read( ByteBuffer target ) throws KettleException {
+      try {
+        while ( target.hasRemaining() ) {
+          int read = channel.read( target, readPosition );
+          if ( read < 0 ) {
+            throw new EOFException( file.getPath() );
+          }
+          readPosition += read;
+        }
+      } catch ( IOException e ) {
+        throw new KettleException( e.getMessage(), e );
+      }
+    }
+
+    /**
+     * Closes the file and deletes it, logging an error if it can't be deleted.
+     */
+    void delete() {
+      try {
+        channel.close();
+      } catch ( IOException e ) {
+        // Deleting it is all that is left to do.
+      }
+      if ( !file.delete() && log != null ) {
+        log.logError( BaseMessages.getString( PKG, "SmsSender.Backlog.DeleteFailed", file.getPath() ) );
+      }
+    }
+  }
+
+  /**
+   * Byte array output stream giving access to its buffer, reused for every row written.
+   */
+  private static class RowOutput extends ByteArrayOutputStream {
+
+    byte[] getBuffer() {
+      return buf;
+    }
+  }
+
+  /**
+   * Byte array input stream refilled with every row read.
+   */
+  private static class RowInput extends ByteArrayInputStream {
+
+    RowInput() {
+      super( new byte[ 256 ] );
+    }
+
+    void fill( Segment source, int length ) throws KettleException {
+      if ( buf.length < length ) {
+        buf = new byte[ Math.max( length, buf.length * 2 ) ];
+      }
+      source.read( ByteBuffer.wrap( buf, 0, length ) );
+      pos = 0;
+      count = length;
+      mark = 0;
+    }
+  }
+}
@@ -0,0 +1,201 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.leonardo.coelho;
+
+import org.pentaho.di.i18n.BaseMessages;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Append-only file of the keys of the messages already sent, so a rerun can skip them.
+ * <p>
+ * The file is a plain sequence of 8 byte keys, all loaded into memory when it is opened. New keys are
+ * buffered and forced to disk every {@code syncInterval} keys or every second, whichever comes first, so
+ * after a crash at most the last unsynced keys are sent again. A background thread syncs the keys appended
+ * when no more come. Step copies using the same file share one journal through {@link #open(String, int)},
+ * and so have to use the same sync interval.
+ */
+class SendJournal {
+
+  private static Class<?> PKG = SmsSenderMeta.class; // for i18n purposes, needed by Translator2!!   $NON-NLS-1$
+
+  private static final int RECORD_SIZE = 8;
+  private static final long MAX_SYNC_DELAY = TimeUnit.SECONDS.toNanos( 1 );
+
+  // Milliseconds between checks of the background thread for keys waiting too long.
+  private static final long SYNC_CHECK_PERIOD = 100;
+
+  private static final Map<String, SendJournal> JOURNALS = new HashMap<>();
+
+  private final String path;
+  private final int syncInterval;
+  private final FileChannel channel;
+  private final LongHashSet keys;
+  private final ByteBuffer buffer;
+  private final ScheduledExecutorService syncer;
+  private long lastSync = System.nanoTime();
+  private IOException syncError;
+  private int references;
+
+  private SendJournal( String path, int syncInterval ) throws IOException {
+    this.path = path;
+    this.syncInterval = syncInterval;
+    this.buffer = ByteBuffer.allocate( syncInterval * RECORD_SIZE );
+    this.channel = FileChannel.open( new File( path ).toPath(),
+      StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE );
+
+    // Load the keys already sent, dropping a partial last record left by a crash.
+    long records = channel.size() / RECORD_SIZE;
+    keys = new LongHashSet( (int) Math.min( records, Integer.MAX_VALUE / 2 ) );
+    ByteBuffer readBuffer = ByteBuffer.allocate( 8192 * RECORD_SIZE );
+    channel.position( 0 );
+    for ( long read = 0; read < records; ) {
+      readBuffer.clear();
+      readBuffer.limit( (int) Math.min( readBuffer.capacity(), ( records - read ) * RECORD_SIZE ) );
+      while ( readBuffer.hasRemaining() ) {
+        if ( channel.read( readBuffer ) < 0 ) {
+          throw new EOFException( path );
+        }
+      }
+      readBuffer.flip();
+      while ( readBuffer.remaining() >= RECORD_SIZE ) {
+        keys.add( readBuffer.getLong() );
+        read++;
+      }
+    }
+    channel.truncate( records * RECORD_SIZE );
+    channel.position( records * RECORD_SIZE );
+
+    syncer = Executors.newSingleThreadScheduledExecutor( runnable -> {
+      Thread thread = new Thread( runnable, "send-journal-sync " + path );
+      thread.setDaemon( true );
+      return thread;
+    } );
+    syncer.scheduleWithFixedDelay( this::syncIfDue, SYNC_CHECK_PERIOD, SYNC_CHECK_PERIOD, TimeUnit.MILLISECONDS );
+  }
+
+  /**
+   * @return the journal of the given file, opening it if no other step copy did.
+   * @throws IOException if another step copy opened it with a different sync interval.
+   */
+  static SendJournal open( String path, int syncInterval ) throws IOException {
+    String key = new File( path ).getCanonicalPath();
+    synchronized ( JOURNALS ) {
+      SendJournal journal = JOURNALS.get( key );
+      if ( journal == null ) {
+        journal = new SendJournal( key, syncInterval );
+        JOURNALS.put( key, journal );
+      } else if ( journal.syncInterval != syncInterval ) {
+        throw new IOException( BaseMessages.getString( PKG, "SmsSender.Journal.SyncIntervalMismatch",
+          String.valueOf( journal.syncInterval ), String.valueOf( syncInterval ) ) );
+      }
+      journal.references++;
+      return journal;
+    }
+  }
+
+  /**
+   * Gives up this step copy's use of the journal, closing it when no copy uses it anymore.
+   */
+  void release() throws IOException {
+    synchronized ( JOURNALS ) {
+      if ( --references > 0 ) {
+        return;
+      }
+      JOURNALS.remove( path );
+      // Not interrupted, which would close the channel, a sync running meanwhile is waited for below.
+      syncer.shutdown();
+      synchronized ( this ) {
+        try {
+          sync();
+        } finally {
+          channel.close();
+        }
+      }
+    }
+  }
+
+  synchronized boolean contains( long key ) {
+    return keys.contains( key );
+  }
+
+  /**
+   * @return the number of keys in the journal.
+   */
+  synchronized int size() {
+    return keys.size();
+  }
+
+  /**
+   * Records a sent message.
+   */
+  synchronized void append( long key ) throws IOException {
+    if ( syncError != null ) {
+      IOException error = syncError;
+      syncError = null;
+      throw error;
+    }
+    if ( !keys.add( key ) ) {
+      return;
+    }
+    buffer.putLong( key );
+    if ( !buffer.hasRemaining() || System.nanoTime() - lastSync >= MAX_SYNC_DELAY ) {
+      sync();
+    }
+  }
+
+  /**
+   * Writes the buffered keys and forces them to disk.
+   */
+  synchronized void sync() throws IOException {
+    lastSync = System.nanoTime();
+    if ( buffer.position() == 0 ) {
+      return;
+    }
+    buffer.flip();
+    while ( buffer.hasRemaining() ) {
+      channel.write( buffer );
+    }
+    buffer.clear();
+    channel.force( false );
+  }
+
+  /**
+   * Syncs the keys appended more than a second ago, keeping a failure for the next append to report.
+   */
+  private synchronized void syncIfDue() {
+    if ( buffer.position() > 0 && System.nanoTime() - lastSync >= MAX_SYNC_DELAY ) {
+      try {
+        sync();
+      } catch ( IOException e ) {
+        syncError = e;
+      }
+    }
+  }
+}
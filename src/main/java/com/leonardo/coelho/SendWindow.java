@@ -0,0 +1,76 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.leonardo.coelho;
+
+import java.time.Instant;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Daily local time window messages may be sent in, e.g. 08:00 to 21:00, possibly spanning midnight.
+ * <p>
+ * Whether the window is open only changes twice a day per time zone, so the answer is kept per zone until
+ * its next change. Not thread safe, each step copy has its own.
+ */
+class SendWindow {
+
+  private final LocalTime start;
+  private final LocalTime end;
+
+  // For each time zone, the next time the window opens or closes and when it opens, 0 while it is open.
+  private final Map<ZoneId, long[]> states = new HashMap<>();
+
+  /**
+   * @param start local time the window opens at.
+   * @param end local time the window closes at, before the start for a window spanning midnight.
+   */
+  SendWindow( LocalTime start, LocalTime end ) {
+    this.start = start;
+    this.end = end;
+  }
+
+  /**
+   * @return 0 if the window of the time zone is open at the given time, otherwise when it opens in epoch millis.
+   */
+  long getReleaseTime( ZoneId zone, long now ) {
+    long[] state = states.get( zone );
+    if ( state == null || now >= state[ 0 ] ) {
+      state = getState( zone, now );
+      states.put( zone, state );
+    }
+    return state[ 1 ];
+  }
+
+  private long[] getState( ZoneId zone, long now ) {
+    ZonedDateTime time = Instant.ofEpochMilli( now ).atZone( zone );
+    LocalTime local = time.toLocalTime();
+    boolean open = start.isBefore( end )
+      ? !local.isBefore( start ) && local.isBefore( end )
+      : !local.isBefore( start ) || local.isBefore( end );
+    ZonedDateTime next = time.with( open ? end : start );
+    if ( !next.isAfter( time ) ) {
+      next = next.plusDays( 1 ).with( open ? end : start );
+    }
+    long change = next.toInstant().toEpochMilli();
+    return new long[] { change, open ? 0 : change };
+  }
+}
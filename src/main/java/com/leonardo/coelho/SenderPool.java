@@ -0,0 +1,169 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.leonardo.coelho;
+
+import com.twilio.type.PhoneNumber;
+import org.pentaho.di.core.logging.LogChannelInterface;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A list of sender numbers messages are spread over, each one paced by its own shared rate limit.
+ * <p>
+ * Each message goes out from the number whose rate limit has a permit soonest, so one step copy keeps every
+ * number busy instead of being capped by a single one. With sticky senders, a recipient always gets messages
+ * from the same number instead.
+ */
+class SenderPool {
+
+  private final String[] numbers;
+  private final PhoneNumber[] phoneNumbers;
+  private final TokenBucket[] rateLimits;
+  private final AtomicLongArray sent;
+  private int next;
+
+  /**
+   * @param numbers sender numbers.
+   * @param permitsPerSecond messages per second of each number, 0 or less to only rotate over them.
+   * @param log log told when a number is rate limited at another rate elsewhere.
+   */
+  SenderPool( String[] numbers, double permitsPerSecond, LogChannelInterface log ) {
+    this.numbers = numbers;
+    this.phoneNumbers = new PhoneNumber[ numbers.length ];
+    this.rateLimits = permitsPerSecond > 0 ? new TokenBucket[ numbers.length ] : null;
+    this.sent = new AtomicLongArray( numbers.length );
+    for ( int i = 0; i < numbers.length; i++ ) {
+      phoneNumbers[ i ] = new PhoneNumber( numbers[ i ] );
+      if ( rateLimits != null ) {
+        rateLimits[ i ] = TokenBucket.get( "number:" + numbers[ i ], permitsPerSecond, log );
+      }
+    }
+  }
+
+  /**
+   * Parses comma separated numbers, normalized the way recipients are so that each one shares its rate limit
+   * with every other way of writing it.
+   *
+   * @param normalizer normalizer of the numbers, or null to use them as they are.
+   * @return the pool of the comma separated numbers, or null if there are none.
+   * @throws IllegalArgumentException with the number as message if one of them isn't valid.
+   */
+  static SenderPool parse( String numbers, PhoneNumberNormalizer normalizer, double permitsPerSecond,
+                           LogChannelInterface log ) {
+    List<String> list = new ArrayList<>();
+    for ( String number : numbers.split( "," ) ) {
+      number = number.trim();
+      if ( number.isEmpty() ) {
+        continue;
+      }
+      if ( normalizer != null ) {
+        String normalized = normalizer.normalizeSender( number );
+        if ( normalized == null ) {
+          throw new IllegalArgumentException( number );
+        }
+        number = normalized;
+      }
+      list.add( number );
+    }
+    return list.isEmpty() ? null : new SenderPool( list.toArray( new String[ 0 ] ), permitsPerSecond, log );
+  }
+
+  int size() {
+    return numbers.length;
+  }
+
+  /**
+   * @return the number always used for the given recipient with sticky senders.
+   */
+  int indexOf( String to ) {
+    return (int) Long.remainderUnsigned( MessageHash.hash( to ), numbers.length );
+  }
+
+  /**
+   * Reserves a permit of the given number, or of the one with the shortest wait if the index is negative.
+   * Rotates over the numbers when they aren't rate limited or are equally loaded.
+   */
+  synchronized Reservation reserve( int index ) {
+    if ( index < 0 ) {
+      index = next;
+      if ( rateLimits != null ) {
+        long shortestWait = Long.MAX_VALUE;
+        for ( int i = 0; i < numbers.length && shortestWait > 0; i++ ) {
+          int candidate = ( next + i ) % numbers.length;
+          long wait = rateLimits[ candidate ].getWaitNanos();
+          if ( wait < shortestWait ) {
+            shortestWait = wait;
+            index = candidate;
+          }
+        }
+      }
+      next = ( index + 1 ) % numbers.length;
+    }
+    return new Reservation( index, rateLimits == null ? 0 : rateLimits[ index ].reserve() );
+  }
+
+  /**
+   * Gives up the rate limits of the numbers.
+   */
+  void release() {
+    if ( rateLimits != null ) {
+      for ( TokenBucket rateLimit : rateLimits ) {
+        rateLimit.release();
+      }
+    }
+  }
+
+  PhoneNumber getPhoneNumber( int index ) {
+    return phoneNumbers[ index ];
+  }
+
+  /**
+   * Counts a message sent from the given number.
+   */
+  void onSent( int index ) {
+    sent.incrementAndGet( index );
+  }
+
+  /**
+   * @return the number of messages sent from each number, e.g. {@code +15550001=120, +15550002=118}.
+   */
+  @Override
+  public String toString() {
+    StringBuilder counts = new StringBuilder();
+    for ( int i = 0; i < numbers.length; i++ ) {
+      counts.append( i == 0 ? "" : ", " ).append( numbers[ i ] ).append( '=' ).append( sent.get( i ) );
+    }
+    return counts.toString();
+  }
+
+  /**
+   * A permit of one of the numbers, and how many nanoseconds to wait before using it.
+   */
+  static final class Reservation {
+    final int index;
+    final long waitNanos;
+
+    Reservation( int index, long waitNanos ) {
+      this.index = index;
+      this.waitNanos = waitNanos;
+    }
+  }
+}
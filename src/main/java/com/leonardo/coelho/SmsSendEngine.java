@@ -0,0 +1,115 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.leonardo.coelho;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs SMS sends on a pool of worker threads with at most {@code window} requests in flight.
+ * <p>
+ * Only the step thread submits tasks and collects completed ones, so rows are always written
+ * out from the step thread, as Kettle expects. Failed sends the retry policy allows to retry are
+ * rescheduled on the pool after their delay, without holding up the step thread, and only come back
+ * once they succeed or run out of attempts.
+ */
+class SmsSendEngine {
+
+  private final ScheduledExecutorService executor;
+  private final BlockingQueue<SmsSendTask> completed = new LinkedBlockingQueue<>();
+  private final int window;
+  private final RetryPolicy retryPolicy;
+  private int inFlight;
+
+  SmsSendEngine( String name, int window, RetryPolicy retryPolicy ) {
+    this.window = window;
+    this.retryPolicy = retryPolicy;
+    final AtomicInteger threadNr = new AtomicInteger();
+    this.executor = new ScheduledThreadPoolExecutor( window, runnable -> {
+      Thread thread = new Thread( runnable, name + "-sender-" + threadNr.incrementAndGet() );
+      thread.setDaemon( true );
+      return thread;
+    } );
+  }
+
+  /**
+   * @return true when no more tasks can be submitted until one completes.
+   */
+  boolean isFull() {
+    return inFlight >= window;
+  }
+
+  /**
+   * @return true when no submitted task is waiting to be collected.
+   */
+  boolean isIdle() {
+    return inFlight == 0;
+  }
+
+  int getInFlight() {
+    return inFlight;
+  }
+
+  void submit( SmsSendTask task ) {
+    inFlight++;
+    executor.execute( () -> attempt( task ) );
+  }
+
+  private void attempt( SmsSendTask task ) {
+    task.run();
+    long delay = retryPolicy.getRetryDelay( task );
+    if ( delay < 0 ) {
+      completed.add( task );
+    } else {
+      executor.schedule( () -> attempt( task ), delay, TimeUnit.MILLISECONDS );
+    }
+  }
+
+  /**
+   * @return a completed task, or null if none is ready.
+   */
+  SmsSendTask poll() {
+    SmsSendTask task = completed.poll();
+    if ( task != null ) {
+      inFlight--;
+    }
+    return task;
+  }
+
+  /**
+   * Waits up to {@code timeout} milliseconds for a task to complete.
+   *
+   * @return the completed task, or null if none completed in time.
+   */
+  SmsSendTask poll( long timeout ) throws InterruptedException {
+    SmsSendTask task = completed.poll( timeout, TimeUnit.MILLISECONDS );
+    if ( task != null ) {
+      inFlight--;
+    }
+    return task;
+  }
+
+  void shutdown() {
+    executor.shutdownNow();
+  }
+}
@@ -0,0 +1,165 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.leonardo.coelho;
+
+import com.twilio.http.TwilioRestClient;
+import com.twilio.rest.api.v2010.account.Message;
+import com.twilio.rest.api.v2010.account.MessageCreator;
+import org.pentaho.di.i18n.BaseMessages;
+
+/**
+ * A single SMS send: the row it belongs to, the request to issue and, once run, its outcome.
+ */
+class SmsSendTask implements Runnable {
+
+  private static Class<?> PKG = SmsSenderMeta.class; // for i18n purposes, needed by Translator2!!   $NON-NLS-1$
+
+  private final Object[] row;
+  private final MessageCreator creator;
+  private final TwilioRestClient client;
+  private final CircuitBreaker circuitBreaker;
+  private final SmsSenderMetrics metrics;
+  private final TokenBucket[] rateLimits;
+
+  private volatile Message message;
+  private volatile RuntimeException error;
+  private volatile int attempts;
+  private long journalKey;
+  private long dedupKey;
+  private SenderPool senderPool;
+  private int senderIndex = -1;
+  private volatile int sender = -1;
+
+  SmsSendTask( Object[] row, MessageCreator creator, TwilioRestClient client, CircuitBreaker circuitBreaker,
+               SmsSenderMetrics metrics, TokenBucket... rateLimits ) {
+    this.row = row;
+    this.creator = creator;
+    this.client = client;
+    this.circuitBreaker = circuitBreaker;
+    this.metrics = metrics;
+    this.rateLimits = rateLimits;
+  }
+
+  /**
+   * Waits for the circuit breaker and the rate limits and issues the request, keeping either the created
+   * message or the failure. Running the task again makes another attempt, from another pool number unless
+   * the sender is sticky.
+   */
+  @Override
+  public void run() {
+    attempts++;
+    message = null;
+    error = null;
+    boolean letThrough = false;
+    try {
+      if ( circuitBreaker != null && !circuitBreaker.acquire() ) {
+        error = new IllegalStateException( BaseMessages.getString( PKG, "SmsSender.CircuitBreaker.Open" ) );
+        return;
+      }
+      letThrough = true;
+      long senderWait = 0;
+      if ( senderPool != null ) {
+        SenderPool.Reservation reservation = senderPool.reserve( senderIndex );
+        sender = reservation.index;
+        senderWait = reservation.waitNanos;
+        creator.setFrom( senderPool.getPhoneNumber( sender ) );
+      }
+      TokenBucket.acquire( senderWait, rateLimits );
+    } catch ( InterruptedException ex ) {
+      if ( letThrough && circuitBreaker != null ) {
+        circuitBreaker.release();
+      }
+      Thread.currentThread().interrupt();
+      error = new IllegalStateException( BaseMessages.getString( PKG, "SmsSender.Send.Interrupted" ), ex );
+      return;
+    }
+
+    long start = System.nanoTime();
+    try {
+      message = creator.create( client );
+      if ( circuitBreaker != null ) {
+        circuitBreaker.onSuccess();
+      }
+      if ( senderPool != null ) {
+        senderPool.onSent( sender );
+      }
+    } catch ( RuntimeException ex ) {
+      error = ex;
+      if ( circuitBreaker != null ) {
+        if ( CircuitBreaker.isOutage( ex ) ) {
+          circuitBreaker.onFailure();
+        } else {
+          circuitBreaker.onSuccess();
+        }
+      }
+    } finally {
+      metrics.onRequest( attempts, System.nanoTime() - start, error );
+    }
+  }
+
+  Object[] getRow() {
+    return row;
+  }
+
+  Message getMessage() {
+    return message;
+  }
+
+  SmsSenderMetrics getMetrics() {
+    return metrics;
+  }
+
+  RuntimeException getError() {
+    return error;
+  }
+
+  int getAttempts() {
+    return attempts;
+  }
+
+  /**
+   * @return the key recorded in the send journal once the message is sent.
+   */
+  long getJournalKey() {
+    return journalKey;
+  }
+
+  void setJournalKey( long journalKey ) {
+    this.journalKey = journalKey;
+  }
+
+  /**
+   * @return the key recorded by the duplicate filter once the message is sent.
+   */
+  long getDedupKey() {
+    return dedupKey;
+  }
+
+  void setDedupKey( long dedupKey ) {
+    this.dedupKey = dedupKey;
+  }
+
+  /**
+   * Sends from a number of the pool, the given one or the least loaded one on each attempt if negative.
+   */
+  void setSenderPool( SenderPool senderPool, int senderIndex ) {
+    this.senderPool = senderPool;
+    this.senderIndex = senderIndex;
+  }
+}
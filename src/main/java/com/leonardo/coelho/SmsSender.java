@@ -18,13 +18,18 @@
  */
 package com.leonardo.coelho;
 
-import com.twilio.Twilio;
 import com.twilio.exception.ApiException;
+import com.twilio.http.TwilioRestClient;
 import com.twilio.rest.api.v2010.account.Message;
+import com.twilio.rest.api.v2010.account.MessageCreator;
 import com.twilio.type.PhoneNumber;
+import org.apache.http.pool.PoolStats;
 import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.Const;
+import org.pentaho.di.core.RowSet;
 import org.pentaho.di.core.exception.KettleStepException;
 import org.pentaho.di.core.row.RowDataUtil;
+import org.pentaho.di.core.row.ValueMetaInterface;
 import org.pentaho.di.core.util.Utils;
 import org.pentaho.di.i18n.BaseMessages;
 import org.pentaho.di.trans.Trans;
@@ -36,8 +41,19 @@ import org.pentaho.di.trans.step.StepMeta;
 import org.pentaho.di.trans.step.StepMetaInterface;
 import org.pentaho.di.trans.step.errorhandling.StreamInterface;
 
+import javax.management.JMException;
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.time.DateTimeException;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Date;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Send SMS messages using Twilio Java API.
@@ -50,7 +66,44 @@ public class SmsSender extends BaseStep implements StepInterface {
   private SmsSenderMeta meta;
   private SmsSenderData data;
 
-  private static String STATUS_FAILED = "failed";
+  private static final int DEFAULT_MAX_IN_FLIGHT = 10;
+  private static final int DEFAULT_IDLE_CONNECTION_TIMEOUT = 30;
+  private static final int DEFAULT_CONNECT_TIMEOUT = 10000;
+  private static final int DEFAULT_READ_TIMEOUT = 30500;
+  private static final int DEFAULT_MAX_ATTEMPTS = 1;
+  private static final long DEFAULT_RETRY_BASE_DELAY = 500;
+  private static final long DEFAULT_RETRY_MAX_DELAY = 30000;
+  private static final int DEFAULT_FAILURE_RATE_THRESHOLD = 50;
+  private static final int DEFAULT_CIRCUIT_BREAKER_WINDOW = 20;
+  private static final long DEFAULT_OPEN_DURATION = 30000;
+  private static final int DEFAULT_HALF_OPEN_PROBES = 1;
+  private static final int DEFAULT_JOURNAL_SYNC_INTERVAL = 100;
+  private static final int DEFAULT_DEDUP_EXPECTED_MESSAGES = 1000000;
+  private static final int DEFAULT_NUMBER_CACHE_SIZE = 10000;
+  private static final int DEFAULT_DELAY_MEMORY_ROWS = 100000;
+  private static final int DEFAULT_BACKLOG_MEMORY_ROWS = 10000;
+  private static final long DEFAULT_BACKLOG_DISK_LIMIT = 1024;
+  private static final int DEFAULT_PRIORITY_LEVELS = 3;
+  private static final int DEFAULT_CHECKPOINT_INTERVAL = 10;
+  private static final int DEFAULT_CHECKPOINT_MAX_TRACKED = 1000000;
+
+  // Twilio error codes of numbers rejected before calling the API.
+  private static final int ERROR_INVALID_TO = 21211;
+  private static final int ERROR_INVALID_FROM = 21212;
+  private static final int ERROR_UNSUBSCRIBED = 21610;
+
+  private static final String STATUS_ALREADY_SENT = "already_sent";
+  private static final String STATUS_DUPLICATE = "duplicate";
+  private static final String STATUS_DRY_RUN = "dry_run";
+
+  // How long to wait for an in-flight send before checking whether the step was stopped.
+  private static final long POLL_TIMEOUT = 100;
+
+  // How long to sleep at a time while waiting for a send window to open.
+  private static final long HOLD_POLL_TIMEOUT = 1000;
+
+  // How long dispose waits for the backlog reader to stop, in ms.
+  private static final long BACKLOG_READER_STOP_TIMEOUT = 10000;
 
   public SmsSender( StepMeta stepMeta, StepDataInterface stepDataInterface, int copyNr, TransMeta transMeta,
                     Trans trans ) {
@@ -68,11 +121,12 @@ public class SmsSender extends BaseStep implements StepInterface {
     data = (SmsSenderData) stepDataInterface;
 
     if ( super.init( stepMetaInterface, stepDataInterface ) ) {
-      if ( Utils.isEmpty( meta.getAccountSid() ) ) {
+      // A dry run never reaches the API, so it can estimate a campaign before the account is set up.
+      if ( !meta.isDryRun() && Utils.isEmpty( meta.getAccountSid() ) ) {
         logError( BaseMessages.getString( PKG, "SmsSender.Missing.AccountSid" ) );
         return false;
       }
-      if ( Utils.isEmpty( meta.getAuthToken() ) ) {
+      if ( !meta.isDryRun() && Utils.isEmpty( meta.getAuthToken() ) ) {
         logError( BaseMessages.getString( PKG, "SmsSender.Missing.AuthToken" ) );
         return false;
       }
@@ -80,17 +134,372 @@ public class SmsSender extends BaseStep implements StepInterface {
         logError( BaseMessages.getString( PKG, "SmsSender.Missing.To" ) );
         return false;
       }
-      if ( Utils.isEmpty( meta.getFromField() ) ) {
+      if ( Utils.isEmpty( meta.getFromField() ) && Utils.isEmpty( meta.getMessagingServiceSid() )
+        && Utils.isEmpty( meta.getMessagingServiceSidField() ) && Utils.isEmpty( meta.getSenderPool() )
+        && Utils.isEmpty( meta.getSenderPoolField() ) ) {
         logError( BaseMessages.getString( PKG, "SmsSender.Missing.From" ) );
         return false;
       }
-      if ( Utils.isEmpty( meta.getMessageField() ) ) {
+      data.messagingServiceSid = Utils.isEmpty( meta.getMessagingServiceSid() ) ? null
+        : environmentSubstitute( meta.getMessagingServiceSid() );
+      if ( Utils.isEmpty( meta.getMessageField() ) && Utils.isEmpty( meta.getMessageTemplate() ) ) {
         logError( BaseMessages.getString( PKG, "SmsSender.Missing.Message" ) );
         return false;
       }
+      // A template replaces the message field, its placeholders are bound to the fields on the first row.
+      data.template = Utils.isEmpty( meta.getMessageTemplate() ) ? null
+        : MessageTemplate.compile( meta.getMessageTemplate() );
       List<StreamInterface> targetStreams = meta.getStepIOMeta().getTargetStreams();
       data.chosesTargetSteps =
         targetStreams.get( 0 ).getStepMeta() != null || targetStreams.get( 1 ).getStepMeta() != null;
+
+      int maxInFlight = 1;
+      if ( meta.isAsyncSend() ) {
+        maxInFlight = Const.toInt( environmentSubstitute( meta.getMaxInFlight() ), DEFAULT_MAX_IN_FLIGHT );
+        if ( maxInFlight < 1 ) {
+          logError( BaseMessages.getString( PKG, "SmsSender.Invalid.MaxInFlight", meta.getMaxInFlight() ) );
+          return false;
+        }
+      }
+
+      // By default there is one pooled connection per message in flight.
+      int maxConnections = Const.toInt( environmentSubstitute( meta.getMaxConnections() ), maxInFlight );
+      if ( maxConnections < 1 ) {
+        logError( BaseMessages.getString( PKG, "SmsSender.Invalid.MaxConnections", meta.getMaxConnections() ) );
+        return false;
+      }
+      if ( !Utils.isEmpty( meta.getStatusCallbackUrl() ) ) {
+        try {
+          data.statusCallback = new URI( environmentSubstitute( meta.getStatusCallbackUrl() ) );
+        } catch ( URISyntaxException e ) {
+          data.statusCallback = null;
+        }
+        if ( data.statusCallback == null || !data.statusCallback.isAbsolute() ) {
+          logError( BaseMessages.getString( PKG, "SmsSender.Invalid.StatusCallbackUrl",
+            meta.getStatusCallbackUrl() ) );
+          return false;
+        }
+      }
+      // Rate limits are shared with every step sending from the same account or number.
+      data.senderRateLimit = Const.toDouble( environmentSubstitute( meta.getSenderRateLimit() ), 0 );
+      if ( data.senderRateLimit < 0 ) {
+        logError( BaseMessages.getString( PKG, "SmsSender.Invalid.SenderRateLimit", meta.getSenderRateLimit() ) );
+        return false;
+      }
+      double accountRateLimit = Const.toDouble( environmentSubstitute( meta.getAccountRateLimit() ), 0 );
+      if ( accountRateLimit < 0 ) {
+        logError( BaseMessages.getString( PKG, "SmsSender.Invalid.AccountRateLimit", meta.getAccountRateLimit() ) );
+        return false;
+      }
+      if ( meta.isNormalizeNumbers() ) {
+        String defaultRegion = Utils.isEmpty( meta.getDefaultRegion() ) ? null
+          : environmentSubstitute( meta.getDefaultRegion() ).trim().toUpperCase();
+        if ( defaultRegion != null && !PhoneNumberNormalizer.isSupportedRegion( defaultRegion ) ) {
+          logError( BaseMessages.getString( PKG, "SmsSender.Invalid.DefaultRegion", meta.getDefaultRegion() ) );
+          return false;
+        }
+        int numberCacheSize =
+          Const.toInt( environmentSubstitute( meta.getNumberCacheSize() ), DEFAULT_NUMBER_CACHE_SIZE );
+        if ( numberCacheSize < 0 ) {
+          logError( BaseMessages.getString( PKG, "SmsSender.Invalid.NumberCacheSize", meta.getNumberCacheSize() ) );
+          return false;
+        }
+        data.normalizer = new PhoneNumberNormalizer( defaultRegion, numberCacheSize );
+      }
+      // Pool numbers are normalized like the recipients, so they share the rate limits of the same numbers.
+      if ( !Utils.isEmpty( meta.getSenderPool() ) ) {
+        try {
+          data.senderPool = SenderPool.parse(
+            environmentSubstitute( meta.getSenderPool() ), data.normalizer, data.senderRateLimit, log );
+        } catch ( IllegalArgumentException e ) {
+          logError( BaseMessages.getString(
+            PKG, "SmsSender.Invalid.SenderPoolNumber", meta.getSenderPool(), e.getMessage() ) );
+          return false;
+        }
+        if ( data.senderPool == null ) {
+          logError( BaseMessages.getString( PKG, "SmsSender.Invalid.SenderPool", meta.getSenderPool() ) );
+          return false;
+        }
+      }
+      if ( !Utils.isEmpty( meta.getSuppressionFile() ) ) {
+        String suppressionFile = environmentSubstitute( meta.getSuppressionFile() );
+        String suppressionRegion = data.normalizer != null ? data.normalizer.getDefaultRegion() : null;
+        try {
+          data.suppressionList = SuppressionList.open( suppressionFile, data.normalizer != null, suppressionRegion );
+        } catch ( IOException | IllegalStateException e ) {
+          logError( BaseMessages.getString(
+            PKG, "SmsSender.Suppression.LoadFailed", suppressionFile, e.getMessage() ) );
+          return false;
+        }
+        if ( log.isBasic() ) {
+          logBasic( BaseMessages.getString( PKG, "SmsSender.Suppression.Loaded", suppressionFile,
+            String.valueOf( data.suppressionList.size() ), String.valueOf( data.suppressionList.getInvalid() ) ) );
+        }
+      }
+      // The numbers of a suppression step are read before the first row.
+      if ( !Utils.isEmpty( meta.getSuppressionStepname() ) ) {
+        if ( Utils.isEmpty( meta.getSuppressionField() ) ) {
+          logError( BaseMessages.getString( PKG, "SmsSender.Missing.SuppressionField" ) );
+          return false;
+        }
+        data.readSuppressionStep = true;
+      }
+      if ( !Utils.isEmpty( meta.getSendWindowStart() ) || !Utils.isEmpty( meta.getSendWindowEnd() ) ) {
+        LocalTime start;
+        LocalTime end;
+        try {
+          start = LocalTime.parse( environmentSubstitute( Const.NVL( meta.getSendWindowStart(), "" ) ) );
+          end = LocalTime.parse( environmentSubstitute( Const.NVL( meta.getSendWindowEnd(), "" ) ) );
+        } catch ( DateTimeException e ) {
+          start = null;
+          end = null;
+        }
+        if ( start == null || start.equals( end ) ) {
+          logError( BaseMessages.getString( PKG, "SmsSender.Invalid.SendWindow",
+            meta.getSendWindowStart(), meta.getSendWindowEnd() ) );
+          return false;
+        }
+        try {
+          data.defaultTimeZone = Utils.isEmpty( meta.getDefaultTimeZone() ) ? ZoneId.systemDefault()
+            : ZoneId.of( environmentSubstitute( meta.getDefaultTimeZone() ) );
+        } catch ( DateTimeException e ) {
+          logError( BaseMessages.getString( PKG, "SmsSender.Invalid.DefaultTimeZone", meta.getDefaultTimeZone() ) );
+          return false;
+        }
+        data.delayMemoryRows =
+          Const.toInt( environmentSubstitute( meta.getDelayMemoryRows() ), DEFAULT_DELAY_MEMORY_ROWS );
+        if ( data.delayMemoryRows < 1 ) {
+          logError( BaseMessages.getString( PKG, "SmsSender.Invalid.DelayMemoryRows", meta.getDelayMemoryRows() ) );
+          return false;
+        }
+        data.delayDirectory = new File( environmentSubstitute(
+          Utils.isEmpty( meta.getDelayDirectory() ) ? "%%java.io.tmpdir%%" : meta.getDelayDirectory() ) );
+        if ( !data.delayDirectory.isDirectory() ) {
+          logError( BaseMessages.getString( PKG, "SmsSender.Invalid.DelayDirectory", data.delayDirectory ) );
+          return false;
+        }
+        // A dry run sends nothing, so there is nothing to hold.
+        data.sendWindow = meta.isDryRun() ? null : new SendWindow( start, end );
+      }
+      // Priority lanes are backlogs too, kept in memory only unless the backlog is enabled.
+      int priorityLevels = 1;
+      if ( !Utils.isEmpty( meta.getPriorityField() ) ) {
+        priorityLevels = Const.toInt( environmentSubstitute( meta.getPriorityLevels() ), DEFAULT_PRIORITY_LEVELS );
+        if ( priorityLevels < 1 ) {
+          logError( BaseMessages.getString( PKG, "SmsSender.Invalid.PriorityLevels", meta.getPriorityLevels() ) );
+          return false;
+        }
+      }
+      if ( meta.isBacklog() || !Utils.isEmpty( meta.getPriorityField() ) ) {
+        int backlogMemoryRows =
+          Const.toInt( environmentSubstitute( meta.getBacklogMemoryRows() ), DEFAULT_BACKLOG_MEMORY_ROWS );
+        long backlogDiskLimit = !meta.isBacklog() ? 0
+          : Const.toLong( environmentSubstitute( meta.getBacklogDiskLimit() ), DEFAULT_BACKLOG_DISK_LIMIT );
+        if ( backlogMemoryRows < 1 || backlogDiskLimit < 0 ) {
+          logError( BaseMessages.getString( PKG, "SmsSender.Invalid.Backlog" ) );
+          return false;
+        }
+        File backlogDirectory = new File( environmentSubstitute(
+          Utils.isEmpty( meta.getBacklogDirectory() ) ? "%%java.io.tmpdir%%" : meta.getBacklogDirectory() ) );
+        if ( backlogDiskLimit > 0 && !backlogDirectory.isDirectory() ) {
+          logError( BaseMessages.getString( PKG, "SmsSender.Invalid.BacklogDirectory", backlogDirectory ) );
+          return false;
+        }
+        Object lock = new Object();
+        data.backlogs = new RowBacklog[ priorityLevels ];
+        for ( int i = 0; i < priorityLevels; i++ ) {
+          data.backlogs[ i ] =
+            new RowBacklog( backlogMemoryRows, backlogDiskLimit * 1024 * 1024, backlogDirectory, lock, log );
+        }
+      }
+      int maxAttempts = Const.toInt( environmentSubstitute( meta.getMaxAttempts() ), DEFAULT_MAX_ATTEMPTS );
+      if ( maxAttempts < 1 ) {
+        logError( BaseMessages.getString( PKG, "SmsSender.Invalid.MaxAttempts", meta.getMaxAttempts() ) );
+        return false;
+      }
+      double retryJitter = Const.toDouble( environmentSubstitute( meta.getRetryJitter() ), 0 );
+      if ( retryJitter < 0 || retryJitter > 1 ) {
+        logError( BaseMessages.getString( PKG, "SmsSender.Invalid.RetryJitter", meta.getRetryJitter() ) );
+        return false;
+      }
+      try {
+        data.retryPolicy = new RetryPolicy( maxAttempts,
+          Const.toLong( environmentSubstitute( meta.getRetryBaseDelay() ), DEFAULT_RETRY_BASE_DELAY ),
+          Const.toLong( environmentSubstitute( meta.getRetryMaxDelay() ), DEFAULT_RETRY_MAX_DELAY ),
+          retryJitter, RetryPolicy.parseCodes( environmentSubstitute( meta.getRetryableCodes() ) ) );
+      } catch ( NumberFormatException e ) {
+        logError( BaseMessages.getString( PKG, "SmsSender.Invalid.RetryableCodes", meta.getRetryableCodes() ) );
+        return false;
+      }
+
+      if ( meta.isCircuitBreakerEnabled() ) {
+        int failureRateThreshold = Const.toInt(
+          environmentSubstitute( meta.getFailureRateThreshold() ), DEFAULT_FAILURE_RATE_THRESHOLD );
+        int window = Const.toInt(
+          environmentSubstitute( meta.getCircuitBreakerWindow() ), DEFAULT_CIRCUIT_BREAKER_WINDOW );
+        int halfOpenProbes = Const.toInt(
+          environmentSubstitute( meta.getHalfOpenProbes() ), DEFAULT_HALF_OPEN_PROBES );
+        if ( failureRateThreshold < 1 || failureRateThreshold > 100 || window < 1 || halfOpenProbes < 1 ) {
+          logError( BaseMessages.getString( PKG, "SmsSender.Invalid.CircuitBreaker" ) );
+          return false;
+        }
+        data.circuitBreaker = new CircuitBreaker( failureRateThreshold, window,
+          Const.toLong( environmentSubstitute( meta.getOpenDuration() ), DEFAULT_OPEN_DURATION ), halfOpenProbes,
+          meta.isPauseWhenOpen(), getLogChannel() );
+      }
+
+      data.maxSegments = Const.toInt( environmentSubstitute( meta.getMaxSegments() ), 0 );
+      if ( data.maxSegments < 0 ) {
+        logError( BaseMessages.getString( PKG, "SmsSender.Invalid.MaxSegments", meta.getMaxSegments() ) );
+        return false;
+      }
+      data.pricePerSegment = Utils.isEmpty( meta.getPricePerSegment() ) ? null
+        : Const.toDouble( environmentSubstitute( meta.getPricePerSegment() ), -1 );
+      if ( data.pricePerSegment != null && data.pricePerSegment < 0 ) {
+        logError( BaseMessages.getString( PKG, "SmsSender.Invalid.PricePerSegment", meta.getPricePerSegment() ) );
+        return false;
+      }
+      data.analyzeSegments = meta.isDryRun() || data.maxSegments > 0 || !Utils.isEmpty( meta.getEncodingField() )
+        || !Utils.isEmpty( meta.getSegmentsField() ) || !Utils.isEmpty( meta.getEstimatedCostField() );
+
+      if ( meta.isDeduplicate() ) {
+        long dedupWindow = Const.toLong( environmentSubstitute( meta.getDedupWindow() ), 0 );
+        int expectedMessages = Const.toInt(
+          environmentSubstitute( meta.getDedupExpectedMessages() ), DEFAULT_DEDUP_EXPECTED_MESSAGES );
+        double falsePositiveRate = Const.toDouble( environmentSubstitute( meta.getDedupFalsePositiveRate() ), 0 );
+        if ( dedupWindow < 0 || expectedMessages < 1 || falsePositiveRate < 0 || falsePositiveRate >= 1 ) {
+          logError( BaseMessages.getString( PKG, "SmsSender.Invalid.Deduplication" ) );
+          return false;
+        }
+        data.duplicateFilter = new DuplicateFilter( dedupWindow * 1000, expectedMessages, falsePositiveRate, log );
+      }
+
+      if ( !Utils.isEmpty( meta.getJournalFile() ) ) {
+        String journalFile = environmentSubstitute( meta.getJournalFile() );
+        int syncInterval = Const.toInt(
+          environmentSubstitute( meta.getJournalSyncInterval() ), DEFAULT_JOURNAL_SYNC_INTERVAL );
+        if ( syncInterval < 1 ) {
+          logError( BaseMessages.getString(
+            PKG, "SmsSender.Invalid.JournalSyncInterval", meta.getJournalSyncInterval() ) );
+          return false;
+        }
+        try {
+          data.journal = SendJournal.open( journalFile, syncInterval );
+        } catch ( IOException e ) {
+          logError( BaseMessages.getString( PKG, "SmsSender.Journal.OpenFailed", journalFile, e.getMessage() ) );
+          return false;
+        }
+        if ( log.isBasic() ) {
+          logBasic( BaseMessages.getString( PKG, "SmsSender.Journal.Opened", journalFile, data.journal.size() ) );
+        }
+      }
+
+      // Resume the run from its checkpoint, a dry run acknowledges nothing.
+      if ( !Utils.isEmpty( meta.getCheckpointFile() ) && !meta.isDryRun() ) {
+        String runId = environmentSubstitute( meta.getRunId() );
+        if ( Utils.isEmpty( runId ) || Utils.isEmpty( meta.getCheckpointKeyField() ) ) {
+          logError( BaseMessages.getString( PKG, "SmsSender.Invalid.Checkpoint" ) );
+          return false;
+        }
+        int checkpointInterval = Const.toInt(
+          environmentSubstitute( meta.getCheckpointInterval() ), DEFAULT_CHECKPOINT_INTERVAL );
+        if ( checkpointInterval < 1 ) {
+          logError( BaseMessages.getString(
+            PKG, "SmsSender.Invalid.CheckpointInterval", meta.getCheckpointInterval() ) );
+          return false;
+        }
+        data.checkpointInterval = TimeUnit.SECONDS.toMillis( checkpointInterval );
+        int checkpointMaxTracked = Const.toInt(
+          environmentSubstitute( meta.getCheckpointMaxTracked() ), DEFAULT_CHECKPOINT_MAX_TRACKED );
+        if ( checkpointMaxTracked < 1 ) {
+          logError( BaseMessages.getString(
+            PKG, "SmsSender.Invalid.CheckpointMaxTracked", meta.getCheckpointMaxTracked() ) );
+          return false;
+        }
+        // Step copies read different rows, each has its own checkpoint.
+        String checkpointFile = environmentSubstitute( meta.getCheckpointFile() );
+        if ( getStepMeta().getCopies() > 1 ) {
+          checkpointFile += "." + getCopy();
+        }
+        try {
+          data.checkpoint = Checkpoint.open( new File( checkpointFile ), runId, checkpointMaxTracked );
+        } catch ( IOException e ) {
+          logError( BaseMessages.getString(
+            PKG, "SmsSender.Checkpoint.OpenFailed", checkpointFile, e.getMessage() ) );
+          return false;
+        }
+        data.checkpointWritten = System.currentTimeMillis();
+        if ( data.checkpoint.isResumed() && log.isBasic() ) {
+          logBasic( BaseMessages.getString( PKG, "SmsSender.Checkpoint.Resumed", runId,
+            String.valueOf( data.checkpoint.getResumedKey() ), String.valueOf( data.checkpoint.getResumedRows() ),
+            String.valueOf( data.checkpoint.getResumedSent() ),
+            String.valueOf( data.checkpoint.getResumedFailed() ) ) );
+        }
+      }
+
+      data.metrics = new SmsSenderMetrics();
+      data.metrics.setBacklogs( data.backlogs );
+      try {
+        data.metrics.register( getTransMeta().getName(), getStepname(), getCopy() );
+      } catch ( JMException e ) {
+        logError( BaseMessages.getString( PKG, "SmsSender.Metrics.RegisterFailed", e.getMessage() ) );
+      }
+
+      if ( meta.isDryRun() ) {
+        if ( log.isBasic() ) {
+          logBasic( BaseMessages.getString( PKG, "SmsSender.DryRun.Started" ) );
+        }
+        return true;
+      }
+
+      // One client per account and step copy, so steps using different accounts don't share the global
+      // Twilio client. Subaccounts without an auth token of their own are used through the main account.
+      String apiBaseUrl = Utils.isEmpty( meta.getApiBaseUrl() ) ? null : environmentSubstitute( meta.getApiBaseUrl() );
+      int idleConnectionTimeout =
+        Const.toInt( environmentSubstitute( meta.getIdleConnectionTimeout() ), DEFAULT_IDLE_CONNECTION_TIMEOUT );
+      int connectTimeout = Const.toInt( environmentSubstitute( meta.getConnectTimeout() ), DEFAULT_CONNECT_TIMEOUT );
+      int readTimeout = Const.toInt( environmentSubstitute( meta.getReadTimeout() ), DEFAULT_READ_TIMEOUT );
+      String accountSid = environmentSubstitute( meta.getAccountSid() );
+      String authToken = environmentSubstitute( meta.getAuthToken() );
+      String[] subaccountSids = meta.getSubaccountSids();
+      if ( subaccountSids == null || subaccountSids.length == 0 ) {
+        TwilioRestClient.Builder builder = new TwilioRestClient.Builder( accountSid, authToken );
+        data.shards = new SmsSenderData.Shard[] { createShard( builder, data.metrics, apiBaseUrl, maxConnections,
+          idleConnectionTimeout, connectTimeout, readTimeout, accountRateLimit ) };
+      } else {
+        // The SIDs and tokens of the subaccounts go by pairs, a hand-edited step may have lost some.
+        String[] subaccountAuthTokens = meta.getSubaccountAuthTokens();
+        if ( subaccountAuthTokens == null || subaccountAuthTokens.length != subaccountSids.length ) {
+          logError( BaseMessages.getString( PKG, "SmsSender.Invalid.SubaccountAuthTokens",
+            String.valueOf( subaccountSids.length ),
+            String.valueOf( subaccountAuthTokens == null ? 0 : subaccountAuthTokens.length ) ) );
+          return false;
+        }
+        data.shards = new SmsSenderData.Shard[ subaccountSids.length ];
+        for ( int i = 0; i < subaccountSids.length; i++ ) {
+          String subaccountSid = environmentSubstitute( subaccountSids[ i ] );
+          String subaccountAuthToken = environmentSubstitute( subaccountAuthTokens[ i ] );
+          if ( Utils.isEmpty( subaccountSid ) ) {
+            logError( BaseMessages.getString( PKG, "SmsSender.Invalid.Subaccount", String.valueOf( i + 1 ) ) );
+            return false;
+          }
+          TwilioRestClient.Builder builder = Utils.isEmpty( subaccountAuthToken )
+            ? new TwilioRestClient.Builder( accountSid, authToken ).accountSid( subaccountSid )
+            : new TwilioRestClient.Builder( subaccountSid, subaccountAuthToken );
+          SmsSenderMetrics metrics = new SmsSenderMetrics( data.metrics );
+          try {
+            metrics.register( getTransMeta().getName(), getStepname(), getCopy(), subaccountSid );
+          } catch ( JMException e ) {
+            logError( BaseMessages.getString( PKG, "SmsSender.Metrics.RegisterFailed", e.getMessage() ) );
+          }
+          data.shards[ i ] = createShard( builder, metrics, apiBaseUrl, maxConnections, idleConnectionTimeout,
+            connectTimeout, readTimeout, accountRateLimit );
+        }
+      }
+
+      if ( meta.isAsyncSend() ) {
+        data.engine = new SmsSendEngine( getStepname() + "." + getCopy(), maxInFlight, data.retryPolicy );
+      }
       return true;
     } else {
       return false;
@@ -98,9 +507,40 @@ public class SmsSender extends BaseStep implements StepInterface {
   }
 
   public boolean processRow( StepMetaInterface smi, StepDataInterface sdi ) throws KettleException {
-    Object[] r = getRow(); // get row, set busy!
+    if ( data.readSuppressionStep && !readSuppressionStep() ) {
+      return false;
+    }
+    // Send the held messages whose window opened.
+    if ( data.delayedRows != null && !releaseHeldRows() ) {
+      return false;
+    }
+    if ( !data.failedRepeats.isEmpty() && !sendFailedRepeats() ) {
+      return false;
+    }
+    if ( data.checkpoint != null ) {
+      writeCheckpoint( false );
+    }
+
+    Object[] r = data.backlogs != null ? takeRow() : readRow(); // get row, set busy!
     if ( r == null ) {
-      // no more input to be expected...
+      // no more input to be expected, wait for the held messages and the ones still being sent...
+      if ( data.delayedRows != null && !waitForHeldRows() ) {
+        return false;
+      }
+      if ( data.engine != null ) {
+        drain();
+      }
+      while ( !data.failedRepeats.isEmpty() ) {
+        if ( !sendFailedRepeats() ) {
+          return false;
+        }
+        if ( data.engine != null ) {
+          drain();
+        }
+      }
+      if ( data.checkpoint != null && !isStopped() ) {
+        writeCheckpoint( true );
+      }
       setOutputDone();
       return false;
     }
@@ -117,27 +557,105 @@ public class SmsSender extends BaseStep implements StepInterface {
         stopAll();
         return false;
       }
-      // Mapping from field.
-      data.fromIdx = fields.indexOf( meta.getFromField() );
-      if ( data.fromIdx < 0 ) {
-        logError( BaseMessages.getString( PKG, "SmsSender.Invalid.From" ) );
-        setErrors( 1 );
-        stopAll();
-        return false;
+      // Mapping from field, optional when sending through a Messaging Service.
+      data.fromIdx = -1;
+      if ( !Utils.isEmpty( meta.getFromField() ) ) {
+        data.fromIdx = fields.indexOf( meta.getFromField() );
+        if ( data.fromIdx < 0 ) {
+          logError( BaseMessages.getString( PKG, "SmsSender.Invalid.From" ) );
+          setErrors( 1 );
+          stopAll();
+          return false;
+        }
       }
-      // Mapping message field.
-      data.messageIdx = fields.indexOf( meta.getMessageField() );
-      if ( data.messageIdx < 0 ) {
-        logError( BaseMessages.getString( PKG, "SmsSender.Invalid.Message" ) );
-        setErrors( 1 );
-        stopAll();
-        return false;
+      // Mapping sender pool field.
+      data.senderPoolIdx = -1;
+      if ( !Utils.isEmpty( meta.getSenderPoolField() ) ) {
+        data.senderPoolIdx = fields.indexOf( meta.getSenderPoolField() );
+        if ( data.senderPoolIdx < 0 ) {
+          logError( BaseMessages.getString( PKG, "SmsSender.Invalid.SenderPoolField" ) );
+          setErrors( 1 );
+          stopAll();
+          return false;
+        }
+      }
+      // Mapping shard key field, the receiver picks the account if there is none.
+      data.shardKeyIdx = -1;
+      if ( !Utils.isEmpty( meta.getShardKeyField() ) ) {
+        data.shardKeyIdx = fields.indexOf( meta.getShardKeyField() );
+        if ( data.shardKeyIdx < 0 ) {
+          logError( BaseMessages.getString( PKG, "SmsSender.Invalid.ShardKeyField" ) );
+          setErrors( 1 );
+          stopAll();
+          return false;
+        }
+      }
+      // Mapping Messaging Service SID field.
+      data.messagingServiceSidIdx = -1;
+      if ( !Utils.isEmpty( meta.getMessagingServiceSidField() ) ) {
+        data.messagingServiceSidIdx = fields.indexOf( meta.getMessagingServiceSidField() );
+        if ( data.messagingServiceSidIdx < 0 ) {
+          logError( BaseMessages.getString( PKG, "SmsSender.Invalid.MessagingServiceSid" ) );
+          setErrors( 1 );
+          stopAll();
+          return false;
+        }
+      }
+      // Mapping message field, or the placeholders of the message template.
+      if ( data.template != null ) {
+        String unbound = data.template.bind( getInputRowMeta(), this );
+        if ( unbound != null ) {
+          logError( BaseMessages.getString( PKG, "SmsSender.Invalid.TemplateField", unbound ) );
+          setErrors( 1 );
+          stopAll();
+          return false;
+        }
+      } else {
+        data.messageIdx = fields.indexOf( meta.getMessageField() );
+        if ( data.messageIdx < 0 ) {
+          logError( BaseMessages.getString( PKG, "SmsSender.Invalid.Message" ) );
+          setErrors( 1 );
+          stopAll();
+          return false;
+        }
+      }
+      // Mapping idempotency field, the receiver identifies messages if there is none.
+      data.idempotencyIdx = -1;
+      if ( !Utils.isEmpty( meta.getIdempotencyField() ) ) {
+        data.idempotencyIdx = fields.indexOf( meta.getIdempotencyField() );
+        if ( data.idempotencyIdx < 0 ) {
+          logError( BaseMessages.getString( PKG, "SmsSender.Invalid.IdempotencyField" ) );
+          setErrors( 1 );
+          stopAll();
+          return false;
+        }
+      }
+
+      // Mapping time zone field, the default time zone applies to the rows without one.
+      data.timeZoneIdx = -1;
+      if ( !Utils.isEmpty( meta.getTimeZoneField() ) ) {
+        data.timeZoneIdx = fields.indexOf( meta.getTimeZoneField() );
+        if ( data.timeZoneIdx < 0 ) {
+          logError( BaseMessages.getString( PKG, "SmsSender.Invalid.TimeZoneField" ) );
+          setErrors( 1 );
+          stopAll();
+          return false;
+        }
+      }
+      if ( data.sendWindow != null ) {
+        data.delayedRows = new DelayedRows( getInputRowMeta(), data.delayMemoryRows, data.delayDirectory );
       }
 
       data.outputRowMeta = getInputRowMeta().clone();
       meta.getFields( data.outputRowMeta, getStepname(), null, null, this, repository, metaStore );
       data.startPoint = getInputRowMeta().size();
-      r = RowDataUtil.resizeArray( r, data.outputRowMeta.size() );
+      data.segmentsIdx = data.startPoint;
+      for ( String field : new String[] { meta.getStatusField(), meta.getPriceField(), meta.getErrorCodeField(),
+        meta.getErrorMessageField(), meta.getAttemptsField(), meta.getMessageSidField() } ) {
+        if ( !Utils.isEmpty( field ) ) {
+          data.segmentsIdx++;
+        }
+      }
 
       // Cache the position of the RowSet for the output.
       if ( data.chosesTargetSteps ) {
@@ -164,82 +682,956 @@ public class SmsSender extends BaseStep implements StepInterface {
       }
     }
 
-    // Get Twilio credentials.
-    String accountSid = meta.getAccountSid();
-    String authToken = meta.getAuthToken();
+    // Hold the messages whose recipient's send window is closed until it opens.
+    if ( data.sendWindow != null ) {
+      ZoneId timeZone = getTimeZone( r );
+      if ( timeZone == null ) {
+        r = RowDataUtil.resizeArray( r, data.outputRowMeta.size() );
+        String error = BaseMessages.getString( PKG, "SmsSender.InvalidTimeZone",
+          getInputRowMeta().getString( r, data.timeZoneIdx ) );
+        if ( log.isDetailed() ) {
+          logDetailed( error );
+        }
+        putUnsentRow( r, null, null, error, true );
+        return true;
+      }
+      long releaseTime = data.sendWindow.getReleaseTime( timeZone, System.currentTimeMillis() );
+      if ( releaseTime > 0 ) {
+        data.delayedRows.add( releaseTime, r );
+        data.heldRows++;
+        return true;
+      }
+    }
+
+    return processMessage( r );
+  }
+
+  /**
+   * Checks and sends the message of an input row, or one held until its send window opened.
+   *
+   * @return false if the step was stopped.
+   */
+  private boolean processMessage( Object[] r ) throws KettleException {
+    r = RowDataUtil.resizeArray( r, data.outputRowMeta.size() );
 
     // Get SMS values.
     String to = (String) r[data.toIdx ];
-    String from = (String) r[data.fromIdx ];
-    String message = (String) r[data.messageIdx ];
-
-    if ( Utils.isEmpty( accountSid ) ) {
-      logError( BaseMessages.getString( PKG, "SmsSender.Null.AccountSid" ) );
-      putFailedTransferRow( r );
-      return true;
+    String from = data.fromIdx < 0 ? null : (String) r[data.fromIdx ];
+    String message = data.template != null ? data.template.render( r ) : (String) r[data.messageIdx ];
+    String messagingServiceSid = data.messagingServiceSidIdx < 0 ? null : (String) r[data.messagingServiceSidIdx ];
+    if ( Utils.isEmpty( messagingServiceSid ) ) {
+      messagingServiceSid = data.messagingServiceSid;
     }
-    if ( Utils.isEmpty( authToken ) ) {
-      logError( BaseMessages.getString( PKG, "SmsSender.Null.AuthToken" ) );
-      putFailedTransferRow( r );
-      return true;
+    SenderPool senderPool = data.senderPool;
+    if ( data.senderPoolIdx >= 0 && !Utils.isEmpty( (String) r[data.senderPoolIdx ] ) ) {
+      SenderPool rowPool;
+      try {
+        rowPool = getSenderPool( (String) r[data.senderPoolIdx ] );
+      } catch ( IllegalArgumentException e ) {
+        putInvalidNumberRow( r, e.getMessage(), ERROR_INVALID_FROM );
+        return true;
+      }
+      if ( rowPool != null ) {
+        senderPool = rowPool;
+      }
     }
+
     if ( Utils.isEmpty( to ) ) {
       logError( BaseMessages.getString( PKG, "SmsSender.Null.To" ) );
-      putFailedTransferRow( r );
+      putUnsentRow( r, null, null, null, true );
       return true;
     }
-    if ( Utils.isEmpty( from ) ) {
+    if ( Utils.isEmpty( from ) && Utils.isEmpty( messagingServiceSid ) && senderPool == null ) {
       logError( BaseMessages.getString( PKG, "SmsSender.Null.From" ) );
-      putFailedTransferRow( r );
+      putUnsentRow( r, null, null, null, true );
       return true;
     }
     if ( Utils.isEmpty( message ) ) {
       logError( BaseMessages.getString( PKG, "SmsSender.Null.Message" ) );
-      putFailedTransferRow( r );
+      putUnsentRow( r, null, null, null, true );
+      return true;
+    }
+
+    // Reject malformed numbers locally instead of waiting for the API to do it.
+    if ( data.normalizer != null ) {
+      String normalized = data.normalizer.normalize( to );
+      if ( normalized == null ) {
+        putInvalidNumberRow( r, to, ERROR_INVALID_TO );
+        return true;
+      }
+      to = normalized;
+      if ( !Utils.isEmpty( from ) ) {
+        normalized = data.normalizer.normalizeSender( from );
+        if ( normalized == null ) {
+          putInvalidNumberRow( r, from, ERROR_INVALID_FROM );
+          return true;
+        }
+        from = normalized;
+      }
+    }
+
+    // Never text recipients who opted out.
+    if ( ( data.suppressionList != null && data.suppressionList.contains( to ) )
+      || ( data.stepSuppressionList != null && data.stepSuppressionList.contains( to ) ) ) {
+      String error = BaseMessages.getString( PKG, "SmsSender.Suppressed", to );
+      if ( log.isDetailed() ) {
+        logDetailed( error );
+      }
+      putUnsentRow( r, null, ERROR_UNSUBSCRIBED, error, true );
+      return true;
+    }
+
+    // Work out the encoding and segments billed, keeping oversized messages from reaching the API.
+    if ( data.analyzeSegments ) {
+      data.segments.analyze( message );
+      writeSegmentFields( r );
+      if ( data.maxSegments > 0 && data.segments.getSegments() > data.maxSegments ) {
+        String error = BaseMessages.getString( PKG, "SmsSender.TooManySegments",
+          String.valueOf( data.segments.getSegments() ), String.valueOf( data.maxSegments ) );
+        if ( log.isDetailed() ) {
+          logDetailed( error );
+        }
+        putUnsentRow( r, null, null, error, true );
+        return true;
+      }
+    }
+
+    // Skip repeats of a message already sent in this run, whichever number of a pool it would go out from.
+    // A repeat of a message still being sent waits for its outcome, and is sent after all if it failed.
+    long dedupKey = 0;
+    if ( data.duplicateFilter != null ) {
+      String senderKey = senderPool != null ? null : Utils.isEmpty( from ) ? messagingServiceSid : from;
+      dedupKey = MessageHash.combine(
+        MessageHash.combine( MessageHash.hash( to ), MessageHash.hash( senderKey ) ), MessageHash.hash( message ) );
+      List<Object[]> repeats = data.pendingRepeats.get( dedupKey );
+      if ( repeats != null ) {
+        repeats.add( r );
+        return true;
+      }
+      if ( data.duplicateFilter.contains( dedupKey ) ) {
+        if ( log.isDetailed() ) {
+          logDetailed( BaseMessages.getString( PKG, "SmsSender.Log.Duplicate", to ) );
+        }
+        putUnsentRow( r, STATUS_DUPLICATE, null, null, false );
+        return true;
+      }
+    }
+
+    // Skip messages a previous run already sent.
+    long journalKey = 0;
+    if ( data.journal != null ) {
+      String id = data.idempotencyIdx < 0 ? to : getInputRowMeta().getString( r, data.idempotencyIdx );
+      journalKey = MessageHash.combine( MessageHash.hash( id ), MessageHash.hash( message ) );
+      if ( data.journal.contains( journalKey ) ) {
+        if ( log.isDetailed() ) {
+          logDetailed( BaseMessages.getString( PKG, "SmsSender.Journal.AlreadySent", id ) );
+        }
+        if ( data.duplicateFilter != null ) {
+          data.duplicateFilter.add( dedupKey );
+        }
+        putUnsentRow( r, STATUS_ALREADY_SENT, null, null, false );
+        return true;
+      }
+    }
+
+    // Stop short of the API in a dry run, the row goes on as it would once sent.
+    if ( meta.isDryRun() ) {
+      data.dryRunMessages++;
+      data.dryRunSegments += data.segments.getSegments();
+      if ( data.segments.isUnicode() ) {
+        data.dryRunUnicodeMessages++;
+      }
+      if ( data.duplicateFilter != null ) {
+        data.duplicateFilter.add( dedupKey );
+      }
+      putUnsentRow( r, STATUS_DRY_RUN, null, null, false );
       return true;
     }
 
     // Send SMS message.
-    Twilio.init( accountSid, authToken );
+    // With a Messaging Service, Twilio picks the sender from the service's number pool unless one is given.
+    // A sender pool of the step overrides the From field, the task sets the number when it is sent.
     PhoneNumber receiver = new PhoneNumber( to );
-    PhoneNumber sender = new PhoneNumber( from );
-    Message sms;
+    MessageCreator creator;
+    if ( Utils.isEmpty( messagingServiceSid ) ) {
+      PhoneNumber sender = senderPool != null ? senderPool.getPhoneNumber( 0 ) : new PhoneNumber( from );
+      creator = Message.creator( receiver, sender, message );
+    } else {
+      creator = Message.creator( receiver, messagingServiceSid, message );
+      if ( senderPool == null && !Utils.isEmpty( from ) ) {
+        creator.setFrom( new PhoneNumber( from ) );
+      }
+    }
+    if ( data.statusCallback != null ) {
+      creator.setStatusCallback( data.statusCallback );
+    }
+    SmsSenderData.Shard shard = data.shards[ 0 ];
+    if ( data.shards.length > 1 ) {
+      String shardKey = data.shardKeyIdx < 0 ? to : getInputRowMeta().getString( r, data.shardKeyIdx );
+      shard = data.shards[ (int) Long.remainderUnsigned( MessageHash.hash( shardKey ), data.shards.length ) ];
+    }
+    SmsSendTask task = new SmsSendTask( r, creator, shard.client, data.circuitBreaker, shard.metrics,
+      shard.rateLimit, senderPool != null || Utils.isEmpty( from ) ? null : getSenderRateLimit( from ) );
+    task.setJournalKey( journalKey );
+    if ( data.duplicateFilter != null ) {
+      task.setDedupKey( dedupKey );
+      data.pendingRepeats.put( dedupKey, new ArrayList<>() );
+    }
+    if ( senderPool != null ) {
+      task.setSenderPool( senderPool, meta.isStickySenders() ? senderPool.indexOf( to ) : -1 );
+    }
+    if ( data.engine == null ) {
+      if ( !send( task ) ) {
+        return false;
+      }
+      putResultRow( task );
+    } else {
+      // Keep at most the configured number of messages in flight, passing on the ones already sent.
+      while ( data.engine.isFull() ) {
+        if ( !waitForResult() ) {
+          return false;
+        }
+      }
+      data.engine.submit( task );
+      for ( SmsSendTask done = data.engine.poll(); done != null; done = data.engine.poll() ) {
+        putResultRow( done );
+      }
+    }
+
+    if ( checkFeedback( getLinesRead() ) ) {
+      if ( log.isBasic() )
+        logBasic( BaseMessages.getString( PKG, "SmsSender.Log.LineNumber" ) + getLinesRead() );
+      if ( log.isDetailed() && data.shards != null ) {
+        for ( SmsSenderData.Shard each : data.shards ) {
+          logPoolStats( each.httpClient );
+        }
+      }
+    }
+      
+    return true;
+  }
+
+  /**
+   * @return the rate limit of the given sender number, or null if senders are not limited.
+   */
+  private TokenBucket getSenderRateLimit( String from ) {
+    if ( data.senderRateLimit <= 0 ) {
+      return null;
+    }
+    TokenBucket bucket = data.senderRateLimits.get( from );
+    if ( bucket == null ) {
+      bucket = TokenBucket.get( "number:" + from, data.senderRateLimit, log );
+      data.senderRateLimits.put( from, bucket );
+    }
+    return bucket;
+  }
+
+  /**
+   * @return the pool of the comma separated sender numbers of a row, parsed once per distinct list.
+   * @throws IllegalArgumentException with the number as message if one of them isn't valid.
+   */
+  private SenderPool getSenderPool( String numbers ) {
+    SenderPool pool = data.senderPools.get( numbers );
+    if ( pool == null ) {
+      pool = SenderPool.parse( numbers, data.normalizer, data.senderRateLimit, log );
+      data.senderPools.put( numbers, pool );
+    }
+    return pool;
+  }
+
+  /**
+   * Creates the client, connection pool and rate limit of an account.
+   */
+  private SmsSenderData.Shard createShard( TwilioRestClient.Builder builder, SmsSenderMetrics metrics,
+                                           String apiBaseUrl, int maxConnections, int idleConnectionTimeout,
+                                           int connectTimeout, int readTimeout, double accountRateLimit ) {
+    PooledHttpClient httpClient =
+      createHttpClient( apiBaseUrl, maxConnections, idleConnectionTimeout, connectTimeout, readTimeout );
+    TwilioRestClient client = builder.httpClient( httpClient ).build();
+    TokenBucket rateLimit =
+      accountRateLimit > 0 ? TokenBucket.get( "account:" + client.getAccountSid(), accountRateLimit, log ) : null;
+    return new SmsSenderData.Shard( httpClient, client, rateLimit, metrics );
+  }
+
+  /**
+   * @return the time zone of the recipient of a row, or null if its time zone field holds an unknown zone.
+   */
+  private ZoneId getTimeZone( Object[] r ) throws KettleException {
+    String id = data.timeZoneIdx < 0 ? null : getInputRowMeta().getString( r, data.timeZoneIdx );
+    if ( Utils.isEmpty( id ) ) {
+      return data.defaultTimeZone;
+    }
+    ZoneId timeZone = data.timeZones.get( id );
+    if ( timeZone == null ) {
+      try {
+        timeZone = ZoneId.of( id );
+      } catch ( DateTimeException e ) {
+        return null;
+      }
+      data.timeZones.put( id, timeZone );
+    }
+    return timeZone;
+  }
+
+  /**
+   * Takes the next input row from the backlog, the highest priority first, starting the thread filling it on
+   * the first call.
+   *
+   * @return the row, or null once the input is over or the step was stopped.
+   */
+  private Object[] takeRow() throws KettleException {
+    if ( data.backlogReader == null ) {
+      data.backlogReader = new Thread( () -> {
+        try {
+          int priorityIdx = -1;
+          for ( Object[] row = readRow(); row != null && !Thread.currentThread().isInterrupted(); row = readRow() ) {
+            RowBacklog lane = data.backlogs[ 0 ];
+            if ( !Utils.isEmpty( meta.getPriorityField() ) ) {
+              if ( priorityIdx < 0 ) {
+                priorityIdx = getInputRowMeta().indexOfValue( meta.getPriorityField() );
+                if ( priorityIdx < 0 ) {
+                  throw new KettleException( BaseMessages.getString( PKG, "SmsSender.Invalid.PriorityField" ) );
+                }
+              }
+              lane = data.backlogs[ getLane( row, priorityIdx ) ];
+            }
+            if ( !lane.put( getInputRowMeta(), row ) ) {
+              break;
+            }
+          }
+        } catch ( InterruptedException e ) {
+          // Stopped by dispose, the rows not read yet are left in the input.
+          Thread.currentThread().interrupt();
+        } catch ( Exception e ) {
+          data.backlogError = e;
+        } finally {
+          for ( RowBacklog lane : data.backlogs ) {
+            lane.finish();
+          }
+        }
+      }, getStepname() + "." + getCopy() + " backlog" );
+      data.backlogReader.setDaemon( true );
+      data.backlogReader.start();
+    }
+    while ( !isStopped() ) {
+      Object[] row;
+      try {
+        row = RowBacklog.poll( data.backlogs, POLL_TIMEOUT );
+      } catch ( InterruptedException e ) {
+        Thread.currentThread().interrupt();
+        throw new KettleException( e );
+      }
+      if ( row != null ) {
+        return row;
+      }
+      if ( Arrays.stream( data.backlogs ).allMatch( RowBacklog::isDone ) ) {
+        if ( data.backlogError != null ) {
+          throw new KettleException( BaseMessages.getString(
+            PKG, "SmsSender.Backlog.ReadFailed", data.backlogError.getMessage() ), data.backlogError );
+        }
+        return null;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Reads the next input row, leaving out the ones an earlier attempt of the run acknowledged.
+   *
+   * @return the row, or null once the input is over or the step was stopped.
+   */
+  private Object[] readRow() throws KettleException {
+    Object[] row = getRow();
+    if ( data.checkpoint == null ) {
+      return row;
+    }
+    for ( ; row != null; row = getRow() ) {
+      long key = getCheckpointKey( row );
+      if ( !data.checkpoint.isDone( key ) ) {
+        if ( !data.checkpoint.read( key ) ) {
+          throw new KettleException( BaseMessages.getString( PKG, "SmsSender.Checkpoint.KeyNotIncreasing",
+            String.valueOf( key ), String.valueOf( data.checkpoint.getLastRead() ) ) );
+        }
+        return row;
+      }
+      data.resumedRows++;
+    }
+    if ( !isStopped() ) {
+      data.checkpoint.finish();
+    }
+    return null;
+  }
+
+  /**
+   * @return the checkpoint key of a row, an Integer field.
+   */
+  private long getCheckpointKey( Object[] row ) throws KettleException {
+    if ( data.checkpointKeyIdx < 0 ) {
+      int keyIdx = getInputRowMeta().indexOfValue( meta.getCheckpointKeyField() );
+      if ( keyIdx < 0 ) {
+        throw new KettleException( BaseMessages.getString( PKG, "SmsSender.Invalid.CheckpointKeyField" ) );
+      }
+      if ( getInputRowMeta().getValueMeta( keyIdx ).getType() != ValueMetaInterface.TYPE_INTEGER ) {
+        throw new KettleException( BaseMessages.getString( PKG, "SmsSender.Invalid.CheckpointKeyType" ) );
+      }
+      data.checkpointKeyIdx = keyIdx;
+    }
+    Long key = getInputRowMeta().getInteger( row, data.checkpointKeyIdx );
+    if ( key == null ) {
+      throw new KettleException( BaseMessages.getString( PKG, "SmsSender.Null.CheckpointKey" ) );
+    }
+    return key;
+  }
+
+  /**
+   * Marks the row of a message as done in the checkpoint of the run, once it is passed on.
+   */
+  private void acknowledge( Object[] r ) throws KettleStepException {
+    if ( data.checkpoint == null ) {
+      return;
+    }
+    try {
+      data.checkpoint.acknowledge( getCheckpointKey( r ) );
+    } catch ( KettleException e ) {
+      throw new KettleStepException( e.getMessage(), e );
+    }
+  }
+
+  /**
+   * Writes the checkpoint of the run once its interval passed, or anyway when forced.
+   */
+  private void writeCheckpoint( boolean force ) throws KettleException {
+    long now = System.currentTimeMillis();
+    if ( !force && now - data.checkpointWritten < data.checkpointInterval ) {
+      return;
+    }
+    data.checkpointWritten = now;
+    try {
+      data.checkpoint.write( data.metrics.getSent(), data.metrics.getFailed(), data.metrics.getSkipped() );
+    } catch ( IOException e ) {
+      throw new KettleException(
+        BaseMessages.getString( PKG, "SmsSender.Checkpoint.WriteFailed", e.getMessage() ), e );
+    }
+  }
+
+  /**
+   * @return the lane of a row by its priority, 1 being the highest; rows without one get the lowest.
+   */
+  private int getLane( Object[] row, int priorityIdx ) throws KettleException {
+    Long priority = getInputRowMeta().getInteger( row, priorityIdx );
+    if ( priority == null || priority > data.backlogs.length ) {
+      return data.backlogs.length - 1;
+    }
+    return (int) Math.max( 0, priority - 1 );
+  }
+
+  /**
+   * Sends the held messages whose window opened.
+   *
+   * @return false if the step was stopped.
+   */
+  private boolean releaseHeldRows() throws KettleException {
+    long now = System.currentTimeMillis();
+    for ( Object[] held = data.delayedRows.poll( now ); held != null; held = data.delayedRows.poll( now ) ) {
+      if ( !processMessage( held ) ) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Waits for the send windows of all held messages to open once the input is read, and sends them.
+   *
+   * @return false if the step was stopped while waiting.
+   */
+  private boolean waitForHeldRows() throws KettleException {
+    if ( !data.delayedRows.isEmpty() && log.isBasic() ) {
+      logBasic( BaseMessages.getString( PKG, "SmsSender.SendWindow.Waiting", String.valueOf( data.delayedRows.size() ),
+        new Date( data.delayedRows.getNextReleaseTime() ) ) );
+    }
+    while ( !data.delayedRows.isEmpty() ) {
+      long wait = data.delayedRows.getNextReleaseTime() - System.currentTimeMillis();
+      if ( wait <= 0 ) {
+        if ( !releaseHeldRows() ) {
+          return false;
+        }
+        continue;
+      }
+      // Pass on the messages sent meanwhile.
+      if ( data.engine != null ) {
+        for ( SmsSendTask done = data.engine.poll(); done != null; done = data.engine.poll() ) {
+          putResultRow( done );
+        }
+      }
+      if ( data.checkpoint != null ) {
+        writeCheckpoint( false );
+      }
+      try {
+        Thread.sleep( Math.min( wait, HOLD_POLL_TIMEOUT ) );
+      } catch ( InterruptedException e ) {
+        Thread.currentThread().interrupt();
+        throw new KettleException( e );
+      }
+      if ( isStopped() ) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Loads the numbers of the suppression step, all of its rows have to be read before sending anything.
+   *
+   * @return false if the step was stopped or the suppression field is missing.
+   */
+  private boolean readSuppressionStep() throws KettleException {
+    data.readSuppressionStep = false;
+    String stepname = meta.getSuppressionStepname();
+    RowSet rowSet = findInputRowSet( stepname );
+    if ( rowSet == null ) {
+      throw new KettleException( BaseMessages.getString( PKG, "SmsSender.Log.SuppressionStepInvalid", stepname ) );
+    }
+    SuppressionList.Builder builder = new SuppressionList.Builder(
+      null, data.normalizer != null, data.normalizer != null ? data.normalizer.getDefaultRegion() : null );
+    int numberIdx = -1;
+    for ( Object[] row = getRowFrom( rowSet ); row != null; row = getRowFrom( rowSet ) ) {
+      if ( numberIdx < 0 ) {
+        numberIdx = rowSet.getRowMeta().indexOfValue( meta.getSuppressionField() );
+        if ( numberIdx < 0 ) {
+          logError( BaseMessages.getString( PKG, "SmsSender.Invalid.SuppressionField" ) );
+          setErrors( 1 );
+          stopAll();
+          return false;
+        }
+      }
+      builder.add( rowSet.getRowMeta().getString( row, numberIdx ) );
+    }
+    if ( isStopped() ) {
+      return false;
+    }
     try {
-      sms = Message.creator( receiver, sender, message ).create();
-    } catch( ApiException ex ) {
-      logError( BaseMessages.getString( PKG, "SmsSender.Message.Creation.Failed", ex.getMessage() ) );
+      data.stepSuppressionList = builder.build();
+    } catch ( IllegalStateException e ) {
+      throw new KettleException( e.getMessage(), e );
+    }
+    if ( log.isBasic() ) {
+      logBasic( BaseMessages.getString( PKG, "SmsSender.Suppression.Loaded", stepname,
+        String.valueOf( data.stepSuppressionList.size() ), String.valueOf( data.stepSuppressionList.getInvalid() ) ) );
+    }
+    return true;
+  }
+
+  /**
+   * Creates the HTTP client of the step copy. Benchmarks override it to leave the network out.
+   */
+  PooledHttpClient createHttpClient( String baseUrl, int maxConnections, int idleTimeout, int connectTimeout,
+                                     int readTimeout ) {
+    return new PooledHttpClient( baseUrl, maxConnections, idleTimeout, connectTimeout, readTimeout );
+  }
+
+  public void dispose( StepMetaInterface smi, StepDataInterface sdi ) {
+    meta = (SmsSenderMeta) smi;
+    data = (SmsSenderData) sdi;
+
+    if ( data.engine != null ) {
+      data.engine.shutdown();
+      data.engine = null;
+    }
+    // Stop reading the input ahead before closing the backlog and writing the checkpoint, so no row is read,
+    // put or tracked past this point.
+    if ( data.backlogReader != null ) {
+      data.backlogReader.interrupt();
+      try {
+        data.backlogReader.join( BACKLOG_READER_STOP_TIMEOUT );
+      } catch ( InterruptedException e ) {
+        Thread.currentThread().interrupt();
+      }
+      if ( data.backlogReader.isAlive() ) {
+        logError( BaseMessages.getString( PKG, "SmsSender.Backlog.ReaderNotStopped",
+          String.valueOf( BACKLOG_READER_STOP_TIMEOUT ) ) );
+      }
+      data.backlogReader = null;
+    }
+    // Keep the progress of a stopped or failed attempt, the messages still in flight are not acknowledged.
+    if ( data.checkpoint != null && data.metrics != null ) {
+      try {
+        writeCheckpoint( true );
+      } catch ( KettleException e ) {
+        logError( e.getMessage() );
+      }
+    }
+    if ( data.metrics != null ) {
+      logMetrics();
+      try {
+        data.metrics.unregister();
+        for ( SmsSenderData.Shard shard : data.shards != null ? data.shards : new SmsSenderData.Shard[ 0 ] ) {
+          if ( shard != null ) {
+            shard.metrics.unregister();
+          }
+        }
+      } catch ( JMException e ) {
+        logError( BaseMessages.getString( PKG, "SmsSender.Metrics.UnregisterFailed", e.getMessage() ) );
+      }
+      data.metrics = null;
+    }
+    if ( data.suppressionList != null ) {
+      data.suppressionList.release();
+      data.suppressionList = null;
+    }
+    data.stepSuppressionList = null;
+    if ( data.backlogs != null ) {
+      for ( RowBacklog lane : data.backlogs ) {
+        lane.close();
+      }
+      data.backlogs = null;
+    }
+    if ( data.delayedRows != null ) {
+      if ( !data.delayedRows.isEmpty() && log.isBasic() ) {
+        logBasic( BaseMessages.getString(
+          PKG, "SmsSender.SendWindow.Dropped", String.valueOf( data.delayedRows.size() ) ) );
+      }
+      data.delayedRows.close();
+      data.delayedRows = null;
+    }
+    if ( data.journal != null ) {
+      try {
+        data.journal.release();
+      } catch ( IOException e ) {
+        logError( BaseMessages.getString( PKG, "SmsSender.Journal.WriteFailed", e.getMessage() ) );
+      }
+      data.journal = null;
+    }
+    if ( data.shards != null ) {
+      for ( SmsSenderData.Shard shard : data.shards ) {
+        if ( shard == null ) {
+          continue;
+        }
+        if ( log.isDetailed() ) {
+          logPoolStats( shard.httpClient );
+        }
+        try {
+          shard.httpClient.close();
+        } catch ( IOException e ) {
+          logError( BaseMessages.getString( PKG, "SmsSender.Log.ConnectionPoolCloseFailed", e.getMessage() ) );
+        }
+        if ( shard.rateLimit != null ) {
+          shard.rateLimit.release();
+        }
+      }
+      data.shards = null;
+    }
+    // Give up the shared rate limits, so the ones no other copy uses are dropped.
+    for ( TokenBucket rateLimit : data.senderRateLimits.values() ) {
+      rateLimit.release();
+    }
+    data.senderRateLimits.clear();
+    if ( data.senderPool != null ) {
+      data.senderPool.release();
+      data.senderPool = null;
+    }
+    for ( SenderPool pool : data.senderPools.values() ) {
+      if ( pool != null ) {
+        pool.release();
+      }
+    }
+    data.senderPools.clear();
+    super.dispose( smi, sdi );
+  }
+
+  /**
+   * Sends on the step thread, waiting between the attempts the retry policy allows.
+   *
+   * @return false if the step was stopped while waiting to retry.
+   */
+  private boolean send( SmsSendTask task ) throws KettleException {
+    task.run();
+    for ( long delay = data.retryPolicy.getRetryDelay( task ); delay >= 0;
+          delay = data.retryPolicy.getRetryDelay( task ) ) {
+      if ( log.isDetailed() ) {
+        logDetailed( BaseMessages.getString( PKG, "SmsSender.Log.Retrying",
+          task.getAttempts(), delay, task.getError().getMessage() ) );
+      }
+      try {
+        Thread.sleep( delay );
+      } catch ( InterruptedException e ) {
+        Thread.currentThread().interrupt();
+        throw new KettleException( e );
+      }
+      if ( isStopped() ) {
+        return false;
+      }
+      task.run();
+    }
+    return true;
+  }
+
+  /**
+   * Logs the connection pool usage, pending requests show the pool is too small for the in-flight window.
+   */
+  private void logPoolStats( PooledHttpClient httpClient ) {
+    PoolStats stats = httpClient.getPoolStats();
+    logDetailed( BaseMessages.getString( PKG, "SmsSender.Log.ConnectionPool",
+      stats.getLeased(), stats.getAvailable(), stats.getPending(), stats.getMax() ) );
+  }
+
+  /**
+   * Logs the end-of-run counters and API latencies.
+   */
+  private void logMetrics() {
+    if ( !log.isBasic() ) {
+      return;
+    }
+    SmsSenderMetrics metrics = data.metrics;
+    logBasic( BaseMessages.getString( PKG, "SmsSender.Metrics.Messages", metrics.getSent(), metrics.getFailed(),
+      metrics.getSkipped(), metrics.getRetried(), metrics.getThrottled() ) );
+    if ( metrics.getRequests() > 0 ) {
+      logBasic( BaseMessages.getString( PKG, "SmsSender.Metrics.Latency", metrics.getRequests(),
+        String.format( "%.1f", metrics.getLatencyMeanMillis() ),
+        String.format( "%.1f", metrics.getLatencyP50Millis() ),
+        String.format( "%.1f", metrics.getLatencyP90Millis() ),
+        String.format( "%.1f", metrics.getLatencyP99Millis() ),
+        String.format( "%.1f", metrics.getLatencyMaxMillis() ) ) );
+    }
+    if ( !metrics.getStatusCounts().isEmpty() ) {
+      logBasic( BaseMessages.getString( PKG, "SmsSender.Metrics.Statuses", metrics.getStatusCounts() ) );
+    }
+    if ( !metrics.getErrorCodeCounts().isEmpty() ) {
+      logBasic( BaseMessages.getString( PKG, "SmsSender.Metrics.ErrorCodes", metrics.getErrorCodeCounts() ) );
+    }
+    if ( data.shards != null && meta.getSubaccountSids() != null && meta.getSubaccountSids().length > 0 ) {
+      for ( SmsSenderData.Shard shard : data.shards ) {
+        if ( shard != null ) {
+          SmsSenderMetrics shardMetrics = shard.metrics;
+          logBasic( BaseMessages.getString( PKG, "SmsSender.Metrics.Account", shard.client.getAccountSid(),
+            shardMetrics.getSent(), shardMetrics.getFailed(), shardMetrics.getThrottled(),
+            String.format( "%.1f", shardMetrics.getLatencyP99Millis() ) ) );
+        }
+      }
+    }
+    if ( data.backlogs != null ) {
+      long spilled = 0;
+      for ( RowBacklog lane : data.backlogs ) {
+        spilled += lane.getSpilled();
+      }
+      logBasic( BaseMessages.getString( PKG, "SmsSender.Metrics.Backlog",
+        String.valueOf( metrics.getBacklogMaxRows() ), String.valueOf( spilled ) ) );
+      for ( int i = 0; i < data.backlogs.length && data.backlogs.length > 1; i++ ) {
+        LatencyHistogram waits = data.backlogs[ i ].getWaits();
+        logBasic( BaseMessages.getString( PKG, "SmsSender.Metrics.PriorityLane", String.valueOf( i + 1 ),
+          String.valueOf( waits.getCount() ), String.format( "%.1f", waits.getMean() / 1e6 ),
+          String.format( "%.1f", waits.getValueAtPercentile( 99 ) / 1e6 ),
+          String.format( "%.1f", waits.getMax() / 1e6 ) ) );
+      }
+    }
+    if ( data.checkpoint != null && data.resumedRows > 0 ) {
+      logBasic( BaseMessages.getString( PKG, "SmsSender.Metrics.Checkpoint", String.valueOf( data.resumedRows ) ) );
+    }
+    if ( data.heldRows > 0 ) {
+      logBasic( BaseMessages.getString( PKG, "SmsSender.Metrics.Held", String.valueOf( data.heldRows ),
+        String.valueOf( data.delayedRows != null ? data.delayedRows.getSpilled() : 0 ) ) );
+    }
+    if ( data.normalizer != null ) {
+      logBasic( BaseMessages.getString( PKG, "SmsSender.Metrics.NumberCache",
+        String.valueOf( data.normalizer.getHits() ), String.valueOf( data.normalizer.getMisses() ) ) );
+    }
+    if ( meta.isDryRun() ) {
+      logBasic( BaseMessages.getString( PKG, "SmsSender.DryRun.Summary", String.valueOf( data.dryRunMessages ),
+        String.valueOf( data.dryRunUnicodeMessages ), String.valueOf( data.dryRunSegments ),
+        data.pricePerSegment != null ? String.format( "%.4f", data.dryRunSegments * data.pricePerSegment ) : "-" ) );
+    }
+    if ( data.senderPool != null ) {
+      logBasic( BaseMessages.getString( PKG, "SmsSender.Metrics.SenderPool", data.senderPool ) );
+    }
+    for ( SenderPool pool : data.senderPools.values() ) {
+      if ( pool != null ) {
+        logBasic( BaseMessages.getString( PKG, "SmsSender.Metrics.SenderPool", pool ) );
+      }
+    }
+  }
+
+  /**
+   * Waits for one in-flight message to complete and passes its row on.
+   *
+   * @return false if the step was stopped while waiting.
+   */
+  private boolean waitForResult() throws KettleException {
+    SmsSendTask done = null;
+    while ( done == null ) {
+      if ( isStopped() ) {
+        return false;
+      }
+      try {
+        done = data.engine.poll( POLL_TIMEOUT );
+      } catch ( InterruptedException e ) {
+        Thread.currentThread().interrupt();
+        throw new KettleException( e );
+      }
+    }
+    putResultRow( done );
+    return true;
+  }
+
+  /**
+   * Passes on the rows of all messages still in flight.
+   */
+  private void drain() throws KettleException {
+    if ( !data.engine.isIdle() && log.isDetailed() ) {
+      logDetailed( BaseMessages.getString( PKG, "SmsSender.Log.Draining", data.engine.getInFlight() ) );
+    }
+    while ( !data.engine.isIdle() ) {
+      if ( !waitForResult() ) {
+        return;
+      }
+    }
+  }
+
+  /**
+   * Writes the outcome of a send into the output fields of its row and routes the row.
+   */
+  private void putResultRow( SmsSendTask task ) throws KettleStepException {
+    Object[] r = task.getRow();
+    Message sms = task.getMessage();
+    RuntimeException error = task.getError();
+
+    String status = null;
+    String price = null;
+    Integer errorCode;
+    String errorMessage;
+    if ( sms != null ) {
+      status = sms.getStatus() != null ? sms.getStatus().toString() : null;
+      price = sms.getPrice() != null ? sms.getPrice().toString() : null;
+      errorCode = sms.getErrorCode();
+      errorMessage = sms.getErrorMessage();
+    } else {
+      logError( BaseMessages.getString( PKG, "SmsSender.Message.Creation.Failed", error.getMessage() ) );
+      errorCode = error instanceof ApiException ? ( (ApiException) error ).getCode() : null;
+      errorMessage = error.getMessage();
+    }
+
+    writeOutputFields( r, status, price, errorCode, errorMessage, task.getAttempts(),
+      sms != null ? sms.getSid() : null );
+
+    boolean failed = sms == null || sms.getStatus() == Message.Status.FAILED;
+    task.getMetrics().onMessage( status, errorCode, failed, true );
+    if ( failed ) {
+      // Failure while sending SMS message.
       putFailedTransferRow( r );
-      return true;
+    } else {
+      // SMS message was successfully sent.
+      if ( data.journal != null ) {
+        try {
+          data.journal.append( task.getJournalKey() );
+        } catch ( IOException e ) {
+          throw new KettleStepException(
+            BaseMessages.getString( PKG, "SmsSender.Journal.WriteFailed", e.getMessage() ), e );
+        }
+      }
+      putSuccessfulTransferRow( r );
+    }
+    acknowledge( r );
+    if ( data.duplicateFilter != null ) {
+      settleRepeats( task.getDedupKey(), !failed );
+    }
+  }
+
+  /**
+   * Records a message once its send is over, skipping the repeats that waited for it if it was sent, or sending
+   * them after all if it failed.
+   */
+  private void settleRepeats( long dedupKey, boolean sent ) throws KettleStepException {
+    List<Object[]> repeats = data.pendingRepeats.remove( dedupKey );
+    if ( !sent ) {
+      data.failedRepeats.addAll( repeats );
+      return;
+    }
+    data.duplicateFilter.add( dedupKey );
+    for ( Object[] repeat : repeats ) {
+      if ( log.isDetailed() ) {
+        logDetailed( BaseMessages.getString( PKG, "SmsSender.Log.Duplicate", repeat[ data.toIdx ] ) );
+      }
+      putUnsentRow( repeat, STATUS_DUPLICATE, null, null, false );
+    }
+  }
+
+  /**
+   * Sends the repeats of messages that failed, the first of them goes out and the others wait for it again.
+   *
+   * @return false if the step was stopped.
+   */
+  private boolean sendFailedRepeats() throws KettleException {
+    for ( Object[] repeat = data.failedRepeats.poll(); repeat != null; repeat = data.failedRepeats.poll() ) {
+      if ( !processMessage( repeat ) ) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Writes the outcome of a message decided without calling the API into the output fields of its row
+   * and routes the row.
+   */
+  private void putUnsentRow( Object[] r, String status, Integer errorCode, String errorMessage, boolean failed )
+    throws KettleStepException {
+    writeOutputFields( r, status, null, errorCode, errorMessage, 0, null );
+    data.metrics.onMessage( status, errorCode, failed, false );
+    if ( failed ) {
+      putFailedTransferRow( r );
+    } else {
+      putSuccessfulTransferRow( r );
+    }
+    acknowledge( r );
+  }
+
+  /**
+   * Sends the row of a number that failed normalization to the error stream with the API's error code.
+   */
+  private void putInvalidNumberRow( Object[] r, String number, int errorCode ) throws KettleStepException {
+    String error = BaseMessages.getString( PKG, "SmsSender.InvalidNumber", number );
+    if ( log.isDetailed() ) {
+      logDetailed( error );
     }
+    putUnsentRow( r, null, errorCode, error, true );
+  }
 
-    // Add SMS output fields.
+  private void writeOutputFields( Object[] r, String status, String price, Integer errorCode, String errorMessage,
+                                  int attempts, String messageSid ) {
     int idx = data.startPoint;
     if ( !Utils.isEmpty( meta.getStatusField() ) ) {
-      r[ idx++ ] = sms.getStatus().toString();
+      r[ idx++ ] = status;
     }
     if ( !Utils.isEmpty( meta.getPriceField() ) ) {
-      r[ idx++ ] = sms.getPrice();
+      r[ idx++ ] = price;
     }
     if ( !Utils.isEmpty( meta.getErrorCodeField() ) ) {
-      r[ idx++ ] = sms.getErrorCode();
+      r[ idx++ ] = errorCode != null ? Long.valueOf( errorCode ) : null;
     }
     if ( !Utils.isEmpty( meta.getErrorMessageField() ) ) {
-      r[ idx++ ] = sms.getErrorMessage();
+      r[ idx++ ] = errorMessage;
     }
-
-    // Failure while sending SMS message.
-    if ( sms.getStatus().equals( STATUS_FAILED ) ) {
-      putFailedTransferRow( r );
+    if ( !Utils.isEmpty( meta.getAttemptsField() ) ) {
+      r[ idx++ ] = Long.valueOf( attempts );
+    }
+    if ( !Utils.isEmpty( meta.getMessageSidField() ) ) {
+      r[ idx++ ] = messageSid;
     }
-    // SMS message was successfully sent.
-    putSuccessfulTransferRow( r );
+  }
 
-    if ( checkFeedback( getLinesRead() ) ) {
-      if ( log.isBasic() )
-        logBasic( BaseMessages.getString( PKG, "SmsSender.Log.LineNumber" ) + getLinesRead() );
+  /**
+   * Writes the encoding, segments and estimated cost of the message last analyzed into the output fields.
+   */
+  private void writeSegmentFields( Object[] r ) {
+    int idx = data.segmentsIdx;
+    if ( !Utils.isEmpty( meta.getEncodingField() ) ) {
+      r[ idx++ ] = data.segments.getEncoding();
+    }
+    if ( !Utils.isEmpty( meta.getSegmentsField() ) ) {
+      r[ idx++ ] = Long.valueOf( data.segments.getSegments() );
+    }
+    if ( !Utils.isEmpty( meta.getEstimatedCostField() ) ) {
+      r[ idx++ ] = data.pricePerSegment != null ? data.segments.getSegments() * data.pricePerSegment : null;
     }
-      
-    return true;
   }
 
   private void putFailedTransferRow( Object[] r ) throws KettleStepException {
@@ -18,26 +18,122 @@
  */
 package com.leonardo.coelho;
 
+import com.twilio.http.TwilioRestClient;
 import org.pentaho.di.core.RowSet;
 import org.pentaho.di.core.row.RowMetaInterface;
 import org.pentaho.di.trans.step.BaseStepData;
 import org.pentaho.di.trans.step.StepDataInterface;
 
+import java.io.File;
+import java.net.URI;
+import java.time.ZoneId;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 
 public class SmsSenderData extends BaseStepData implements StepDataInterface {
   int toIdx;
   int fromIdx;
+  int messagingServiceSidIdx;
+  int senderPoolIdx;
   int messageIdx;
+  int idempotencyIdx;
+  int shardKeyIdx;
+  int segmentsIdx;
 
   RowMetaInterface outputRowMeta;
   int startPoint;
   RowSet successfulRowSet;
   RowSet failedRowSet;
   boolean chosesTargetSteps;
+
+  // Accounts messages are spread over, a single one unless subaccounts are set.
+  Shard[] shards;
+  SmsSendEngine engine;
+  RetryPolicy retryPolicy;
+  CircuitBreaker circuitBreaker;
+  SendJournal journal;
+  DuplicateFilter duplicateFilter;
+  // Repeats of the messages being sent by key, and the ones to send after all as their first copy failed.
+  Map<Long, List<Object[]>> pendingRepeats = new HashMap<>();
+  ArrayDeque<Object[]> failedRepeats = new ArrayDeque<>();
+  SmsSenderMetrics metrics;
+  URI statusCallback;
+  String messagingServiceSid;
+
+  // Segment analysis of each message body, reused across rows.
+  boolean analyzeSegments;
+  MessageSegments segments = new MessageSegments();
+  int maxSegments;
+  Double pricePerSegment;
+
+  // Message template, null when the message comes from a field.
+  MessageTemplate template;
+
+  // Phone number normalization, null when disabled.
+  PhoneNumberNormalizer normalizer;
+
+  // Numbers not to text, from a file shared by the step copies and from an info step.
+  SuppressionList suppressionList;
+  SuppressionList stepSuppressionList;
+  boolean readSuppressionStep;
+
+  // Send window, null when messages may be sent at any time, and the messages held until it opens.
+  SendWindow sendWindow;
+  ZoneId defaultTimeZone;
+  Map<String, ZoneId> timeZones = new HashMap<>();
+  int timeZoneIdx;
+  int delayMemoryRows;
+  File delayDirectory;
+  DelayedRows delayedRows;
+  long heldRows;
+
+  // Backlog of input rows filled by its own thread, one lane per priority, null when the step reads its input
+  // as it sends.
+  RowBacklog[] backlogs;
+  Thread backlogReader;
+  volatile Exception backlogError;
+
+  // Checkpoint of the run, null when it is not resumable.
+  Checkpoint checkpoint;
+  int checkpointKeyIdx = -1;
+  long checkpointInterval;
+  long checkpointWritten;
+  volatile long resumedRows;
+
+  // Totals of a dry run.
+  long dryRunMessages;
+  long dryRunUnicodeMessages;
+  long dryRunSegments;
+
+  // Shared rate limits, the ones per sender number are looked up once per step copy.
+  double senderRateLimit;
+  Map<String, TokenBucket> senderRateLimits = new HashMap<>();
+  SenderPool senderPool;
+  Map<String, SenderPool> senderPools = new HashMap<>();
   /**
    * 
    */
   public SmsSenderData() {
     super();
   }
+
+  /**
+   * An account messages are sent from, with its own connection pool, client, rate limit and metrics.
+   */
+  static class Shard {
+    final PooledHttpClient httpClient;
+    final TwilioRestClient client;
+    final TokenBucket rateLimit;
+    final SmsSenderMetrics metrics;
+
+    Shard( PooledHttpClient httpClient, TwilioRestClient client, TokenBucket rateLimit, SmsSenderMetrics metrics ) {
+      this.httpClient = httpClient;
+      this.client = client;
+      this.rateLimit = rateLimit;
+      this.metrics = metrics;
+    }
+  }
 }
\ No newline at end of file
@@ -30,6 +30,7 @@ import org.eclipse.swt.widgets.*;
 import org.pentaho.di.core.Const;
 import org.pentaho.di.core.Props;
 import org.pentaho.di.core.exception.KettleStepException;
+import org.pentaho.di.core.util.Utils;
 import org.pentaho.di.i18n.BaseMessages;
 import org.pentaho.di.trans.TransMeta;
 import org.pentaho.di.trans.step.BaseStepMeta;
@@ -37,6 +38,9 @@ import org.pentaho.di.trans.step.StepDialogInterface;
 import org.pentaho.di.trans.step.StepMeta;
 import org.pentaho.di.trans.step.errorhandling.StreamInterface;
 import org.pentaho.di.ui.core.FormDataBuilder;
+import org.pentaho.di.ui.core.widget.ColumnInfo;
+import org.pentaho.di.ui.core.widget.TableView;
+import org.pentaho.di.ui.core.widget.TextVar;
 import org.pentaho.di.ui.trans.step.BaseStepDialog;
 
 import java.util.Arrays;
@@ -90,6 +94,15 @@ public class SmsSenderDialog extends BaseStepDialog implements StepDialogInterfa
   // Twilio - message content.
   private Label wMessageLabel;
   private CCombo wMessageField;
+  private Text wMessageTemplateField;
+  private TextVar wMessagingServiceSidField;
+  private CCombo wMessagingServiceSidFieldField;
+  private TextVar wSenderPoolField;
+  private CCombo wSenderPoolFieldField;
+  private Button wStickySendersField;
+  private Button wNormalizeNumbersField;
+  private TextVar wDefaultRegionField;
+  private TextVar wNumberCacheSizeField;
 
   // Output fields.
   private Group outputGroup;
@@ -110,6 +123,111 @@ public class SmsSenderDialog extends BaseStepDialog implements StepDialogInterfa
   private Label wErrorMessageLabel;
   private Text wErrorMessageField;
 
+  // Sending options.
+  private Group sendingGroup;
+
+  // Asynchronous sending.
+  private Label wAsyncSendLabel;
+  private Button wAsyncSendField;
+
+  // Max. messages in flight.
+  private Label wMaxInFlightLabel;
+  private Text wMaxInFlightField;
+  private TextVar wStatusCallbackUrlField;
+
+  // Connection options.
+  private Group connectionGroup;
+  private Text wMaxConnectionsField;
+  private Text wIdleConnectionTimeoutField;
+  private Text wConnectTimeoutField;
+  private Text wReadTimeoutField;
+  private TextVar wApiBaseUrlField;
+
+  // Rate limits.
+  private Group rateLimitGroup;
+  private Text wSenderRateLimitField;
+  private Text wAccountRateLimitField;
+
+  // Retries.
+  private Group retryGroup;
+  private Text wMaxAttemptsField;
+  private Text wRetryBaseDelayField;
+  private Text wRetryMaxDelayField;
+  private Text wRetryJitterField;
+  private Text wRetryableCodesField;
+
+  // Circuit breaker.
+  private Group circuitBreakerGroup;
+  private Button wCircuitBreakerEnabledField;
+  private Text wFailureRateThresholdField;
+  private Text wCircuitBreakerWindowField;
+  private Text wOpenDurationField;
+  private Text wHalfOpenProbesField;
+  private Button wPauseWhenOpenField;
+
+  // Send journal.
+  private Group journalGroup;
+  private TextVar wJournalFileField;
+
+  // Suppression list options.
+  private Group suppressionGroup;
+  private TextVar wSuppressionFileField;
+  private CCombo wSuppressionStepField;
+  private CCombo wSuppressionFieldField;
+  private CCombo wIdempotencyField;
+  private Text wJournalSyncIntervalField;
+
+  // Checkpoint.
+  private Group checkpointGroup;
+  private TextVar wCheckpointFileField;
+  private TextVar wRunIdField;
+  private CCombo wCheckpointKeyField;
+  private Text wCheckpointIntervalField;
+  private Text wCheckpointMaxTrackedField;
+
+  // Duplicates.
+  private Group deduplicationGroup;
+  private Button wDeduplicateField;
+  private Text wDedupWindowField;
+  private Text wDedupExpectedMessagesField;
+  private Text wDedupFalsePositiveRateField;
+
+  // Subaccounts to spread the messages over.
+  private Group subaccountsGroup;
+  private CCombo wShardKeyField;
+  private TableView wSubaccounts;
+
+  // Segment options.
+  private Group segmentsGroup;
+  private Text wPricePerSegmentField;
+  private Text wMaxSegmentsField;
+  private Button wDryRunField;
+
+  // Send window options.
+  private Group sendWindowGroup;
+  private Text wSendWindowStartField;
+  private Text wSendWindowEndField;
+  private CCombo wTimeZoneField;
+  private Text wDefaultTimeZoneField;
+  private Text wDelayMemoryRowsField;
+  private TextVar wDelayDirectoryField;
+
+  // Backlog options.
+  private Group backlogGroup;
+  private Button wBacklogField;
+  private Text wBacklogMemoryRowsField;
+  private Text wBacklogDiskLimitField;
+  private TextVar wBacklogDirectoryField;
+  private CCombo wPriorityField;
+  private Text wPriorityLevelsField;
+
+  // SMS attempts.
+  private Text wAttemptsField;
+  private Text wMessageSidField;
+  private Text wEncodingField;
+  private Text wSegmentsField;
+  private Text wEstimatedCostField;
+
   // Listeners
   private ModifyListener lsMod;
   private Listener lsCancel;
@@ -344,6 +462,65 @@ public class SmsSenderDialog extends BaseStepDialog implements StepDialogInterfa
       .result();
     wMessageField.setLayoutData( fdTransformation5 );
 
+    // Message template label/field, replacing the message field when set.
+    addLabel( smsGroup, "SmsSenderDialog.MessageTemplate.Label", wMessageField );
+    wMessageTemplateField = new Text( smsGroup, SWT.MULTI | SWT.LEFT | SWT.BORDER | SWT.V_SCROLL | SWT.WRAP );
+    props.setLook( wMessageTemplateField );
+    wMessageTemplateField.addModifyListener( lsMod );
+    FormData messageTemplateData = rightColumn( wMessageField );
+    messageTemplateData.height = 60;
+    wMessageTemplateField.setLayoutData( messageTemplateData );
+
+    // Messaging Service SID label/fields, the From field is optional when one is set.
+    addLabel( smsGroup, "SmsSenderDialog.MessagingServiceSid.Label", wMessageTemplateField );
+    wMessagingServiceSidField = new TextVar( transMeta, smsGroup, SWT.SINGLE | SWT.LEFT | SWT.BORDER );
+    props.setLook( wMessagingServiceSidField );
+    wMessagingServiceSidField.addModifyListener( lsMod );
+    wMessagingServiceSidField.setLayoutData( rightColumn( wMessageTemplateField ) );
+
+    addLabel( smsGroup, "SmsSenderDialog.MessagingServiceSidField.Label", wMessagingServiceSidField );
+    wMessagingServiceSidFieldField = new CCombo( smsGroup, SWT.BORDER );
+    props.setLook( wMessagingServiceSidFieldField );
+    wMessagingServiceSidFieldField.addModifyListener( lsMod );
+    wMessagingServiceSidFieldField.setLayoutData( rightColumn( wMessagingServiceSidField ) );
+
+    // Sender pool label/fields, also making the From field optional.
+    addLabel( smsGroup, "SmsSenderDialog.SenderPool.Label", wMessagingServiceSidFieldField );
+    wSenderPoolField = new TextVar( transMeta, smsGroup, SWT.SINGLE | SWT.LEFT | SWT.BORDER );
+    props.setLook( wSenderPoolField );
+    wSenderPoolField.addModifyListener( lsMod );
+    wSenderPoolField.setLayoutData( rightColumn( wMessagingServiceSidFieldField ) );
+
+    addLabel( smsGroup, "SmsSenderDialog.SenderPoolField.Label", wSenderPoolField );
+    wSenderPoolFieldField = new CCombo( smsGroup, SWT.BORDER );
+    props.setLook( wSenderPoolFieldField );
+    wSenderPoolFieldField.addModifyListener( lsMod );
+    wSenderPoolFieldField.setLayoutData( rightColumn( wSenderPoolField ) );
+
+    addLabel( smsGroup, "SmsSenderDialog.StickySenders.Label", wSenderPoolFieldField );
+    wStickySendersField = addCheckbox( smsGroup, wSenderPoolFieldField );
+
+    // Phone number normalization label/fields.
+    addLabel( smsGroup, "SmsSenderDialog.NormalizeNumbers.Label", wStickySendersField );
+    wNormalizeNumbersField = addCheckbox( smsGroup, wStickySendersField );
+    wNormalizeNumbersField.addSelectionListener( new SelectionAdapter() {
+      public void widgetSelected( SelectionEvent e ) {
+        setNormalizeNumbersEnabled();
+      }
+    } );
+
+    addLabel( smsGroup, "SmsSenderDialog.DefaultRegion.Label", wNormalizeNumbersField );
+    wDefaultRegionField = new TextVar( transMeta, smsGroup, SWT.SINGLE | SWT.LEFT | SWT.BORDER );
+    props.setLook( wDefaultRegionField );
+    wDefaultRegionField.addModifyListener( lsMod );
+    wDefaultRegionField.setLayoutData( rightColumn( wNormalizeNumbersField ) );
+
+    addLabel( smsGroup, "SmsSenderDialog.NumberCacheSize.Label", wDefaultRegionField );
+    wNumberCacheSizeField = new TextVar( transMeta, smsGroup, SWT.SINGLE | SWT.LEFT | SWT.BORDER );
+    props.setLook( wNumberCacheSizeField );
+    wNumberCacheSizeField.addModifyListener( lsMod );
+    wNumberCacheSizeField.setLayoutData( rightColumn( wDefaultRegionField ) );
+
     // Group for output fields.
     outputGroup = new Group( contentComposite, SWT.SHADOW_ETCHED_IN );
     outputGroup.setText( BaseMessages.getString( PKG, "SmsSenderDialog.Output.GroupText" ) );
@@ -433,6 +610,239 @@ public class SmsSenderDialog extends BaseStepDialog implements StepDialogInterfa
       .result();
     wErrorMessageField.setLayoutData( fdTransformation9 );
 
+    // SMS attempts label/field
+    addLabel( outputGroup, "SmsSenderDialog.Attempts.Label", wErrorMessageField );
+    wAttemptsField = addTextField( outputGroup, wErrorMessageField );
+
+    // SMS message SID label/field
+    addLabel( outputGroup, "SmsSenderDialog.MessageSid.Label", wAttemptsField );
+    wMessageSidField = addTextField( outputGroup, wAttemptsField );
+    addLabel( outputGroup, "SmsSenderDialog.Encoding.Label", wMessageSidField );
+    wEncodingField = addTextField( outputGroup, wMessageSidField );
+    addLabel( outputGroup, "SmsSenderDialog.Segments.Label", wEncodingField );
+    wSegmentsField = addTextField( outputGroup, wEncodingField );
+    addLabel( outputGroup, "SmsSenderDialog.EstimatedCost.Label", wSegmentsField );
+    wEstimatedCostField = addTextField( outputGroup, wSegmentsField );
+
+    // Group for sending options.
+    sendingGroup = addGroup( "SmsSenderDialog.Sending.GroupText", outputGroup );
+
+    // Asynchronous sending label/field
+    wAsyncSendLabel = addLabel( sendingGroup, "SmsSenderDialog.AsyncSend.Label", null );
+    wAsyncSendField = addCheckbox( sendingGroup, null );
+    wAsyncSendField.addSelectionListener( new SelectionAdapter() {
+      public void widgetSelected( SelectionEvent e ) {
+        setAsyncSendEnabled();
+      }
+    } );
+
+    // Max. messages in flight label/field
+    wMaxInFlightLabel = addLabel( sendingGroup, "SmsSenderDialog.MaxInFlight.Label", wAsyncSendField );
+    wMaxInFlightField = addTextField( sendingGroup, wAsyncSendField );
+
+    // Status callback URL label/field
+    addLabel( sendingGroup, "SmsSenderDialog.StatusCallbackUrl.Label", wMaxInFlightField );
+    wStatusCallbackUrlField = new TextVar( transMeta, sendingGroup, SWT.SINGLE | SWT.LEFT | SWT.BORDER );
+    props.setLook( wStatusCallbackUrlField );
+    wStatusCallbackUrlField.addModifyListener( lsMod );
+    wStatusCallbackUrlField.setLayoutData( rightColumn( wMaxInFlightField ) );
+
+    // Group for HTTP connection options.
+    connectionGroup = addGroup( "SmsSenderDialog.Connection.GroupText", sendingGroup );
+    addLabel( connectionGroup, "SmsSenderDialog.MaxConnections.Label", null );
+    wMaxConnectionsField = addTextField( connectionGroup, null );
+    addLabel( connectionGroup, "SmsSenderDialog.IdleConnectionTimeout.Label", wMaxConnectionsField );
+    wIdleConnectionTimeoutField = addTextField( connectionGroup, wMaxConnectionsField );
+    addLabel( connectionGroup, "SmsSenderDialog.ConnectTimeout.Label", wIdleConnectionTimeoutField );
+    wConnectTimeoutField = addTextField( connectionGroup, wIdleConnectionTimeoutField );
+    addLabel( connectionGroup, "SmsSenderDialog.ReadTimeout.Label", wConnectTimeoutField );
+    wReadTimeoutField = addTextField( connectionGroup, wConnectTimeoutField );
+    addLabel( connectionGroup, "SmsSenderDialog.ApiBaseUrl.Label", wReadTimeoutField );
+    wApiBaseUrlField = new TextVar( transMeta, connectionGroup, SWT.SINGLE | SWT.LEFT | SWT.BORDER );
+    props.setLook( wApiBaseUrlField );
+    wApiBaseUrlField.addModifyListener( lsMod );
+    wApiBaseUrlField.setLayoutData( rightColumn( wReadTimeoutField ) );
+
+    // Group for rate limits.
+    rateLimitGroup = addGroup( "SmsSenderDialog.RateLimit.GroupText", connectionGroup );
+    addLabel( rateLimitGroup, "SmsSenderDialog.SenderRateLimit.Label", null );
+    wSenderRateLimitField = addTextField( rateLimitGroup, null );
+    addLabel( rateLimitGroup, "SmsSenderDialog.AccountRateLimit.Label", wSenderRateLimitField );
+    wAccountRateLimitField = addTextField( rateLimitGroup, wSenderRateLimitField );
+
+    // Group for retries.
+    retryGroup = addGroup( "SmsSenderDialog.Retry.GroupText", rateLimitGroup );
+    addLabel( retryGroup, "SmsSenderDialog.MaxAttempts.Label", null );
+    wMaxAttemptsField = addTextField( retryGroup, null );
+    addLabel( retryGroup, "SmsSenderDialog.RetryBaseDelay.Label", wMaxAttemptsField );
+    wRetryBaseDelayField = addTextField( retryGroup, wMaxAttemptsField );
+    addLabel( retryGroup, "SmsSenderDialog.RetryMaxDelay.Label", wRetryBaseDelayField );
+    wRetryMaxDelayField = addTextField( retryGroup, wRetryBaseDelayField );
+    addLabel( retryGroup, "SmsSenderDialog.RetryJitter.Label", wRetryMaxDelayField );
+    wRetryJitterField = addTextField( retryGroup, wRetryMaxDelayField );
+    Label retryableCodesLabel = addLabel( retryGroup, "SmsSenderDialog.RetryableCodes.Label", wRetryJitterField );
+    wRetryableCodesField = addTextField( retryGroup, wRetryJitterField );
+    String retryableCodesTooltip = BaseMessages.getString( PKG, "SmsSenderDialog.RetryableCodes.Tooltip" );
+    retryableCodesLabel.setToolTipText( retryableCodesTooltip );
+    wRetryableCodesField.setToolTipText( retryableCodesTooltip );
+
+    // Group for the circuit breaker.
+    circuitBreakerGroup = addGroup( "SmsSenderDialog.CircuitBreaker.GroupText", retryGroup );
+    addLabel( circuitBreakerGroup, "SmsSenderDialog.CircuitBreakerEnabled.Label", null );
+    wCircuitBreakerEnabledField = addCheckbox( circuitBreakerGroup, null );
+    wCircuitBreakerEnabledField.addSelectionListener( new SelectionAdapter() {
+      public void widgetSelected( SelectionEvent e ) {
+        setCircuitBreakerEnabled();
+      }
+    } );
+    addLabel( circuitBreakerGroup, "SmsSenderDialog.FailureRateThreshold.Label", wCircuitBreakerEnabledField );
+    wFailureRateThresholdField = addTextField( circuitBreakerGroup, wCircuitBreakerEnabledField );
+    addLabel( circuitBreakerGroup, "SmsSenderDialog.CircuitBreakerWindow.Label", wFailureRateThresholdField );
+    wCircuitBreakerWindowField = addTextField( circuitBreakerGroup, wFailureRateThresholdField );
+    addLabel( circuitBreakerGroup, "SmsSenderDialog.OpenDuration.Label", wCircuitBreakerWindowField );
+    wOpenDurationField = addTextField( circuitBreakerGroup, wCircuitBreakerWindowField );
+    addLabel( circuitBreakerGroup, "SmsSenderDialog.HalfOpenProbes.Label", wOpenDurationField );
+    wHalfOpenProbesField = addTextField( circuitBreakerGroup, wOpenDurationField );
+    addLabel( circuitBreakerGroup, "SmsSenderDialog.PauseWhenOpen.Label", wHalfOpenProbesField );
+    wPauseWhenOpenField = addCheckbox( circuitBreakerGroup, wHalfOpenProbesField );
+
+    // Group for the send journal.
+    journalGroup = addGroup( "SmsSenderDialog.Journal.GroupText", circuitBreakerGroup );
+    addLabel( journalGroup, "SmsSenderDialog.JournalFile.Label", null );
+    wJournalFileField = new TextVar( transMeta, journalGroup, SWT.SINGLE | SWT.LEFT | SWT.BORDER );
+    props.setLook( wJournalFileField );
+    wJournalFileField.addModifyListener( lsMod );
+    wJournalFileField.setLayoutData( rightColumn( null ) );
+    addLabel( journalGroup, "SmsSenderDialog.IdempotencyField.Label", wJournalFileField );
+    wIdempotencyField = addComboField( journalGroup, wJournalFileField );
+    addLabel( journalGroup, "SmsSenderDialog.JournalSyncInterval.Label", wIdempotencyField );
+    wJournalSyncIntervalField = addTextField( journalGroup, wIdempotencyField );
+
+    // Group for the checkpoint of the run.
+    checkpointGroup = addGroup( "SmsSenderDialog.Checkpoint.GroupText", journalGroup );
+    addLabel( checkpointGroup, "SmsSenderDialog.CheckpointFile.Label", null );
+    wCheckpointFileField = new TextVar( transMeta, checkpointGroup, SWT.SINGLE | SWT.LEFT | SWT.BORDER );
+    props.setLook( wCheckpointFileField );
+    wCheckpointFileField.addModifyListener( lsMod );
+    wCheckpointFileField.setLayoutData( rightColumn( null ) );
+    addLabel( checkpointGroup, "SmsSenderDialog.RunId.Label", wCheckpointFileField );
+    wRunIdField = new TextVar( transMeta, checkpointGroup, SWT.SINGLE | SWT.LEFT | SWT.BORDER );
+    props.setLook( wRunIdField );
+    wRunIdField.addModifyListener( lsMod );
+    wRunIdField.setLayoutData( rightColumn( wCheckpointFileField ) );
+    addLabel( checkpointGroup, "SmsSenderDialog.CheckpointKeyField.Label", wRunIdField );
+    wCheckpointKeyField = addComboField( checkpointGroup, wRunIdField );
+    addLabel( checkpointGroup, "SmsSenderDialog.CheckpointInterval.Label", wCheckpointKeyField );
+    wCheckpointIntervalField = addTextField( checkpointGroup, wCheckpointKeyField );
+    addLabel( checkpointGroup, "SmsSenderDialog.CheckpointMaxTracked.Label", wCheckpointIntervalField );
+    wCheckpointMaxTrackedField = addTextField( checkpointGroup, wCheckpointIntervalField );
+
+    // Group for duplicates.
+    deduplicationGroup = addGroup( "SmsSenderDialog.Deduplication.GroupText", checkpointGroup );
+    addLabel( deduplicationGroup, "SmsSenderDialog.Deduplicate.Label", null );
+    wDeduplicateField = addCheckbox( deduplicationGroup, null );
+    wDeduplicateField.addSelectionListener( new SelectionAdapter() {
+      public void widgetSelected( SelectionEvent e ) {
+        setDeduplicateEnabled();
+      }
+    } );
+    addLabel( deduplicationGroup, "SmsSenderDialog.DedupWindow.Label", wDeduplicateField );
+    wDedupWindowField = addTextField( deduplicationGroup, wDeduplicateField );
+    addLabel( deduplicationGroup, "SmsSenderDialog.DedupExpectedMessages.Label", wDedupWindowField );
+    wDedupExpectedMessagesField = addTextField( deduplicationGroup, wDedupWindowField );
+    addLabel( deduplicationGroup, "SmsSenderDialog.DedupFalsePositiveRate.Label", wDedupExpectedMessagesField );
+    wDedupFalsePositiveRateField = addTextField( deduplicationGroup, wDedupExpectedMessagesField );
+
+    // Group for the numbers not to text.
+    suppressionGroup = addGroup( "SmsSenderDialog.Suppression.GroupText", deduplicationGroup );
+    addLabel( suppressionGroup, "SmsSenderDialog.SuppressionFile.Label", null );
+    wSuppressionFileField = new TextVar( transMeta, suppressionGroup, SWT.SINGLE | SWT.LEFT | SWT.BORDER );
+    props.setLook( wSuppressionFileField );
+    wSuppressionFileField.addModifyListener( lsMod );
+    wSuppressionFileField.setLayoutData( rightColumn( null ) );
+    addLabel( suppressionGroup, "SmsSenderDialog.SuppressionStep.Label", wSuppressionFileField );
+    wSuppressionStepField = addComboField( suppressionGroup, wSuppressionFileField );
+    wSuppressionStepField.addSelectionListener( new SelectionAdapter() {
+      public void widgetSelected( SelectionEvent e ) {
+        setSuppressionFields();
+      }
+    } );
+    addLabel( suppressionGroup, "SmsSenderDialog.SuppressionField.Label", wSuppressionStepField );
+    wSuppressionFieldField = addComboField( suppressionGroup, wSuppressionStepField );
+
+    // Group for the subaccounts messages are spread over.
+    subaccountsGroup = addGroup( "SmsSenderDialog.Subaccounts.GroupText", suppressionGroup );
+    addLabel( subaccountsGroup, "SmsSenderDialog.ShardKeyField.Label", null );
+    wShardKeyField = new CCombo( subaccountsGroup, SWT.BORDER );
+    props.setLook( wShardKeyField );
+    wShardKeyField.addModifyListener( lsMod );
+    wShardKeyField.setLayoutData( rightColumn( null ) );
+
+    ColumnInfo[] subaccountColumns = new ColumnInfo[] {
+      new ColumnInfo( BaseMessages.getString( PKG, "SmsSenderDialog.SubaccountSid.Column" ),
+        ColumnInfo.COLUMN_TYPE_TEXT, false ),
+      new ColumnInfo( BaseMessages.getString( PKG, "SmsSenderDialog.SubaccountAuthToken.Column" ),
+        ColumnInfo.COLUMN_TYPE_TEXT, false ) };
+    subaccountColumns[ 0 ].setUsingVariables( true );
+    subaccountColumns[ 1 ].setUsingVariables( true );
+    int subaccountRows = meta.getSubaccountSids() == null ? 1 : Math.max( 1, meta.getSubaccountSids().length );
+    wSubaccounts = new TableView( transMeta, subaccountsGroup, SWT.BORDER | SWT.FULL_SELECTION | SWT.MULTI,
+      subaccountColumns, subaccountRows, lsMod, props );
+    FormData subaccountsData = new FormDataBuilder().fullWidth().top( wShardKeyField, ELEMENT_SPACING ).result();
+    subaccountsData.height = 120;
+    wSubaccounts.setLayoutData( subaccountsData );
+
+    // Group for segment options.
+    segmentsGroup = addGroup( "SmsSenderDialog.Segments.GroupText", subaccountsGroup );
+    addLabel( segmentsGroup, "SmsSenderDialog.PricePerSegment.Label", null );
+    wPricePerSegmentField = addTextField( segmentsGroup, null );
+    addLabel( segmentsGroup, "SmsSenderDialog.MaxSegments.Label", wPricePerSegmentField );
+    wMaxSegmentsField = addTextField( segmentsGroup, wPricePerSegmentField );
+    addLabel( segmentsGroup, "SmsSenderDialog.DryRun.Label", wMaxSegmentsField );
+    wDryRunField = addCheckbox( segmentsGroup, wMaxSegmentsField );
+
+    // Group for the local time window messages may be sent in.
+    sendWindowGroup = addGroup( "SmsSenderDialog.SendWindow.GroupText", segmentsGroup );
+    addLabel( sendWindowGroup, "SmsSenderDialog.SendWindowStart.Label", null );
+    wSendWindowStartField = addTextField( sendWindowGroup, null );
+    addLabel( sendWindowGroup, "SmsSenderDialog.SendWindowEnd.Label", wSendWindowStartField );
+    wSendWindowEndField = addTextField( sendWindowGroup, wSendWindowStartField );
+    addLabel( sendWindowGroup, "SmsSenderDialog.TimeZoneField.Label", wSendWindowEndField );
+    wTimeZoneField = addComboField( sendWindowGroup, wSendWindowEndField );
+    addLabel( sendWindowGroup, "SmsSenderDialog.DefaultTimeZone.Label", wTimeZoneField );
+    wDefaultTimeZoneField = addTextField( sendWindowGroup, wTimeZoneField );
+    addLabel( sendWindowGroup, "SmsSenderDialog.DelayMemoryRows.Label", wDefaultTimeZoneField );
+    wDelayMemoryRowsField = addTextField( sendWindowGroup, wDefaultTimeZoneField );
+    addLabel( sendWindowGroup, "SmsSenderDialog.DelayDirectory.Label", wDelayMemoryRowsField );
+    wDelayDirectoryField = new TextVar( transMeta, sendWindowGroup, SWT.SINGLE | SWT.LEFT | SWT.BORDER );
+    props.setLook( wDelayDirectoryField );
+    wDelayDirectoryField.addModifyListener( lsMod );
+    wDelayDirectoryField.setLayoutData( rightColumn( wDelayMemoryRowsField ) );
+
+    // Group for the backlog of input rows.
+    backlogGroup = addGroup( "SmsSenderDialog.Backlog.GroupText", sendWindowGroup );
+    addLabel( backlogGroup, "SmsSenderDialog.Backlog.Label", null );
+    wBacklogField = addCheckbox( backlogGroup, null );
+    wBacklogField.addSelectionListener( new SelectionAdapter() {
+      public void widgetSelected( SelectionEvent e ) {
+        setBacklogEnabled();
+      }
+    } );
+    addLabel( backlogGroup, "SmsSenderDialog.BacklogMemoryRows.Label", wBacklogField );
+    wBacklogMemoryRowsField = addTextField( backlogGroup, wBacklogField );
+    addLabel( backlogGroup, "SmsSenderDialog.BacklogDiskLimit.Label", wBacklogMemoryRowsField );
+    wBacklogDiskLimitField = addTextField( backlogGroup, wBacklogMemoryRowsField );
+    addLabel( backlogGroup, "SmsSenderDialog.BacklogDirectory.Label", wBacklogDiskLimitField );
+    wBacklogDirectoryField = new TextVar( transMeta, backlogGroup, SWT.SINGLE | SWT.LEFT | SWT.BORDER );
+    props.setLook( wBacklogDirectoryField );
+    wBacklogDirectoryField.addModifyListener( lsMod );
+    wBacklogDirectoryField.setLayoutData( rightColumn( wBacklogDiskLimitField ) );
+    addLabel( backlogGroup, "SmsSenderDialog.PriorityField.Label", wBacklogDirectoryField );
+    wPriorityField = addComboField( backlogGroup, wBacklogDirectoryField );
+    wPriorityField.addModifyListener( e -> setBacklogEnabled() );
+    addLabel( backlogGroup, "SmsSenderDialog.PriorityLevels.Label", wPriorityField );
+    wPriorityLevelsField = addTextField( backlogGroup, wPriorityField );
+
     // Cancel, action and OK buttons for the bottom of the window.
     wCancel = new Button( shell, SWT.PUSH );
     wCancel.setText( BaseMessages.getString( PKG, "System.Button.Cancel" ) );
@@ -532,6 +942,15 @@ public class SmsSenderDialog extends BaseStepDialog implements StepDialogInterfa
     wSuccessfulToField.setText( Const.NVL( meta.getSuccessfulStepname( ), "" ) );
     wFailedToField.setText( Const.NVL( meta.getFailedStepname( ), "" ) );
 
+    // Add previous steps to suppression list combo box options.
+    if ( stepinfo != null ) {
+      transMeta.findPreviousSteps( stepinfo, true ).forEach(
+        stepMeta -> wSuppressionStepField.add( stepMeta.getName() ) );
+    }
+    wSuppressionStepField.setText( Const.NVL( meta.getSuppressionStepname(), "" ) );
+    setSuppressionFields();
+    wSuppressionFieldField.setText( Const.NVL( meta.getSuppressionField(), "" ) );
+
     // Add previous fields to transfer combo box options.
     try {
       String[] prevFields = transMeta.getPrevStepFields( stepname ).getFieldNames();
@@ -539,6 +958,13 @@ public class SmsSenderDialog extends BaseStepDialog implements StepDialogInterfa
         wToField.add( field );
         wFromField.add( field );
         wMessageField.add( field );
+        wMessagingServiceSidFieldField.add( field );
+        wSenderPoolFieldField.add( field );
+        wShardKeyField.add( field );
+        wTimeZoneField.add( field );
+        wPriorityField.add( field );
+        wCheckpointKeyField.add( field );
+        wIdempotencyField.add( field );
       } );
     } catch ( KettleStepException e ) {
       e.printStackTrace();
@@ -567,6 +993,16 @@ public class SmsSenderDialog extends BaseStepDialog implements StepDialogInterfa
     if ( messageField != null ) {
       wMessageField.setText( messageField );
     }
+    wMessageTemplateField.setText( Const.NVL( meta.getMessageTemplate(), "" ) );
+    wMessagingServiceSidField.setText( Const.NVL( meta.getMessagingServiceSid(), "" ) );
+    wMessagingServiceSidFieldField.setText( Const.NVL( meta.getMessagingServiceSidField(), "" ) );
+    wSenderPoolField.setText( Const.NVL( meta.getSenderPool(), "" ) );
+    wSenderPoolFieldField.setText( Const.NVL( meta.getSenderPoolField(), "" ) );
+    wStickySendersField.setSelection( meta.isStickySenders() );
+    wNormalizeNumbersField.setSelection( meta.isNormalizeNumbers() );
+    wDefaultRegionField.setText( Const.NVL( meta.getDefaultRegion(), "" ) );
+    wNumberCacheSizeField.setText( Const.NVL( meta.getNumberCacheSize(), "" ) );
+    setNormalizeNumbersEnabled();
 
     // Get output fields
     String statusField = meta.getStatusField();
@@ -584,6 +1020,91 @@ public class SmsSenderDialog extends BaseStepDialog implements StepDialogInterfa
     if ( errorMessageField != null ) {
       wErrorMessageField.setText( errorMessageField );
     }
+    wAttemptsField.setText( Const.NVL( meta.getAttemptsField(), "" ) );
+    wMessageSidField.setText( Const.NVL( meta.getMessageSidField(), "" ) );
+    wEncodingField.setText( Const.NVL( meta.getEncodingField(), "" ) );
+    wSegmentsField.setText( Const.NVL( meta.getSegmentsField(), "" ) );
+    wEstimatedCostField.setText( Const.NVL( meta.getEstimatedCostField(), "" ) );
+    wPricePerSegmentField.setText( Const.NVL( meta.getPricePerSegment(), "" ) );
+    wMaxSegmentsField.setText( Const.NVL( meta.getMaxSegments(), "" ) );
+    wDryRunField.setSelection( meta.isDryRun() );
+    wSendWindowStartField.setText( Const.NVL( meta.getSendWindowStart(), "" ) );
+    wSendWindowEndField.setText( Const.NVL( meta.getSendWindowEnd(), "" ) );
+    wTimeZoneField.setText( Const.NVL( meta.getTimeZoneField(), "" ) );
+    wDefaultTimeZoneField.setText( Const.NVL( meta.getDefaultTimeZone(), "" ) );
+    wDelayMemoryRowsField.setText( Const.NVL( meta.getDelayMemoryRows(), "" ) );
+    wDelayDirectoryField.setText( Const.NVL( meta.getDelayDirectory(), "" ) );
+    wBacklogField.setSelection( meta.isBacklog() );
+    wBacklogMemoryRowsField.setText( Const.NVL( meta.getBacklogMemoryRows(), "" ) );
+    wBacklogDiskLimitField.setText( Const.NVL( meta.getBacklogDiskLimit(), "" ) );
+    wBacklogDirectoryField.setText( Const.NVL( meta.getBacklogDirectory(), "" ) );
+    wPriorityField.setText( Const.NVL( meta.getPriorityField(), "" ) );
+    wPriorityLevelsField.setText( Const.NVL( meta.getPriorityLevels(), "" ) );
+    setBacklogEnabled();
+
+    // Get sending options.
+    wAsyncSendField.setSelection( meta.isAsyncSend() );
+    wMaxInFlightField.setText( Const.NVL( meta.getMaxInFlight(), "" ) );
+    wStatusCallbackUrlField.setText( Const.NVL( meta.getStatusCallbackUrl(), "" ) );
+    setAsyncSendEnabled();
+
+    // Get connection options.
+    wMaxConnectionsField.setText( Const.NVL( meta.getMaxConnections(), "" ) );
+    wIdleConnectionTimeoutField.setText( Const.NVL( meta.getIdleConnectionTimeout(), "" ) );
+    wConnectTimeoutField.setText( Const.NVL( meta.getConnectTimeout(), "" ) );
+    wReadTimeoutField.setText( Const.NVL( meta.getReadTimeout(), "" ) );
+    wApiBaseUrlField.setText( Const.NVL( meta.getApiBaseUrl(), "" ) );
+
+    // Get rate limits.
+    wSenderRateLimitField.setText( Const.NVL( meta.getSenderRateLimit(), "" ) );
+    wAccountRateLimitField.setText( Const.NVL( meta.getAccountRateLimit(), "" ) );
+
+    // Get retries.
+    wMaxAttemptsField.setText( Const.NVL( meta.getMaxAttempts(), "" ) );
+    wRetryBaseDelayField.setText( Const.NVL( meta.getRetryBaseDelay(), "" ) );
+    wRetryMaxDelayField.setText( Const.NVL( meta.getRetryMaxDelay(), "" ) );
+    wRetryJitterField.setText( Const.NVL( meta.getRetryJitter(), "" ) );
+    wRetryableCodesField.setText( Const.NVL( meta.getRetryableCodes(), "" ) );
+
+    // Get circuit breaker.
+    wCircuitBreakerEnabledField.setSelection( meta.isCircuitBreakerEnabled() );
+    wFailureRateThresholdField.setText( Const.NVL( meta.getFailureRateThreshold(), "" ) );
+    wCircuitBreakerWindowField.setText( Const.NVL( meta.getCircuitBreakerWindow(), "" ) );
+    wOpenDurationField.setText( Const.NVL( meta.getOpenDuration(), "" ) );
+    wHalfOpenProbesField.setText( Const.NVL( meta.getHalfOpenProbes(), "" ) );
+    wPauseWhenOpenField.setSelection( meta.isPauseWhenOpen() );
+    setCircuitBreakerEnabled();
+
+    // Get send journal.
+    wJournalFileField.setText( Const.NVL( meta.getJournalFile(), "" ) );
+    wSuppressionFileField.setText( Const.NVL( meta.getSuppressionFile(), "" ) );
+    wIdempotencyField.setText( Const.NVL( meta.getIdempotencyField(), "" ) );
+    wJournalSyncIntervalField.setText( Const.NVL( meta.getJournalSyncInterval(), "" ) );
+
+    // Get checkpoint.
+    wCheckpointFileField.setText( Const.NVL( meta.getCheckpointFile(), "" ) );
+    wRunIdField.setText( Const.NVL( meta.getRunId(), "" ) );
+    wCheckpointKeyField.setText( Const.NVL( meta.getCheckpointKeyField(), "" ) );
+    wCheckpointIntervalField.setText( Const.NVL( meta.getCheckpointInterval(), "" ) );
+    wCheckpointMaxTrackedField.setText( Const.NVL( meta.getCheckpointMaxTracked(), "" ) );
+
+    // Get duplicates.
+    wDeduplicateField.setSelection( meta.isDeduplicate() );
+    wDedupWindowField.setText( Const.NVL( meta.getDedupWindow(), "" ) );
+    wDedupExpectedMessagesField.setText( Const.NVL( meta.getDedupExpectedMessages(), "" ) );
+    wDedupFalsePositiveRateField.setText( Const.NVL( meta.getDedupFalsePositiveRate(), "" ) );
+    wShardKeyField.setText( Const.NVL( meta.getShardKeyField(), "" ) );
+    String[] subaccountSids = meta.getSubaccountSids();
+    if ( subaccountSids != null ) {
+      for ( int i = 0; i < subaccountSids.length; i++ ) {
+        TableItem item = wSubaccounts.table.getItem( i );
+        item.setText( 1, Const.NVL( subaccountSids[ i ], "" ) );
+        item.setText( 2, Const.NVL( meta.getSubaccountAuthTokens()[ i ], "" ) );
+      }
+    }
+    wSubaccounts.setRowNums();
+    wSubaccounts.optWidth( true );
+    setDeduplicateEnabled();
   }
 
   /**
@@ -598,16 +1119,219 @@ public class SmsSenderDialog extends BaseStepDialog implements StepDialogInterfa
     targetStreams.get( 1 ).setStepMeta( transMeta.findStep( failedStream ) );
     meta.setSuccessfulStepname( successfulStream );
     meta.setFailedStepname( failedStream );
+    String suppressionStream = wSuppressionStepField.getText();
+    meta.getStepIOMeta().getInfoStreams().get( 0 ).setStepMeta( transMeta.findStep( suppressionStream ) );
+    meta.setSuppressionStepname( suppressionStream );
 
     meta.setAccountSid( wAccountSidField.getText() );
     meta.setAuthToken( wAuthTokenField.getText() );
     meta.setToField( wToField.getText() );
     meta.setFromField( wFromField.getText() );
     meta.setMessageField( wMessageField.getText() );
+    meta.setMessageTemplate( wMessageTemplateField.getText() );
+    meta.setMessagingServiceSid( wMessagingServiceSidField.getText() );
+    meta.setMessagingServiceSidField( wMessagingServiceSidFieldField.getText() );
+    meta.setSenderPool( wSenderPoolField.getText() );
+    meta.setSenderPoolField( wSenderPoolFieldField.getText() );
+    meta.setStickySenders( wStickySendersField.getSelection() );
+    meta.setNormalizeNumbers( wNormalizeNumbersField.getSelection() );
+    meta.setDefaultRegion( wDefaultRegionField.getText() );
+    meta.setNumberCacheSize( wNumberCacheSizeField.getText() );
     meta.setStatusField( wStatusField.getText() );
     meta.setPriceField( wPriceField.getText() );
     meta.setErrorCodeField( wErrorCodeField.getText() );
     meta.setErrorMessageField( wErrorMessageField.getText() );
+    meta.setAttemptsField( wAttemptsField.getText() );
+    meta.setMessageSidField( wMessageSidField.getText() );
+    meta.setEncodingField( wEncodingField.getText() );
+    meta.setSegmentsField( wSegmentsField.getText() );
+    meta.setEstimatedCostField( wEstimatedCostField.getText() );
+    meta.setPricePerSegment( wPricePerSegmentField.getText() );
+    meta.setMaxSegments( wMaxSegmentsField.getText() );
+    meta.setDryRun( wDryRunField.getSelection() );
+    meta.setSendWindowStart( wSendWindowStartField.getText() );
+    meta.setSendWindowEnd( wSendWindowEndField.getText() );
+    meta.setTimeZoneField( wTimeZoneField.getText() );
+    meta.setDefaultTimeZone( wDefaultTimeZoneField.getText() );
+    meta.setDelayMemoryRows( wDelayMemoryRowsField.getText() );
+    meta.setDelayDirectory( wDelayDirectoryField.getText() );
+    meta.setBacklog( wBacklogField.getSelection() );
+    meta.setBacklogMemoryRows( wBacklogMemoryRowsField.getText() );
+    meta.setBacklogDiskLimit( wBacklogDiskLimitField.getText() );
+    meta.setBacklogDirectory( wBacklogDirectoryField.getText() );
+    meta.setPriorityField( wPriorityField.getText() );
+    meta.setPriorityLevels( wPriorityLevelsField.getText() );
+    meta.setAsyncSend( wAsyncSendField.getSelection() );
+    meta.setMaxInFlight( wMaxInFlightField.getText() );
+    meta.setStatusCallbackUrl( wStatusCallbackUrlField.getText() );
+    meta.setMaxConnections( wMaxConnectionsField.getText() );
+    meta.setIdleConnectionTimeout( wIdleConnectionTimeoutField.getText() );
+    meta.setConnectTimeout( wConnectTimeoutField.getText() );
+    meta.setReadTimeout( wReadTimeoutField.getText() );
+    meta.setApiBaseUrl( wApiBaseUrlField.getText() );
+    meta.setSenderRateLimit( wSenderRateLimitField.getText() );
+    meta.setAccountRateLimit( wAccountRateLimitField.getText() );
+    meta.setMaxAttempts( wMaxAttemptsField.getText() );
+    meta.setRetryBaseDelay( wRetryBaseDelayField.getText() );
+    meta.setRetryMaxDelay( wRetryMaxDelayField.getText() );
+    meta.setRetryJitter( wRetryJitterField.getText() );
+    meta.setRetryableCodes( wRetryableCodesField.getText() );
+    meta.setCircuitBreakerEnabled( wCircuitBreakerEnabledField.getSelection() );
+    meta.setFailureRateThreshold( wFailureRateThresholdField.getText() );
+    meta.setCircuitBreakerWindow( wCircuitBreakerWindowField.getText() );
+    meta.setOpenDuration( wOpenDurationField.getText() );
+    meta.setHalfOpenProbes( wHalfOpenProbesField.getText() );
+    meta.setPauseWhenOpen( wPauseWhenOpenField.getSelection() );
+    meta.setJournalFile( wJournalFileField.getText() );
+    meta.setSuppressionFile( wSuppressionFileField.getText() );
+    meta.setSuppressionField( wSuppressionFieldField.getText() );
+    meta.setIdempotencyField( wIdempotencyField.getText() );
+    meta.setJournalSyncInterval( wJournalSyncIntervalField.getText() );
+    meta.setCheckpointFile( wCheckpointFileField.getText() );
+    meta.setRunId( wRunIdField.getText() );
+    meta.setCheckpointKeyField( wCheckpointKeyField.getText() );
+    meta.setCheckpointInterval( wCheckpointIntervalField.getText() );
+    meta.setCheckpointMaxTracked( wCheckpointMaxTrackedField.getText() );
+    meta.setDeduplicate( wDeduplicateField.getSelection() );
+    meta.setDedupWindow( wDedupWindowField.getText() );
+    meta.setDedupExpectedMessages( wDedupExpectedMessagesField.getText() );
+    meta.setDedupFalsePositiveRate( wDedupFalsePositiveRateField.getText() );
+    meta.setShardKeyField( wShardKeyField.getText() );
+    int subaccounts = wSubaccounts.nrNonEmpty();
+    meta.allocateSubaccounts( subaccounts );
+    for ( int i = 0; i < subaccounts; i++ ) {
+      TableItem item = wSubaccounts.getNonEmpty( i );
+      meta.getSubaccountSids()[ i ] = item.getText( 1 );
+      meta.getSubaccountAuthTokens()[ i ] = item.getText( 2 );
+    }
+  }
+
+  private void setAsyncSendEnabled() {
+    wMaxInFlightLabel.setEnabled( wAsyncSendField.getSelection() );
+    wMaxInFlightField.setEnabled( wAsyncSendField.getSelection() );
+  }
+
+  private void setCircuitBreakerEnabled() {
+    boolean enabled = wCircuitBreakerEnabledField.getSelection();
+    wFailureRateThresholdField.setEnabled( enabled );
+    wCircuitBreakerWindowField.setEnabled( enabled );
+    wOpenDurationField.setEnabled( enabled );
+    wHalfOpenProbesField.setEnabled( enabled );
+    wPauseWhenOpenField.setEnabled( enabled );
+  }
+
+  private void setNormalizeNumbersEnabled() {
+    boolean enabled = wNormalizeNumbersField.getSelection();
+    wDefaultRegionField.setEnabled( enabled );
+    wNumberCacheSizeField.setEnabled( enabled );
+  }
+
+  /**
+   * Lists the fields of the suppression step in the number field options.
+   */
+  private void setSuppressionFields() {
+    String field = wSuppressionFieldField.getText();
+    wSuppressionFieldField.removeAll();
+    if ( !Utils.isEmpty( wSuppressionStepField.getText() ) ) {
+      try {
+        Arrays.stream( transMeta.getStepFields( wSuppressionStepField.getText() ).getFieldNames() )
+          .forEach( wSuppressionFieldField::add );
+      } catch ( KettleStepException e ) {
+        e.printStackTrace();
+      }
+    }
+    wSuppressionFieldField.setText( field );
+  }
+
+  private void setBacklogEnabled() {
+    boolean enabled = wBacklogField.getSelection();
+    boolean prioritized = !Utils.isEmpty( wPriorityField.getText() );
+    // Priority lanes are held in memory even without the backlog.
+    wBacklogMemoryRowsField.setEnabled( enabled || prioritized );
+    wPriorityLevelsField.setEnabled( prioritized );
+    wBacklogDiskLimitField.setEnabled( enabled );
+    wBacklogDirectoryField.setEnabled( enabled );
+  }
+
+  private void setDeduplicateEnabled() {
+    boolean enabled = wDeduplicateField.getSelection();
+    wDedupWindowField.setEnabled( enabled );
+    wDedupExpectedMessagesField.setEnabled( enabled );
+    wDedupFalsePositiveRateField.setEnabled( enabled );
+  }
+
+  /**
+   * Adds a full width group to the content, below the given control.
+   */
+  private Group addGroup( String textKey, Control above ) {
+    Group group = new Group( contentComposite, SWT.SHADOW_ETCHED_IN );
+    group.setText( BaseMessages.getString( PKG, textKey ) );
+    FormLayout groupLayout = new FormLayout();
+    groupLayout.marginWidth = MARGIN_SIZE;
+    groupLayout.marginHeight = MARGIN_SIZE;
+    group.setLayout( groupLayout );
+    FormData groupLayoutData = new FormDataBuilder().fullWidth()
+      .top( above, MARGIN_SIZE )
+      .result();
+    group.setLayoutData( groupLayoutData );
+    props.setLook( group );
+    return group;
+  }
+
+  /**
+   * Adds a label to the left column of a group, below the given control or at the top if there is none.
+   */
+  private Label addLabel( Composite parent, String textKey, Control above ) {
+    Label label = new Label( parent, SWT.RIGHT );
+    props.setLook( label );
+    label.setText( BaseMessages.getString( PKG, textKey ) );
+    FormDataBuilder builder = new FormDataBuilder().left();
+    builder = above == null ? builder.top() : builder.top( above, ELEMENT_SPACING );
+    label.setLayoutData( builder.right( props.getMiddlePct(), -ELEMENT_SPACING ).result() );
+    return label;
+  }
+
+  /**
+   * Adds a text field to the right column of a group, below the given control or at the top if there is none.
+   */
+  private Text addTextField( Composite parent, Control above ) {
+    Text field = new Text( parent, SWT.BORDER );
+    props.setLook( field );
+    field.addModifyListener( lsMod );
+    field.setLayoutData( rightColumn( above ) );
+    return field;
+  }
+
+  /**
+   * Adds a field combo to the right column of a group, below the given control or at the top if there is none.
+   */
+  private CCombo addComboField( Composite parent, Control above ) {
+    CCombo field = new CCombo( parent, SWT.BORDER );
+    props.setLook( field );
+    field.addModifyListener( lsMod );
+    field.setLayoutData( rightColumn( above ) );
+    return field;
+  }
+
+  /**
+   * Adds a checkbox to the right column of a group, below the given control or at the top if there is none.
+   */
+  private Button addCheckbox( Composite parent, Control above ) {
+    Button field = new Button( parent, SWT.CHECK );
+    props.setLook( field );
+    field.addSelectionListener( new SelectionAdapter() {
+      public void widgetSelected( SelectionEvent e ) {
+        meta.setChanged();
+      }
+    } );
+    field.setLayoutData( rightColumn( above ) );
+    return field;
+  }
+
+  private FormData rightColumn( Control above ) {
+    FormDataBuilder builder = new FormDataBuilder().left( props.getMiddlePct(), 0 );
+    builder = above == null ? builder.top() : builder.top( above, ELEMENT_SPACING );
+    return builder.right( 100, 0 ).result();
   }
 
   private void cancel() {
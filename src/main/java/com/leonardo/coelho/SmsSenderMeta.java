@@ -20,6 +20,7 @@ package com.leonardo.coelho;
 
 import org.pentaho.di.core.annotations.Step;
 import org.pentaho.di.core.CheckResult;
+import org.pentaho.di.core.Const;
 import org.pentaho.di.core.CheckResultInterface;
 import org.pentaho.di.core.database.DatabaseMeta;
 import org.pentaho.di.core.exception.KettleException;
@@ -29,6 +30,7 @@ import org.pentaho.di.core.row.RowMetaInterface;
 import org.pentaho.di.core.row.ValueMetaInterface;
 import org.pentaho.di.core.row.value.ValueMetaDate;
 import org.pentaho.di.core.row.value.ValueMetaInteger;
+import org.pentaho.di.core.row.value.ValueMetaNumber;
 import org.pentaho.di.core.row.value.ValueMetaString;
 import org.pentaho.di.core.util.Utils;
 import org.pentaho.di.core.variables.VariableSpace;
@@ -73,6 +75,73 @@ public class SmsSenderMeta extends BaseStepMeta implements StepMetaInterface {
   private String priceField;
   private String errorCodeField;
   private String errorMessageField;
+  private boolean asyncSend;
+  private String maxInFlight;
+  private String maxConnections;
+  private String idleConnectionTimeout;
+  private String connectTimeout;
+  private String readTimeout;
+  private String senderRateLimit;
+  private String accountRateLimit;
+  private String attemptsField;
+  private String maxAttempts;
+  private String retryBaseDelay;
+  private String retryMaxDelay;
+  private String retryJitter;
+  private String retryableCodes;
+  private boolean circuitBreakerEnabled;
+  private String failureRateThreshold;
+  private String circuitBreakerWindow;
+  private String openDuration;
+  private String halfOpenProbes;
+  private boolean pauseWhenOpen;
+  private String journalFile;
+  private String idempotencyField;
+  private String journalSyncInterval;
+  private boolean deduplicate;
+  private String dedupWindow;
+  private String dedupExpectedMessages;
+  private String dedupFalsePositiveRate;
+  private String apiBaseUrl;
+  private String messageSidField;
+  private String statusCallbackUrl;
+  private String messagingServiceSid;
+  private String messagingServiceSidField;
+  private String senderPool;
+  private String senderPoolField;
+  private boolean stickySenders;
+  private String shardKeyField;
+  private String[] subaccountSids;
+  private String[] subaccountAuthTokens;
+  private String encodingField;
+  private String segmentsField;
+  private String estimatedCostField;
+  private String pricePerSegment;
+  private String maxSegments;
+  private boolean dryRun;
+  private boolean normalizeNumbers;
+  private String defaultRegion;
+  private String numberCacheSize;
+  private String suppressionFile;
+  private String suppressionField;
+  private String messageTemplate;
+  private String sendWindowStart;
+  private String sendWindowEnd;
+  private String timeZoneField;
+  private String defaultTimeZone;
+  private String delayMemoryRows;
+  private String delayDirectory;
+  private boolean backlog;
+  private String backlogMemoryRows;
+  private String backlogDiskLimit;
+  private String backlogDirectory;
+  private String priorityField;
+  private String priorityLevels;
+  private String runId;
+  private String checkpointFile;
+  private String checkpointKeyField;
+  private String checkpointInterval;
+  private String checkpointMaxTracked;
 
   public SmsSenderMeta() {
     super(); // allocate BaseStepMeta
@@ -94,8 +163,19 @@ public class SmsSenderMeta extends BaseStepMeta implements StepMetaInterface {
     return getTargetStepName( 1 );
   }
 
+  public void setSuppressionStepname( String suppressionStepname ) {
+    getStepIOMeta().getInfoStreams().get( 0 ).setSubject( suppressionStepname );
+  }
+
+  public String getSuppressionStepname() {
+    return getStepName( getStepIOMeta().getInfoStreams().get( 0 ) );
+  }
+
   private String getTargetStepName( int streamIndex ) {
-    StreamInterface stream = getStepIOMeta().getTargetStreams().get( streamIndex );
+    return getStepName( getStepIOMeta().getTargetStreams().get( streamIndex ) );
+  }
+
+  private String getStepName( StreamInterface stream ) {
     return java.util.stream.Stream.of( stream.getStepname(), stream.getSubject() )
       .filter( Objects::nonNull )
       .findFirst().map( Object::toString ).orElse( null );
@@ -173,18 +253,565 @@ public class SmsSenderMeta extends BaseStepMeta implements StepMetaInterface {
     this.priceField = priceField;
   }
 
+  public boolean isAsyncSend() {
+    return asyncSend;
+  }
+
+  public void setAsyncSend( boolean asyncSend ) {
+    this.asyncSend = asyncSend;
+  }
+
+  public String getMaxInFlight() {
+    return maxInFlight;
+  }
+
+  public void setMaxInFlight( String maxInFlight ) {
+    this.maxInFlight = maxInFlight;
+  }
+
+  public String getMaxConnections() {
+    return maxConnections;
+  }
+
+  public void setMaxConnections( String maxConnections ) {
+    this.maxConnections = maxConnections;
+  }
+
+  public String getIdleConnectionTimeout() {
+    return idleConnectionTimeout;
+  }
+
+  public void setIdleConnectionTimeout( String idleConnectionTimeout ) {
+    this.idleConnectionTimeout = idleConnectionTimeout;
+  }
+
+  public String getConnectTimeout() {
+    return connectTimeout;
+  }
+
+  public void setConnectTimeout( String connectTimeout ) {
+    this.connectTimeout = connectTimeout;
+  }
+
+  public String getReadTimeout() {
+    return readTimeout;
+  }
+
+  public void setReadTimeout( String readTimeout ) {
+    this.readTimeout = readTimeout;
+  }
+
+  public String getSenderRateLimit() {
+    return senderRateLimit;
+  }
+
+  public void setSenderRateLimit( String senderRateLimit ) {
+    this.senderRateLimit = senderRateLimit;
+  }
+
+  public String getAccountRateLimit() {
+    return accountRateLimit;
+  }
+
+  public void setAccountRateLimit( String accountRateLimit ) {
+    this.accountRateLimit = accountRateLimit;
+  }
+
+  public String getAttemptsField() {
+    return attemptsField;
+  }
+
+  public void setAttemptsField( String attemptsField ) {
+    this.attemptsField = attemptsField;
+  }
+
+  public String getMaxAttempts() {
+    return maxAttempts;
+  }
+
+  public void setMaxAttempts( String maxAttempts ) {
+    this.maxAttempts = maxAttempts;
+  }
+
+  public String getRetryBaseDelay() {
+    return retryBaseDelay;
+  }
+
+  public void setRetryBaseDelay( String retryBaseDelay ) {
+    this.retryBaseDelay = retryBaseDelay;
+  }
+
+  public String getRetryMaxDelay() {
+    return retryMaxDelay;
+  }
+
+  public void setRetryMaxDelay( String retryMaxDelay ) {
+    this.retryMaxDelay = retryMaxDelay;
+  }
+
+  public String getRetryJitter() {
+    return retryJitter;
+  }
+
+  public void setRetryJitter( String retryJitter ) {
+    this.retryJitter = retryJitter;
+  }
+
+  public String getRetryableCodes() {
+    return retryableCodes;
+  }
+
+  public void setRetryableCodes( String retryableCodes ) {
+    this.retryableCodes = retryableCodes;
+  }
+
+  public boolean isCircuitBreakerEnabled() {
+    return circuitBreakerEnabled;
+  }
+
+  public void setCircuitBreakerEnabled( boolean circuitBreakerEnabled ) {
+    this.circuitBreakerEnabled = circuitBreakerEnabled;
+  }
+
+  public String getFailureRateThreshold() {
+    return failureRateThreshold;
+  }
+
+  public void setFailureRateThreshold( String failureRateThreshold ) {
+    this.failureRateThreshold = failureRateThreshold;
+  }
+
+  public String getCircuitBreakerWindow() {
+    return circuitBreakerWindow;
+  }
+
+  public void setCircuitBreakerWindow( String circuitBreakerWindow ) {
+    this.circuitBreakerWindow = circuitBreakerWindow;
+  }
+
+  public String getOpenDuration() {
+    return openDuration;
+  }
+
+  public void setOpenDuration( String openDuration ) {
+    this.openDuration = openDuration;
+  }
+
+  public String getHalfOpenProbes() {
+    return halfOpenProbes;
+  }
+
+  public void setHalfOpenProbes( String halfOpenProbes ) {
+    this.halfOpenProbes = halfOpenProbes;
+  }
+
+  public boolean isPauseWhenOpen() {
+    return pauseWhenOpen;
+  }
+
+  public void setPauseWhenOpen( boolean pauseWhenOpen ) {
+    this.pauseWhenOpen = pauseWhenOpen;
+  }
+
+  public String getJournalFile() {
+    return journalFile;
+  }
+
+  public void setJournalFile( String journalFile ) {
+    this.journalFile = journalFile;
+  }
+
+  public String getIdempotencyField() {
+    return idempotencyField;
+  }
+
+  public void setIdempotencyField( String idempotencyField ) {
+    this.idempotencyField = idempotencyField;
+  }
+
+  public String getJournalSyncInterval() {
+    return journalSyncInterval;
+  }
+
+  public void setJournalSyncInterval( String journalSyncInterval ) {
+    this.journalSyncInterval = journalSyncInterval;
+  }
+
+  public boolean isDeduplicate() {
+    return deduplicate;
+  }
+
+  public void setDeduplicate( boolean deduplicate ) {
+    this.deduplicate = deduplicate;
+  }
+
+  public String getDedupWindow() {
+    return dedupWindow;
+  }
+
+  public void setDedupWindow( String dedupWindow ) {
+    this.dedupWindow = dedupWindow;
+  }
+
+  public String getDedupExpectedMessages() {
+    return dedupExpectedMessages;
+  }
+
+  public void setDedupExpectedMessages( String dedupExpectedMessages ) {
+    this.dedupExpectedMessages = dedupExpectedMessages;
+  }
+
+  public String getDedupFalsePositiveRate() {
+    return dedupFalsePositiveRate;
+  }
+
+  public void setDedupFalsePositiveRate( String dedupFalsePositiveRate ) {
+    this.dedupFalsePositiveRate = dedupFalsePositiveRate;
+  }
+
+  public String getApiBaseUrl() {
+    return apiBaseUrl;
+  }
+
+  public void setApiBaseUrl( String apiBaseUrl ) {
+    this.apiBaseUrl = apiBaseUrl;
+  }
+
+  public String getMessageSidField() {
+    return messageSidField;
+  }
+
+  public void setMessageSidField( String messageSidField ) {
+    this.messageSidField = messageSidField;
+  }
+
+  public String getStatusCallbackUrl() {
+    return statusCallbackUrl;
+  }
+
+  public void setStatusCallbackUrl( String statusCallbackUrl ) {
+    this.statusCallbackUrl = statusCallbackUrl;
+  }
+
+  public String getMessagingServiceSid() {
+    return messagingServiceSid;
+  }
+
+  public void setMessagingServiceSid( String messagingServiceSid ) {
+    this.messagingServiceSid = messagingServiceSid;
+  }
+
+  public String getMessagingServiceSidField() {
+    return messagingServiceSidField;
+  }
+
+  public void setMessagingServiceSidField( String messagingServiceSidField ) {
+    this.messagingServiceSidField = messagingServiceSidField;
+  }
+
+  public String getSenderPool() {
+    return senderPool;
+  }
+
+  public void setSenderPool( String senderPool ) {
+    this.senderPool = senderPool;
+  }
+
+  public String getSenderPoolField() {
+    return senderPoolField;
+  }
+
+  public void setSenderPoolField( String senderPoolField ) {
+    this.senderPoolField = senderPoolField;
+  }
+
+  public boolean isStickySenders() {
+    return stickySenders;
+  }
+
+  public void setStickySenders( boolean stickySenders ) {
+    this.stickySenders = stickySenders;
+  }
+
+  public String getShardKeyField() {
+    return shardKeyField;
+  }
+
+  public void setShardKeyField( String shardKeyField ) {
+    this.shardKeyField = shardKeyField;
+  }
+
+  public String[] getSubaccountSids() {
+    return subaccountSids;
+  }
+
+  public void setSubaccountSids( String[] subaccountSids ) {
+    this.subaccountSids = subaccountSids;
+  }
+
+  public String[] getSubaccountAuthTokens() {
+    return subaccountAuthTokens;
+  }
+
+  public void setSubaccountAuthTokens( String[] subaccountAuthTokens ) {
+    this.subaccountAuthTokens = subaccountAuthTokens;
+  }
+
+  /**
+   * Allocates the given number of subaccounts.
+   */
+  public void allocateSubaccounts( int count ) {
+    subaccountSids = new String[ count ];
+    subaccountAuthTokens = new String[ count ];
+  }
+
+  public String getEncodingField() {
+    return encodingField;
+  }
+
+  public void setEncodingField( String encodingField ) {
+    this.encodingField = encodingField;
+  }
+
+  public String getSegmentsField() {
+    return segmentsField;
+  }
+
+  public void setSegmentsField( String segmentsField ) {
+    this.segmentsField = segmentsField;
+  }
+
+  public String getEstimatedCostField() {
+    return estimatedCostField;
+  }
+
+  public void setEstimatedCostField( String estimatedCostField ) {
+    this.estimatedCostField = estimatedCostField;
+  }
+
+  public String getPricePerSegment() {
+    return pricePerSegment;
+  }
+
+  public void setPricePerSegment( String pricePerSegment ) {
+    this.pricePerSegment = pricePerSegment;
+  }
+
+  public String getMaxSegments() {
+    return maxSegments;
+  }
+
+  public void setMaxSegments( String maxSegments ) {
+    this.maxSegments = maxSegments;
+  }
+
+  public boolean isDryRun() {
+    return dryRun;
+  }
+
+  public void setDryRun( boolean dryRun ) {
+    this.dryRun = dryRun;
+  }
+
+  public boolean isNormalizeNumbers() {
+    return normalizeNumbers;
+  }
+
+  public void setNormalizeNumbers( boolean normalizeNumbers ) {
+    this.normalizeNumbers = normalizeNumbers;
+  }
+
+  public String getDefaultRegion() {
+    return defaultRegion;
+  }
+
+  public void setDefaultRegion( String defaultRegion ) {
+    this.defaultRegion = defaultRegion;
+  }
+
+  public String getNumberCacheSize() {
+    return numberCacheSize;
+  }
+
+  public void setNumberCacheSize( String numberCacheSize ) {
+    this.numberCacheSize = numberCacheSize;
+  }
+
+  public String getSuppressionFile() {
+    return suppressionFile;
+  }
+
+  public void setSuppressionFile( String suppressionFile ) {
+    this.suppressionFile = suppressionFile;
+  }
+
+  public String getSuppressionField() {
+    return suppressionField;
+  }
+
+  public void setSuppressionField( String suppressionField ) {
+    this.suppressionField = suppressionField;
+  }
+
+  public String getMessageTemplate() {
+    return messageTemplate;
+  }
+
+  public void setMessageTemplate( String messageTemplate ) {
+    this.messageTemplate = messageTemplate;
+  }
+
+  public String getSendWindowStart() {
+    return sendWindowStart;
+  }
+
+  public void setSendWindowStart( String sendWindowStart ) {
+    this.sendWindowStart = sendWindowStart;
+  }
+
+  public String getSendWindowEnd() {
+    return sendWindowEnd;
+  }
+
+  public void setSendWindowEnd( String sendWindowEnd ) {
+    this.sendWindowEnd = sendWindowEnd;
+  }
+
+  public String getTimeZoneField() {
+    return timeZoneField;
+  }
+
+  public void setTimeZoneField( String timeZoneField ) {
+    this.timeZoneField = timeZoneField;
+  }
+
+  public String getDefaultTimeZone() {
+    return defaultTimeZone;
+  }
+
+  public void setDefaultTimeZone( String defaultTimeZone ) {
+    this.defaultTimeZone = defaultTimeZone;
+  }
+
+  public String getDelayMemoryRows() {
+    return delayMemoryRows;
+  }
+
+  public void setDelayMemoryRows( String delayMemoryRows ) {
+    this.delayMemoryRows = delayMemoryRows;
+  }
+
+  public String getDelayDirectory() {
+    return delayDirectory;
+  }
+
+  public void setDelayDirectory( String delayDirectory ) {
+    this.delayDirectory = delayDirectory;
+  }
+
+  public boolean isBacklog() {
+    return backlog;
+  }
+
+  public void setBacklog( boolean backlog ) {
+    this.backlog = backlog;
+  }
+
+  public String getBacklogMemoryRows() {
+    return backlogMemoryRows;
+  }
+
+  public void setBacklogMemoryRows( String backlogMemoryRows ) {
+    this.backlogMemoryRows = backlogMemoryRows;
+  }
+
+  public String getBacklogDiskLimit() {
+    return backlogDiskLimit;
+  }
+
+  public void setBacklogDiskLimit( String backlogDiskLimit ) {
+    this.backlogDiskLimit = backlogDiskLimit;
+  }
+
+  public String getBacklogDirectory() {
+    return backlogDirectory;
+  }
+
+  public void setBacklogDirectory( String backlogDirectory ) {
+    this.backlogDirectory = backlogDirectory;
+  }
+
+  public String getPriorityField() {
+    return priorityField;
+  }
+
+  public void setPriorityField( String priorityField ) {
+    this.priorityField = priorityField;
+  }
+
+  public String getPriorityLevels() {
+    return priorityLevels;
+  }
+
+  public void setPriorityLevels( String priorityLevels ) {
+    this.priorityLevels = priorityLevels;
+  }
+
+  public String getRunId() {
+    return runId;
+  }
+
+  public void setRunId( String runId ) {
+    this.runId = runId;
+  }
+
+  public String getCheckpointFile() {
+    return checkpointFile;
+  }
+
+  public void setCheckpointFile( String checkpointFile ) {
+    this.checkpointFile = checkpointFile;
+  }
+
+  public String getCheckpointKeyField() {
+    return checkpointKeyField;
+  }
+
+  public void setCheckpointKeyField( String checkpointKeyField ) {
+    this.checkpointKeyField = checkpointKeyField;
+  }
+
+  public String getCheckpointInterval() {
+    return checkpointInterval;
+  }
+
+  public void setCheckpointInterval( String checkpointInterval ) {
+    this.checkpointInterval = checkpointInterval;
+  }
+
+  public String getCheckpointMaxTracked() {
+    return checkpointMaxTracked;
+  }
+
+  public void setCheckpointMaxTracked( String checkpointMaxTracked ) {
+    this.checkpointMaxTracked = checkpointMaxTracked;
+  }
+
   public void loadXML( Node stepnode, List<DatabaseMeta> databases, IMetaStore metaStore ) throws KettleXMLException {
     readData( stepnode );
   }
 
   public Object clone() {
-    Object retval = super.clone();
+    SmsSenderMeta retval = (SmsSenderMeta) super.clone();
+    retval.subaccountSids = subaccountSids == null ? null : subaccountSids.clone();
+    retval.subaccountAuthTokens = subaccountAuthTokens == null ? null : subaccountAuthTokens.clone();
     return retval;
   }
   
   private void readData( Node stepnode ) {
     setSuccessfulStepname( XMLHandler.getTagValue( stepnode, "sendSuccessfulTo" ) );
     setFailedStepname( XMLHandler.getTagValue( stepnode, "sendFailedTo" ) );
+    setSuppressionStepname( XMLHandler.getTagValue( stepnode, "suppressionStep" ) );
     accountSid = XMLHandler.getTagValue( stepnode, "accountSid" );
     authToken = XMLHandler.getTagValue( stepnode, "authToken" );
     toField = XMLHandler.getTagValue( stepnode, "toField" );
@@ -194,16 +821,141 @@ public class SmsSenderMeta extends BaseStepMeta implements StepMetaInterface {
     priceField = XMLHandler.getTagValue( stepnode, "priceField" );
     errorCodeField = XMLHandler.getTagValue( stepnode, "errorCodeField" );
     errorMessageField = XMLHandler.getTagValue( stepnode, "errorMessageField" );
+    asyncSend = "Y".equalsIgnoreCase( XMLHandler.getTagValue( stepnode, "asyncSend" ) );
+    maxInFlight = XMLHandler.getTagValue( stepnode, "maxInFlight" );
+    maxConnections = XMLHandler.getTagValue( stepnode, "maxConnections" );
+    idleConnectionTimeout = XMLHandler.getTagValue( stepnode, "idleConnectionTimeout" );
+    connectTimeout = XMLHandler.getTagValue( stepnode, "connectTimeout" );
+    readTimeout = XMLHandler.getTagValue( stepnode, "readTimeout" );
+    senderRateLimit = XMLHandler.getTagValue( stepnode, "senderRateLimit" );
+    accountRateLimit = XMLHandler.getTagValue( stepnode, "accountRateLimit" );
+    attemptsField = XMLHandler.getTagValue( stepnode, "attemptsField" );
+    maxAttempts = XMLHandler.getTagValue( stepnode, "maxAttempts" );
+    retryBaseDelay = XMLHandler.getTagValue( stepnode, "retryBaseDelay" );
+    retryMaxDelay = XMLHandler.getTagValue( stepnode, "retryMaxDelay" );
+    retryJitter = XMLHandler.getTagValue( stepnode, "retryJitter" );
+    retryableCodes = XMLHandler.getTagValue( stepnode, "retryableCodes" );
+    circuitBreakerEnabled = "Y".equalsIgnoreCase( XMLHandler.getTagValue( stepnode, "circuitBreakerEnabled" ) );
+    failureRateThreshold = XMLHandler.getTagValue( stepnode, "failureRateThreshold" );
+    circuitBreakerWindow = XMLHandler.getTagValue( stepnode, "circuitBreakerWindow" );
+    openDuration = XMLHandler.getTagValue( stepnode, "openDuration" );
+    halfOpenProbes = XMLHandler.getTagValue( stepnode, "halfOpenProbes" );
+    pauseWhenOpen = "Y".equalsIgnoreCase( XMLHandler.getTagValue( stepnode, "pauseWhenOpen" ) );
+    journalFile = XMLHandler.getTagValue( stepnode, "journalFile" );
+    idempotencyField = XMLHandler.getTagValue( stepnode, "idempotencyField" );
+    journalSyncInterval = XMLHandler.getTagValue( stepnode, "journalSyncInterval" );
+    deduplicate = "Y".equalsIgnoreCase( XMLHandler.getTagValue( stepnode, "deduplicate" ) );
+    dedupWindow = XMLHandler.getTagValue( stepnode, "dedupWindow" );
+    dedupExpectedMessages = XMLHandler.getTagValue( stepnode, "dedupExpectedMessages" );
+    dedupFalsePositiveRate = XMLHandler.getTagValue( stepnode, "dedupFalsePositiveRate" );
+    apiBaseUrl = XMLHandler.getTagValue( stepnode, "apiBaseUrl" );
+    messageSidField = XMLHandler.getTagValue( stepnode, "messageSidField" );
+    statusCallbackUrl = XMLHandler.getTagValue( stepnode, "statusCallbackUrl" );
+    messagingServiceSid = XMLHandler.getTagValue( stepnode, "messagingServiceSid" );
+    messagingServiceSidField = XMLHandler.getTagValue( stepnode, "messagingServiceSidField" );
+    senderPool = XMLHandler.getTagValue( stepnode, "senderPool" );
+    senderPoolField = XMLHandler.getTagValue( stepnode, "senderPoolField" );
+    stickySenders = "Y".equalsIgnoreCase( XMLHandler.getTagValue( stepnode, "stickySenders" ) );
+
+    Node subaccounts = XMLHandler.getSubNode( stepnode, "subaccounts" );
+    int count = XMLHandler.countNodes( subaccounts, "subaccount" );
+    allocateSubaccounts( count );
+    for ( int i = 0; i < count; i++ ) {
+      Node subaccount = XMLHandler.getSubNodeByNr( subaccounts, "subaccount", i );
+      subaccountSids[ i ] = XMLHandler.getTagValue( subaccount, "accountSid" );
+      subaccountAuthTokens[ i ] = XMLHandler.getTagValue( subaccount, "authToken" );
+    }
+    shardKeyField = XMLHandler.getTagValue( stepnode, "shardKeyField" );
+    encodingField = XMLHandler.getTagValue( stepnode, "encodingField" );
+    segmentsField = XMLHandler.getTagValue( stepnode, "segmentsField" );
+    estimatedCostField = XMLHandler.getTagValue( stepnode, "estimatedCostField" );
+    pricePerSegment = XMLHandler.getTagValue( stepnode, "pricePerSegment" );
+    maxSegments = XMLHandler.getTagValue( stepnode, "maxSegments" );
+    dryRun = "Y".equalsIgnoreCase( XMLHandler.getTagValue( stepnode, "dryRun" ) );
+    normalizeNumbers = "Y".equalsIgnoreCase( XMLHandler.getTagValue( stepnode, "normalizeNumbers" ) );
+    defaultRegion = XMLHandler.getTagValue( stepnode, "defaultRegion" );
+    numberCacheSize = XMLHandler.getTagValue( stepnode, "numberCacheSize" );
+    suppressionFile = XMLHandler.getTagValue( stepnode, "suppressionFile" );
+    suppressionField = XMLHandler.getTagValue( stepnode, "suppressionField" );
+    messageTemplate = XMLHandler.getTagValue( stepnode, "messageTemplate" );
+    sendWindowStart = XMLHandler.getTagValue( stepnode, "sendWindowStart" );
+    sendWindowEnd = XMLHandler.getTagValue( stepnode, "sendWindowEnd" );
+    timeZoneField = XMLHandler.getTagValue( stepnode, "timeZoneField" );
+    defaultTimeZone = XMLHandler.getTagValue( stepnode, "defaultTimeZone" );
+    delayMemoryRows = XMLHandler.getTagValue( stepnode, "delayMemoryRows" );
+    delayDirectory = XMLHandler.getTagValue( stepnode, "delayDirectory" );
+    backlog = "Y".equalsIgnoreCase( XMLHandler.getTagValue( stepnode, "backlog" ) );
+    backlogMemoryRows = XMLHandler.getTagValue( stepnode, "backlogMemoryRows" );
+    backlogDiskLimit = XMLHandler.getTagValue( stepnode, "backlogDiskLimit" );
+    backlogDirectory = XMLHandler.getTagValue( stepnode, "backlogDirectory" );
+    priorityField = XMLHandler.getTagValue( stepnode, "priorityField" );
+    priorityLevels = XMLHandler.getTagValue( stepnode, "priorityLevels" );
+    runId = XMLHandler.getTagValue( stepnode, "runId" );
+    checkpointFile = XMLHandler.getTagValue( stepnode, "checkpointFile" );
+    checkpointKeyField = XMLHandler.getTagValue( stepnode, "checkpointKeyField" );
+    checkpointInterval = XMLHandler.getTagValue( stepnode, "checkpointInterval" );
+    checkpointMaxTracked = XMLHandler.getTagValue( stepnode, "checkpointMaxTracked" );
   }
 
   public void setDefault() {
     statusField = "status";
+    asyncSend = false;
+    maxInFlight = "10";
+    maxConnections = "";
+    idleConnectionTimeout = "30";
+    connectTimeout = "10000";
+    readTimeout = "30500";
+    senderRateLimit = "";
+    accountRateLimit = "";
+    maxAttempts = "3";
+    retryBaseDelay = "500";
+    retryMaxDelay = "30000";
+    retryJitter = "0.5";
+    retryableCodes = RetryPolicy.THROTTLED_CODES;
+    circuitBreakerEnabled = false;
+    failureRateThreshold = "50";
+    circuitBreakerWindow = "20";
+    openDuration = "30000";
+    halfOpenProbes = "1";
+    pauseWhenOpen = false;
+    journalSyncInterval = "100";
+    deduplicate = false;
+    dedupExpectedMessages = "1000000";
+    stickySenders = false;
+    allocateSubaccounts( 0 );
+    pricePerSegment = "";
+    maxSegments = "";
+    dryRun = false;
+    normalizeNumbers = false;
+    defaultRegion = "";
+    numberCacheSize = "10000";
+    suppressionFile = "";
+    suppressionField = "";
+    messageTemplate = "";
+    sendWindowStart = "";
+    sendWindowEnd = "";
+    timeZoneField = "";
+    defaultTimeZone = "";
+    delayMemoryRows = "100000";
+    delayDirectory = "%%java.io.tmpdir%%";
+    backlog = false;
+    backlogMemoryRows = "10000";
+    backlogDiskLimit = "1024";
+    backlogDirectory = "%%java.io.tmpdir%%";
+    priorityField = "";
+    priorityLevels = "3";
+    runId = "";
+    checkpointFile = "";
+    checkpointKeyField = "";
+    checkpointInterval = "10";
+    checkpointMaxTracked = "1000000";
   }
 
   public void readRep( Repository rep, IMetaStore metaStore, ObjectId id_step, List<DatabaseMeta> databases ) throws KettleException {
     try {
       setSuccessfulStepname( rep.getStepAttributeString( id_step, "sendSuccessfulTo" ) );
       setFailedStepname( rep.getStepAttributeString( id_step, "sendFailedTo" ) );
+      setSuppressionStepname( rep.getStepAttributeString( id_step, "suppressionStep" ) );
       accountSid = rep.getStepAttributeString( id_step, "accountSid" );
       authToken = rep.getStepAttributeString( id_step, "authToken" );
       toField = rep.getStepAttributeString( id_step, "toField" );
@@ -213,6 +965,78 @@ public class SmsSenderMeta extends BaseStepMeta implements StepMetaInterface {
       priceField = rep.getStepAttributeString( id_step, "priceField" );
       errorCodeField = rep.getStepAttributeString( id_step, "errorCodeField" );
       errorMessageField = rep.getStepAttributeString( id_step, "errorMessageField" );
+      asyncSend = rep.getStepAttributeBoolean( id_step, "asyncSend" );
+      maxInFlight = rep.getStepAttributeString( id_step, "maxInFlight" );
+      maxConnections = rep.getStepAttributeString( id_step, "maxConnections" );
+      idleConnectionTimeout = rep.getStepAttributeString( id_step, "idleConnectionTimeout" );
+      connectTimeout = rep.getStepAttributeString( id_step, "connectTimeout" );
+      readTimeout = rep.getStepAttributeString( id_step, "readTimeout" );
+      senderRateLimit = rep.getStepAttributeString( id_step, "senderRateLimit" );
+      accountRateLimit = rep.getStepAttributeString( id_step, "accountRateLimit" );
+      attemptsField = rep.getStepAttributeString( id_step, "attemptsField" );
+      maxAttempts = rep.getStepAttributeString( id_step, "maxAttempts" );
+      retryBaseDelay = rep.getStepAttributeString( id_step, "retryBaseDelay" );
+      retryMaxDelay = rep.getStepAttributeString( id_step, "retryMaxDelay" );
+      retryJitter = rep.getStepAttributeString( id_step, "retryJitter" );
+      retryableCodes = rep.getStepAttributeString( id_step, "retryableCodes" );
+      circuitBreakerEnabled = rep.getStepAttributeBoolean( id_step, "circuitBreakerEnabled" );
+      failureRateThreshold = rep.getStepAttributeString( id_step, "failureRateThreshold" );
+      circuitBreakerWindow = rep.getStepAttributeString( id_step, "circuitBreakerWindow" );
+      openDuration = rep.getStepAttributeString( id_step, "openDuration" );
+      halfOpenProbes = rep.getStepAttributeString( id_step, "halfOpenProbes" );
+      pauseWhenOpen = rep.getStepAttributeBoolean( id_step, "pauseWhenOpen" );
+      journalFile = rep.getStepAttributeString( id_step, "journalFile" );
+      idempotencyField = rep.getStepAttributeString( id_step, "idempotencyField" );
+      journalSyncInterval = rep.getStepAttributeString( id_step, "journalSyncInterval" );
+      deduplicate = rep.getStepAttributeBoolean( id_step, "deduplicate" );
+      dedupWindow = rep.getStepAttributeString( id_step, "dedupWindow" );
+      dedupExpectedMessages = rep.getStepAttributeString( id_step, "dedupExpectedMessages" );
+      dedupFalsePositiveRate = rep.getStepAttributeString( id_step, "dedupFalsePositiveRate" );
+      apiBaseUrl = rep.getStepAttributeString( id_step, "apiBaseUrl" );
+      messageSidField = rep.getStepAttributeString( id_step, "messageSidField" );
+      statusCallbackUrl = rep.getStepAttributeString( id_step, "statusCallbackUrl" );
+      messagingServiceSid = rep.getStepAttributeString( id_step, "messagingServiceSid" );
+      messagingServiceSidField = rep.getStepAttributeString( id_step, "messagingServiceSidField" );
+      senderPool = rep.getStepAttributeString( id_step, "senderPool" );
+      senderPoolField = rep.getStepAttributeString( id_step, "senderPoolField" );
+      stickySenders = rep.getStepAttributeBoolean( id_step, "stickySenders" );
+
+      int count = rep.countNrStepAttributes( id_step, "subaccount_sid" );
+      allocateSubaccounts( count );
+      for ( int i = 0; i < count; i++ ) {
+        subaccountSids[ i ] = rep.getStepAttributeString( id_step, i, "subaccount_sid" );
+        subaccountAuthTokens[ i ] = rep.getStepAttributeString( id_step, i, "subaccount_auth_token" );
+      }
+      shardKeyField = rep.getStepAttributeString( id_step, "shardKeyField" );
+      encodingField = rep.getStepAttributeString( id_step, "encodingField" );
+      segmentsField = rep.getStepAttributeString( id_step, "segmentsField" );
+      estimatedCostField = rep.getStepAttributeString( id_step, "estimatedCostField" );
+      pricePerSegment = rep.getStepAttributeString( id_step, "pricePerSegment" );
+      maxSegments = rep.getStepAttributeString( id_step, "maxSegments" );
+      dryRun = rep.getStepAttributeBoolean( id_step, "dryRun" );
+      normalizeNumbers = rep.getStepAttributeBoolean( id_step, "normalizeNumbers" );
+      defaultRegion = rep.getStepAttributeString( id_step, "defaultRegion" );
+      numberCacheSize = rep.getStepAttributeString( id_step, "numberCacheSize" );
+      suppressionFile = rep.getStepAttributeString( id_step, "suppressionFile" );
+      suppressionField = rep.getStepAttributeString( id_step, "suppressionField" );
+      messageTemplate = rep.getStepAttributeString( id_step, "messageTemplate" );
+      sendWindowStart = rep.getStepAttributeString( id_step, "sendWindowStart" );
+      sendWindowEnd = rep.getStepAttributeString( id_step, "sendWindowEnd" );
+      timeZoneField = rep.getStepAttributeString( id_step, "timeZoneField" );
+      defaultTimeZone = rep.getStepAttributeString( id_step, "defaultTimeZone" );
+      delayMemoryRows = rep.getStepAttributeString( id_step, "delayMemoryRows" );
+      delayDirectory = rep.getStepAttributeString( id_step, "delayDirectory" );
+      backlog = rep.getStepAttributeBoolean( id_step, "backlog" );
+      backlogMemoryRows = rep.getStepAttributeString( id_step, "backlogMemoryRows" );
+      backlogDiskLimit = rep.getStepAttributeString( id_step, "backlogDiskLimit" );
+      backlogDirectory = rep.getStepAttributeString( id_step, "backlogDirectory" );
+      priorityField = rep.getStepAttributeString( id_step, "priorityField" );
+      priorityLevels = rep.getStepAttributeString( id_step, "priorityLevels" );
+      runId = rep.getStepAttributeString( id_step, "runId" );
+      checkpointFile = rep.getStepAttributeString( id_step, "checkpointFile" );
+      checkpointKeyField = rep.getStepAttributeString( id_step, "checkpointKeyField" );
+      checkpointInterval = rep.getStepAttributeString( id_step, "checkpointInterval" );
+      checkpointMaxTracked = rep.getStepAttributeString( id_step, "checkpointMaxTracked" );
     } catch ( Exception e ) {
       throw new KettleException( BaseMessages.getString(
         PKG, "SmsSenderMeta.Exception.UnexpectedErrorInReadingStepInfoFromRepository" ), e );
@@ -224,6 +1048,7 @@ public class SmsSenderMeta extends BaseStepMeta implements StepMetaInterface {
     StringBuilder retval = new StringBuilder();
     retval.append( "    " + XMLHandler.addTagValue( "sendSuccessfulTo", getSuccessfulStepname() ) );
     retval.append( "    " + XMLHandler.addTagValue( "sendFailedTo", getFailedStepname() ) );
+    retval.append( "    " + XMLHandler.addTagValue( "suppressionStep", getSuppressionStepname() ) );
     retval.append( "    " + XMLHandler.addTagValue( "accountSid", accountSid ) );
     retval.append( "    " + XMLHandler.addTagValue( "authToken", authToken ) );
     retval.append( "    " + XMLHandler.addTagValue( "toField", toField ) );
@@ -233,6 +1058,79 @@ public class SmsSenderMeta extends BaseStepMeta implements StepMetaInterface {
     retval.append( "    " + XMLHandler.addTagValue( "priceField", priceField ) );
     retval.append( "    " + XMLHandler.addTagValue( "errorCodeField", errorCodeField ) );
     retval.append( "    " + XMLHandler.addTagValue( "errorMessageField", errorMessageField ) );
+    retval.append( "    " + XMLHandler.addTagValue( "asyncSend", asyncSend ) );
+    retval.append( "    " + XMLHandler.addTagValue( "maxInFlight", maxInFlight ) );
+    retval.append( "    " + XMLHandler.addTagValue( "maxConnections", maxConnections ) );
+    retval.append( "    " + XMLHandler.addTagValue( "idleConnectionTimeout", idleConnectionTimeout ) );
+    retval.append( "    " + XMLHandler.addTagValue( "connectTimeout", connectTimeout ) );
+    retval.append( "    " + XMLHandler.addTagValue( "readTimeout", readTimeout ) );
+    retval.append( "    " + XMLHandler.addTagValue( "senderRateLimit", senderRateLimit ) );
+    retval.append( "    " + XMLHandler.addTagValue( "accountRateLimit", accountRateLimit ) );
+    retval.append( "    " + XMLHandler.addTagValue( "attemptsField", attemptsField ) );
+    retval.append( "    " + XMLHandler.addTagValue( "maxAttempts", maxAttempts ) );
+    retval.append( "    " + XMLHandler.addTagValue( "retryBaseDelay", retryBaseDelay ) );
+    retval.append( "    " + XMLHandler.addTagValue( "retryMaxDelay", retryMaxDelay ) );
+    retval.append( "    " + XMLHandler.addTagValue( "retryJitter", retryJitter ) );
+    retval.append( "    " + XMLHandler.addTagValue( "retryableCodes", retryableCodes ) );
+    retval.append( "    " + XMLHandler.addTagValue( "circuitBreakerEnabled", circuitBreakerEnabled ) );
+    retval.append( "    " + XMLHandler.addTagValue( "failureRateThreshold", failureRateThreshold ) );
+    retval.append( "    " + XMLHandler.addTagValue( "circuitBreakerWindow", circuitBreakerWindow ) );
+    retval.append( "    " + XMLHandler.addTagValue( "openDuration", openDuration ) );
+    retval.append( "    " + XMLHandler.addTagValue( "halfOpenProbes", halfOpenProbes ) );
+    retval.append( "    " + XMLHandler.addTagValue( "pauseWhenOpen", pauseWhenOpen ) );
+    retval.append( "    " + XMLHandler.addTagValue( "journalFile", journalFile ) );
+    retval.append( "    " + XMLHandler.addTagValue( "idempotencyField", idempotencyField ) );
+    retval.append( "    " + XMLHandler.addTagValue( "journalSyncInterval", journalSyncInterval ) );
+    retval.append( "    " + XMLHandler.addTagValue( "deduplicate", deduplicate ) );
+    retval.append( "    " + XMLHandler.addTagValue( "dedupWindow", dedupWindow ) );
+    retval.append( "    " + XMLHandler.addTagValue( "dedupExpectedMessages", dedupExpectedMessages ) );
+    retval.append( "    " + XMLHandler.addTagValue( "dedupFalsePositiveRate", dedupFalsePositiveRate ) );
+    retval.append( "    " + XMLHandler.addTagValue( "apiBaseUrl", apiBaseUrl ) );
+    retval.append( "    " + XMLHandler.addTagValue( "messageSidField", messageSidField ) );
+    retval.append( "    " + XMLHandler.addTagValue( "statusCallbackUrl", statusCallbackUrl ) );
+    retval.append( "    " + XMLHandler.addTagValue( "messagingServiceSid", messagingServiceSid ) );
+    retval.append( "    " + XMLHandler.addTagValue( "messagingServiceSidField", messagingServiceSidField ) );
+    retval.append( "    " + XMLHandler.addTagValue( "senderPool", senderPool ) );
+    retval.append( "    " + XMLHandler.addTagValue( "senderPoolField", senderPoolField ) );
+    retval.append( "    " + XMLHandler.addTagValue( "stickySenders", stickySenders ) );
+    retval.append( "    " + XMLHandler.addTagValue( "shardKeyField", shardKeyField ) );
+    retval.append( "    <subaccounts>" ).append( Const.CR );
+    for ( int i = 0; i < subaccountSids.length; i++ ) {
+      retval.append( "      <subaccount>" ).append( Const.CR );
+      retval.append( "        " + XMLHandler.addTagValue( "accountSid", subaccountSids[ i ] ) );
+      retval.append( "        " + XMLHandler.addTagValue( "authToken", subaccountAuthTokens[ i ] ) );
+      retval.append( "      </subaccount>" ).append( Const.CR );
+    }
+    retval.append( "    </subaccounts>" ).append( Const.CR );
+    retval.append( "    " + XMLHandler.addTagValue( "encodingField", encodingField ) );
+    retval.append( "    " + XMLHandler.addTagValue( "segmentsField", segmentsField ) );
+    retval.append( "    " + XMLHandler.addTagValue( "estimatedCostField", estimatedCostField ) );
+    retval.append( "    " + XMLHandler.addTagValue( "pricePerSegment", pricePerSegment ) );
+    retval.append( "    " + XMLHandler.addTagValue( "maxSegments", maxSegments ) );
+    retval.append( "    " + XMLHandler.addTagValue( "dryRun", dryRun ) );
+    retval.append( "    " + XMLHandler.addTagValue( "normalizeNumbers", normalizeNumbers ) );
+    retval.append( "    " + XMLHandler.addTagValue( "defaultRegion", defaultRegion ) );
+    retval.append( "    " + XMLHandler.addTagValue( "numberCacheSize", numberCacheSize ) );
+    retval.append( "    " + XMLHandler.addTagValue( "suppressionFile", suppressionFile ) );
+    retval.append( "    " + XMLHandler.addTagValue( "suppressionField", suppressionField ) );
+    retval.append( "    " + XMLHandler.addTagValue( "messageTemplate", messageTemplate ) );
+    retval.append( "    " + XMLHandler.addTagValue( "sendWindowStart", sendWindowStart ) );
+    retval.append( "    " + XMLHandler.addTagValue( "sendWindowEnd", sendWindowEnd ) );
+    retval.append( "    " + XMLHandler.addTagValue( "timeZoneField", timeZoneField ) );
+    retval.append( "    " + XMLHandler.addTagValue( "defaultTimeZone", defaultTimeZone ) );
+    retval.append( "    " + XMLHandler.addTagValue( "delayMemoryRows", delayMemoryRows ) );
+    retval.append( "    " + XMLHandler.addTagValue( "delayDirectory", delayDirectory ) );
+    retval.append( "    " + XMLHandler.addTagValue( "backlog", backlog ) );
+    retval.append( "    " + XMLHandler.addTagValue( "backlogMemoryRows", backlogMemoryRows ) );
+    retval.append( "    " + XMLHandler.addTagValue( "backlogDiskLimit", backlogDiskLimit ) );
+    retval.append( "    " + XMLHandler.addTagValue( "backlogDirectory", backlogDirectory ) );
+    retval.append( "    " + XMLHandler.addTagValue( "priorityField", priorityField ) );
+    retval.append( "    " + XMLHandler.addTagValue( "priorityLevels", priorityLevels ) );
+    retval.append( "    " + XMLHandler.addTagValue( "runId", runId ) );
+    retval.append( "    " + XMLHandler.addTagValue( "checkpointFile", checkpointFile ) );
+    retval.append( "    " + XMLHandler.addTagValue( "checkpointKeyField", checkpointKeyField ) );
+    retval.append( "    " + XMLHandler.addTagValue( "checkpointInterval", checkpointInterval ) );
+    retval.append( "    " + XMLHandler.addTagValue( "checkpointMaxTracked", checkpointMaxTracked ) );
     return retval.toString();
   }
   
@@ -241,6 +1139,7 @@ public class SmsSenderMeta extends BaseStepMeta implements StepMetaInterface {
     try {
       rep.saveStepAttribute( id_transformation, id_step, "sendSuccessfulTo", getSuccessfulStepname() );
       rep.saveStepAttribute( id_transformation, id_step, "sendFailedTo", getFailedStepname() );
+      rep.saveStepAttribute( id_transformation, id_step, "suppressionStep", getSuppressionStepname() );
       rep.saveStepAttribute( id_transformation, id_step, "accountSid", accountSid );
       rep.saveStepAttribute( id_transformation, id_step, "authToken", authToken );
       rep.saveStepAttribute( id_transformation, id_step, "toField", toField );
@@ -250,6 +1149,75 @@ public class SmsSenderMeta extends BaseStepMeta implements StepMetaInterface {
       rep.saveStepAttribute( id_transformation, id_step, "priceField", priceField );
       rep.saveStepAttribute( id_transformation, id_step, "errorCodeField", errorCodeField );
       rep.saveStepAttribute( id_transformation, id_step, "errorMessageField", errorMessageField );
+      rep.saveStepAttribute( id_transformation, id_step, "asyncSend", asyncSend );
+      rep.saveStepAttribute( id_transformation, id_step, "maxInFlight", maxInFlight );
+      rep.saveStepAttribute( id_transformation, id_step, "maxConnections", maxConnections );
+      rep.saveStepAttribute( id_transformation, id_step, "idleConnectionTimeout", idleConnectionTimeout );
+      rep.saveStepAttribute( id_transformation, id_step, "connectTimeout", connectTimeout );
+      rep.saveStepAttribute( id_transformation, id_step, "readTimeout", readTimeout );
+      rep.saveStepAttribute( id_transformation, id_step, "senderRateLimit", senderRateLimit );
+      rep.saveStepAttribute( id_transformation, id_step, "accountRateLimit", accountRateLimit );
+      rep.saveStepAttribute( id_transformation, id_step, "attemptsField", attemptsField );
+      rep.saveStepAttribute( id_transformation, id_step, "maxAttempts", maxAttempts );
+      rep.saveStepAttribute( id_transformation, id_step, "retryBaseDelay", retryBaseDelay );
+      rep.saveStepAttribute( id_transformation, id_step, "retryMaxDelay", retryMaxDelay );
+      rep.saveStepAttribute( id_transformation, id_step, "retryJitter", retryJitter );
+      rep.saveStepAttribute( id_transformation, id_step, "retryableCodes", retryableCodes );
+      rep.saveStepAttribute( id_transformation, id_step, "circuitBreakerEnabled", circuitBreakerEnabled );
+      rep.saveStepAttribute( id_transformation, id_step, "failureRateThreshold", failureRateThreshold );
+      rep.saveStepAttribute( id_transformation, id_step, "circuitBreakerWindow", circuitBreakerWindow );
+      rep.saveStepAttribute( id_transformation, id_step, "openDuration", openDuration );
+      rep.saveStepAttribute( id_transformation, id_step, "halfOpenProbes", halfOpenProbes );
+      rep.saveStepAttribute( id_transformation, id_step, "pauseWhenOpen", pauseWhenOpen );
+      rep.saveStepAttribute( id_transformation, id_step, "journalFile", journalFile );
+      rep.saveStepAttribute( id_transformation, id_step, "idempotencyField", idempotencyField );
+      rep.saveStepAttribute( id_transformation, id_step, "journalSyncInterval", journalSyncInterval );
+      rep.saveStepAttribute( id_transformation, id_step, "deduplicate", deduplicate );
+      rep.saveStepAttribute( id_transformation, id_step, "dedupWindow", dedupWindow );
+      rep.saveStepAttribute( id_transformation, id_step, "dedupExpectedMessages", dedupExpectedMessages );
+      rep.saveStepAttribute( id_transformation, id_step, "dedupFalsePositiveRate", dedupFalsePositiveRate );
+      rep.saveStepAttribute( id_transformation, id_step, "apiBaseUrl", apiBaseUrl );
+      rep.saveStepAttribute( id_transformation, id_step, "messageSidField", messageSidField );
+      rep.saveStepAttribute( id_transformation, id_step, "statusCallbackUrl", statusCallbackUrl );
+      rep.saveStepAttribute( id_transformation, id_step, "messagingServiceSid", messagingServiceSid );
+      rep.saveStepAttribute( id_transformation, id_step, "messagingServiceSidField", messagingServiceSidField );
+      rep.saveStepAttribute( id_transformation, id_step, "senderPool", senderPool );
+      rep.saveStepAttribute( id_transformation, id_step, "senderPoolField", senderPoolField );
+      rep.saveStepAttribute( id_transformation, id_step, "stickySenders", stickySenders );
+      rep.saveStepAttribute( id_transformation, id_step, "shardKeyField", shardKeyField );
+      for ( int i = 0; i < subaccountSids.length; i++ ) {
+        rep.saveStepAttribute( id_transformation, id_step, i, "subaccount_sid", subaccountSids[ i ] );
+        rep.saveStepAttribute( id_transformation, id_step, i, "subaccount_auth_token", subaccountAuthTokens[ i ] );
+      }
+      rep.saveStepAttribute( id_transformation, id_step, "encodingField", encodingField );
+      rep.saveStepAttribute( id_transformation, id_step, "segmentsField", segmentsField );
+      rep.saveStepAttribute( id_transformation, id_step, "estimatedCostField", estimatedCostField );
+      rep.saveStepAttribute( id_transformation, id_step, "pricePerSegment", pricePerSegment );
+      rep.saveStepAttribute( id_transformation, id_step, "maxSegments", maxSegments );
+      rep.saveStepAttribute( id_transformation, id_step, "dryRun", dryRun );
+      rep.saveStepAttribute( id_transformation, id_step, "normalizeNumbers", normalizeNumbers );
+      rep.saveStepAttribute( id_transformation, id_step, "defaultRegion", defaultRegion );
+      rep.saveStepAttribute( id_transformation, id_step, "numberCacheSize", numberCacheSize );
+      rep.saveStepAttribute( id_transformation, id_step, "suppressionFile", suppressionFile );
+      rep.saveStepAttribute( id_transformation, id_step, "suppressionField", suppressionField );
+      rep.saveStepAttribute( id_transformation, id_step, "messageTemplate", messageTemplate );
+      rep.saveStepAttribute( id_transformation, id_step, "sendWindowStart", sendWindowStart );
+      rep.saveStepAttribute( id_transformation, id_step, "sendWindowEnd", sendWindowEnd );
+      rep.saveStepAttribute( id_transformation, id_step, "timeZoneField", timeZoneField );
+      rep.saveStepAttribute( id_transformation, id_step, "defaultTimeZone", defaultTimeZone );
+      rep.saveStepAttribute( id_transformation, id_step, "delayMemoryRows", delayMemoryRows );
+      rep.saveStepAttribute( id_transformation, id_step, "delayDirectory", delayDirectory );
+      rep.saveStepAttribute( id_transformation, id_step, "backlog", backlog );
+      rep.saveStepAttribute( id_transformation, id_step, "backlogMemoryRows", backlogMemoryRows );
+      rep.saveStepAttribute( id_transformation, id_step, "backlogDiskLimit", backlogDiskLimit );
+      rep.saveStepAttribute( id_transformation, id_step, "backlogDirectory", backlogDirectory );
+      rep.saveStepAttribute( id_transformation, id_step, "priorityField", priorityField );
+      rep.saveStepAttribute( id_transformation, id_step, "priorityLevels", priorityLevels );
+      rep.saveStepAttribute( id_transformation, id_step, "runId", runId );
+      rep.saveStepAttribute( id_transformation, id_step, "checkpointFile", checkpointFile );
+      rep.saveStepAttribute( id_transformation, id_step, "checkpointKeyField", checkpointKeyField );
+      rep.saveStepAttribute( id_transformation, id_step, "checkpointInterval", checkpointInterval );
+      rep.saveStepAttribute( id_transformation, id_step, "checkpointMaxTracked", checkpointMaxTracked );
     } catch ( Exception e ) {
       throw new KettleException( BaseMessages.getString(
         PKG, "SmsSenderMeta.Exception.UnableToSaveStepInfoToRepository", id_step ), e );
@@ -283,6 +1251,36 @@ public class SmsSenderMeta extends BaseStepMeta implements StepMetaInterface {
       valueMeta.setOrigin( origin );
       rowMeta.addValueMeta( valueMeta );
     }
+
+    if ( !Utils.isEmpty( attemptsField ) ) {
+      valueMeta = new ValueMetaInteger( attemptsField );
+      valueMeta.setOrigin( origin );
+      rowMeta.addValueMeta( valueMeta );
+    }
+
+    if ( !Utils.isEmpty( messageSidField ) ) {
+      valueMeta = new ValueMetaString( messageSidField );
+      valueMeta.setOrigin( origin );
+      rowMeta.addValueMeta( valueMeta );
+    }
+
+    if ( !Utils.isEmpty( encodingField ) ) {
+      valueMeta = new ValueMetaString( encodingField );
+      valueMeta.setOrigin( origin );
+      rowMeta.addValueMeta( valueMeta );
+    }
+
+    if ( !Utils.isEmpty( segmentsField ) ) {
+      valueMeta = new ValueMetaInteger( segmentsField );
+      valueMeta.setOrigin( origin );
+      rowMeta.addValueMeta( valueMeta );
+    }
+
+    if ( !Utils.isEmpty( estimatedCostField ) ) {
+      valueMeta = new ValueMetaNumber( estimatedCostField );
+      valueMeta.setOrigin( origin );
+      rowMeta.addValueMeta( valueMeta );
+    }
   }
   
   public void check( List<CheckResultInterface> remarks, TransMeta transMeta, 
@@ -329,6 +1327,9 @@ public class SmsSenderMeta extends BaseStepMeta implements StepMetaInterface {
     for ( StreamInterface stream : targetStreams ) {
       stream.setStepMeta( StepMeta.findStep( steps, (String) stream.getSubject() ) );
     }
+    for ( StreamInterface stream : getStepIOMeta().getInfoStreams() ) {
+      stream.setStepMeta( StepMeta.findStep( steps, (String) stream.getSubject() ) );
+    }
   }
 
   /**
@@ -343,6 +1344,8 @@ public class SmsSenderMeta extends BaseStepMeta implements StepMetaInterface {
         PKG, "SmsSenderMeta.InfoStream.Successful.Description" ), StreamIcon.TRUE, null ) );
       ioMeta.addStream( new Stream( StreamInterface.StreamType.TARGET, null, BaseMessages.getString(
         PKG, "SmsSenderMeta.InfoStream.Failed.Description" ), StreamIcon.FALSE, null ) );
+      ioMeta.addStream( new Stream( StreamInterface.StreamType.INFO, null, BaseMessages.getString(
+        PKG, "SmsSenderMeta.InfoStream.Suppression.Description" ), StreamIcon.INFO, null ) );
 
       setStepIOMeta( ioMeta );
     }
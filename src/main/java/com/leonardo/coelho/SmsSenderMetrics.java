@@ -0,0 +1,275 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.leonardo.coelho;
+
+import com.twilio.exception.ApiException;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToLongFunction;
+
+/**
+ * Counters and API latencies of an SMS Sender step copy, updated without locking from the step thread and
+ * the sender threads.
+ * <p>
+ * Messages are counted once, by their final outcome: sent, failed, or skipped without calling the API. Every
+ * API request is counted in the latency histogram, retries and throttled (429) responses included.
+ */
+public class SmsSenderMetrics implements SmsSenderMetricsMBean {
+
+  private static final int HTTP_TOO_MANY_REQUESTS = 429;
+  private static final int TOO_MANY_REQUESTS = 20429;
+
+  private final LongAdder sent = new LongAdder();
+  private final LongAdder failed = new LongAdder();
+  private final LongAdder skipped = new LongAdder();
+  private final LongAdder retried = new LongAdder();
+  private final LongAdder throttled = new LongAdder();
+  private final LatencyHistogram latency = new LatencyHistogram();
+  private final ConcurrentMap<String, LongAdder> statuses = new ConcurrentHashMap<>();
+  private final ConcurrentMap<Integer, LongAdder> errorCodes = new ConcurrentHashMap<>();
+
+  private final SmsSenderMetrics parent;
+  private ObjectName objectName;
+  private volatile RowBacklog[] backlogs;
+
+  public SmsSenderMetrics() {
+    this( null );
+  }
+
+  /**
+   * @param parent metrics also counting everything counted here, e.g. the step's for one of its accounts.
+   */
+  SmsSenderMetrics( SmsSenderMetrics parent ) {
+    this.parent = parent;
+  }
+
+  /**
+   * Records an API request.
+   *
+   * @param attempt number of the attempt for the message, starting at 1.
+   * @param nanos time the request took.
+   * @param error failure of the request, or null.
+   */
+  void onRequest( int attempt, long nanos, RuntimeException error ) {
+    if ( parent != null ) {
+      parent.onRequest( attempt, nanos, error );
+    }
+    latency.record( nanos );
+    if ( attempt > 1 ) {
+      retried.increment();
+    }
+    if ( error instanceof ApiException ) {
+      ApiException apiException = (ApiException) error;
+      Integer code = apiException.getCode();
+      Integer statusCode = apiException.getStatusCode();
+      if ( ( statusCode != null && statusCode == HTTP_TOO_MANY_REQUESTS )
+        || ( code != null && code == TOO_MANY_REQUESTS ) ) {
+        throttled.increment();
+      }
+    }
+  }
+
+  /**
+   * Records the final outcome of a message.
+   *
+   * @param status Twilio status of the message, or null if none was returned.
+   * @param errorCode Twilio error code, or null.
+   * @param sentToApi false if the message was skipped without calling the API.
+   */
+  void onMessage( String status, Integer errorCode, boolean failed, boolean sentToApi ) {
+    if ( parent != null ) {
+      parent.onMessage( status, errorCode, failed, sentToApi );
+    }
+    if ( failed ) {
+      this.failed.increment();
+    } else if ( sentToApi ) {
+      sent.increment();
+    } else {
+      skipped.increment();
+    }
+    if ( status != null ) {
+      statuses.computeIfAbsent( status, k -> new LongAdder() ).increment();
+    }
+    if ( errorCode != null ) {
+      errorCodes.computeIfAbsent( errorCode, k -> new LongAdder() ).increment();
+    }
+  }
+
+  /**
+   * Exposes the metrics through the platform MBean server.
+   */
+  void register( String transformation, String step, int copy ) throws JMException {
+    register( transformation, step, copy, null );
+  }
+
+  /**
+   * Exposes the metrics of one of the accounts of a step copy through the platform MBean server.
+   */
+  void register( String transformation, String step, int copy, String account ) throws JMException {
+    ObjectName name = new ObjectName( "com.leonardo.coelho:type=SmsSender"
+      + ",transformation=" + ObjectName.quote( String.valueOf( transformation ) )
+      + ",step=" + ObjectName.quote( step ) + ",copy=" + copy
+      + ( account == null ? "" : ",account=" + ObjectName.quote( account ) ) );
+    ManagementFactory.getPlatformMBeanServer().registerMBean( this, name );
+    objectName = name;
+  }
+
+  void unregister() throws JMException {
+    if ( objectName != null ) {
+      MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+      ObjectName name = objectName;
+      objectName = null;
+      server.unregisterMBean( name );
+    }
+  }
+
+  @Override
+  public long getSent() {
+    return sent.sum();
+  }
+
+  @Override
+  public long getFailed() {
+    return failed.sum();
+  }
+
+  @Override
+  public long getSkipped() {
+    return skipped.sum();
+  }
+
+  @Override
+  public long getRetried() {
+    return retried.sum();
+  }
+
+  @Override
+  public long getThrottled() {
+    return throttled.sum();
+  }
+
+  @Override
+  public long getRequests() {
+    return latency.getCount();
+  }
+
+  @Override
+  public double getLatencyMeanMillis() {
+    return latency.getMean() / TimeUnit.MILLISECONDS.toNanos( 1 );
+  }
+
+  @Override
+  public double getLatencyP50Millis() {
+    return toMillis( latency.getValueAtPercentile( 50 ) );
+  }
+
+  @Override
+  public double getLatencyP90Millis() {
+    return toMillis( latency.getValueAtPercentile( 90 ) );
+  }
+
+  @Override
+  public double getLatencyP99Millis() {
+    return toMillis( latency.getValueAtPercentile( 99 ) );
+  }
+
+  @Override
+  public double getLatencyMaxMillis() {
+    return toMillis( latency.getMax() );
+  }
+
+  /**
+   * Reports the depth of the backlog of the step copy along with its messages.
+   *
+   * @param backlogs lanes of the backlog by priority, or null.
+   */
+  void setBacklogs( RowBacklog[] backlogs ) {
+    this.backlogs = backlogs;
+  }
+
+  @Override
+  public long getBacklogRows() {
+    return sum( RowBacklog::size );
+  }
+
+  @Override
+  public long getBacklogDiskBytes() {
+    return sum( RowBacklog::getDiskBytes );
+  }
+
+  @Override
+  public long getBacklogMaxRows() {
+    return sum( RowBacklog::getMaxRows );
+  }
+
+  @Override
+  public String getBacklogWaits() {
+    RowBacklog[] backlogs = this.backlogs;
+    if ( backlogs == null ) {
+      return "";
+    }
+    StringBuilder waits = new StringBuilder();
+    for ( int i = 0; i < backlogs.length; i++ ) {
+      LatencyHistogram histogram = backlogs[ i ].getWaits();
+      waits.append( i > 0 ? ", " : "" ).append( i + 1 ).append( '=' )
+        .append( String.format( "%.1f", toMillis( histogram.getValueAtPercentile( 99 ) ) ) );
+    }
+    return waits.toString();
+  }
+
+  private long sum( ToLongFunction<RowBacklog> value ) {
+    RowBacklog[] backlogs = this.backlogs;
+    return backlogs == null ? 0 : Arrays.stream( backlogs ).mapToLong( value ).sum();
+  }
+
+  @Override
+  public String getStatusCounts() {
+    return toString( statuses );
+  }
+
+  @Override
+  public String getErrorCodeCounts() {
+    return toString( errorCodes );
+  }
+
+  private static double toMillis( long nanos ) {
+    return nanos / (double) TimeUnit.MILLISECONDS.toNanos( 1 );
+  }
+
+  private static String toString( Map<?, LongAdder> counts ) {
+    StringBuilder text = new StringBuilder();
+    for ( Map.Entry<?, LongAdder> entry : new TreeMap<>( counts ).entrySet() ) {
+      if ( text.length() > 0 ) {
+        text.append( ", " );
+      }
+      text.append( entry.getKey() ).append( '=' ).append( entry.getValue().sum() );
+    }
+    return text.toString();
+  }
+}
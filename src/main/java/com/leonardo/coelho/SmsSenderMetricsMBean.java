@@ -0,0 +1,78 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.leonardo.coelho;
+
+/**
+ * JMX view of the metrics of an SMS Sender step copy, registered while the step runs.
+ */
+public interface SmsSenderMetricsMBean {
+
+  long getSent();
+
+  long getFailed();
+
+  long getSkipped();
+
+  long getRetried();
+
+  long getThrottled();
+
+  long getRequests();
+
+  double getLatencyMeanMillis();
+
+  double getLatencyP50Millis();
+
+  double getLatencyP90Millis();
+
+  double getLatencyP99Millis();
+
+  double getLatencyMaxMillis();
+
+  /**
+   * @return the number of input rows waiting in the backlog, 0 without one.
+   */
+  long getBacklogRows();
+
+  /**
+   * @return the bytes of the input rows waiting on disk in the backlog.
+   */
+  long getBacklogDiskBytes();
+
+  /**
+   * @return the largest number of input rows waiting in the backlog at once so far, summed over its lanes.
+   */
+  long getBacklogMaxRows();
+
+  /**
+   * @return the 99th percentile of the time rows waited in the backlog in ms by priority, e.g.
+   * {@code 1=0.4, 2=950.0}.
+   */
+  String getBacklogWaits();
+
+  /**
+   * @return the number of messages per Twilio status, e.g. {@code queued=120, failed=3}.
+   */
+  String getStatusCounts();
+
+  /**
+   * @return the number of messages per Twilio error code, e.g. {@code 21211=2, 20429=5}.
+   */
+  String getErrorCodeCounts();
+}
@@ -0,0 +1,303 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.leonardo.coelho;
+
+import com.twilio.exception.ApiException;
+import com.twilio.http.TwilioRestClient;
+import com.twilio.rest.api.v2010.account.Message;
+import org.pentaho.di.core.Const;
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.row.RowDataUtil;
+import org.pentaho.di.core.util.Utils;
+import org.pentaho.di.i18n.BaseMessages;
+import org.pentaho.di.trans.Trans;
+import org.pentaho.di.trans.TransMeta;
+import org.pentaho.di.trans.step.BaseStep;
+import org.pentaho.di.trans.step.StepDataInterface;
+import org.pentaho.di.trans.step.StepInterface;
+import org.pentaho.di.trans.step.StepMeta;
+import org.pentaho.di.trans.step.StepMetaInterface;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fetches the current status, price and error of the messages whose SIDs come in, several at a time.
+ * <p>
+ * Up to {@code maxInFlight} lookups run in parallel on a pool of worker threads, paced by an optional rate
+ * limit shared by every step copy looking up messages of the same account. Rows are written out in the order
+ * they came in.
+ */
+public class SmsStatus extends BaseStep implements StepInterface {
+
+  private static Class<?> PKG = SmsStatusMeta.class; // for i18n purposes, needed by Translator2!!   $NON-NLS-1$
+
+  private static final int DEFAULT_MAX_IN_FLIGHT = 10;
+  private static final int DEFAULT_MAX_ATTEMPTS = 3;
+  private static final long RETRY_BASE_DELAY = 500;
+  private static final long RETRY_MAX_DELAY = 30000;
+  private static final double RETRY_JITTER = 0.5;
+  // Lookups are idempotent, so server errors are retried too.
+  private static final String RETRYABLE_CODES = RetryPolicy.THROTTLED_CODES + "," + RetryPolicy.SERVER_ERROR_CODES;
+  private static final int IDLE_CONNECTION_TIMEOUT = 30;
+  private static final int CONNECT_TIMEOUT = 10000;
+  private static final int READ_TIMEOUT = 30500;
+  private static final long POLL_TIMEOUT = 100;
+  private static final String LOOKUP_FAILED = "SmsStatus001";
+
+  private SmsStatusMeta meta;
+  private SmsStatusData data;
+
+  public SmsStatus( StepMeta stepMeta, StepDataInterface stepDataInterface, int copyNr, TransMeta transMeta,
+                    Trans trans ) {
+    super( stepMeta, stepDataInterface, copyNr, transMeta, trans );
+  }
+
+  public boolean init( StepMetaInterface smi, StepDataInterface sdi ) {
+    meta = (SmsStatusMeta) smi;
+    data = (SmsStatusData) sdi;
+    if ( !super.init( smi, sdi ) ) {
+      return false;
+    }
+
+    if ( Utils.isEmpty( meta.getAccountSid() ) ) {
+      logError( BaseMessages.getString( PKG, "SmsSender.Missing.AccountSid" ) );
+      return false;
+    }
+    if ( Utils.isEmpty( meta.getAuthToken() ) ) {
+      logError( BaseMessages.getString( PKG, "SmsSender.Missing.AuthToken" ) );
+      return false;
+    }
+    if ( Utils.isEmpty( meta.getMessageSidField() ) ) {
+      logError( BaseMessages.getString( PKG, "SmsStatus.Missing.MessageSid" ) );
+      return false;
+    }
+    data.maxInFlight = Const.toInt( environmentSubstitute( meta.getMaxInFlight() ), DEFAULT_MAX_IN_FLIGHT );
+    if ( data.maxInFlight < 1 ) {
+      logError( BaseMessages.getString( PKG, "SmsStatus.Invalid.MaxInFlight", meta.getMaxInFlight() ) );
+      return false;
+    }
+    int maxAttempts = Const.toInt( environmentSubstitute( meta.getMaxAttempts() ), DEFAULT_MAX_ATTEMPTS );
+    if ( maxAttempts < 1 ) {
+      logError( BaseMessages.getString( PKG, "SmsSender.Invalid.MaxAttempts", meta.getMaxAttempts() ) );
+      return false;
+    }
+    double rateLimit = Const.toDouble( environmentSubstitute( meta.getRateLimit() ), 0 );
+    if ( rateLimit < 0 ) {
+      logError( BaseMessages.getString( PKG, "SmsStatus.Invalid.RateLimit", meta.getRateLimit() ) );
+      return false;
+    }
+
+    String apiBaseUrl = Utils.isEmpty( meta.getApiBaseUrl() ) ? null : environmentSubstitute( meta.getApiBaseUrl() );
+    data.httpClient = new PooledHttpClient( apiBaseUrl, data.maxInFlight, IDLE_CONNECTION_TIMEOUT, CONNECT_TIMEOUT,
+      READ_TIMEOUT );
+    data.client = new TwilioRestClient.Builder(
+      environmentSubstitute( meta.getAccountSid() ), environmentSubstitute( meta.getAuthToken() ) )
+      .httpClient( data.httpClient )
+      .build();
+    if ( rateLimit > 0 ) {
+      // Lookups don't count against the account's sending rate, so they have their own bucket.
+      data.rateLimit = TokenBucket.get( "lookup:" + data.client.getAccountSid(), rateLimit, log );
+    }
+    data.retryPolicy = new RetryPolicy( maxAttempts, RETRY_BASE_DELAY, RETRY_MAX_DELAY, RETRY_JITTER,
+      RetryPolicy.parseCodes( RETRYABLE_CODES ) );
+
+    final String name = getStepname() + "." + getCopy();
+    final AtomicInteger threadNr = new AtomicInteger();
+    data.executor = Executors.newFixedThreadPool( data.maxInFlight, runnable -> {
+      Thread thread = new Thread( runnable, name + "-lookup-" + threadNr.incrementAndGet() );
+      thread.setDaemon( true );
+      return thread;
+    } );
+    return true;
+  }
+
+  public boolean processRow( StepMetaInterface smi, StepDataInterface sdi ) throws KettleException {
+    Object[] r = getRow(); // get row, set busy!
+    if ( r == null ) {
+      // no more input to be expected, pass on the lookups still running...
+      while ( !data.pending.isEmpty() ) {
+        if ( !putNextRow() ) {
+          return false;
+        }
+      }
+      setOutputDone();
+      return false;
+    }
+
+    if ( first ) {
+      first = false;
+      data.messageSidIdx = getInputRowMeta().indexOfValue( meta.getMessageSidField() );
+      if ( data.messageSidIdx < 0 ) {
+        logError( BaseMessages.getString( PKG, "SmsStatus.Invalid.MessageSid", meta.getMessageSidField() ) );
+        setErrors( 1 );
+        stopAll();
+        return false;
+      }
+      data.outputRowMeta = getInputRowMeta().clone();
+      meta.getFields( data.outputRowMeta, getStepname(), null, null, this, repository, metaStore );
+      data.startPoint = getInputRowMeta().size();
+    }
+
+    r = RowDataUtil.resizeArray( r, data.outputRowMeta.size() );
+    final String sid = getInputRowMeta().getString( r, data.messageSidIdx );
+    Future<Message> message;
+    if ( Utils.isEmpty( sid ) ) {
+      CompletableFuture<Message> noMessage = new CompletableFuture<>();
+      noMessage.completeExceptionally(
+        new IllegalArgumentException( BaseMessages.getString( PKG, "SmsStatus.Null.MessageSid" ) ) );
+      message = noMessage;
+    } else {
+      message = data.executor.submit( () -> fetch( sid ) );
+    }
+    data.pending.add( new SmsStatusData.PendingLookup( r, message ) );
+
+    // Pass on the lookups done so far, waiting for the oldest one when the window is full.
+    while ( !data.pending.isEmpty()
+      && ( data.pending.size() >= data.maxInFlight || data.pending.peek().message.isDone() ) ) {
+      if ( !putNextRow() ) {
+        return false;
+      }
+    }
+
+    if ( checkFeedback( getLinesRead() ) ) {
+      if ( log.isBasic() ) {
+        logBasic( BaseMessages.getString( PKG, "SmsSender.Log.LineNumber" ) + getLinesRead() );
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Fetches a message on a worker thread, retrying the failures the retry policy allows.
+   */
+  private Message fetch( String sid ) throws InterruptedException {
+    for ( int attempt = 1; ; attempt++ ) {
+      if ( data.rateLimit != null ) {
+        TokenBucket.acquire( data.rateLimit );
+      }
+      try {
+        return Message.fetcher( sid ).fetch( data.client );
+      } catch ( RuntimeException ex ) {
+        long delay = data.retryPolicy.getRetryDelay( attempt, ex );
+        if ( delay < 0 ) {
+          throw ex;
+        }
+        Thread.sleep( delay );
+      }
+    }
+  }
+
+  /**
+   * Waits for the oldest lookup in flight and writes its row out.
+   *
+   * @return false if the step was stopped while waiting.
+   */
+  private boolean putNextRow() throws KettleException {
+    SmsStatusData.PendingLookup lookup = data.pending.peek();
+    Message message = null;
+    Throwable error = null;
+    while ( true ) {
+      if ( isStopped() ) {
+        return false;
+      }
+      try {
+        message = lookup.message.get( POLL_TIMEOUT, TimeUnit.MILLISECONDS );
+        break;
+      } catch ( TimeoutException e ) {
+        // Still running, check whether the step was stopped meanwhile.
+      } catch ( ExecutionException e ) {
+        error = e.getCause();
+        break;
+      } catch ( InterruptedException e ) {
+        Thread.currentThread().interrupt();
+        throw new KettleException( e );
+      }
+    }
+    data.pending.poll();
+
+    Object[] r = lookup.row;
+    if ( message != null ) {
+      writeOutputFields( r, message.getStatus() != null ? message.getStatus().toString() : null,
+        message.getPrice() != null ? message.getPrice().toString() : null,
+        message.getErrorCode(), message.getErrorMessage() );
+      putRow( data.outputRowMeta, r );
+      return true;
+    }
+
+    Integer errorCode = error instanceof ApiException ? ( (ApiException) error ).getCode() : null;
+    writeOutputFields( r, null, null, errorCode, error.getMessage() );
+    if ( getStepMeta().isDoingErrorHandling() ) {
+      putError( data.outputRowMeta, r, 1, error.getMessage(), meta.getMessageSidField(),
+        errorCode != null ? String.valueOf( errorCode ) : LOOKUP_FAILED );
+    } else {
+      logError( BaseMessages.getString( PKG, "SmsStatus.Lookup.Failed",
+        getInputRowMeta().getString( r, data.messageSidIdx ), error.getMessage() ) );
+      putRow( data.outputRowMeta, r );
+    }
+    return true;
+  }
+
+  private void writeOutputFields( Object[] r, String status, String price, Integer errorCode, String errorMessage ) {
+    int idx = data.startPoint;
+    if ( !Utils.isEmpty( meta.getStatusField() ) ) {
+      r[ idx++ ] = status;
+    }
+    if ( !Utils.isEmpty( meta.getPriceField() ) ) {
+      r[ idx++ ] = price;
+    }
+    if ( !Utils.isEmpty( meta.getErrorCodeField() ) ) {
+      r[ idx++ ] = errorCode != null ? Long.valueOf( errorCode ) : null;
+    }
+    if ( !Utils.isEmpty( meta.getErrorMessageField() ) ) {
+      r[ idx++ ] = errorMessage;
+    }
+  }
+
+  public void dispose( StepMetaInterface smi, StepDataInterface sdi ) {
+    meta = (SmsStatusMeta) smi;
+    data = (SmsStatusData) sdi;
+
+    if ( data.executor != null ) {
+      data.executor.shutdownNow();
+      data.executor = null;
+    }
+    data.pending.clear();
+    data.client = null;
+    if ( data.rateLimit != null ) {
+      data.rateLimit.release();
+      data.rateLimit = null;
+    }
+    if ( data.httpClient != null ) {
+      try {
+        data.httpClient.close();
+      } catch ( IOException e ) {
+        logError( BaseMessages.getString( PKG, "SmsSender.Log.ConnectionPoolCloseFailed", e.getMessage() ) );
+      }
+      data.httpClient = null;
+    }
+    super.dispose( smi, sdi );
+  }
+}
@@ -0,0 +1,198 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.leonardo.coelho;
+
+import com.twilio.security.RequestValidator;
+import org.pentaho.di.core.Const;
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.row.RowDataUtil;
+import org.pentaho.di.core.row.RowMeta;
+import org.pentaho.di.core.util.Utils;
+import org.pentaho.di.i18n.BaseMessages;
+import org.pentaho.di.trans.Trans;
+import org.pentaho.di.trans.TransMeta;
+import org.pentaho.di.trans.step.BaseStep;
+import org.pentaho.di.trans.step.StepDataInterface;
+import org.pentaho.di.trans.step.StepInterface;
+import org.pentaho.di.trans.step.StepMeta;
+import org.pentaho.di.trans.step.StepMetaInterface;
+
+import java.io.IOException;
+
+/**
+ * Listens for the status callbacks Twilio posts as sent messages move through queued, sent, delivered and so
+ * on, writing one row per callback.
+ * <p>
+ * The step runs until it is stopped, unless a max. number of rows or an idle timeout is set. Only one copy can
+ * run, since every copy would listen on the same port.
+ */
+public class SmsStatusCallback extends BaseStep implements StepInterface {
+
+  private static Class<?> PKG = SmsStatusCallbackMeta.class; // for i18n purposes, needed by Translator2!!   $NON-NLS-1$
+
+  private static final int DEFAULT_PORT = 8080;
+  private static final int DEFAULT_QUEUE_SIZE = 10000;
+  private static final long POLL_TIMEOUT = 100;
+
+  private SmsStatusCallbackMeta meta;
+  private SmsStatusCallbackData data;
+
+  public SmsStatusCallback( StepMeta stepMeta, StepDataInterface stepDataInterface, int copyNr,
+                            TransMeta transMeta, Trans trans ) {
+    super( stepMeta, stepDataInterface, copyNr, transMeta, trans );
+  }
+
+  public boolean init( StepMetaInterface smi, StepDataInterface sdi ) {
+    meta = (SmsStatusCallbackMeta) smi;
+    data = (SmsStatusCallbackData) sdi;
+    if ( !super.init( smi, sdi ) ) {
+      return false;
+    }
+
+    if ( getStepMeta().getCopies() > 1 ) {
+      logError( BaseMessages.getString( PKG, "SmsStatusCallback.Invalid.Copies" ) );
+      return false;
+    }
+    int port = Const.toInt( environmentSubstitute( meta.getPort() ), DEFAULT_PORT );
+    if ( port < 0 || port > 65535 ) {
+      logError( BaseMessages.getString( PKG, "SmsStatusCallback.Invalid.Port", meta.getPort() ) );
+      return false;
+    }
+    String path = Const.NVL( environmentSubstitute( meta.getPath() ), "/" );
+    if ( !path.startsWith( "/" ) ) {
+      logError( BaseMessages.getString( PKG, "SmsStatusCallback.Invalid.Path", meta.getPath() ) );
+      return false;
+    }
+    int queueSize = Const.toInt( environmentSubstitute( meta.getQueueSize() ), DEFAULT_QUEUE_SIZE );
+    if ( queueSize < 1 ) {
+      logError( BaseMessages.getString( PKG, "SmsStatusCallback.Invalid.QueueSize", meta.getQueueSize() ) );
+      return false;
+    }
+    data.maxRows = Const.toLong( environmentSubstitute( meta.getMaxRows() ), 0 );
+    data.idleTimeout = Const.toLong( environmentSubstitute( meta.getIdleTimeout() ), 0 ) * 1000;
+    if ( data.maxRows < 0 || data.idleTimeout < 0 ) {
+      logError( BaseMessages.getString( PKG, "SmsStatusCallback.Invalid.StopAfter" ) );
+      return false;
+    }
+
+    RequestValidator validator = Utils.isEmpty( meta.getAuthToken() ) ? null
+      : new RequestValidator( environmentSubstitute( meta.getAuthToken() ) );
+    String publicUrl = Utils.isEmpty( meta.getPublicUrl() ) ? null : environmentSubstitute( meta.getPublicUrl() );
+    try {
+      data.server = new StatusCallbackServer( getStepname() + "." + getCopy(), port, path, queueSize, validator,
+        publicUrl );
+      data.server.start();
+    } catch ( IOException e ) {
+      logError( BaseMessages.getString( PKG, "SmsStatusCallback.Listen.Failed", String.valueOf( port ),
+        e.getMessage() ) );
+      return false;
+    }
+    logBasic( BaseMessages.getString( PKG, "SmsStatusCallback.Listening",
+      String.valueOf( data.server.getPort() ), path ) );
+    return true;
+  }
+
+  public boolean processRow( StepMetaInterface smi, StepDataInterface sdi ) throws KettleException {
+    if ( first ) {
+      first = false;
+      data.outputRowMeta = new RowMeta();
+      meta.getFields( data.outputRowMeta, getStepname(), null, null, this, repository, metaStore );
+      data.lastReceived = System.currentTimeMillis();
+    }
+
+    StatusCallbackServer.StatusCallback callback;
+    try {
+      callback = data.server.poll( POLL_TIMEOUT );
+    } catch ( InterruptedException e ) {
+      Thread.currentThread().interrupt();
+      throw new KettleException( e );
+    }
+    long now = System.currentTimeMillis();
+    if ( callback == null ) {
+      if ( data.idleTimeout > 0 && now - data.lastReceived >= data.idleTimeout ) {
+        logBasic( BaseMessages.getString( PKG, "SmsStatusCallback.Idle", data.idleTimeout / 1000 ) );
+        finish();
+        return false;
+      }
+      return true;
+    }
+    data.lastReceived = now;
+
+    putCallback( callback );
+    if ( data.maxRows > 0 && getLinesInput() >= data.maxRows ) {
+      finish();
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * Stops accepting callbacks, writes out the ones already accepted and ends the output. Twilio was answered
+   * that those were received, so they are written even past the max. number of rows.
+   */
+  private void finish() throws KettleException {
+    data.server.stopAccepting();
+    try {
+      for ( StatusCallbackServer.StatusCallback callback = data.server.poll( 0 ); callback != null;
+            callback = data.server.poll( 0 ) ) {
+        putCallback( callback );
+      }
+    } catch ( InterruptedException e ) {
+      Thread.currentThread().interrupt();
+      throw new KettleException( e );
+    }
+    setOutputDone();
+  }
+
+  private void putCallback( StatusCallbackServer.StatusCallback callback ) throws KettleException {
+    Object[] r = RowDataUtil.allocateRowData( data.outputRowMeta.size() );
+    int idx = 0;
+    if ( !Utils.isEmpty( meta.getMessageSidField() ) ) {
+      r[ idx++ ] = callback.messageSid;
+    }
+    if ( !Utils.isEmpty( meta.getStatusField() ) ) {
+      r[ idx++ ] = callback.status;
+    }
+    if ( !Utils.isEmpty( meta.getErrorCodeField() ) ) {
+      r[ idx++ ] = callback.errorCode;
+    }
+    incrementLinesInput();
+    putRow( data.outputRowMeta, r );
+
+    if ( checkFeedback( getLinesInput() ) ) {
+      if ( log.isBasic() ) {
+        logBasic( BaseMessages.getString( PKG, "SmsSender.Log.LineNumber" ) + getLinesInput() );
+      }
+    }
+  }
+
+  public void dispose( StepMetaInterface smi, StepDataInterface sdi ) {
+    meta = (SmsStatusCallbackMeta) smi;
+    data = (SmsStatusCallbackData) sdi;
+
+    if ( data.server != null ) {
+      data.server.stop();
+      if ( data.server.getRejected() > 0 ) {
+        logBasic( BaseMessages.getString( PKG, "SmsStatusCallback.Rejected", data.server.getRejected() ) );
+      }
+      data.server = null;
+    }
+    super.dispose( smi, sdi );
+  }
+}
@@ -0,0 +1,286 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.leonardo.coelho;
+
+import org.pentaho.di.core.annotations.Step;
+import org.pentaho.di.core.CheckResult;
+import org.pentaho.di.core.CheckResultInterface;
+import org.pentaho.di.core.database.DatabaseMeta;
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.exception.KettleStepException;
+import org.pentaho.di.core.exception.KettleXMLException;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.row.ValueMetaInterface;
+import org.pentaho.di.core.row.value.ValueMetaInteger;
+import org.pentaho.di.core.row.value.ValueMetaString;
+import org.pentaho.di.core.util.Utils;
+import org.pentaho.di.core.variables.VariableSpace;
+import org.pentaho.di.core.xml.XMLHandler;
+import org.pentaho.di.i18n.BaseMessages;
+import org.pentaho.di.repository.ObjectId;
+import org.pentaho.di.repository.Repository;
+import org.pentaho.di.trans.Trans;
+import org.pentaho.di.trans.TransMeta;
+import org.pentaho.di.trans.step.BaseStepMeta;
+import org.pentaho.di.trans.step.StepDataInterface;
+import org.pentaho.di.trans.step.StepInterface;
+import org.pentaho.di.trans.step.StepMeta;
+import org.pentaho.di.trans.step.StepMetaInterface;
+import org.pentaho.metastore.api.IMetaStore;
+import org.w3c.dom.Node;
+
+import java.util.List;
+
+/**
+ * Receives the status callbacks Twilio posts for messages sent by the SMS Sender step, one row per callback.
+ */
+@Step( id = "SmsStatusCallback", image = "SmsSender.svg", name = "SMS Status Callback",
+    description = "Receive the delivery status callbacks of sent SMS messages.", categoryDescription = "Input" )
+public class SmsStatusCallbackMeta extends BaseStepMeta implements StepMetaInterface {
+
+  private static Class<?> PKG = SmsStatusCallbackMeta.class; // for i18n purposes, needed by Translator2!!   $NON-NLS-1$
+
+  private String port;
+  private String path;
+  private String authToken;
+  private String publicUrl;
+  private String queueSize;
+  private String maxRows;
+  private String idleTimeout;
+  private String messageSidField;
+  private String statusField;
+  private String errorCodeField;
+
+  public SmsStatusCallbackMeta() {
+    super(); // allocate BaseStepMeta
+  }
+
+  public String getPort() {
+    return port;
+  }
+
+  public void setPort( String port ) {
+    this.port = port;
+  }
+
+  public String getPath() {
+    return path;
+  }
+
+  public void setPath( String path ) {
+    this.path = path;
+  }
+
+  public String getAuthToken() {
+    return authToken;
+  }
+
+  public void setAuthToken( String authToken ) {
+    this.authToken = authToken;
+  }
+
+  public String getPublicUrl() {
+    return publicUrl;
+  }
+
+  public void setPublicUrl( String publicUrl ) {
+    this.publicUrl = publicUrl;
+  }
+
+  public String getQueueSize() {
+    return queueSize;
+  }
+
+  public void setQueueSize( String queueSize ) {
+    this.queueSize = queueSize;
+  }
+
+  public String getMaxRows() {
+    return maxRows;
+  }
+
+  public void setMaxRows( String maxRows ) {
+    this.maxRows = maxRows;
+  }
+
+  public String getIdleTimeout() {
+    return idleTimeout;
+  }
+
+  public void setIdleTimeout( String idleTimeout ) {
+    this.idleTimeout = idleTimeout;
+  }
+
+  public String getMessageSidField() {
+    return messageSidField;
+  }
+
+  public void setMessageSidField( String messageSidField ) {
+    this.messageSidField = messageSidField;
+  }
+
+  public String getStatusField() {
+    return statusField;
+  }
+
+  public void setStatusField( String statusField ) {
+    this.statusField = statusField;
+  }
+
+  public String getErrorCodeField() {
+    return errorCodeField;
+  }
+
+  public void setErrorCodeField( String errorCodeField ) {
+    this.errorCodeField = errorCodeField;
+  }
+
+  public void loadXML( Node stepnode, List<DatabaseMeta> databases, IMetaStore metaStore ) throws KettleXMLException {
+    readData( stepnode );
+  }
+
+  public Object clone() {
+    Object retval = super.clone();
+    return retval;
+  }
+
+  private void readData( Node stepnode ) {
+    port = XMLHandler.getTagValue( stepnode, "port" );
+    path = XMLHandler.getTagValue( stepnode, "path" );
+    authToken = XMLHandler.getTagValue( stepnode, "authToken" );
+    publicUrl = XMLHandler.getTagValue( stepnode, "publicUrl" );
+    queueSize = XMLHandler.getTagValue( stepnode, "queueSize" );
+    maxRows = XMLHandler.getTagValue( stepnode, "maxRows" );
+    idleTimeout = XMLHandler.getTagValue( stepnode, "idleTimeout" );
+    messageSidField = XMLHandler.getTagValue( stepnode, "messageSidField" );
+    statusField = XMLHandler.getTagValue( stepnode, "statusField" );
+    errorCodeField = XMLHandler.getTagValue( stepnode, "errorCodeField" );
+  }
+
+  public void setDefault() {
+    port = "8080";
+    path = "/sms/status";
+    queueSize = "10000";
+    maxRows = "";
+    idleTimeout = "";
+    messageSidField = "messageSid";
+    statusField = "status";
+    errorCodeField = "errorCode";
+  }
+
+  public void readRep( Repository rep, IMetaStore metaStore, ObjectId id_step, List<DatabaseMeta> databases ) throws KettleException {
+    try {
+      port = rep.getStepAttributeString( id_step, "port" );
+      path = rep.getStepAttributeString( id_step, "path" );
+      authToken = rep.getStepAttributeString( id_step, "authToken" );
+      publicUrl = rep.getStepAttributeString( id_step, "publicUrl" );
+      queueSize = rep.getStepAttributeString( id_step, "queueSize" );
+      maxRows = rep.getStepAttributeString( id_step, "maxRows" );
+      idleTimeout = rep.getStepAttributeString( id_step, "idleTimeout" );
+      messageSidField = rep.getStepAttributeString( id_step, "messageSidField" );
+      statusField = rep.getStepAttributeString( id_step, "statusField" );
+      errorCodeField = rep.getStepAttributeString( id_step, "errorCodeField" );
+    } catch ( Exception e ) {
+      throw new KettleException( BaseMessages.getString(
+        PKG, "SmsStatusCallbackMeta.Exception.UnexpectedErrorInReadingStepInfoFromRepository" ), e );
+    }
+  }
+
+  @Override
+  public String getXML() {
+    StringBuilder retval = new StringBuilder();
+    retval.append( "    " + XMLHandler.addTagValue( "port", port ) );
+    retval.append( "    " + XMLHandler.addTagValue( "path", path ) );
+    retval.append( "    " + XMLHandler.addTagValue( "authToken", authToken ) );
+    retval.append( "    " + XMLHandler.addTagValue( "publicUrl", publicUrl ) );
+    retval.append( "    " + XMLHandler.addTagValue( "queueSize", queueSize ) );
+    retval.append( "    " + XMLHandler.addTagValue( "maxRows", maxRows ) );
+    retval.append( "    " + XMLHandler.addTagValue( "idleTimeout", idleTimeout ) );
+    retval.append( "    " + XMLHandler.addTagValue( "messageSidField", messageSidField ) );
+    retval.append( "    " + XMLHandler.addTagValue( "statusField", statusField ) );
+    retval.append( "    " + XMLHandler.addTagValue( "errorCodeField", errorCodeField ) );
+    return retval.toString();
+  }
+
+  public void saveRep( Repository rep, IMetaStore metaStore, ObjectId id_transformation, ObjectId id_step )
+    throws KettleException {
+    try {
+      rep.saveStepAttribute( id_transformation, id_step, "port", port );
+      rep.saveStepAttribute( id_transformation, id_step, "path", path );
+      rep.saveStepAttribute( id_transformation, id_step, "authToken", authToken );
+      rep.saveStepAttribute( id_transformation, id_step, "publicUrl", publicUrl );
+      rep.saveStepAttribute( id_transformation, id_step, "queueSize", queueSize );
+      rep.saveStepAttribute( id_transformation, id_step, "maxRows", maxRows );
+      rep.saveStepAttribute( id_transformation, id_step, "idleTimeout", idleTimeout );
+      rep.saveStepAttribute( id_transformation, id_step, "messageSidField", messageSidField );
+      rep.saveStepAttribute( id_transformation, id_step, "statusField", statusField );
+      rep.saveStepAttribute( id_transformation, id_step, "errorCodeField", errorCodeField );
+    } catch ( Exception e ) {
+      throw new KettleException( BaseMessages.getString(
+        PKG, "SmsStatusCallbackMeta.Exception.UnableToSaveStepInfoToRepository", id_step ), e );
+    }
+  }
+
+  public void getFields( RowMetaInterface rowMeta, String origin, RowMetaInterface[] info, StepMeta nextStep,
+    VariableSpace space, Repository repository, IMetaStore metaStore ) throws KettleStepException {
+    addField( rowMeta, messageSidField, ValueMetaInterface.TYPE_STRING, origin );
+    addField( rowMeta, statusField, ValueMetaInterface.TYPE_STRING, origin );
+    addField( rowMeta, errorCodeField, ValueMetaInterface.TYPE_INTEGER, origin );
+  }
+
+  private static void addField( RowMetaInterface rowMeta, String name, int type, String origin ) {
+    if ( Utils.isEmpty( name ) ) {
+      return;
+    }
+    ValueMetaInterface valueMeta = type == ValueMetaInterface.TYPE_INTEGER
+      ? new ValueMetaInteger( name ) : new ValueMetaString( name );
+    valueMeta.setOrigin( origin );
+    rowMeta.addValueMeta( valueMeta );
+  }
+
+  public void check( List<CheckResultInterface> remarks, TransMeta transMeta,
+    StepMeta stepMeta, RowMetaInterface prev, String input[], String output[],
+    RowMetaInterface info, VariableSpace space, Repository repository,
+    IMetaStore metaStore ) {
+    if ( input.length > 0 ) {
+      remarks.add( new CheckResult( CheckResultInterface.TYPE_RESULT_ERROR, BaseMessages.getString(
+        PKG, "SmsStatusCallbackMeta.CheckResult.NoInputExpected" ), stepMeta ) );
+    } else {
+      remarks.add( new CheckResult( CheckResultInterface.TYPE_RESULT_OK, BaseMessages.getString(
+        PKG, "SmsStatusCallbackMeta.CheckResult.NoInput" ), stepMeta ) );
+    }
+    if ( Utils.isEmpty( authToken ) ) {
+      remarks.add( new CheckResult( CheckResultInterface.TYPE_RESULT_WARNING, BaseMessages.getString(
+        PKG, "SmsStatusCallbackMeta.CheckResult.NotValidated" ), stepMeta ) );
+    }
+  }
+
+  public StepInterface getStep( StepMeta stepMeta, StepDataInterface stepDataInterface, int cnr, TransMeta tr,
+                                Trans trans ) {
+    return new SmsStatusCallback( stepMeta, stepDataInterface, cnr, tr, trans );
+  }
+
+  public StepDataInterface getStepData() {
+    return new SmsStatusCallbackData();
+  }
+
+  public String getDialogClassName() {
+    return "com.leonardo.coelho.SmsStatusCallbackDialog";
+  }
+}
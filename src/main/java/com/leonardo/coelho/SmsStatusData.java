@@ -0,0 +1,61 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.leonardo.coelho;
+
+import com.twilio.http.TwilioRestClient;
+import com.twilio.rest.api.v2010.account.Message;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.trans.step.BaseStepData;
+import org.pentaho.di.trans.step.StepDataInterface;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+public class SmsStatusData extends BaseStepData implements StepDataInterface {
+  int messageSidIdx;
+
+  RowMetaInterface outputRowMeta;
+  int startPoint;
+
+  PooledHttpClient httpClient;
+  TwilioRestClient client;
+  ExecutorService executor;
+  RetryPolicy retryPolicy;
+  TokenBucket rateLimit;
+  int maxInFlight;
+
+  // Lookups in flight, in input order so rows are written out in the order they came in.
+  Deque<PendingLookup> pending = new ArrayDeque<>();
+
+  public SmsStatusData() {
+    super();
+  }
+
+  static class PendingLookup {
+    final Object[] row;
+    final Future<Message> message;
+
+    PendingLookup( Object[] row, Future<Message> message ) {
+      this.row = row;
+      this.message = message;
+    }
+  }
+}
@@ -0,0 +1,326 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.leonardo.coelho;
+
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.custom.CCombo;
+import org.eclipse.swt.custom.ScrolledComposite;
+import org.eclipse.swt.events.ModifyEvent;
+import org.eclipse.swt.events.ModifyListener;
+import org.eclipse.swt.events.SelectionAdapter;
+import org.eclipse.swt.events.SelectionEvent;
+import org.eclipse.swt.events.ShellAdapter;
+import org.eclipse.swt.events.ShellEvent;
+import org.eclipse.swt.layout.FormData;
+import org.eclipse.swt.layout.FormLayout;
+import org.eclipse.swt.widgets.Button;
+import org.eclipse.swt.widgets.Composite;
+import org.eclipse.swt.widgets.Control;
+import org.eclipse.swt.widgets.Display;
+import org.eclipse.swt.widgets.Group;
+import org.eclipse.swt.widgets.Label;
+import org.eclipse.swt.widgets.Shell;
+import org.eclipse.swt.widgets.Text;
+import org.pentaho.di.core.Const;
+import org.pentaho.di.core.exception.KettleStepException;
+import org.pentaho.di.i18n.BaseMessages;
+import org.pentaho.di.trans.TransMeta;
+import org.pentaho.di.trans.step.BaseStepMeta;
+import org.pentaho.di.trans.step.StepDialogInterface;
+import org.pentaho.di.ui.core.FormDataBuilder;
+import org.pentaho.di.ui.core.widget.TextVar;
+import org.pentaho.di.ui.trans.step.BaseStepDialog;
+
+import java.util.Arrays;
+
+public class SmsStatusDialog extends BaseStepDialog implements StepDialogInterface {
+  private static Class<?> PKG = SmsStatusMeta.class; // for i18n purposes, needed by Translator2!!   $NON-NLS-1$
+
+  private static final int MARGIN_SIZE = 15;
+  private static final int ELEMENT_SPACING = Const.MARGIN;
+
+  private SmsStatusMeta meta;
+
+  private ScrolledComposite scrolledComposite;
+  private Composite contentComposite;
+
+  private Text wStepNameField;
+
+  // Twilio - credentials.
+  private Text wAccountSidField;
+  private Text wAuthTokenField;
+
+  // Input fields.
+  private CCombo wMessageSidField;
+
+  // Output fields.
+  private Text wStatusField;
+  private Text wPriceField;
+  private Text wErrorCodeField;
+  private Text wErrorMessageField;
+
+  // Lookup options.
+  private Text wMaxInFlightField;
+  private Text wRateLimitField;
+  private Text wMaxAttemptsField;
+  private TextVar wApiBaseUrlField;
+
+  private boolean changed;
+
+  public SmsStatusDialog( Shell parent, Object in, TransMeta tr, String sname ) {
+    super( parent, (BaseStepMeta) in, tr, sname );
+    meta = (SmsStatusMeta) in;
+  }
+
+  public String open() {
+    // Set up window
+    Shell parent = getParent();
+    Display display = parent.getDisplay();
+
+    shell = new Shell( parent, SWT.DIALOG_TRIM | SWT.RESIZE | SWT.MIN | SWT.MAX );
+    props.setLook( shell );
+    setShellImage( shell, meta );
+
+    lsMod = new ModifyListener() {
+      public void modifyText( ModifyEvent e ) {
+        meta.setChanged();
+      }
+    };
+    changed = meta.hasChanged();
+
+    // 15 pixel margins
+    FormLayout formLayout = new FormLayout();
+    formLayout.marginLeft = MARGIN_SIZE;
+    formLayout.marginHeight = MARGIN_SIZE;
+    shell.setLayout( formLayout );
+    shell.setText( BaseMessages.getString( PKG, "SmsStatusDialog.Shell.Title" ) );
+
+    // Build a scrolling composite and a composite for holding all content
+    scrolledComposite = new ScrolledComposite( shell, SWT.V_SCROLL );
+    contentComposite = new Composite( scrolledComposite, SWT.NONE );
+    FormLayout contentLayout = new FormLayout();
+    contentLayout.marginRight = MARGIN_SIZE;
+    contentComposite.setLayout( contentLayout );
+    contentComposite.setLayoutData( new FormDataBuilder().fullSize().result() );
+    props.setLook( contentComposite );
+
+    // Step name label and text field.
+    addLabel( contentComposite, "SmsSenderDialog.Stepname.Label", null );
+    wStepNameField = addTextField( contentComposite, null );
+    wStepNameField.setText( stepname );
+
+    // Spacer between entry info and content.
+    Label topSpacer = new Label( contentComposite, SWT.HORIZONTAL | SWT.SEPARATOR );
+    topSpacer.setLayoutData( new FormDataBuilder().fullWidth().top( wStepNameField, MARGIN_SIZE ).result() );
+
+    // Group for Twilio credentials fields.
+    Group credentialsGroup = addGroup( "SmsSenderDialog.Credentials.GroupText", topSpacer );
+    addLabel( credentialsGroup, "SmsSenderDialog.AccountSid.Label", null );
+    wAccountSidField = addTextField( credentialsGroup, null );
+    addLabel( credentialsGroup, "SmsSenderDialog.AuthToken.Label", wAccountSidField );
+    wAuthTokenField = addTextField( credentialsGroup, wAccountSidField );
+
+    // Group for input fields.
+    Group inputGroup = addGroup( "SmsStatusDialog.Input.GroupText", credentialsGroup );
+    addLabel( inputGroup, "SmsStatusDialog.MessageSid.Label", null );
+    wMessageSidField = new CCombo( inputGroup, SWT.BORDER );
+    props.setLook( wMessageSidField );
+    wMessageSidField.addModifyListener( lsMod );
+    wMessageSidField.setLayoutData( rightColumn( null ) );
+
+    // Group for output fields.
+    Group outputGroup = addGroup( "SmsSenderDialog.Output.GroupText", inputGroup );
+    addLabel( outputGroup, "SmsSenderDialog.Status.Label", null );
+    wStatusField = addTextField( outputGroup, null );
+    addLabel( outputGroup, "SmsSenderDialog.Price.Label", wStatusField );
+    wPriceField = addTextField( outputGroup, wStatusField );
+    addLabel( outputGroup, "SmsSenderDialog.ErrorCode.Label", wPriceField );
+    wErrorCodeField = addTextField( outputGroup, wPriceField );
+    addLabel( outputGroup, "SmsSenderDialog.ErrorMessage.Label", wErrorCodeField );
+    wErrorMessageField = addTextField( outputGroup, wErrorCodeField );
+
+    // Group for lookup options.
+    Group lookupGroup = addGroup( "SmsStatusDialog.Lookup.GroupText", outputGroup );
+    addLabel( lookupGroup, "SmsStatusDialog.MaxInFlight.Label", null );
+    wMaxInFlightField = addTextField( lookupGroup, null );
+    addLabel( lookupGroup, "SmsStatusDialog.RateLimit.Label", wMaxInFlightField );
+    wRateLimitField = addTextField( lookupGroup, wMaxInFlightField );
+    addLabel( lookupGroup, "SmsStatusDialog.MaxAttempts.Label", wRateLimitField );
+    wMaxAttemptsField = addTextField( lookupGroup, wRateLimitField );
+    addLabel( lookupGroup, "SmsSenderDialog.ApiBaseUrl.Label", wMaxAttemptsField );
+    wApiBaseUrlField = new TextVar( transMeta, lookupGroup, SWT.SINGLE | SWT.LEFT | SWT.BORDER );
+    props.setLook( wApiBaseUrlField );
+    wApiBaseUrlField.addModifyListener( lsMod );
+    wApiBaseUrlField.setLayoutData( rightColumn( wMaxAttemptsField ) );
+
+    // Cancel and OK buttons for the bottom of the window.
+    wCancel = new Button( shell, SWT.PUSH );
+    wCancel.setText( BaseMessages.getString( PKG, "System.Button.Cancel" ) );
+    wCancel.setLayoutData( new FormDataBuilder().right( 100, -MARGIN_SIZE ).bottom().result() );
+
+    wOK = new Button( shell, SWT.PUSH );
+    wOK.setText( BaseMessages.getString( PKG, "System.Button.OK" ) );
+    wOK.setLayoutData( new FormDataBuilder().right( wCancel, -ELEMENT_SPACING ).bottom().result() );
+
+    // Space between bottom buttons and and group content.
+    Label bottomSpacer = new Label( shell, SWT.HORIZONTAL | SWT.SEPARATOR );
+    bottomSpacer.setLayoutData( new FormDataBuilder().left()
+      .right( 100, -MARGIN_SIZE )
+      .bottom( wCancel, -MARGIN_SIZE )
+      .result() );
+
+    // Add everything to the scrolling composite
+    scrolledComposite.setContent( contentComposite );
+    scrolledComposite.setExpandVertical( true );
+    scrolledComposite.setExpandHorizontal( true );
+    scrolledComposite.setMinSize( contentComposite.computeSize( SWT.DEFAULT, SWT.DEFAULT ) );
+
+    scrolledComposite.setLayout( new FormLayout() );
+    scrolledComposite.setLayoutData( new FormDataBuilder().fullWidth()
+      .top()
+      .bottom( bottomSpacer, -MARGIN_SIZE )
+      .result() );
+    props.setLook( scrolledComposite );
+
+    // Listeners
+    wOK.addListener( SWT.Selection, e -> ok() );
+    wCancel.addListener( SWT.Selection, e -> cancel() );
+    wStepNameField.addSelectionListener( new SelectionAdapter() {
+      public void widgetDefaultSelected( SelectionEvent e ) {
+        ok();
+      }
+    } );
+    shell.addShellListener( new ShellAdapter() {
+      public void shellClosed( ShellEvent e ) {
+        cancel();
+      }
+    } );
+
+    // Show shell
+    setSize();
+
+    // Populate Window.
+    getData();
+    meta.setChanged( changed );
+
+    shell.open();
+    while ( !shell.isDisposed() ) {
+      if ( !display.readAndDispatch() ) {
+        display.sleep();
+      }
+    }
+    return stepname;
+  }
+
+  /**
+   * Copy information from the meta-data input to the dialog fields.
+   */
+  public void getData() {
+    // Add previous fields to the message SID combo box options.
+    try {
+      Arrays.stream( transMeta.getPrevStepFields( stepname ).getFieldNames() ).forEach( wMessageSidField::add );
+    } catch ( KettleStepException e ) {
+      e.printStackTrace();
+    }
+
+    wAccountSidField.setText( Const.NVL( meta.getAccountSid(), "" ) );
+    wAuthTokenField.setText( Const.NVL( meta.getAuthToken(), "" ) );
+    wMessageSidField.setText( Const.NVL( meta.getMessageSidField(), "" ) );
+    wStatusField.setText( Const.NVL( meta.getStatusField(), "" ) );
+    wPriceField.setText( Const.NVL( meta.getPriceField(), "" ) );
+    wErrorCodeField.setText( Const.NVL( meta.getErrorCodeField(), "" ) );
+    wErrorMessageField.setText( Const.NVL( meta.getErrorMessageField(), "" ) );
+    wMaxInFlightField.setText( Const.NVL( meta.getMaxInFlight(), "" ) );
+    wRateLimitField.setText( Const.NVL( meta.getRateLimit(), "" ) );
+    wMaxAttemptsField.setText( Const.NVL( meta.getMaxAttempts(), "" ) );
+    wApiBaseUrlField.setText( Const.NVL( meta.getApiBaseUrl(), "" ) );
+  }
+
+  /**
+   * Save information from dialog fields to the meta-data input.
+   */
+  private void getMeta( SmsStatusMeta meta ) {
+    meta.setAccountSid( wAccountSidField.getText() );
+    meta.setAuthToken( wAuthTokenField.getText() );
+    meta.setMessageSidField( wMessageSidField.getText() );
+    meta.setStatusField( wStatusField.getText() );
+    meta.setPriceField( wPriceField.getText() );
+    meta.setErrorCodeField( wErrorCodeField.getText() );
+    meta.setErrorMessageField( wErrorMessageField.getText() );
+    meta.setMaxInFlight( wMaxInFlightField.getText() );
+    meta.setRateLimit( wRateLimitField.getText() );
+    meta.setMaxAttempts( wMaxAttemptsField.getText() );
+    meta.setApiBaseUrl( wApiBaseUrlField.getText() );
+  }
+
+  /**
+   * Adds a full width group to the content, below the given control.
+   */
+  private Group addGroup( String textKey, Control above ) {
+    Group group = new Group( contentComposite, SWT.SHADOW_ETCHED_IN );
+    group.setText( BaseMessages.getString( PKG, textKey ) );
+    FormLayout groupLayout = new FormLayout();
+    groupLayout.marginWidth = MARGIN_SIZE;
+    groupLayout.marginHeight = MARGIN_SIZE;
+    group.setLayout( groupLayout );
+    group.setLayoutData( new FormDataBuilder().fullWidth().top( above, MARGIN_SIZE ).result() );
+    props.setLook( group );
+    return group;
+  }
+
+  /**
+   * Adds a label to the left column of a group, below the given control or at the top if there is none.
+   */
+  private Label addLabel( Composite parent, String textKey, Control above ) {
+    Label label = new Label( parent, SWT.RIGHT );
+    props.setLook( label );
+    label.setText( BaseMessages.getString( PKG, textKey ) );
+    FormDataBuilder builder = new FormDataBuilder().left();
+    builder = above == null ? builder.top() : builder.top( above, ELEMENT_SPACING );
+    label.setLayoutData( builder.right( props.getMiddlePct(), -ELEMENT_SPACING ).result() );
+    return label;
+  }
+
+  /**
+   * Adds a text field to the right column of a group, below the given control or at the top if there is none.
+   */
+  private Text addTextField( Composite parent, Control above ) {
+    Text field = new Text( parent, SWT.SINGLE | SWT.LEFT | SWT.BORDER );
+    props.setLook( field );
+    field.addModifyListener( lsMod );
+    field.setLayoutData( rightColumn( above ) );
+    return field;
+  }
+
+  private FormData rightColumn( Control above ) {
+    FormDataBuilder builder = new FormDataBuilder().left( props.getMiddlePct(), 0 );
+    builder = above == null ? builder.top() : builder.top( above, ELEMENT_SPACING );
+    return builder.right( 100, 0 ).result();
+  }
+
+  private void cancel() {
+    dispose();
+  }
+
+  private void ok() {
+    getMeta( meta );
+    stepname = wStepNameField.getText();
+    dispose();
+  }
+}
@@ -0,0 +1,300 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.leonardo.coelho;
+
+import org.pentaho.di.core.annotations.Step;
+import org.pentaho.di.core.CheckResult;
+import org.pentaho.di.core.CheckResultInterface;
+import org.pentaho.di.core.database.DatabaseMeta;
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.exception.KettleStepException;
+import org.pentaho.di.core.exception.KettleXMLException;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.row.ValueMetaInterface;
+import org.pentaho.di.core.row.value.ValueMetaInteger;
+import org.pentaho.di.core.row.value.ValueMetaString;
+import org.pentaho.di.core.util.Utils;
+import org.pentaho.di.core.variables.VariableSpace;
+import org.pentaho.di.core.xml.XMLHandler;
+import org.pentaho.di.i18n.BaseMessages;
+import org.pentaho.di.repository.ObjectId;
+import org.pentaho.di.repository.Repository;
+import org.pentaho.di.trans.Trans;
+import org.pentaho.di.trans.TransMeta;
+import org.pentaho.di.trans.step.BaseStepMeta;
+import org.pentaho.di.trans.step.StepDataInterface;
+import org.pentaho.di.trans.step.StepInterface;
+import org.pentaho.di.trans.step.StepMeta;
+import org.pentaho.di.trans.step.StepMetaInterface;
+import org.pentaho.metastore.api.IMetaStore;
+import org.w3c.dom.Node;
+
+import java.util.List;
+
+/**
+ * Looks up the current delivery status of messages sent by the SMS Sender step, by message SID.
+ */
+@Step( id = "SmsStatus", image = "SmsSender.svg", name = "SMS Status",
+    description = "Look up the delivery status of sent SMS messages.", categoryDescription = "Lookup" )
+public class SmsStatusMeta extends BaseStepMeta implements StepMetaInterface {
+
+  private static Class<?> PKG = SmsStatusMeta.class; // for i18n purposes, needed by Translator2!!   $NON-NLS-1$
+
+  private String accountSid;
+  private String authToken;
+  private String messageSidField;
+  private String statusField;
+  private String errorCodeField;
+  private String errorMessageField;
+  private String priceField;
+  private String maxInFlight;
+  private String rateLimit;
+  private String maxAttempts;
+  private String apiBaseUrl;
+
+  public SmsStatusMeta() {
+    super(); // allocate BaseStepMeta
+  }
+
+  public String getAccountSid() {
+    return accountSid;
+  }
+
+  public void setAccountSid( String accountSid ) {
+    this.accountSid = accountSid;
+  }
+
+  public String getAuthToken() {
+    return authToken;
+  }
+
+  public void setAuthToken( String authToken ) {
+    this.authToken = authToken;
+  }
+
+  public String getMessageSidField() {
+    return messageSidField;
+  }
+
+  public void setMessageSidField( String messageSidField ) {
+    this.messageSidField = messageSidField;
+  }
+
+  public String getStatusField() {
+    return statusField;
+  }
+
+  public void setStatusField( String statusField ) {
+    this.statusField = statusField;
+  }
+
+  public String getErrorCodeField() {
+    return errorCodeField;
+  }
+
+  public void setErrorCodeField( String errorCodeField ) {
+    this.errorCodeField = errorCodeField;
+  }
+
+  public String getErrorMessageField() {
+    return errorMessageField;
+  }
+
+  public void setErrorMessageField( String errorMessageField ) {
+    this.errorMessageField = errorMessageField;
+  }
+
+  public String getPriceField() {
+    return priceField;
+  }
+
+  public void setPriceField( String priceField ) {
+    this.priceField = priceField;
+  }
+
+  public String getMaxInFlight() {
+    return maxInFlight;
+  }
+
+  public void setMaxInFlight( String maxInFlight ) {
+    this.maxInFlight = maxInFlight;
+  }
+
+  public String getRateLimit() {
+    return rateLimit;
+  }
+
+  public void setRateLimit( String rateLimit ) {
+    this.rateLimit = rateLimit;
+  }
+
+  public String getMaxAttempts() {
+    return maxAttempts;
+  }
+
+  public void setMaxAttempts( String maxAttempts ) {
+    this.maxAttempts = maxAttempts;
+  }
+
+  public String getApiBaseUrl() {
+    return apiBaseUrl;
+  }
+
+  public void setApiBaseUrl( String apiBaseUrl ) {
+    this.apiBaseUrl = apiBaseUrl;
+  }
+
+  public void loadXML( Node stepnode, List<DatabaseMeta> databases, IMetaStore metaStore ) throws KettleXMLException {
+    readData( stepnode );
+  }
+
+  public Object clone() {
+    Object retval = super.clone();
+    return retval;
+  }
+
+  private void readData( Node stepnode ) {
+    accountSid = XMLHandler.getTagValue( stepnode, "accountSid" );
+    authToken = XMLHandler.getTagValue( stepnode, "authToken" );
+    messageSidField = XMLHandler.getTagValue( stepnode, "messageSidField" );
+    statusField = XMLHandler.getTagValue( stepnode, "statusField" );
+    errorCodeField = XMLHandler.getTagValue( stepnode, "errorCodeField" );
+    errorMessageField = XMLHandler.getTagValue( stepnode, "errorMessageField" );
+    priceField = XMLHandler.getTagValue( stepnode, "priceField" );
+    maxInFlight = XMLHandler.getTagValue( stepnode, "maxInFlight" );
+    rateLimit = XMLHandler.getTagValue( stepnode, "rateLimit" );
+    maxAttempts = XMLHandler.getTagValue( stepnode, "maxAttempts" );
+    apiBaseUrl = XMLHandler.getTagValue( stepnode, "apiBaseUrl" );
+  }
+
+  public void setDefault() {
+    statusField = "status";
+    maxInFlight = "10";
+    rateLimit = "";
+    maxAttempts = "3";
+  }
+
+  public void readRep( Repository rep, IMetaStore metaStore, ObjectId id_step, List<DatabaseMeta> databases ) throws KettleException {
+    try {
+      accountSid = rep.getStepAttributeString( id_step, "accountSid" );
+      authToken = rep.getStepAttributeString( id_step, "authToken" );
+      messageSidField = rep.getStepAttributeString( id_step, "messageSidField" );
+      statusField = rep.getStepAttributeString( id_step, "statusField" );
+      errorCodeField = rep.getStepAttributeString( id_step, "errorCodeField" );
+      errorMessageField = rep.getStepAttributeString( id_step, "errorMessageField" );
+      priceField = rep.getStepAttributeString( id_step, "priceField" );
+      maxInFlight = rep.getStepAttributeString( id_step, "maxInFlight" );
+      rateLimit = rep.getStepAttributeString( id_step, "rateLimit" );
+      maxAttempts = rep.getStepAttributeString( id_step, "maxAttempts" );
+      apiBaseUrl = rep.getStepAttributeString( id_step, "apiBaseUrl" );
+    } catch ( Exception e ) {
+      throw new KettleException( BaseMessages.getString(
+        PKG, "SmsStatusMeta.Exception.UnexpectedErrorInReadingStepInfoFromRepository" ), e );
+    }
+  }
+
+  @Override
+  public String getXML() {
+    StringBuilder retval = new StringBuilder();
+    retval.append( "    " + XMLHandler.addTagValue( "accountSid", accountSid ) );
+    retval.append( "    " + XMLHandler.addTagValue( "authToken", authToken ) );
+    retval.append( "    " + XMLHandler.addTagValue( "messageSidField", messageSidField ) );
+    retval.append( "    " + XMLHandler.addTagValue( "statusField", statusField ) );
+    retval.append( "    " + XMLHandler.addTagValue( "errorCodeField", errorCodeField ) );
+    retval.append( "    " + XMLHandler.addTagValue( "errorMessageField", errorMessageField ) );
+    retval.append( "    " + XMLHandler.addTagValue( "priceField", priceField ) );
+    retval.append( "    " + XMLHandler.addTagValue( "maxInFlight", maxInFlight ) );
+    retval.append( "    " + XMLHandler.addTagValue( "rateLimit", rateLimit ) );
+    retval.append( "    " + XMLHandler.addTagValue( "maxAttempts", maxAttempts ) );
+    retval.append( "    " + XMLHandler.addTagValue( "apiBaseUrl", apiBaseUrl ) );
+    return retval.toString();
+  }
+
+  public void saveRep( Repository rep, IMetaStore metaStore, ObjectId id_transformation, ObjectId id_step )
+    throws KettleException {
+    try {
+      rep.saveStepAttribute( id_transformation, id_step, "accountSid", accountSid );
+      rep.saveStepAttribute( id_transformation, id_step, "authToken", authToken );
+      rep.saveStepAttribute( id_transformation, id_step, "messageSidField", messageSidField );
+      rep.saveStepAttribute( id_transformation, id_step, "statusField", statusField );
+      rep.saveStepAttribute( id_transformation, id_step, "errorCodeField", errorCodeField );
+      rep.saveStepAttribute( id_transformation, id_step, "errorMessageField", errorMessageField );
+      rep.saveStepAttribute( id_transformation, id_step, "priceField", priceField );
+      rep.saveStepAttribute( id_transformation, id_step, "maxInFlight", maxInFlight );
+      rep.saveStepAttribute( id_transformation, id_step, "rateLimit", rateLimit );
+      rep.saveStepAttribute( id_transformation, id_step, "maxAttempts", maxAttempts );
+      rep.saveStepAttribute( id_transformation, id_step, "apiBaseUrl", apiBaseUrl );
+    } catch ( Exception e ) {
+      throw new KettleException( BaseMessages.getString(
+        PKG, "SmsStatusMeta.Exception.UnableToSaveStepInfoToRepository", id_step ), e );
+    }
+  }
+
+  public void getFields( RowMetaInterface rowMeta, String origin, RowMetaInterface[] info, StepMeta nextStep,
+    VariableSpace space, Repository repository, IMetaStore metaStore ) throws KettleStepException {
+    addField( rowMeta, statusField, ValueMetaInterface.TYPE_STRING, origin );
+    addField( rowMeta, priceField, ValueMetaInterface.TYPE_STRING, origin );
+    addField( rowMeta, errorCodeField, ValueMetaInterface.TYPE_INTEGER, origin );
+    addField( rowMeta, errorMessageField, ValueMetaInterface.TYPE_STRING, origin );
+  }
+
+  private static void addField( RowMetaInterface rowMeta, String name, int type, String origin ) {
+    if ( Utils.isEmpty( name ) ) {
+      return;
+    }
+    ValueMetaInterface valueMeta = type == ValueMetaInterface.TYPE_INTEGER
+      ? new ValueMetaInteger( name ) : new ValueMetaString( name );
+    valueMeta.setOrigin( origin );
+    rowMeta.addValueMeta( valueMeta );
+  }
+
+  public void check( List<CheckResultInterface> remarks, TransMeta transMeta,
+    StepMeta stepMeta, RowMetaInterface prev, String input[], String output[],
+    RowMetaInterface info, VariableSpace space, Repository repository,
+    IMetaStore metaStore ) {
+    if ( prev == null || prev.size() == 0 ) {
+      remarks.add( new CheckResult( CheckResultInterface.TYPE_RESULT_WARNING, BaseMessages.getString(
+        PKG, "SmsStatusMeta.CheckResult.NotReceivingFields" ), stepMeta ) );
+    } else if ( !Utils.isEmpty( messageSidField ) && prev.indexOfValue( messageSidField ) < 0 ) {
+      remarks.add( new CheckResult( CheckResultInterface.TYPE_RESULT_ERROR, BaseMessages.getString(
+        PKG, "SmsStatusMeta.CheckResult.MessageSidFieldMissing", messageSidField ), stepMeta ) );
+    } else {
+      remarks.add( new CheckResult( CheckResultInterface.TYPE_RESULT_OK, BaseMessages.getString(
+        PKG, "SmsStatusMeta.CheckResult.StepReceivingData", prev.size() + "" ), stepMeta ) );
+    }
+  }
+
+  public StepInterface getStep( StepMeta stepMeta, StepDataInterface stepDataInterface, int cnr, TransMeta tr,
+                                Trans trans ) {
+    return new SmsStatus( stepMeta, stepDataInterface, cnr, tr, trans );
+  }
+
+  public StepDataInterface getStepData() {
+    return new SmsStatusData();
+  }
+
+  @Override
+  public boolean supportsErrorHandling() {
+    return true;
+  }
+
+  public String getDialogClassName() {
+    return "com.leonardo.coelho.SmsStatusDialog";
+  }
+}
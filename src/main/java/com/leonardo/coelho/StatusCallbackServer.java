@@ -0,0 +1,211 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.leonardo.coelho;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import com.twilio.security.RequestValidator;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Embedded HTTP listener for Twilio status callbacks, queueing them for the step thread to write out.
+ * <p>
+ * Connections are accepted on a selector thread and each callback is only parsed and queued by the handler
+ * threads, so Twilio gets its answer right away. When the queue is full, callbacks are answered with a 503
+ * instead of piling up in memory, and Twilio tries them again later. Once {@link #stopAccepting()} is called
+ * they are all answered with a 503, so every callback answered with a 204 is in the queue.
+ */
+class StatusCallbackServer {
+
+  private static final String SIGNATURE_HEADER = "X-Twilio-Signature";
+  private static final int HANDLER_THREADS = 4;
+
+  private final HttpServer server;
+  private final ExecutorService executor;
+  private final BlockingQueue<StatusCallback> queue;
+  private final RequestValidator validator;
+  private final String publicUrl;
+  private final LongAdder rejected = new LongAdder();
+
+  // Handlers queue callbacks holding the read lock, so once the write lock is taken no more are queued.
+  private final ReadWriteLock acceptLock = new ReentrantReadWriteLock();
+  private boolean accepting = true;
+
+  /**
+   * @param name prefix of the handler thread names.
+   * @param port port to listen on.
+   * @param path path Twilio posts the callbacks to.
+   * @param queueCapacity max. callbacks received but not written out yet.
+   * @param validator checks the callbacks are signed by Twilio, or null to accept any callback.
+   * @param publicUrl URL Twilio calls, which callbacks are signed with, or null to rebuild it from the request.
+   */
+  StatusCallbackServer( String name, int port, String path, int queueCapacity, RequestValidator validator,
+                        String publicUrl ) throws IOException {
+    this.queue = new ArrayBlockingQueue<>( queueCapacity );
+    this.validator = validator;
+    this.publicUrl = publicUrl;
+    final AtomicInteger threadNr = new AtomicInteger();
+    this.executor = Executors.newFixedThreadPool( HANDLER_THREADS, runnable -> {
+      Thread thread = new Thread( runnable, name + "-callback-" + threadNr.incrementAndGet() );
+      thread.setDaemon( true );
+      return thread;
+    } );
+    this.server = HttpServer.create( new InetSocketAddress( port ), 0 );
+    server.setExecutor( executor );
+    server.createContext( path, this::handle );
+  }
+
+  void start() {
+    server.start();
+  }
+
+  void stop() {
+    server.stop( 0 );
+    executor.shutdownNow();
+  }
+
+  /**
+   * Answers the callbacks received from now on with a 503, keeping the ones already queued.
+   */
+  void stopAccepting() {
+    acceptLock.writeLock().lock();
+    try {
+      accepting = false;
+    } finally {
+      acceptLock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * @return the next callback received, or null if none came within the timeout.
+   */
+  StatusCallback poll( long timeout ) throws InterruptedException {
+    return queue.poll( timeout, TimeUnit.MILLISECONDS );
+  }
+
+  /**
+   * @return the port listened on, which is only known after starting when listening on port 0.
+   */
+  int getPort() {
+    return server.getAddress().getPort();
+  }
+
+  /**
+   * @return the number of callbacks refused, because they were not signed by Twilio, the queue was full or
+   * callbacks were no longer accepted.
+   */
+  long getRejected() {
+    return rejected.sum();
+  }
+
+  private void handle( HttpExchange exchange ) throws IOException {
+    try {
+      if ( !"POST".equals( exchange.getRequestMethod() ) ) {
+        exchange.sendResponseHeaders( 405, -1 );
+        return;
+      }
+      Map<String, String> params = parseForm( exchange.getRequestBody() );
+      if ( validator != null ) {
+        String url = publicUrl != null ? publicUrl
+          : "http://" + exchange.getRequestHeaders().getFirst( "Host" ) + exchange.getRequestURI();
+        String signature = exchange.getRequestHeaders().getFirst( SIGNATURE_HEADER );
+        if ( signature == null || !validator.validate( url, params, signature ) ) {
+          rejected.increment();
+          exchange.sendResponseHeaders( 403, -1 );
+          return;
+        }
+      }
+      String errorCode = params.get( "ErrorCode" );
+      StatusCallback callback = new StatusCallback( params.get( "MessageSid" ), params.get( "MessageStatus" ),
+        errorCode == null || errorCode.isEmpty() ? null : Long.valueOf( errorCode ) );
+      if ( !offer( callback ) ) {
+        rejected.increment();
+        exchange.sendResponseHeaders( 503, -1 );
+        return;
+      }
+      exchange.sendResponseHeaders( 204, -1 );
+    } catch ( NumberFormatException e ) {
+      rejected.increment();
+      exchange.sendResponseHeaders( 400, -1 );
+    } finally {
+      exchange.close();
+    }
+  }
+
+  /**
+   * @return whether the callback was queued, false if the queue is full or callbacks are no longer accepted.
+   */
+  private boolean offer( StatusCallback callback ) {
+    acceptLock.readLock().lock();
+    try {
+      return accepting && queue.offer( callback );
+    } finally {
+      acceptLock.readLock().unlock();
+    }
+  }
+
+  private static Map<String, String> parseForm( InputStream body ) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    byte[] buffer = new byte[ 4096 ];
+    for ( int read; ( read = body.read( buffer ) ) >= 0; ) {
+      bytes.write( buffer, 0, read );
+    }
+    Map<String, String> params = new HashMap<>();
+    for ( String pair : new String( bytes.toByteArray(), StandardCharsets.UTF_8 ).split( "&" ) ) {
+      int equals = pair.indexOf( '=' );
+      if ( equals > 0 ) {
+        params.put( URLDecoder.decode( pair.substring( 0, equals ), "UTF-8" ),
+          URLDecoder.decode( pair.substring( equals + 1 ), "UTF-8" ) );
+      }
+    }
+    return params;
+  }
+
+  /**
+   * A status change Twilio reported for a message.
+   */
+  static class StatusCallback {
+    final String messageSid;
+    final String status;
+    final Long errorCode;
+
+    StatusCallback( String messageSid, String status, Long errorCode ) {
+      this.messageSid = messageSid;
+      this.status = status;
+      this.errorCode = errorCode;
+    }
+  }
+}
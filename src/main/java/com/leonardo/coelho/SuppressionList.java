@@ -0,0 +1,266 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.leonardo.coelho;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Phone numbers that must not be texted, e.g. recipients who replied STOP.
+ * <p>
+ * Numbers are kept as the long made of their digits, sorted in a direct buffer and looked up by binary search,
+ * so millions of them take 8 bytes each outside of the heap. While loading, numbers are sorted in small chunks
+ * on the heap and merged into the buffer at the end. A list loaded from a file is shared by the step copies
+ * using it the same way.
+ * <p>
+ * Entries have to match the recipients as they are sent: they are normalized like them when numbers are
+ * normalized, and otherwise only taken in E.164, starting with a {@code +}. Other entries are counted as invalid.
+ */
+class SuppressionList {
+
+  // Numbers sorted on the heap at a time while loading.
+  private static final int CHUNK_SIZE = 1 << 20;
+
+  // Longest number a long holds, E.164 numbers have at most 15 digits.
+  private static final int MAX_DIGITS = 18;
+
+  private static final Map<String, SuppressionList> LISTS = new HashMap<>();
+
+  private final String path;
+  private final LongBuffer keys;
+  private final long invalid;
+  private int references;
+
+  private SuppressionList( String path, LongBuffer keys, long invalid ) {
+    this.path = path;
+    this.keys = keys;
+    this.invalid = invalid;
+  }
+
+  /**
+   * @param normalize whether to normalize the entries to E.164, rather than only take the ones already in E.164.
+   * @param defaultRegion region of the entries without a country code when normalizing, or null.
+   * @return the list of the given file, one number per line, loading it if no other step copy did.
+   */
+  static SuppressionList open( String path, boolean normalize, String defaultRegion ) throws IOException {
+    String file = new File( path ).getCanonicalPath();
+    String key = normalize ? file + "#" + defaultRegion : file;
+    synchronized ( LISTS ) {
+      SuppressionList list = LISTS.get( key );
+      if ( list == null ) {
+        Builder builder = new Builder( key, normalize, defaultRegion );
+        try ( BufferedReader reader = Files.newBufferedReader( new File( file ).toPath(), StandardCharsets.UTF_8 ) ) {
+          for ( String line = reader.readLine(); line != null; line = reader.readLine() ) {
+            // Skip blank lines and comments, and keep the first column of a CSV file.
+            int comma = line.indexOf( ',' );
+            line = ( comma < 0 ? line : line.substring( 0, comma ) ).trim();
+            if ( !line.isEmpty() && !line.startsWith( "#" ) ) {
+              builder.add( line );
+            }
+          }
+        }
+        list = builder.build();
+        LISTS.put( key, list );
+      }
+      list.references++;
+      return list;
+    }
+  }
+
+  /**
+   * Gives up this step copy's use of a list loaded from a file, dropping it when no copy uses it anymore.
+   */
+  void release() {
+    synchronized ( LISTS ) {
+      if ( path != null && --references <= 0 ) {
+        LISTS.remove( path );
+      }
+    }
+  }
+
+  /**
+   * @return whether the number is in the list.
+   */
+  boolean contains( String number ) {
+    long key = toKey( number );
+    if ( key < 0 ) {
+      return false;
+    }
+    int low = 0;
+    int high = keys.limit() - 1;
+    while ( low <= high ) {
+      int mid = ( low + high ) >>> 1;
+      long value = keys.get( mid );
+      if ( value < key ) {
+        low = mid + 1;
+      } else if ( value > key ) {
+        high = mid - 1;
+      } else {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * @return the number of distinct numbers in the list.
+   */
+  int size() {
+    return keys.limit();
+  }
+
+  /**
+   * @return the number of entries skipped for not being valid phone numbers, or not in E.164 if not normalized.
+   */
+  long getInvalid() {
+    return invalid;
+  }
+
+  /**
+   * Turns a number into its key, ignoring a channel prefix such as {@code whatsapp:} and the usual separators.
+   *
+   * @return the digits of the number as a long, or -1 if it isn't a phone number.
+   */
+  static long toKey( String number ) {
+    if ( number == null ) {
+      return -1;
+    }
+    long key = 0;
+    int digits = 0;
+    for ( int i = number.indexOf( ':' ) + 1; i < number.length(); i++ ) {
+      char c = number.charAt( i );
+      if ( c >= '0' && c <= '9' ) {
+        if ( ++digits > MAX_DIGITS ) {
+          return -1;
+        }
+        key = key * 10 + ( c - '0' );
+      } else if ( c != '+' && c != ' ' && c != '-' && c != '(' && c != ')' && c != '.' ) {
+        return -1;
+      }
+    }
+    return digits == 0 ? -1 : key;
+  }
+
+  /**
+   * Collects the numbers of a list, e.g. from the rows of an info step.
+   */
+  static class Builder {
+
+    private final String path;
+    private final PhoneNumberNormalizer normalizer;
+    private final List<LongBuffer> runs = new ArrayList<>();
+    private long[] chunk = new long[ CHUNK_SIZE ];
+    private int count;
+    private long total;
+    private long invalid;
+
+    /**
+     * @param path file the list is shared by, or null for a list of a single step copy.
+     * @param normalize whether to normalize the entries to E.164, rather than only take the ones already in E.164.
+     * @param defaultRegion region of the entries without a country code when normalizing, or null.
+     */
+    Builder( String path, boolean normalize, String defaultRegion ) {
+      this.path = path;
+      // Entries are seldom repeated, so they are not cached.
+      this.normalizer = normalize ? new PhoneNumberNormalizer( defaultRegion, 0 ) : null;
+    }
+
+    void add( String number ) {
+      if ( number == null ) {
+        invalid++;
+        return;
+      }
+      number = number.trim();
+      if ( normalizer != null ) {
+        number = normalizer.normalize( number );
+      } else if ( !number.startsWith( "+", number.indexOf( ':' ) + 1 ) ) {
+        number = null;
+      }
+      long key = toKey( number );
+      if ( key < 0 ) {
+        invalid++;
+        return;
+      }
+      chunk[ count++ ] = key;
+      if ( count == chunk.length ) {
+        flush();
+      }
+    }
+
+    /**
+     * Merges the sorted chunks into the off-heap list, dropping repeated numbers.
+     */
+    SuppressionList build() {
+      flush();
+      chunk = null;
+      if ( total > Integer.MAX_VALUE / 8 ) {
+        throw new IllegalStateException( "Too many numbers in the suppression list: " + total );
+      }
+      LongBuffer keys = allocate( (int) total );
+      long last = -1;
+      while ( true ) {
+        LongBuffer next = null;
+        for ( LongBuffer run : runs ) {
+          if ( run.hasRemaining() && ( next == null || run.get( run.position() ) < next.get( next.position() ) ) ) {
+            next = run;
+          }
+        }
+        if ( next == null ) {
+          break;
+        }
+        long key = next.get();
+        if ( key != last ) {
+          keys.put( key );
+          last = key;
+        }
+      }
+      runs.clear();
+      keys.flip();
+      return new SuppressionList( path, keys, invalid );
+    }
+
+    private void flush() {
+      if ( count == 0 ) {
+        return;
+      }
+      Arrays.sort( chunk, 0, count );
+      LongBuffer run = allocate( count );
+      run.put( chunk, 0, count );
+      run.flip();
+      runs.add( run );
+      total += count;
+      count = 0;
+    }
+
+    private static LongBuffer allocate( int size ) {
+      return ByteBuffer.allocateDirect( size * 8 ).order( ByteOrder.nativeOrder() ).asLongBuffer();
+    }
+  }
+}
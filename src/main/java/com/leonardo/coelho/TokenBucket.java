@@ -0,0 +1,148 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.leonardo.coelho;
+
+import org.pentaho.di.core.logging.LogChannelInterface;
+import org.pentaho.di.i18n.BaseMessages;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Paces callers to a fixed number of permits per second, handing out one permit every {@code 1 / rate}
+ * seconds with no bursts.
+ * <p>
+ * Buckets are shared JVM-wide by key through {@link #get(String, double, LogChannelInterface)}, so every step
+ * copy and transformation sending from the same number or account waits on the same schedule. They are
+ * counted and dropped once no copy uses them anymore.
+ */
+class TokenBucket {
+
+  private static Class<?> PKG = SmsSenderMeta.class; // for i18n purposes, needed by Translator2!!   $NON-NLS-1$
+
+  // Buckets in use by key, guarding their reference counts.
+  private static final Map<String, TokenBucket> BUCKETS = new HashMap<>();
+
+  private final String key;
+  private int references;
+  private double permitsPerSecond;
+  private long intervalNanos;
+  private long nextFreeNanos = System.nanoTime();
+
+  TokenBucket( double permitsPerSecond ) {
+    this( null, permitsPerSecond );
+  }
+
+  private TokenBucket( String key, double permitsPerSecond ) {
+    this.key = key;
+    setRate( permitsPerSecond );
+  }
+
+  /**
+   * Gets the bucket shared under the given key, to {@link #release()} once done with it. A bucket already in use
+   * at another rate keeps the lowest of the two, so no copy sends faster than it is set to, and the log is told.
+   *
+   * @return the bucket shared under the given key, created at the given rate if no copy uses it.
+   */
+  static TokenBucket get( String key, double permitsPerSecond, LogChannelInterface log ) {
+    synchronized ( BUCKETS ) {
+      TokenBucket bucket = BUCKETS.get( key );
+      if ( bucket == null ) {
+        bucket = new TokenBucket( key, permitsPerSecond );
+        BUCKETS.put( key, bucket );
+      } else {
+        double rate = bucket.getRate();
+        if ( rate != permitsPerSecond ) {
+          log.logBasic( BaseMessages.getString( PKG, "SmsSender.RateLimit.Mismatch", key,
+            String.valueOf( permitsPerSecond ), String.valueOf( rate ),
+            String.valueOf( Math.min( rate, permitsPerSecond ) ) ) );
+          bucket.setRate( Math.min( rate, permitsPerSecond ) );
+        }
+      }
+      bucket.references++;
+      return bucket;
+    }
+  }
+
+  /**
+   * Gives up a use of a shared bucket, dropping it when no copy uses it anymore.
+   */
+  void release() {
+    synchronized ( BUCKETS ) {
+      if ( key != null && --references == 0 ) {
+        BUCKETS.remove( key );
+      }
+    }
+  }
+
+  synchronized void setRate( double permitsPerSecond ) {
+    this.permitsPerSecond = permitsPerSecond;
+    intervalNanos = (long) ( TimeUnit.SECONDS.toNanos( 1 ) / permitsPerSecond );
+  }
+
+  /**
+   * @return the permits per second.
+   */
+  synchronized double getRate() {
+    return permitsPerSecond;
+  }
+
+  /**
+   * Reserves the next permit.
+   *
+   * @return how many nanoseconds the caller has to wait before using it.
+   */
+  synchronized long reserve() {
+    long now = System.nanoTime();
+    long permitAt = Math.max( now, nextFreeNanos );
+    nextFreeNanos = permitAt + intervalNanos;
+    return permitAt - now;
+  }
+
+  /**
+   * @return how many nanoseconds a permit reserved now would have to wait.
+   */
+  synchronized long getWaitNanos() {
+    return Math.max( 0, nextFreeNanos - System.nanoTime() );
+  }
+
+  /**
+   * Waits until a permit of every given bucket is available.
+   */
+  static void acquire( TokenBucket... buckets ) throws InterruptedException {
+    acquire( 0, buckets );
+  }
+
+  /**
+   * Waits until a permit of every given bucket is available, and at least as long as a permit reserved
+   * beforehand requires.
+   */
+  static void acquire( long reservedWait, TokenBucket... buckets ) throws InterruptedException {
+    long wait = reservedWait;
+    for ( TokenBucket bucket : buckets ) {
+      if ( bucket != null ) {
+        wait = Math.max( wait, bucket.reserve() );
+      }
+    }
+    if ( wait > 0 ) {
+      TimeUnit.NANOSECONDS.sleep( wait );
+    }
+  }
+}
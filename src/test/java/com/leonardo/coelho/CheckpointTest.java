@@ -0,0 +1,213 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.leonardo.coelho;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class CheckpointTest {
+
+  private File file;
+
+  @Before
+  public void setUp() throws IOException {
+    file = File.createTempFile( "checkpoint", ".properties" );
+    assertTrue( file.delete() );
+  }
+
+  @After
+  public void tearDown() {
+    file.delete();
+  }
+
+  private Properties write( Checkpoint checkpoint ) throws IOException {
+    checkpoint.write( 0, 0, 0 );
+    Properties properties = new Properties();
+    try ( InputStream in = new FileInputStream( file ) ) {
+      properties.load( in );
+    }
+    return properties;
+  }
+
+  @Test
+  public void checkpointStaysBelowFirstRowNotAcknowledged() throws IOException {
+    Checkpoint checkpoint = Checkpoint.open( file, "run", 100 );
+    assertFalse( checkpoint.isResumed() );
+    for ( long key = 1; key <= 5; key++ ) {
+      assertTrue( checkpoint.read( key ) );
+    }
+    assertNull( write( checkpoint ).getProperty( "key" ) );
+
+    checkpoint.acknowledge( 3 );
+    checkpoint.acknowledge( 2 );
+    assertNull( write( checkpoint ).getProperty( "key" ) );
+    checkpoint.acknowledge( 1 );
+    assertEquals( "3", write( checkpoint ).getProperty( "key" ) );
+    // More rows of the last key read may still come.
+    checkpoint.acknowledge( 5 );
+    checkpoint.acknowledge( 4 );
+    Properties properties = write( checkpoint );
+    assertEquals( "4", properties.getProperty( "key" ) );
+    assertEquals( "5", properties.getProperty( "rows" ) );
+    assertEquals( "false", properties.getProperty( "complete" ) );
+
+    checkpoint.finish();
+    properties = write( checkpoint );
+    assertEquals( "5", properties.getProperty( "key" ) );
+    assertEquals( "true", properties.getProperty( "complete" ) );
+  }
+
+  @Test
+  public void keyIsCheckpointedOnceAllItsRowsAreAcknowledged() throws IOException {
+    Checkpoint checkpoint = Checkpoint.open( file, "run", 100 );
+    checkpoint.read( 1 );
+    checkpoint.read( 2 );
+    checkpoint.read( 2 );
+    checkpoint.read( 3 );
+    checkpoint.acknowledge( 1 );
+    checkpoint.acknowledge( 2 );
+    assertEquals( "1", write( checkpoint ).getProperty( "key" ) );
+    checkpoint.acknowledge( 2 );
+    assertEquals( "2", write( checkpoint ).getProperty( "key" ) );
+  }
+
+  @Test
+  public void decreasingKeyIsRefused() throws IOException {
+    Checkpoint checkpoint = Checkpoint.open( file, "run", 100 );
+    assertTrue( checkpoint.read( 5 ) );
+    assertTrue( checkpoint.read( 5 ) );
+    assertFalse( checkpoint.read( 4 ) );
+    assertEquals( 5, checkpoint.getLastRead() );
+  }
+
+  @Test
+  public void acknowledgingRowNotReadFails() throws IOException {
+    Checkpoint checkpoint = Checkpoint.open( file, "run", 100 );
+    checkpoint.read( 1 );
+    checkpoint.acknowledge( 1 );
+    try {
+      checkpoint.acknowledge( 1 );
+      fail();
+    } catch ( IllegalStateException e ) {
+      // Expected.
+    }
+  }
+
+  @Test
+  public void resumesSameRunAndAddsUpCounters() throws IOException {
+    Checkpoint checkpoint = Checkpoint.open( file, "run", 100 );
+    for ( long key = 1; key <= 3; key++ ) {
+      checkpoint.read( key );
+    }
+    checkpoint.read( 4 );
+    checkpoint.acknowledge( 2 );
+    checkpoint.acknowledge( 1 );
+    checkpoint.acknowledge( 4 );
+    checkpoint.write( 2, 1, 0 );
+
+    Checkpoint resumed = Checkpoint.open( file, "run", 100 );
+    assertTrue( resumed.isResumed() );
+    assertEquals( 2, resumed.getResumedKey() );
+    assertEquals( 3, resumed.getResumedRows() );
+    assertEquals( 2, resumed.getResumedSent() );
+    assertEquals( 1, resumed.getResumedFailed() );
+    assertTrue( resumed.isDone( 1 ) );
+    assertTrue( resumed.isDone( 2 ) );
+    assertFalse( resumed.isDone( 3 ) );
+
+    resumed.read( 3 );
+    resumed.acknowledge( 3 );
+    resumed.finish();
+    Properties properties = write( resumed );
+    assertEquals( "3", properties.getProperty( "key" ) );
+    assertEquals( "4", properties.getProperty( "rows" ) );
+    assertEquals( "2", properties.getProperty( "sent" ) );
+  }
+
+  @Test
+  public void otherRunStartsOver() throws IOException {
+    Checkpoint checkpoint = Checkpoint.open( file, "run", 100 );
+    checkpoint.read( 1 );
+    checkpoint.acknowledge( 1 );
+    checkpoint.finish();
+    checkpoint.write( 1, 0, 0 );
+
+    Checkpoint other = Checkpoint.open( file, "other", 100 );
+    assertFalse( other.isResumed() );
+    assertFalse( other.isDone( 1 ) );
+    assertEquals( 0, other.getResumedSent() );
+  }
+
+  @Test
+  public void rowsPastMaxTrackedHoldCheckpointUntilAcknowledged() throws IOException {
+    Checkpoint checkpoint = Checkpoint.open( file, "run", 3 );
+    for ( long key = 1; key <= 10; key++ ) {
+      assertTrue( checkpoint.read( key ) );
+    }
+    checkpoint.acknowledge( 2 );
+    checkpoint.acknowledge( 1 );
+    checkpoint.acknowledge( 3 );
+    assertEquals( "3", write( checkpoint ).getProperty( "key" ) );
+    for ( long key = 10; key >= 5; key-- ) {
+      checkpoint.acknowledge( key );
+    }
+    assertEquals( "3", write( checkpoint ).getProperty( "key" ) );
+    checkpoint.acknowledge( 4 );
+    assertEquals( "9", write( checkpoint ).getProperty( "key" ) );
+
+    // Rows are tracked again once all the untracked ones are acknowledged.
+    checkpoint.read( 11 );
+    checkpoint.read( 12 );
+    checkpoint.acknowledge( 11 );
+    assertEquals( "11", write( checkpoint ).getProperty( "key" ) );
+    checkpoint.acknowledge( 12 );
+    checkpoint.finish();
+    Properties properties = write( checkpoint );
+    assertEquals( "12", properties.getProperty( "key" ) );
+    assertEquals( "12", properties.getProperty( "rows" ) );
+    assertEquals( "true", properties.getProperty( "complete" ) );
+  }
+
+  @Test
+  public void acknowledgingUntrackedRowNotReadFails() throws IOException {
+    Checkpoint checkpoint = Checkpoint.open( file, "run", 1 );
+    checkpoint.read( 1 );
+    checkpoint.read( 2 );
+    checkpoint.acknowledge( 2 );
+    try {
+      checkpoint.acknowledge( 3 );
+      fail();
+    } catch ( IllegalStateException e ) {
+      // Expected.
+    }
+  }
+}
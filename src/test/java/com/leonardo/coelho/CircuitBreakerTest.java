@@ -0,0 +1,159 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.leonardo.coelho;
+
+import com.twilio.exception.ApiConnectionException;
+import com.twilio.exception.ApiException;
+import org.junit.Before;
+import org.junit.Test;
+import org.pentaho.di.core.logging.LogChannelInterface;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class CircuitBreakerTest {
+
+  private LogChannelInterface log;
+
+  @Before
+  public void setUp() {
+    log = mock( LogChannelInterface.class );
+  }
+
+  @Test
+  public void opensOnceFailureRateReachesThresholdOverFullWindow() {
+    CircuitBreaker breaker = new CircuitBreaker( 50, 4, 60000, 1, false, log );
+    breaker.onFailure();
+    breaker.onFailure();
+    breaker.onFailure();
+    // The window isn't full yet.
+    assertEquals( CircuitBreaker.State.CLOSED, breaker.getState() );
+    breaker.onSuccess();
+    breaker.onSuccess();
+    breaker.onSuccess();
+    // Only the last 4 sends count: 1 failure out of 4.
+    breaker.onFailure();
+    assertEquals( CircuitBreaker.State.CLOSED, breaker.getState() );
+    breaker.onFailure();
+    assertEquals( CircuitBreaker.State.OPEN, breaker.getState() );
+    verify( log ).logError( anyString() );
+  }
+
+  @Test
+  public void failsSendsWhileOpen() throws InterruptedException {
+    CircuitBreaker breaker = new CircuitBreaker( 100, 1, 60000, 1, false, log );
+    assertTrue( breaker.acquire() );
+    breaker.onFailure();
+    assertEquals( CircuitBreaker.State.OPEN, breaker.getState() );
+    assertFalse( breaker.tryAcquire() );
+    assertFalse( breaker.acquire() );
+    assertEquals( CircuitBreaker.State.OPEN, breaker.getState() );
+  }
+
+  @Test
+  public void closesOnceAllProbesSucceed() {
+    CircuitBreaker breaker = new CircuitBreaker( 100, 1, 0, 2, false, log );
+    breaker.onFailure();
+    assertEquals( CircuitBreaker.State.OPEN, breaker.getState() );
+
+    // The open duration is over, only the probes go through.
+    assertTrue( breaker.tryAcquire() );
+    assertEquals( CircuitBreaker.State.HALF_OPEN, breaker.getState() );
+    assertTrue( breaker.tryAcquire() );
+    assertFalse( breaker.tryAcquire() );
+    breaker.onSuccess();
+    assertEquals( CircuitBreaker.State.HALF_OPEN, breaker.getState() );
+    breaker.onSuccess();
+    assertEquals( CircuitBreaker.State.CLOSED, breaker.getState() );
+    assertTrue( breaker.tryAcquire() );
+    assertTrue( breaker.tryAcquire() );
+    assertTrue( breaker.tryAcquire() );
+  }
+
+  @Test
+  public void releasedProbeCanBeStartedAgain() {
+    CircuitBreaker breaker = new CircuitBreaker( 100, 1, 0, 1, false, log );
+    breaker.onFailure();
+    assertTrue( breaker.tryAcquire() );
+    assertFalse( breaker.tryAcquire() );
+    // The probe was never sent, another send takes its place.
+    breaker.release();
+    assertTrue( breaker.tryAcquire() );
+    assertFalse( breaker.tryAcquire() );
+    breaker.onSuccess();
+    assertEquals( CircuitBreaker.State.CLOSED, breaker.getState() );
+    // Nothing to give back once closed.
+    breaker.release();
+    assertEquals( CircuitBreaker.State.CLOSED, breaker.getState() );
+  }
+
+  @Test
+  public void reopensWhenProbeFails() {
+    CircuitBreaker breaker = new CircuitBreaker( 100, 1, 0, 2, false, log );
+    breaker.onFailure();
+    assertTrue( breaker.tryAcquire() );
+    breaker.onSuccess();
+    breaker.onFailure();
+    assertEquals( CircuitBreaker.State.OPEN, breaker.getState() );
+    verify( log, times( 2 ) ).logError( anyString() );
+
+    // Probes start over after the next open duration.
+    assertTrue( breaker.tryAcquire() );
+    assertTrue( breaker.tryAcquire() );
+    assertFalse( breaker.tryAcquire() );
+  }
+
+  @Test
+  public void windowStartsOverOnceClosed() {
+    CircuitBreaker breaker = new CircuitBreaker( 50, 2, 0, 1, false, log );
+    breaker.onFailure();
+    breaker.onFailure();
+    assertEquals( CircuitBreaker.State.OPEN, breaker.getState() );
+    assertTrue( breaker.tryAcquire() );
+    breaker.onSuccess();
+    assertEquals( CircuitBreaker.State.CLOSED, breaker.getState() );
+    // The failures before opening are forgotten, the window has to fill up again.
+    breaker.onFailure();
+    assertEquals( CircuitBreaker.State.CLOSED, breaker.getState() );
+  }
+
+  @Test
+  public void pausedSendWaitsForBreakerToLetItThrough() throws InterruptedException {
+    CircuitBreaker breaker = new CircuitBreaker( 100, 1, 200, 1, true, log );
+    breaker.onFailure();
+    long start = System.currentTimeMillis();
+    assertTrue( breaker.acquire() );
+    assertTrue( System.currentTimeMillis() - start >= 100 );
+    assertEquals( CircuitBreaker.State.HALF_OPEN, breaker.getState() );
+  }
+
+  @Test
+  public void onlyServerAndConnectionErrorsAreOutages() {
+    assertTrue( CircuitBreaker.isOutage( new ApiConnectionException( "Error" ) ) );
+    assertTrue( CircuitBreaker.isOutage( new ApiException( "Error", null, null, 503, null ) ) );
+    assertFalse( CircuitBreaker.isOutage( new ApiException( "Error", 21211, null, 400, null ) ) );
+    assertFalse( CircuitBreaker.isOutage( new ApiException( "Error" ) ) );
+    assertFalse( CircuitBreaker.isOutage( new IllegalStateException() ) );
+  }
+}
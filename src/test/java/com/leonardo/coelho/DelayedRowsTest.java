@@ -0,0 +1,118 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.leonardo.coelho;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.pentaho.di.core.row.RowMeta;
+import org.pentaho.di.core.row.value.ValueMetaInteger;
+import org.pentaho.di.core.row.value.ValueMetaString;
+
+import java.io.File;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class DelayedRowsTest {
+
+  private File directory;
+  private RowMeta rowMeta;
+
+  @Before
+  public void setUp() throws Exception {
+    directory = File.createTempFile( "delayed", "" );
+    directory.delete();
+    directory.mkdir();
+    rowMeta = new RowMeta();
+    rowMeta.addValueMeta( new ValueMetaString( "to" ) );
+    rowMeta.addValueMeta( new ValueMetaInteger( "id" ) );
+  }
+
+  @After
+  public void tearDown() {
+    for ( File file : directory.listFiles() ) {
+      file.delete();
+    }
+    directory.delete();
+  }
+
+  @Test
+  public void rowsAreReleasedAtTheirTime() throws Exception {
+    try ( DelayedRows rows = new DelayedRows( rowMeta, 100, directory ) ) {
+      rows.add( 2000, new Object[] { "b", 2L } );
+      rows.add( 1000, new Object[] { "a", 1L } );
+      rows.add( 2000, new Object[] { "c", 3L } );
+      assertEquals( 3, rows.size() );
+      assertEquals( 1000, rows.getNextReleaseTime() );
+
+      assertNull( rows.poll( 999 ) );
+      assertArrayEquals( new Object[] { "a", 1L }, rows.poll( 1000 ) );
+      assertNull( rows.poll( 1999 ) );
+      assertEquals( 2000, rows.getNextReleaseTime() );
+      assertArrayEquals( new Object[] { "b", 2L }, rows.poll( 5000 ) );
+      assertArrayEquals( new Object[] { "c", 3L }, rows.poll( 5000 ) );
+      assertNull( rows.poll( 5000 ) );
+      assertTrue( rows.isEmpty() );
+      assertEquals( Long.MAX_VALUE, rows.getNextReleaseTime() );
+      assertEquals( 0, rows.getSpilled() );
+    }
+  }
+
+  @Test
+  public void rowsReleasedLastAreSpilled() throws Exception {
+    try ( DelayedRows rows = new DelayedRows( rowMeta, 3, directory ) ) {
+      rows.add( 1000, new Object[] { "a", 1L } );
+      rows.add( 1000, new Object[] { "b", 2L } );
+      rows.add( 3000, new Object[] { "c", 3L } );
+      rows.add( 3000, new Object[] { null, 4L } );
+      assertEquals( 2, rows.getSpilled() );
+      assertEquals( 1, directory.listFiles().length );
+
+      // Past the limit again, the rows released last go on to the same file.
+      rows.add( 2000, new Object[] { "e", 5L } );
+      rows.add( 3000, new Object[] { "f", 6L } );
+      assertEquals( 3, rows.getSpilled() );
+      assertEquals( 6, rows.size() );
+
+      assertArrayEquals( new Object[] { "a", 1L }, rows.poll( 1000 ) );
+      assertArrayEquals( new Object[] { "b", 2L }, rows.poll( 1000 ) );
+      assertArrayEquals( new Object[] { "e", 5L }, rows.poll( 3000 ) );
+      assertArrayEquals( new Object[] { "c", 3L }, rows.poll( 3000 ) );
+      assertArrayEquals( new Object[] { null, 4L }, rows.poll( 3000 ) );
+      assertArrayEquals( new Object[] { "f", 6L }, rows.poll( 3000 ) );
+      assertNull( rows.poll( 3000 ) );
+      assertTrue( rows.isEmpty() );
+      assertEquals( 0, directory.listFiles().length );
+    }
+  }
+
+  @Test
+  public void closeDeletesTheFiles() throws Exception {
+    DelayedRows rows = new DelayedRows( rowMeta, 1, directory );
+    rows.add( 1000, new Object[] { "a", 1L } );
+    rows.add( 2000, new Object[] { "b", 2L } );
+    assertEquals( 1, directory.listFiles().length );
+    rows.close();
+    assertEquals( 0, directory.listFiles().length );
+    assertTrue( rows.isEmpty() );
+  }
+}
@@ -0,0 +1,140 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.leonardo.coelho;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.pentaho.di.core.logging.LogChannelInterface;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class DuplicateFilterTest {
+
+  private LogChannelInterface log;
+
+  @Before
+  public void setUp() {
+    log = mock( LogChannelInterface.class );
+  }
+
+  @Test
+  public void keyIsOnlyARepeatOnceAdded() {
+    DuplicateFilter filter = new DuplicateFilter( 0, 1000, 0, log );
+    assertFalse( filter.contains( 42 ) );
+    // A message that failed to send isn't added, so sending it again isn't a repeat.
+    assertFalse( filter.contains( 42 ) );
+    filter.add( 42 );
+    assertTrue( filter.contains( 42 ) );
+    assertFalse( filter.contains( 43 ) );
+  }
+
+  @Test
+  public void zeroKeyIsRemembered() {
+    DuplicateFilter exact = new DuplicateFilter( 0, 1000, 0, log );
+    exact.add( 0 );
+    assertTrue( exact.contains( 0 ) );
+    DuplicateFilter bloom = new DuplicateFilter( 0, 1000, 0.01, log );
+    bloom.add( 0 );
+    assertTrue( bloom.contains( 0 ) );
+  }
+
+  @Test
+  public void exactFilterKeepsEveryKeyOfTheRun() {
+    DuplicateFilter filter = new DuplicateFilter( 0, 100, 0, log );
+    for ( long key = 1; key <= 1000; key++ ) {
+      filter.add( key );
+    }
+    for ( long key = 1; key <= 1000; key++ ) {
+      assertTrue( filter.contains( key ) );
+    }
+    // Growing past the expected messages is told once.
+    verify( log, times( 1 ) ).logBasic( anyString() );
+  }
+
+  @Test
+  public void exactWindowKeepsAtLeastExpectedMessages() {
+    DuplicateFilter filter = new DuplicateFilter( 3600000, 100, 0, log );
+    for ( long key = 1; key <= 1000; key++ ) {
+      filter.add( key );
+      // The last expected messages are always remembered.
+      for ( long recent = Math.max( 1, key - 99 ); recent <= key; recent++ ) {
+        assertTrue( filter.contains( recent ) );
+      }
+    }
+    // But not more than two generations of them.
+    for ( long key = 1; key <= 800; key++ ) {
+      assertFalse( filter.contains( key ) );
+    }
+    verify( log, times( 1 ) ).logBasic( anyString() );
+  }
+
+  @Test
+  public void expectedMessagesNotExceeded() {
+    DuplicateFilter filter = new DuplicateFilter( 0, 100, 0, log );
+    for ( long key = 1; key <= 100; key++ ) {
+      filter.add( key );
+      filter.add( key );
+    }
+    verify( log, never() ).logBasic( anyString() );
+  }
+
+  @Test
+  public void bloomFilterPastExpectedMessagesIsTold() {
+    DuplicateFilter filter = new DuplicateFilter( 0, 100, 0.01, log );
+    for ( long key = 0; key < 100; key++ ) {
+      filter.add( key * 0x9E3779B97F4A7C15L );
+    }
+    verify( log, never() ).logBasic( anyString() );
+    for ( long key = 100; key < 200; key++ ) {
+      filter.add( key * 0x9E3779B97F4A7C15L );
+    }
+    verify( log, times( 1 ) ).logBasic( anyString() );
+  }
+
+  @Test
+  public void bloomFilterHasNoFalseNegatives() {
+    DuplicateFilter filter = new DuplicateFilter( 0, 10000, 0.01, log );
+    for ( long key = 0; key < 10000; key++ ) {
+      filter.add( key * 0x9E3779B97F4A7C15L );
+    }
+    int falsePositives = 0;
+    for ( long key = 0; key < 10000; key++ ) {
+      assertTrue( filter.contains( key * 0x9E3779B97F4A7C15L ) );
+      if ( filter.contains( -key - 1 ) ) {
+        falsePositives++;
+      }
+    }
+    assertTrue( "False positives: " + falsePositives, falsePositives < 500 );
+  }
+
+  @Test
+  public void keysAreForgottenAfterTwoWindows() throws InterruptedException {
+    DuplicateFilter filter = new DuplicateFilter( 50, 1000, 0, log );
+    filter.add( 42 );
+    assertTrue( filter.contains( 42 ) );
+    Thread.sleep( 150 );
+    assertFalse( filter.contains( 42 ) );
+  }
+}
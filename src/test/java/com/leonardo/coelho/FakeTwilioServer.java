@@ -0,0 +1,377 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.leonardo.coelho;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.text.SimpleDateFormat;
+import java.util.Base64;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Local stand-in for the Twilio Messages API, to run the step against without sending real messages.
+ * <p>
+ * Messages posted to {@code /2010-04-01/Accounts/{AccountSid}/Messages.json} are answered after a random latency
+ * with a queued message, or with a 429, a 500 or a failed message at the configured rates. Messages fetched
+ * from {@code /2010-04-01/Accounts/{AccountSid}/Messages/{Sid}.json} come back delivered, or undelivered at
+ * the failed rate. Point the step's API base URL to {@link #getBaseUrl()}.
+ * <p>
+ * When a message is created with a {@code StatusCallback} URL, its sent and delivered (or failed and
+ * undelivered) status changes are posted to it afterwards, signed with the auth token when one is set, like
+ * Twilio does.
+ */
+public class FakeTwilioServer {
+
+  private static final Pattern MESSAGES_PATH = Pattern.compile( "/2010-04-01/Accounts/(AC\\w+)/Messages\\.json" );
+  private static final Pattern MESSAGE_PATH =
+    Pattern.compile( "/2010-04-01/Accounts/(AC\\w+)/Messages/(SM\\w+)\\.json" );
+
+  private final HttpServer server;
+  private final ExecutorService executor = Executors.newCachedThreadPool();
+  private final ScheduledExecutorService callbackExecutor = Executors.newScheduledThreadPool( 4 );
+
+  private volatile long minLatency;
+  private volatile long maxLatency;
+  private volatile double throttleRate;
+  private volatile double errorRate;
+  private volatile double failedRate;
+  private volatile long callbackDelay = 100;
+  private volatile String authToken;
+
+  private final LongAdder requests = new LongAdder();
+  private final LongAdder created = new LongAdder();
+  private final LongAdder fetched = new LongAdder();
+  private final LongAdder throttled = new LongAdder();
+  private final LongAdder errors = new LongAdder();
+  private final LongAdder callbacks = new LongAdder();
+  private final LongAdder callbackErrors = new LongAdder();
+
+  /**
+   * @param port port to listen on, 0 for any free port.
+   */
+  public FakeTwilioServer( int port ) throws IOException {
+    server = HttpServer.create( new InetSocketAddress( "127.0.0.1", port ), 1024 );
+    server.setExecutor( executor );
+    server.createContext( "/2010-04-01/Accounts/", this::handle );
+  }
+
+  public void start() {
+    server.start();
+  }
+
+  public void stop() {
+    server.stop( 0 );
+    executor.shutdownNow();
+    callbackExecutor.shutdownNow();
+  }
+
+  /**
+   * @return the URL to set as the step's API base URL.
+   */
+  public String getBaseUrl() {
+    return "http://127.0.0.1:" + server.getAddress().getPort();
+  }
+
+  /**
+   * Sets the time taken to answer each request, picked uniformly between both values.
+   */
+  public void setLatency( long minMillis, long maxMillis ) {
+    this.minLatency = minMillis;
+    this.maxLatency = Math.max( minMillis, maxMillis );
+  }
+
+  /**
+   * Sets the share of requests answered with a 429 Too Many Requests.
+   */
+  public void setThrottleRate( double throttleRate ) {
+    this.throttleRate = throttleRate;
+  }
+
+  /**
+   * Sets the share of requests answered with a 500 Internal Server Error.
+   */
+  public void setErrorRate( double errorRate ) {
+    this.errorRate = errorRate;
+  }
+
+  /**
+   * Sets the share of messages returned failed when created, and undelivered when fetched.
+   */
+  public void setFailedRate( double failedRate ) {
+    this.failedRate = failedRate;
+  }
+
+  /**
+   * Sets the time between a message's status changes, and so between the status callbacks posted for it.
+   */
+  public void setCallbackDelay( long callbackDelay ) {
+    this.callbackDelay = callbackDelay;
+  }
+
+  /**
+   * Sets the auth token to sign status callbacks with, or null to post them unsigned.
+   */
+  public void setAuthToken( String authToken ) {
+    this.authToken = authToken;
+  }
+
+  public long getRequests() {
+    return requests.sum();
+  }
+
+  public long getCreated() {
+    return created.sum();
+  }
+
+  public long getFetched() {
+    return fetched.sum();
+  }
+
+  public long getThrottled() {
+    return throttled.sum();
+  }
+
+  public long getErrors() {
+    return errors.sum();
+  }
+
+  public long getCallbacks() {
+    return callbacks.sum();
+  }
+
+  public long getCallbackErrors() {
+    return callbackErrors.sum();
+  }
+
+  private void handle( HttpExchange exchange ) throws IOException {
+    try {
+      requests.increment();
+      ThreadLocalRandom random = ThreadLocalRandom.current();
+      long latency = minLatency + ( maxLatency > minLatency ? random.nextLong( maxLatency - minLatency + 1 ) : 0 );
+      if ( latency > 0 ) {
+        TimeUnit.MILLISECONDS.sleep( latency );
+      }
+
+      String path = exchange.getRequestURI().getPath();
+      Matcher matcher = MESSAGES_PATH.matcher( path );
+      Matcher fetchMatcher = MESSAGE_PATH.matcher( path );
+      boolean create = matcher.matches() && "POST".equals( exchange.getRequestMethod() );
+      boolean fetch = fetchMatcher.matches() && "GET".equals( exchange.getRequestMethod() );
+      if ( !create && !fetch ) {
+        respond( exchange, 404, error( 20404, "The requested resource was not found", 404 ) );
+        return;
+      }
+
+      double outcome = random.nextDouble();
+      if ( outcome < throttleRate ) {
+        throttled.increment();
+        respond( exchange, 429, error( 20429, "Too Many Requests", 429 ) );
+        return;
+      }
+      if ( outcome < throttleRate + errorRate ) {
+        errors.increment();
+        respond( exchange, 500, error( 20500, "Internal Server Error", 500 ) );
+        return;
+      }
+
+      boolean failed = random.nextDouble() < failedRate;
+      if ( fetch ) {
+        fetched.increment();
+        respond( exchange, 200, message( fetchMatcher.group( 1 ), fetchMatcher.group( 2 ), new HashMap<>(),
+          failed ? "undelivered" : "delivered" ) );
+        return;
+      }
+      Map<String, String> params = parseForm( exchange.getRequestBody() );
+      created.increment();
+      String sid = "SM" + UUID.randomUUID().toString().replace( "-", "" );
+      respond( exchange, 201, message( matcher.group( 1 ), sid, params, failed ? "failed" : "queued" ) );
+      String callbackUrl = params.get( "StatusCallback" );
+      if ( callbackUrl != null ) {
+        if ( failed ) {
+          postCallback( callbackUrl, matcher.group( 1 ), sid, "failed", 1 );
+        } else {
+          boolean undelivered = random.nextDouble() < failedRate;
+          postCallback( callbackUrl, matcher.group( 1 ), sid, "sent", 1 );
+          postCallback( callbackUrl, matcher.group( 1 ), sid, undelivered ? "undelivered" : "delivered", 2 );
+        }
+      }
+    } catch ( InterruptedException e ) {
+      Thread.currentThread().interrupt();
+    } finally {
+      exchange.close();
+    }
+  }
+
+  /**
+   * Posts a status callback once the message has gone through the given number of status changes.
+   */
+  private void postCallback( String url, String accountSid, String sid, String status, int step ) {
+    callbackExecutor.schedule( () -> {
+      Map<String, String> params = new TreeMap<>();
+      params.put( "AccountSid", accountSid );
+      params.put( "MessageSid", sid );
+      params.put( "SmsSid", sid );
+      params.put( "MessageStatus", status );
+      params.put( "SmsStatus", status );
+      params.put( "ApiVersion", "2010-04-01" );
+      if ( "failed".equals( status ) || "undelivered".equals( status ) ) {
+        params.put( "ErrorCode", "30008" );
+      }
+      try {
+        StringBuilder body = new StringBuilder();
+        StringBuilder signed = new StringBuilder( url );
+        for ( Map.Entry<String, String> param : params.entrySet() ) {
+          body.append( body.length() == 0 ? "" : "&" ).append( URLEncoder.encode( param.getKey(), "UTF-8" ) )
+            .append( '=' ).append( URLEncoder.encode( param.getValue(), "UTF-8" ) );
+          signed.append( param.getKey() ).append( param.getValue() );
+        }
+        HttpURLConnection connection = (HttpURLConnection) new URL( url ).openConnection();
+        connection.setRequestMethod( "POST" );
+        connection.setDoOutput( true );
+        connection.setRequestProperty( "Content-Type", "application/x-www-form-urlencoded" );
+        String token = authToken;
+        if ( token != null ) {
+          connection.setRequestProperty( "X-Twilio-Signature", sign( token, signed.toString() ) );
+        }
+        try ( OutputStream out = connection.getOutputStream() ) {
+          out.write( body.toString().getBytes( StandardCharsets.UTF_8 ) );
+        }
+        if ( connection.getResponseCode() / 100 == 2 ) {
+          callbacks.increment();
+        } else {
+          callbackErrors.increment();
+        }
+        connection.disconnect();
+      } catch ( IOException | GeneralSecurityException e ) {
+        callbackErrors.increment();
+      }
+    }, callbackDelay * step, TimeUnit.MILLISECONDS );
+  }
+
+  private static String sign( String authToken, String data ) throws GeneralSecurityException {
+    Mac mac = Mac.getInstance( "HmacSHA1" );
+    mac.init( new SecretKeySpec( authToken.getBytes( StandardCharsets.UTF_8 ), "HmacSHA1" ) );
+    return Base64.getEncoder().encodeToString( mac.doFinal( data.getBytes( StandardCharsets.UTF_8 ) ) );
+  }
+
+  private static Map<String, String> parseForm( InputStream body ) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    byte[] buffer = new byte[ 4096 ];
+    for ( int read; ( read = body.read( buffer ) ) >= 0; ) {
+      bytes.write( buffer, 0, read );
+    }
+    Map<String, String> params = new HashMap<>();
+    for ( String pair : new String( bytes.toByteArray(), StandardCharsets.UTF_8 ).split( "&" ) ) {
+      int equals = pair.indexOf( '=' );
+      if ( equals > 0 ) {
+        params.put( URLDecoder.decode( pair.substring( 0, equals ), "UTF-8" ),
+          URLDecoder.decode( pair.substring( equals + 1 ), "UTF-8" ) );
+      }
+    }
+    return params;
+  }
+
+  private static String message( String accountSid, String sid, Map<String, String> params, String status ) {
+    SimpleDateFormat format = new SimpleDateFormat( "EEE, dd MMM yyyy HH:mm:ss Z", Locale.US );
+    format.setTimeZone( TimeZone.getTimeZone( "UTC" ) );
+    String now = format.format( new Date() );
+    boolean failed = "failed".equals( status ) || "undelivered".equals( status );
+    return "{"
+      + "\"sid\": \"" + sid + "\", "
+      + "\"account_sid\": \"" + accountSid + "\", "
+      + "\"messaging_service_sid\": " + json( params.get( "MessagingServiceSid" ) ) + ", "
+      + "\"to\": " + json( params.get( "To" ) ) + ", "
+      + "\"from\": " + json( params.get( "From" ) ) + ", "
+      + "\"body\": " + json( params.get( "Body" ) ) + ", "
+      + "\"status\": \"" + status + "\", "
+      + "\"direction\": \"outbound-api\", "
+      + "\"api_version\": \"2010-04-01\", "
+      + "\"num_segments\": \"1\", "
+      + "\"num_media\": \"0\", "
+      + "\"price\": null, "
+      + "\"price_unit\": \"USD\", "
+      + "\"error_code\": " + ( failed ? "30008" : "null" ) + ", "
+      + "\"error_message\": " + ( failed ? "\"Unknown error\"" : "null" ) + ", "
+      + "\"date_created\": \"" + now + "\", "
+      + "\"date_updated\": \"" + now + "\", "
+      + "\"date_sent\": null, "
+      + "\"uri\": \"/2010-04-01/Accounts/" + accountSid + "/Messages/" + sid + ".json\""
+      + "}";
+  }
+
+  private static String error( int code, String message, int status ) {
+    return "{\"code\": " + code + ", \"message\": \"" + message + "\", "
+      + "\"more_info\": \"https://www.twilio.com/docs/errors/" + code + "\", \"status\": " + status + "}";
+  }
+
+  private static String json( String value ) {
+    if ( value == null ) {
+      return "null";
+    }
+    StringBuilder json = new StringBuilder( value.length() + 2 ).append( '"' );
+    for ( int i = 0; i < value.length(); i++ ) {
+      char c = value.charAt( i );
+      if ( c == '"' || c == '\\' ) {
+        json.append( '\\' ).append( c );
+      } else if ( c < 0x20 ) {
+        json.append( String.format( "\\u%04x", (int) c ) );
+      } else {
+        json.append( c );
+      }
+    }
+    return json.append( '"' ).toString();
+  }
+
+  private static void respond( HttpExchange exchange, int status, String body ) throws IOException {
+    byte[] bytes = body.getBytes( StandardCharsets.UTF_8 );
+    exchange.getResponseHeaders().set( "Content-Type", "application/json" );
+    exchange.sendResponseHeaders( status, bytes.length );
+    try ( OutputStream out = exchange.getResponseBody() ) {
+      out.write( bytes );
+    }
+  }
+}
@@ -0,0 +1,74 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.leonardo.coelho;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LatencyHistogramTest {
+
+  @Test
+  public void emptyHistogram() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    assertEquals( 0, histogram.getCount() );
+    assertEquals( 0, histogram.getMax() );
+    assertEquals( 0, histogram.getMean(), 0 );
+    assertEquals( 0, histogram.getValueAtPercentile( 99 ) );
+  }
+
+  @Test
+  public void smallValuesAreExact() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    for ( int i = 1; i <= 20; i++ ) {
+      histogram.record( i );
+    }
+    assertEquals( 20, histogram.getCount() );
+    assertEquals( 20, histogram.getMax() );
+    assertEquals( 10.5, histogram.getMean(), 1e-9 );
+    assertEquals( 10, histogram.getValueAtPercentile( 50 ) );
+    assertEquals( 19, histogram.getValueAtPercentile( 95 ) );
+    assertEquals( 20, histogram.getValueAtPercentile( 100 ) );
+  }
+
+  @Test
+  public void percentilesWithinThreePercent() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    for ( long i = 1; i <= 100000; i++ ) {
+      histogram.record( i * 1000 );
+    }
+    for ( double percentile : new double[] { 50, 90, 99, 99.9, 100 } ) {
+      double expected = percentile * 1000 * 1000;
+      long actual = histogram.getValueAtPercentile( percentile );
+      assertTrue( percentile + ": " + actual, Math.abs( actual - expected ) <= expected * 0.03 );
+    }
+    assertEquals( 100000000, histogram.getMax() );
+  }
+
+  @Test
+  public void negativeValuesCountAsZero() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    histogram.record( -5 );
+    histogram.record( Long.MAX_VALUE );
+    assertEquals( 2, histogram.getCount() );
+    assertEquals( 0, histogram.getValueAtPercentile( 50 ) );
+    assertEquals( Long.MAX_VALUE, histogram.getMax() );
+  }
+}
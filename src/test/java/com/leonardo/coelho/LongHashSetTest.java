@@ -0,0 +1,97 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.leonardo.coelho;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class LongHashSetTest {
+
+  @Test
+  public void addsAndFindsValues() {
+    LongHashSet set = new LongHashSet();
+    assertTrue( set.add( 42 ) );
+    assertFalse( set.add( 42 ) );
+    assertTrue( set.add( -42 ) );
+    assertTrue( set.add( Long.MIN_VALUE ) );
+    assertTrue( set.add( Long.MAX_VALUE ) );
+    assertTrue( set.contains( 42 ) );
+    assertTrue( set.contains( -42 ) );
+    assertTrue( set.contains( Long.MIN_VALUE ) );
+    assertTrue( set.contains( Long.MAX_VALUE ) );
+    assertFalse( set.contains( 43 ) );
+    assertEquals( 4, set.size() );
+  }
+
+  @Test
+  public void zeroIsAValueLikeAnyOther() {
+    LongHashSet set = new LongHashSet();
+    assertFalse( set.contains( 0 ) );
+    assertTrue( set.add( 0 ) );
+    assertFalse( set.add( 0 ) );
+    assertTrue( set.contains( 0 ) );
+    assertEquals( 1, set.size() );
+    set.clear();
+    assertFalse( set.contains( 0 ) );
+    assertEquals( 0, set.size() );
+  }
+
+  @Test
+  public void growsKeepingAllValues() {
+    LongHashSet set = new LongHashSet();
+    for ( long i = 0; i < 100000; i++ ) {
+      assertTrue( set.add( i * 31 ) );
+    }
+    assertEquals( 100000, set.size() );
+    for ( long i = 0; i < 100000; i++ ) {
+      assertTrue( set.contains( i * 31 ) );
+      assertFalse( set.contains( i * 31 + 1 ) );
+    }
+  }
+
+  @Test
+  public void valuesCollidingOnTheirSlotAreKeptApart() {
+    // Multiples of 2^32 all hash to the same slot of a small table.
+    LongHashSet set = new LongHashSet( 4 );
+    for ( long i = 1; i <= 20; i++ ) {
+      assertTrue( set.add( i << 32 ) );
+    }
+    for ( long i = 1; i <= 20; i++ ) {
+      assertTrue( set.contains( i << 32 ) );
+    }
+    assertFalse( set.contains( 21L << 32 ) );
+  }
+
+  @Test
+  public void clearEmptiesTheSet() {
+    LongHashSet set = new LongHashSet( 1000 );
+    for ( long i = 1; i <= 1000; i++ ) {
+      set.add( i );
+    }
+    set.clear();
+    assertEquals( 0, set.size() );
+    for ( long i = 1; i <= 1000; i++ ) {
+      assertFalse( set.contains( i ) );
+    }
+    assertTrue( set.add( 1 ) );
+  }
+}
@@ -0,0 +1,138 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.leonardo.coelho;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class MessageSegmentsTest {
+
+  private final MessageSegments segments = new MessageSegments();
+
+  private static String repeat( String s, int times ) {
+    StringBuilder sb = new StringBuilder();
+    for ( int i = 0; i < times; i++ ) {
+      sb.append( s );
+    }
+    return sb.toString();
+  }
+
+  @Test
+  public void emptyBodyIsOneGsm7Segment() {
+    segments.analyze( "" );
+    assertFalse( segments.isUnicode() );
+    assertEquals( MessageSegments.GSM_7, segments.getEncoding() );
+    assertEquals( 0, segments.getLength() );
+    assertEquals( 1, segments.getSegments() );
+  }
+
+  @Test
+  public void gsm7SingleSegmentHolds160Septets() {
+    segments.analyze( repeat( "a", 160 ) );
+    assertEquals( 160, segments.getLength() );
+    assertEquals( 1, segments.getSegments() );
+
+    segments.analyze( repeat( "a", 161 ) );
+    assertEquals( 161, segments.getLength() );
+    assertEquals( 2, segments.getSegments() );
+
+    segments.analyze( repeat( "a", 306 ) );
+    assertEquals( 2, segments.getSegments() );
+    segments.analyze( repeat( "a", 307 ) );
+    assertEquals( 3, segments.getSegments() );
+  }
+
+  @Test
+  public void extensionCharactersTakeTwoSeptets() {
+    segments.analyze( "[]{}|\\^~\f\u20AC" );
+    assertFalse( segments.isUnicode() );
+    assertEquals( 20, segments.getLength() );
+
+    segments.analyze( repeat( "\u20AC", 80 ) );
+    assertEquals( 160, segments.getLength() );
+    assertEquals( 1, segments.getSegments() );
+
+    // 76 euro signs fill 152 of the 153 septets of a segment, the 77th goes to the next one.
+    segments.analyze( repeat( "\u20AC", 81 ) );
+    assertEquals( 162, segments.getLength() );
+    assertEquals( 2, segments.getSegments() );
+    segments.analyze( repeat( "\u20AC", 153 ) );
+    assertEquals( 3, segments.getSegments() );
+  }
+
+  @Test
+  public void escapeSequenceIsNotSplitAcrossSegments() {
+    // 306 septets would fit two segments, but the escape sequence can't start at the last septet of the first.
+    segments.analyze( repeat( "a", 152 ) + "{" + repeat( "a", 152 ) );
+    assertEquals( 306, segments.getLength() );
+    assertEquals( 3, segments.getSegments() );
+  }
+
+  @Test
+  public void characterOutsideGsm7TurnsBodyIntoUcs2() {
+    segments.analyze( repeat( "a", 100 ) + "\u00E7" );
+    assertTrue( segments.isUnicode() );
+    assertEquals( MessageSegments.UCS_2, segments.getEncoding() );
+    assertEquals( 101, segments.getLength() );
+    assertEquals( 2, segments.getSegments() );
+
+    // Capital C with cedilla is part of GSM-7, the small one isn't.
+    segments.analyze( "\u00C7a va" );
+    assertFalse( segments.isUnicode() );
+  }
+
+  @Test
+  public void ucs2SegmentBoundaries() {
+    segments.analyze( repeat( "\u0436", 70 ) );
+    assertEquals( 70, segments.getLength() );
+    assertEquals( 1, segments.getSegments() );
+
+    segments.analyze( repeat( "\u0436", 71 ) );
+    assertEquals( 2, segments.getSegments() );
+    segments.analyze( repeat( "\u0436", 134 ) );
+    assertEquals( 2, segments.getSegments() );
+    segments.analyze( repeat( "\u0436", 135 ) );
+    assertEquals( 3, segments.getSegments() );
+  }
+
+  @Test
+  public void surrogatePairIsNotSplitAcrossSegments() {
+    String emoji = "\uD83D\uDE00";
+    segments.analyze( repeat( emoji, 35 ) );
+    assertEquals( 70, segments.getLength() );
+    assertEquals( 1, segments.getSegments() );
+
+    // 134 code units would fit two segments, but the pair can't start at the last unit of the first.
+    segments.analyze( repeat( "\u0436", 66 ) + emoji + repeat( "\u0436", 66 ) );
+    assertEquals( 134, segments.getLength() );
+    assertEquals( 3, segments.getSegments() );
+  }
+
+  @Test
+  public void resultIsReplacedByTheNextBody() {
+    segments.analyze( repeat( "\u0436", 200 ) );
+    segments.analyze( "Hello" );
+    assertFalse( segments.isUnicode() );
+    assertEquals( 5, segments.getLength() );
+    assertEquals( 1, segments.getSegments() );
+  }
+}
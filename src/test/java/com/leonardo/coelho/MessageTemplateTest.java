@@ -0,0 +1,87 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.leonardo.coelho;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.pentaho.di.core.row.RowMeta;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.row.value.ValueMetaInteger;
+import org.pentaho.di.core.row.value.ValueMetaString;
+import org.pentaho.di.core.variables.Variables;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class MessageTemplateTest {
+
+  private RowMetaInterface rowMeta;
+  private Variables variables;
+
+  @Before
+  public void setUp() {
+    rowMeta = new RowMeta();
+    rowMeta.addValueMeta( new ValueMetaString( "name" ) );
+    rowMeta.addValueMeta( new ValueMetaInteger( "code" ) );
+    variables = new Variables();
+    variables.setVariable( "BRAND", "Acme" );
+  }
+
+  @Test
+  public void rendersFieldsAndVariables() throws Exception {
+    MessageTemplate template = MessageTemplate.compile( "Hi ${name}, your ${BRAND} code is ${ code }." );
+    assertNull( template.bind( rowMeta, variables ) );
+    assertEquals( "Hi Ann, your Acme code is 1234.", template.render( new Object[] { "Ann", 1234L } ) );
+    assertEquals( "Hi Bob, your Acme code is 42.", template.render( new Object[] { "Bob", 42L } ) );
+  }
+
+  @Test
+  public void nullValuesAreLeftEmpty() throws Exception {
+    MessageTemplate template = MessageTemplate.compile( "[${name}][${code}]" );
+    assertNull( template.bind( rowMeta, variables ) );
+    assertEquals( "[][]", template.render( new Object[] { null, null } ) );
+  }
+
+  @Test
+  public void fieldsComeBeforeVariables() throws Exception {
+    variables.setVariable( "name", "variable" );
+    MessageTemplate template = MessageTemplate.compile( "${name}" );
+    assertNull( template.bind( rowMeta, variables ) );
+    assertEquals( "field", template.render( new Object[] { "field", 1L } ) );
+  }
+
+  @Test
+  public void unboundPlaceholderIsReported() {
+    assertEquals( "missing", MessageTemplate.compile( "${name} ${missing}" ).bind( rowMeta, variables ) );
+  }
+
+  @Test
+  public void unclosedPlaceholderIsLiteral() throws Exception {
+    MessageTemplate template = MessageTemplate.compile( "${name} costs ${ 5" );
+    assertNull( template.bind( rowMeta, variables ) );
+    assertEquals( "Ann costs ${ 5", template.render( new Object[] { "Ann", 1L } ) );
+  }
+
+  @Test
+  public void templateWithoutPlaceholders() throws Exception {
+    MessageTemplate template = MessageTemplate.compile( "Plain text" );
+    assertNull( template.bind( rowMeta, variables ) );
+    assertEquals( "Plain text", template.render( new Object[] { "Ann", 1L } ) );
+  }
+}
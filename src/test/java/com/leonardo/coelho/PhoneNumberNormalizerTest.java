@@ -0,0 +1,100 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.leonardo.coelho;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class PhoneNumberNormalizerTest {
+
+  @Test
+  public void numbersAreFormattedInE164() {
+    PhoneNumberNormalizer normalizer = new PhoneNumberNormalizer( "FR", 100 );
+    assertEquals( "+16502530000", normalizer.normalize( "+1 (650) 253-0000" ) );
+    assertEquals( "+33612345678", normalizer.normalize( "06 12 34 56 78" ) );
+    assertEquals( "+33612345678", normalizer.normalize( "+33 6 12 34 56 78" ) );
+  }
+
+  @Test
+  public void invalidNumbersAreRejected() {
+    PhoneNumberNormalizer normalizer = new PhoneNumberNormalizer( "FR", 100 );
+    assertNull( normalizer.normalize( "+1 650 253" ) );
+    assertNull( normalizer.normalize( "not a number" ) );
+    assertNull( normalizer.normalize( "" ) );
+  }
+
+  @Test
+  public void countryCodeIsRequiredWithoutDefaultRegion() {
+    PhoneNumberNormalizer normalizer = new PhoneNumberNormalizer( null, 100 );
+    assertNull( normalizer.normalize( "06 12 34 56 78" ) );
+    assertEquals( "+33612345678", normalizer.normalize( "+33612345678" ) );
+  }
+
+  @Test
+  public void channelPrefixIsKept() {
+    PhoneNumberNormalizer normalizer = new PhoneNumberNormalizer( "FR", 100 );
+    assertEquals( "whatsapp:+33612345678", normalizer.normalize( "whatsapp:06 12 34 56 78" ) );
+    assertNull( normalizer.normalize( "whatsapp:123" ) );
+  }
+
+  @Test
+  public void resultsAreCachedInvalidOnesIncluded() {
+    PhoneNumberNormalizer normalizer = new PhoneNumberNormalizer( "FR", 2 );
+    normalizer.normalize( "0612345678" );
+    normalizer.normalize( "0612345678" );
+    assertNull( normalizer.normalize( "123" ) );
+    assertNull( normalizer.normalize( "123" ) );
+    assertEquals( 2, normalizer.getHits() );
+    assertEquals( 2, normalizer.getMisses() );
+
+    // The least recently used number is dropped past the cache size.
+    normalizer.normalize( "+16502530000" );
+    normalizer.normalize( "123" );
+    assertEquals( 3, normalizer.getMisses() );
+    normalizer.normalize( "0612345678" );
+    assertEquals( 4, normalizer.getMisses() );
+  }
+
+  @Test
+  public void alphanumericSenders() {
+    assertTrue( PhoneNumberNormalizer.isAlphanumericSender( "Acme" ) );
+    assertTrue( PhoneNumberNormalizer.isAlphanumericSender( "Acme 24" ) );
+    assertFalse( PhoneNumberNormalizer.isAlphanumericSender( "+33612345678" ) );
+    assertFalse( PhoneNumberNormalizer.isAlphanumericSender( "whatsapp:+33612345678" ) );
+  }
+
+  @Test
+  public void shortCodes() {
+    assertTrue( PhoneNumberNormalizer.isShortCode( "123" ) );
+    assertTrue( PhoneNumberNormalizer.isShortCode( "12345678" ) );
+    assertFalse( PhoneNumberNormalizer.isShortCode( "12" ) );
+    assertFalse( PhoneNumberNormalizer.isShortCode( "123456789" ) );
+    assertFalse( PhoneNumberNormalizer.isShortCode( "+1234" ) );
+  }
+
+  @Test
+  public void supportedRegions() {
+    assertTrue( PhoneNumberNormalizer.isSupportedRegion( "FR" ) );
+    assertFalse( PhoneNumberNormalizer.isSupportedRegion( "XX" ) );
+  }
+}
@@ -0,0 +1,131 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.leonardo.coelho;
+
+import com.twilio.exception.ApiConnectionException;
+import com.twilio.exception.ApiException;
+import org.apache.http.NoHttpResponseException;
+import org.apache.http.conn.ConnectTimeoutException;
+import org.junit.Test;
+
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RetryPolicyTest {
+
+  private static final Set<Integer> CODES = new HashSet<>( Arrays.asList( 429, 503, 20429 ) );
+
+  private static ApiException apiError( Integer code, Integer status ) {
+    return new ApiException( "Error", code, null, status, null );
+  }
+
+  @Test
+  public void parsesCodes() {
+    assertEquals( CODES, RetryPolicy.parseCodes( "429, 503,,20429 " ) );
+    assertTrue( RetryPolicy.parseCodes( null ).isEmpty() );
+    assertTrue( RetryPolicy.parseCodes( "" ).isEmpty() );
+  }
+
+  @Test( expected = NumberFormatException.class )
+  public void refusesCodeNotANumber() {
+    RetryPolicy.parseCodes( "429,Too Many" );
+  }
+
+  @Test
+  public void delayGrowsExponentiallyUpToMaxDelay() {
+    RetryPolicy policy = new RetryPolicy( 10, 100, 1000, 0, CODES );
+    RuntimeException error = apiError( null, 503 );
+    assertEquals( 100, policy.getRetryDelay( 1, error ) );
+    assertEquals( 200, policy.getRetryDelay( 2, error ) );
+    assertEquals( 400, policy.getRetryDelay( 3, error ) );
+    assertEquals( 800, policy.getRetryDelay( 4, error ) );
+    assertEquals( 1000, policy.getRetryDelay( 5, error ) );
+    assertEquals( 1000, policy.getRetryDelay( 9, error ) );
+  }
+
+  @Test
+  public void delayDoesNotOverflow() {
+    RetryPolicy policy = new RetryPolicy( Integer.MAX_VALUE, 1000, Long.MAX_VALUE, 0, CODES );
+    RuntimeException error = apiError( null, 503 );
+    assertEquals( Long.MAX_VALUE, policy.getRetryDelay( 100, error ) );
+    assertTrue( policy.getRetryDelay( 50, error ) > 0 );
+  }
+
+  @Test
+  public void jitterTakesOffPartOfTheDelay() {
+    RetryPolicy policy = new RetryPolicy( 10, 1000, 1000, 0.5, CODES );
+    RuntimeException error = apiError( null, 429 );
+    for ( int i = 0; i < 1000; i++ ) {
+      long delay = policy.getRetryDelay( 1, error );
+      assertTrue( String.valueOf( delay ), delay > 500 && delay <= 1000 );
+    }
+  }
+
+  @Test
+  public void stopsAfterMaxAttempts() {
+    RetryPolicy policy = new RetryPolicy( 3, 100, 1000, 0, CODES );
+    RuntimeException error = apiError( null, 503 );
+    assertTrue( policy.getRetryDelay( 2, error ) >= 0 );
+    assertEquals( -1, policy.getRetryDelay( 3, error ) );
+    assertEquals( -1, policy.getRetryDelay( 1, null ) );
+  }
+
+  @Test
+  public void retriesApiErrorsByStatusOrErrorCode() {
+    RetryPolicy policy = new RetryPolicy( 3, 100, 1000, 0, CODES );
+    assertTrue( policy.isRetryable( apiError( null, 429 ) ) );
+    assertTrue( policy.isRetryable( apiError( 20429, 400 ) ) );
+    assertFalse( policy.isRetryable( apiError( 21211, 400 ) ) );
+    assertFalse( policy.isRetryable( apiError( null, null ) ) );
+    assertFalse( policy.isRetryable( new IllegalStateException() ) );
+  }
+
+  @Test
+  public void serverErrorsAreOnlyRetriedWhenListed() {
+    RetryPolicy sends = new RetryPolicy( 3, 100, 1000, 0, RetryPolicy.parseCodes( RetryPolicy.THROTTLED_CODES ) );
+    assertTrue( sends.isRetryable( apiError( null, 503 ) ) );
+    assertFalse( sends.isRetryable( apiError( null, 500 ) ) );
+    assertFalse( sends.isRetryable( apiError( null, 502 ) ) );
+    assertFalse( sends.isRetryable( apiError( null, 504 ) ) );
+
+    RetryPolicy lookups = new RetryPolicy( 3, 100, 1000, 0,
+      RetryPolicy.parseCodes( RetryPolicy.THROTTLED_CODES + "," + RetryPolicy.SERVER_ERROR_CODES ) );
+    assertTrue( lookups.isRetryable( apiError( null, 500 ) ) );
+    assertTrue( lookups.isRetryable( apiError( null, 504 ) ) );
+  }
+
+  @Test
+  public void retriesConnectionErrorsOnlyBeforeTheRequestWasSent() {
+    RetryPolicy policy = new RetryPolicy( 3, 100, 1000, 0, CODES );
+    assertTrue( policy.isRetryable( new ApiConnectionException( "Error", new ConnectException() ) ) );
+    assertTrue( policy.isRetryable( new ApiConnectionException( "Error", new ConnectTimeoutException() ) ) );
+    assertTrue( policy.isRetryable( new ApiConnectionException( "Error", new UnknownHostException() ) ) );
+    // The message may have been sent.
+    assertFalse( policy.isRetryable( new ApiConnectionException( "Error", new SocketTimeoutException() ) ) );
+    assertFalse( policy.isRetryable( new ApiConnectionException( "Error", new NoHttpResponseException( "" ) ) ) );
+  }
+}
@@ -0,0 +1,243 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.leonardo.coelho;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.logging.LogChannelInterface;
+import org.pentaho.di.core.row.RowMeta;
+import org.pentaho.di.core.row.value.ValueMetaInteger;
+import org.pentaho.di.core.row.value.ValueMetaString;
+
+import java.io.File;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+public class RowBacklogTest {
+
+  private File directory;
+  private RowMeta rowMeta;
+  private LogChannelInterface log;
+
+  @Before
+  public void setUp() throws Exception {
+    directory = File.createTempFile( "backlog", "" );
+    directory.delete();
+    directory.mkdir();
+    log = mock( LogChannelInterface.class );
+    rowMeta = new RowMeta();
+    rowMeta.addValueMeta( new ValueMetaString( "to" ) );
+    rowMeta.addValueMeta( new ValueMetaInteger( "id" ) );
+  }
+
+  @After
+  public void tearDown() {
+    for ( File file : directory.listFiles() ) {
+      file.delete();
+    }
+    directory.delete();
+  }
+
+  private static Object[] row( long id ) {
+    return new Object[] { "+3361234" + id, id };
+  }
+
+  private static Object[] take( RowBacklog backlog, long timeout ) throws Exception {
+    return RowBacklog.poll( new RowBacklog[] { backlog }, timeout );
+  }
+
+  @Test
+  public void rowsComeOutInOrderFromMemoryThenDisk() throws Exception {
+    try ( RowBacklog backlog = new RowBacklog( 2, 4096, directory, log ) ) {
+      for ( long id = 0; id < 5; id++ ) {
+        assertTrue( backlog.put( rowMeta, row( id ) ) );
+      }
+      assertEquals( 5, backlog.size() );
+      assertEquals( 3, backlog.getSpilled() );
+      assertTrue( backlog.getDiskBytes() > 0 );
+      assertArrayEquals( row( 0 ), take( backlog, 0 ) );
+
+      // Rows go to disk while any is there, even with room in memory.
+      backlog.put( rowMeta, row( 5 ) );
+      assertEquals( 4, backlog.getSpilled() );
+      for ( long id = 1; id < 6; id++ ) {
+        assertArrayEquals( row( id ), take( backlog, 0 ) );
+      }
+      assertEquals( 0, backlog.size() );
+      assertEquals( 0, backlog.getDiskBytes() );
+      assertEquals( 5, backlog.getMaxRows() );
+    }
+  }
+
+  @Test
+  public void segmentsAreDeletedOnceReadOrReused() throws Exception {
+    long recordSize;
+    try ( RowBacklog probe = new RowBacklog( 0, 4096, directory, log ) ) {
+      probe.put( rowMeta, row( 0 ) );
+      recordSize = probe.getDiskBytes();
+    }
+    try ( RowBacklog backlog = new RowBacklog( 0, 3 * recordSize, directory, log ) ) {
+      for ( long id = 0; id < 3; id++ ) {
+        backlog.put( rowMeta, row( id ) );
+      }
+      assertEquals( 1, directory.listFiles().length );
+      assertArrayEquals( row( 0 ), take( backlog, 0 ) );
+      backlog.put( rowMeta, row( 3 ) );
+      assertEquals( 2, directory.listFiles().length );
+      assertArrayEquals( row( 1 ), take( backlog, 0 ) );
+      assertArrayEquals( row( 2 ), take( backlog, 0 ) );
+      assertEquals( 1, directory.listFiles().length );
+      assertArrayEquals( row( 3 ), take( backlog, 0 ) );
+      assertEquals( 1, directory.listFiles().length );
+      backlog.put( rowMeta, row( 4 ) );
+      assertEquals( 1, directory.listFiles().length );
+      assertArrayEquals( row( 4 ), take( backlog, 0 ) );
+    }
+    assertEquals( 0, directory.listFiles().length );
+  }
+
+  @Test
+  public void putWaitsWhileFull() throws Exception {
+    final RowBacklog backlog = new RowBacklog( 1, 0, directory, log );
+    backlog.put( rowMeta, row( 0 ) );
+    final AtomicReference<Object> added = new AtomicReference<>();
+    Thread writer = new Thread( () -> {
+      try {
+        added.set( backlog.put( rowMeta, row( 1 ) ) );
+      } catch ( Exception e ) {
+        added.set( e );
+      }
+    } );
+    writer.start();
+    writer.join( 200 );
+    assertTrue( writer.isAlive() );
+    assertArrayEquals( row( 0 ), take( backlog, 0 ) );
+    writer.join( 5000 );
+    assertEquals( Boolean.TRUE, added.get() );
+    assertArrayEquals( row( 1 ), take( backlog, 0 ) );
+    backlog.close();
+  }
+
+  @Test
+  public void closeWakesUpAWaitingPut() throws Exception {
+    final RowBacklog backlog = new RowBacklog( 1, 0, directory, log );
+    backlog.put( rowMeta, row( 0 ) );
+    final AtomicReference<Object> added = new AtomicReference<>();
+    Thread writer = new Thread( () -> {
+      try {
+        added.set( backlog.put( rowMeta, row( 1 ) ) );
+      } catch ( Exception e ) {
+        added.set( e );
+      }
+    } );
+    writer.start();
+    writer.join( 200 );
+    backlog.close();
+    writer.join( 5000 );
+    assertEquals( Boolean.FALSE, added.get() );
+    assertEquals( 0, backlog.size() );
+  }
+
+  @Test
+  public void pollTimesOutOrEndsWhenFinished() throws Exception {
+    try ( RowBacklog backlog = new RowBacklog( 10, 0, directory, log ) ) {
+      long start = System.currentTimeMillis();
+      assertNull( take( backlog, 100 ) );
+      assertTrue( System.currentTimeMillis() - start >= 90 );
+
+      backlog.put( rowMeta, row( 0 ) );
+      backlog.finish();
+      assertFalse( backlog.isDone() );
+      assertArrayEquals( row( 0 ), take( backlog, 0 ) );
+      assertTrue( backlog.isDone() );
+      start = System.currentTimeMillis();
+      assertNull( take( backlog, 5000 ) );
+      assertTrue( System.currentTimeMillis() - start < 1000 );
+    }
+  }
+
+  @Test
+  public void higherLanesAreTakenFirst() throws Exception {
+    Object lock = new Object();
+    RowBacklog[] lanes =
+      { new RowBacklog( 10, 0, directory, lock, log ), new RowBacklog( 10, 0, directory, lock, log ) };
+    lanes[ 1 ].put( rowMeta, row( 0 ) );
+    lanes[ 1 ].put( rowMeta, row( 1 ) );
+    lanes[ 0 ].put( rowMeta, row( 2 ) );
+    assertArrayEquals( row( 2 ), RowBacklog.poll( lanes, 0 ) );
+    assertArrayEquals( row( 0 ), RowBacklog.poll( lanes, 0 ) );
+    lanes[ 0 ].put( rowMeta, row( 3 ) );
+    assertArrayEquals( row( 3 ), RowBacklog.poll( lanes, 0 ) );
+    assertArrayEquals( row( 1 ), RowBacklog.poll( lanes, 0 ) );
+    assertEquals( 2, lanes[ 0 ].getWaits().getCount() );
+    assertEquals( 2, lanes[ 1 ].getWaits().getCount() );
+
+    // Polling goes on until every lane is finished.
+    lanes[ 0 ].finish();
+    long start = System.currentTimeMillis();
+    assertNull( RowBacklog.poll( lanes, 100 ) );
+    assertTrue( System.currentTimeMillis() - start >= 90 );
+    lanes[ 1 ].finish();
+    assertNull( RowBacklog.poll( lanes, 5000 ) );
+    assertTrue( System.currentTimeMillis() - start < 1000 );
+  }
+
+  @Test
+  public void waitsOnDiskAreRecorded() throws Exception {
+    try ( RowBacklog backlog = new RowBacklog( 0, 4096, directory, log ) ) {
+      backlog.put( rowMeta, row( 0 ) );
+      Thread.sleep( 20 );
+      assertArrayEquals( row( 0 ), take( backlog, 0 ) );
+      assertEquals( 1, backlog.getWaits().getCount() );
+      assertTrue( backlog.getWaits().getMax() >= 15000000 );
+    }
+  }
+
+  @Test
+  public void largeRowsGoThroughDisk() throws Exception {
+    StringBuilder text = new StringBuilder();
+    for ( int i = 0; i < 1000; i++ ) {
+      text.append( i % 10 );
+    }
+    try ( RowBacklog backlog = new RowBacklog( 0, 1024 * 1024, directory, log ) ) {
+      backlog.put( rowMeta, new Object[] { text.toString(), 1L } );
+      backlog.put( rowMeta, row( 2 ) );
+      backlog.put( rowMeta, new Object[] { text.toString(), 3L } );
+      assertArrayEquals( new Object[] { text.toString(), 1L }, take( backlog, 0 ) );
+      assertArrayEquals( row( 2 ), take( backlog, 0 ) );
+      assertArrayEquals( new Object[] { text.toString(), 3L }, take( backlog, 0 ) );
+    }
+    assertEquals( 0, directory.listFiles().length );
+  }
+
+  @Test( expected = KettleException.class )
+  public void rowLargerThanASegment() throws Exception {
+    try ( RowBacklog backlog = new RowBacklog( 0, 8, directory, log ) ) {
+      backlog.put( rowMeta, row( 0 ) );
+    }
+  }
+}
@@ -0,0 +1,143 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.leonardo.coelho;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class SendJournalTest {
+
+  private File file;
+
+  @Before
+  public void setUp() throws Exception {
+    file = File.createTempFile( "journal", ".keys" );
+  }
+
+  @After
+  public void tearDown() {
+    file.delete();
+  }
+
+  @Test
+  public void keysSurviveReopening() throws Exception {
+    SendJournal journal = SendJournal.open( file.getPath(), 100 );
+    journal.append( 1 );
+    journal.append( -7 );
+    journal.append( 1 );
+    assertEquals( 2, journal.size() );
+    assertTrue( journal.contains( -7 ) );
+    assertFalse( journal.contains( 2 ) );
+    journal.release();
+    assertEquals( 16, file.length() );
+
+    journal = SendJournal.open( file.getPath(), 100 );
+    assertEquals( 2, journal.size() );
+    assertTrue( journal.contains( 1 ) );
+    assertTrue( journal.contains( -7 ) );
+    journal.release();
+  }
+
+  @Test
+  public void keysAreWrittenEverySyncInterval() throws Exception {
+    SendJournal journal = SendJournal.open( file.getPath(), 2 );
+    journal.append( 1 );
+    assertEquals( 0, file.length() );
+    journal.append( 2 );
+    assertEquals( 16, file.length() );
+    journal.append( 3 );
+    journal.sync();
+    assertEquals( 24, file.length() );
+    journal.release();
+  }
+
+  @Test
+  public void keysAreSyncedWithinASecondWithoutFurtherAppends() throws Exception {
+    SendJournal journal = SendJournal.open( file.getPath(), 100 );
+    journal.append( 1 );
+    assertEquals( 0, file.length() );
+    long start = System.currentTimeMillis();
+    while ( file.length() == 0 && System.currentTimeMillis() - start < 2000 ) {
+      Thread.sleep( 10 );
+    }
+    assertEquals( 8, file.length() );
+    assertTrue( System.currentTimeMillis() - start < 1500 );
+    journal.release();
+  }
+
+  @Test
+  public void copiesHaveToUseTheSameSyncInterval() throws Exception {
+    SendJournal journal = SendJournal.open( file.getPath(), 10 );
+    try {
+      SendJournal.open( file.getPath(), 20 );
+      fail();
+    } catch ( IOException e ) {
+      // Expected.
+    }
+    assertSame( journal, SendJournal.open( file.getPath(), 10 ) );
+    journal.release();
+    journal.release();
+  }
+
+  @Test
+  public void partialLastRecordIsDropped() throws Exception {
+    try ( FileOutputStream out = new FileOutputStream( file ) ) {
+      out.write( new byte[] { 0, 0, 0, 0, 0, 0, 0, 5, 0, 0, 0 } );
+    }
+    SendJournal journal = SendJournal.open( file.getPath(), 10 );
+    assertEquals( 1, journal.size() );
+    assertTrue( journal.contains( 5 ) );
+    journal.append( 6 );
+    journal.release();
+    assertEquals( 16, file.length() );
+  }
+
+  @Test
+  public void copiesShareTheJournalOfAFile() throws Exception {
+    SendJournal first = SendJournal.open( file.getPath(), 10 );
+    SendJournal second = SendJournal.open( new File( file.getParentFile(), "." ).getPath() + File.separator
+      + file.getName(), 10 );
+    assertSame( first, second );
+    first.append( 1 );
+    first.release();
+
+    // Still open for the second copy.
+    second.append( 2 );
+    assertTrue( second.contains( 1 ) );
+    second.release();
+    assertEquals( 16, file.length() );
+
+    SendJournal reopened = SendJournal.open( file.getPath(), 10 );
+    assertNotSame( first, reopened );
+    assertEquals( 2, reopened.size() );
+    reopened.release();
+  }
+}
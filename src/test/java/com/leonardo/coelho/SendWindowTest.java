@@ -0,0 +1,107 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.leonardo.coelho;
+
+import org.junit.Test;
+
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+
+import static org.junit.Assert.assertEquals;
+
+public class SendWindowTest {
+
+  private static final ZoneId PARIS = ZoneId.of( "Europe/Paris" );
+
+  private static long at( int year, int month, int day, int hour, int minute, ZoneId zone ) {
+    return ZonedDateTime.of( year, month, day, hour, minute, 0, 0, zone ).toInstant().toEpochMilli();
+  }
+
+  @Test
+  public void daytimeWindow() {
+    SendWindow window = new SendWindow( LocalTime.of( 8, 0 ), LocalTime.of( 21, 0 ) );
+    assertEquals( at( 2021, 6, 1, 8, 0, ZoneOffset.UTC ),
+      window.getReleaseTime( ZoneOffset.UTC, at( 2021, 6, 1, 7, 59, ZoneOffset.UTC ) ) );
+    assertEquals( 0, window.getReleaseTime( ZoneOffset.UTC, at( 2021, 6, 1, 8, 0, ZoneOffset.UTC ) ) );
+    assertEquals( 0, window.getReleaseTime( ZoneOffset.UTC, at( 2021, 6, 1, 20, 59, ZoneOffset.UTC ) ) );
+    assertEquals( at( 2021, 6, 2, 8, 0, ZoneOffset.UTC ),
+      window.getReleaseTime( ZoneOffset.UTC, at( 2021, 6, 1, 21, 0, ZoneOffset.UTC ) ) );
+  }
+
+  @Test
+  public void windowAcrossMidnight() {
+    SendWindow window = new SendWindow( LocalTime.of( 21, 0 ), LocalTime.of( 8, 0 ) );
+    assertEquals( 0, window.getReleaseTime( ZoneOffset.UTC, at( 2021, 6, 1, 23, 0, ZoneOffset.UTC ) ) );
+    assertEquals( 0, window.getReleaseTime( ZoneOffset.UTC, at( 2021, 6, 2, 0, 0, ZoneOffset.UTC ) ) );
+    assertEquals( 0, window.getReleaseTime( ZoneOffset.UTC, at( 2021, 6, 2, 7, 59, ZoneOffset.UTC ) ) );
+    assertEquals( at( 2021, 6, 2, 21, 0, ZoneOffset.UTC ),
+      window.getReleaseTime( ZoneOffset.UTC, at( 2021, 6, 2, 8, 0, ZoneOffset.UTC ) ) );
+    assertEquals( 0, window.getReleaseTime( ZoneOffset.UTC, at( 2021, 6, 2, 21, 0, ZoneOffset.UTC ) ) );
+  }
+
+  @Test
+  public void cachedStateChangesWhenWindowCloses() {
+    SendWindow window = new SendWindow( LocalTime.of( 8, 0 ), LocalTime.of( 21, 0 ) );
+    assertEquals( 0, window.getReleaseTime( PARIS, at( 2021, 6, 1, 12, 0, PARIS ) ) );
+    assertEquals( 0, window.getReleaseTime( PARIS, at( 2021, 6, 1, 20, 0, PARIS ) ) );
+    assertEquals( at( 2021, 6, 2, 8, 0, PARIS ), window.getReleaseTime( PARIS, at( 2021, 6, 1, 21, 30, PARIS ) ) );
+    assertEquals( 0, window.getReleaseTime( PARIS, at( 2021, 6, 2, 8, 0, PARIS ) ) );
+  }
+
+  @Test
+  public void timeZonesAreKeptApart() {
+    SendWindow window = new SendWindow( LocalTime.of( 8, 0 ), LocalTime.of( 21, 0 ) );
+    ZoneId newYork = ZoneId.of( "America/New_York" );
+    long now = at( 2021, 6, 1, 11, 0, ZoneOffset.UTC );
+    assertEquals( 0, window.getReleaseTime( PARIS, now ) );
+    assertEquals( at( 2021, 6, 1, 8, 0, newYork ), window.getReleaseTime( newYork, now ) );
+    assertEquals( 0, window.getReleaseTime( PARIS, now ) );
+  }
+
+  @Test
+  public void opensAtLocalTimeAcrossDaylightSavingChanges() {
+    SendWindow window = new SendWindow( LocalTime.of( 8, 0 ), LocalTime.of( 21, 0 ) );
+    // Clocks go forward on the night of March 28, 2021: 8:00 is then 6:00 UTC rather than 7:00.
+    long opening = window.getReleaseTime( PARIS, at( 2021, 3, 27, 22, 0, PARIS ) );
+    assertEquals( at( 2021, 3, 28, 6, 0, ZoneOffset.UTC ), opening );
+    // And back on the night of October 31, 2021: 8:00 is then 7:00 UTC rather than 6:00.
+    opening = window.getReleaseTime( PARIS, at( 2021, 10, 30, 22, 0, PARIS ) );
+    assertEquals( at( 2021, 10, 31, 7, 0, ZoneOffset.UTC ), opening );
+  }
+
+  @Test
+  public void windowStartingInDaylightSavingGapOpensAfterIt() {
+    // 2:30 doesn't exist on March 28, 2021 in Paris, the window opens at 3:30 instead.
+    SendWindow window = new SendWindow( LocalTime.of( 2, 30 ), LocalTime.of( 6, 0 ) );
+    assertEquals( at( 2021, 3, 28, 3, 30, PARIS ), window.getReleaseTime( PARIS, at( 2021, 3, 28, 1, 0, PARIS ) ) );
+    assertEquals( at( 2021, 3, 28, 1, 30, ZoneOffset.UTC ), at( 2021, 3, 28, 3, 30, PARIS ) );
+  }
+
+  @Test
+  public void windowAcrossMidnightOverDaylightSavingChange() {
+    SendWindow window = new SendWindow( LocalTime.of( 22, 0 ), LocalTime.of( 6, 0 ) );
+    // Open from 22:00 on March 27 to 6:00 on March 28, one hour shorter than usual.
+    assertEquals( 0, window.getReleaseTime( PARIS, at( 2021, 3, 27, 23, 0, PARIS ) ) );
+    assertEquals( 0, window.getReleaseTime( PARIS, at( 2021, 3, 28, 4, 0, ZoneOffset.UTC ) - 1 ) );
+    assertEquals( at( 2021, 3, 28, 22, 0, PARIS ), window.getReleaseTime( PARIS, at( 2021, 3, 28, 4, 0,
+      ZoneOffset.UTC ) ) );
+  }
+}
@@ -0,0 +1,102 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.leonardo.coelho;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.pentaho.di.core.logging.LogChannelInterface;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+
+public class SenderPoolTest {
+
+  private LogChannelInterface log;
+
+  @Before
+  public void setUp() {
+    log = mock( LogChannelInterface.class );
+  }
+
+  @Test
+  public void parsesCommaSeparatedNumbers() {
+    SenderPool pool = SenderPool.parse( " +15550001, ,+15550002 ", null, 0, log );
+    assertEquals( 2, pool.size() );
+    assertEquals( "+15550001=0, +15550002=0", pool.toString() );
+    assertNull( SenderPool.parse( " , ", null, 0, log ) );
+  }
+
+  @Test
+  public void numbersAreNormalizedLikeRecipients() {
+    PhoneNumberNormalizer normalizer = new PhoneNumberNormalizer( "US", 100 );
+    SenderPool pool = SenderPool.parse( "(650) 253-0000, +1 650 253 0001, ACME, 12345", normalizer, 0, log );
+    assertEquals( "+16502530000=0, +16502530001=0, ACME=0, 12345=0", pool.toString() );
+    try {
+      SenderPool.parse( "+16502530000, +1 650 253", normalizer, 0, log );
+      fail( "Invalid pool number accepted" );
+    } catch ( IllegalArgumentException e ) {
+      assertEquals( "+1 650 253", e.getMessage() );
+    }
+  }
+
+  @Test
+  public void rotatesWithoutRateLimits() {
+    SenderPool pool = new SenderPool( new String[] { "+15550001", "+15550002", "+15550003" }, 0, log );
+    for ( int i = 0; i < 6; i++ ) {
+      SenderPool.Reservation reservation = pool.reserve( -1 );
+      assertEquals( i % 3, reservation.index );
+      assertEquals( 0, reservation.waitNanos );
+    }
+  }
+
+  @Test
+  public void picksTheNumberWithTheShortestWait() {
+    SenderPool pool = new SenderPool( new String[] { "+15550011", "+15550012" }, 1, log );
+    SenderPool.Reservation first = pool.reserve( -1 );
+    SenderPool.Reservation second = pool.reserve( -1 );
+    assertEquals( 0, first.waitNanos );
+    assertEquals( 0, second.waitNanos );
+    assertTrue( first.index != second.index );
+
+    // Both numbers are busy for a second now, the next one waits.
+    assertTrue( pool.reserve( -1 ).waitNanos > 0 );
+  }
+
+  @Test
+  public void stickySendersKeepTheirNumber() {
+    SenderPool pool = new SenderPool( new String[] { "+15550021", "+15550022", "+15550023" }, 0, log );
+    int index = pool.indexOf( "+33612345678" );
+    assertEquals( index, pool.indexOf( "+33612345678" ) );
+    assertTrue( index >= 0 && index < 3 );
+    assertEquals( index, pool.reserve( index ).index );
+    assertEquals( index, pool.reserve( index ).index );
+  }
+
+  @Test
+  public void countsMessagesSent() {
+    SenderPool pool = new SenderPool( new String[] { "+15550031", "+15550032" }, 0, log );
+    pool.onSent( 1 );
+    pool.onSent( 1 );
+    pool.onSent( 0 );
+    assertEquals( "+15550031=1, +15550032=2", pool.toString() );
+  }
+}
@@ -0,0 +1,223 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.leonardo.coelho;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.pentaho.di.core.KettleEnvironment;
+import org.pentaho.di.core.exception.KettleException;
+import org.pentaho.di.core.row.RowMeta;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.row.value.ValueMetaInteger;
+import org.pentaho.di.core.row.value.ValueMetaString;
+import org.pentaho.di.trans.RowProducer;
+import org.pentaho.di.trans.Trans;
+import org.pentaho.di.trans.TransHopMeta;
+import org.pentaho.di.trans.TransMeta;
+import org.pentaho.di.trans.step.RowAdapter;
+import org.pentaho.di.trans.step.StepMeta;
+import org.pentaho.di.trans.steps.injector.InjectorMeta;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Runs rows through an SMS Sender step against a {@link FakeTwilioServer} and checks what it sends and writes.
+ */
+public class SmsSenderTest {
+
+  private static final String INPUT_STEP = "Input";
+  private static final String SENDER_STEP = "SMS Sender";
+
+  private FakeTwilioServer server;
+  private RowMetaInterface rowMeta;
+
+  @BeforeClass
+  public static void initKettle() throws KettleException {
+    System.setProperty( "KETTLE_PLUGIN_CLASSES", SmsSenderMeta.class.getName() );
+    KettleEnvironment.init( false );
+  }
+
+  @Before
+  public void setUp() throws IOException {
+    server = new FakeTwilioServer( 0 );
+    server.setLatency( 50, 50 );
+    server.start();
+    rowMeta = new RowMeta();
+    rowMeta.addValueMeta( new ValueMetaInteger( "id" ) );
+    rowMeta.addValueMeta( new ValueMetaString( "to" ) );
+    rowMeta.addValueMeta( new ValueMetaString( "from" ) );
+    rowMeta.addValueMeta( new ValueMetaString( "message" ) );
+    rowMeta.addValueMeta( new ValueMetaInteger( "priority" ) );
+  }
+
+  @After
+  public void tearDown() {
+    server.stop();
+  }
+
+  @Test
+  public void repeatsOfAMessageInFlightAreNotSent() throws KettleException {
+    SmsSenderMeta sender = createSender();
+    sender.setAsyncSend( true );
+    sender.setDeduplicate( true );
+    List<Object[]> written = run( sender, row( 0, "Hello" ), row( 1, "Hello" ), row( 2, "Hello" ), row( 3, "Bye" ) );
+
+    assertEquals( 2, server.getCreated() );
+    assertEquals( 4, written.size() );
+    assertEquals( "queued", getStatus( written, 0 ) );
+    assertEquals( "duplicate", getStatus( written, 1 ) );
+    assertEquals( "duplicate", getStatus( written, 2 ) );
+    assertEquals( "queued", getStatus( written, 3 ) );
+  }
+
+  @Test
+  public void repeatsOfAFailedMessageAreSentAfterAll() throws KettleException {
+    server.setFailedRate( 1 );
+    SmsSenderMeta sender = createSender();
+    sender.setAsyncSend( true );
+    sender.setDeduplicate( true );
+    List<Object[]> written = run( sender, row( 0, "Hello" ), row( 1, "Hello" ), row( 2, "Hello" ) );
+
+    // Each repeat waits for the one before it, and goes out once it failed.
+    assertEquals( 3, server.getCreated() );
+    assertEquals( 3, written.size() );
+    for ( int id = 0; id < 3; id++ ) {
+      assertEquals( "failed", getStatus( written, id ) );
+    }
+  }
+
+  @Test
+  public void higherPrioritiesAreSentFirst() throws KettleException {
+    SmsSenderMeta sender = createSender();
+    sender.setPriorityField( "priority" );
+    sender.setPriorityLevels( "3" );
+    List<Object[]> written = run( sender,
+      row( 0, "Low", 3 ), row( 1, "Low", 3 ), row( 2, "Low", 3 ), row( 3, "High", 1 ), row( 4, "High", 1 ) );
+
+    // The first row may be sent before the others are read, the high priority ones then go ahead of the rest.
+    assertEquals( 5, written.size() );
+    assertEquals( 1L, written.get( 3 )[ 0 ] );
+    assertEquals( 2L, written.get( 4 )[ 0 ] );
+  }
+
+  @Test
+  public void runResumesAfterTheRowsAcknowledged() throws KettleException, IOException {
+    File checkpoint = File.createTempFile( "sms-sender", ".checkpoint" );
+    checkpoint.delete();
+    try {
+      SmsSenderMeta sender = createSender();
+      sender.setAsyncSend( true );
+      sender.setRunId( "run-1" );
+      sender.setCheckpointFile( checkpoint.getPath() );
+      sender.setCheckpointKeyField( "id" );
+      assertEquals( 3, run( sender, row( 1, "A" ), row( 2, "B" ), row( 3, "C" ) ).size() );
+
+      // Another attempt of the run only sends the rows past the checkpoint.
+      List<Object[]> written =
+        run( sender, row( 1, "A" ), row( 2, "B" ), row( 3, "C" ), row( 4, "D" ), row( 5, "E" ) );
+      assertEquals( 5, server.getCreated() );
+      assertEquals( 2, written.size() );
+      assertEquals( "queued", getStatus( written, 4 ) );
+      assertEquals( "queued", getStatus( written, 5 ) );
+
+      // Another run starts over.
+      sender.setRunId( "run-2" );
+      assertEquals( 2, run( sender, row( 1, "A" ), row( 2, "B" ) ).size() );
+      assertEquals( 7, server.getCreated() );
+    } finally {
+      checkpoint.delete();
+    }
+  }
+
+  private SmsSenderMeta createSender() {
+    SmsSenderMeta sender = new SmsSenderMeta();
+    sender.setDefault();
+    sender.setAccountSid( "AC00000000000000000000000000000000" );
+    sender.setAuthToken( "token" );
+    sender.setApiBaseUrl( server.getBaseUrl() );
+    sender.setToField( "to" );
+    sender.setFromField( "from" );
+    sender.setMessageField( "message" );
+    sender.setStatusField( "status" );
+    return sender;
+  }
+
+  private static Object[] row( long id, String message ) {
+    return row( id, message, null );
+  }
+
+  private static Object[] row( long id, String message, Integer priority ) {
+    return new Object[] { id, "+15550000001", "+15550000000", message, priority == null ? null : priority.longValue() };
+  }
+
+  /**
+   * @return the status written for the row of the given id.
+   */
+  private String getStatus( List<Object[]> written, long id ) {
+    int statusIdx = rowMeta.size();
+    for ( Object[] row : written ) {
+      if ( row[ 0 ].equals( id ) ) {
+        return (String) row[ statusIdx ];
+      }
+    }
+    throw new AssertionError( "Row " + id + " not written" );
+  }
+
+  /**
+   * Runs the rows through the step in a transformation of its own.
+   *
+   * @return the rows the step wrote, in the order it wrote them.
+   */
+  private List<Object[]> run( SmsSenderMeta sender, Object[]... rows ) throws KettleException {
+    TransMeta transMeta = new TransMeta();
+    transMeta.setName( "SMS Sender test" );
+    StepMeta inputStep = new StepMeta( "Injector", INPUT_STEP, new InjectorMeta() );
+    StepMeta senderStep = new StepMeta( "SmsSender", SENDER_STEP, sender );
+    transMeta.addStep( inputStep );
+    transMeta.addStep( senderStep );
+    transMeta.addTransHop( new TransHopMeta( inputStep, senderStep ) );
+
+    Trans trans = new Trans( transMeta );
+    trans.prepareExecution( null );
+    final List<Object[]> written = Collections.synchronizedList( new ArrayList<>() );
+    trans.getStepInterface( SENDER_STEP, 0 ).addRowListener( new RowAdapter() {
+      @Override
+      public void rowWrittenEvent( RowMetaInterface rowMeta, Object[] row ) {
+        written.add( row );
+      }
+    } );
+    RowProducer producer = trans.addRowProducer( INPUT_STEP, 0 );
+    trans.startThreads();
+    for ( Object[] row : rows ) {
+      producer.putRow( rowMeta, row );
+    }
+    producer.finished();
+    trans.waitUntilFinished();
+    assertEquals( 0, trans.getErrors() );
+    return written;
+  }
+}
@@ -0,0 +1,181 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.leonardo.coelho;
+
+import com.twilio.security.RequestValidator;
+import org.pentaho.di.core.KettleEnvironment;
+import org.pentaho.di.core.logging.LogLevel;
+import org.pentaho.di.core.row.RowMeta;
+import org.pentaho.di.core.row.RowMetaInterface;
+import org.pentaho.di.core.row.value.ValueMetaInteger;
+import org.pentaho.di.core.row.value.ValueMetaString;
+import org.pentaho.di.trans.RowProducer;
+import org.pentaho.di.trans.Trans;
+import org.pentaho.di.trans.TransHopMeta;
+import org.pentaho.di.trans.TransMeta;
+import org.pentaho.di.trans.step.RowAdapter;
+import org.pentaho.di.trans.step.StepMeta;
+import org.pentaho.di.trans.steps.injector.InjectorMeta;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sends rows through an SMS Sender step against a {@link FakeTwilioServer} and reports the throughput and the
+ * latency of each row, from the time it is put into the transformation until the step writes it out.
+ * <p>
+ * Run it from the test classpath, e.g.:
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test \
+ *   -Dexec.mainClass=com.leonardo.coelho.SmsSenderThroughputHarness -Drows=20000 -DmaxInFlight=50
+ * </pre>
+ * Options are read from system properties: {@code rows}, {@code async}, {@code maxInFlight},
+ * {@code maxConnections}, {@code maxAttempts}, {@code minLatency} and {@code maxLatency} (ms),
+ * {@code throttleRate}, {@code errorRate} and {@code failedRate} (0-1).
+ * <p>
+ * With {@code -Dcallbacks=true} messages are sent with a status callback URL, and the signed callbacks the
+ * fake server posts are received by the same listener the SMS Status Callback step uses, and counted by status.
+ */
+public class SmsSenderThroughputHarness {
+
+  private static final String INPUT_STEP = "Input";
+  private static final String SENDER_STEP = "SMS Sender";
+
+  public static void main( String[] args ) throws Exception {
+    int rows = Integer.getInteger( "rows", 10000 );
+
+    FakeTwilioServer server = new FakeTwilioServer( 0 );
+    server.setLatency( Long.getLong( "minLatency", 50 ), Long.getLong( "maxLatency", 150 ) );
+    server.setThrottleRate( Double.parseDouble( System.getProperty( "throttleRate", "0" ) ) );
+    server.setErrorRate( Double.parseDouble( System.getProperty( "errorRate", "0" ) ) );
+    server.setFailedRate( Double.parseDouble( System.getProperty( "failedRate", "0" ) ) );
+    server.start();
+
+    StatusCallbackServer callbackServer = null;
+    if ( Boolean.getBoolean( "callbacks" ) ) {
+      server.setAuthToken( "token" );
+      callbackServer = new StatusCallbackServer( "harness", 0, "/sms/status", rows * 2,
+        new RequestValidator( "token" ), null );
+      callbackServer.start();
+    }
+
+    try {
+      System.setProperty( "KETTLE_PLUGIN_CLASSES", SmsSenderMeta.class.getName() );
+      KettleEnvironment.init( false );
+
+      SmsSenderMeta sender = new SmsSenderMeta();
+      sender.setDefault();
+      sender.setAccountSid( "AC00000000000000000000000000000000" );
+      sender.setAuthToken( "token" );
+      sender.setApiBaseUrl( server.getBaseUrl() );
+      sender.setToField( "to" );
+      sender.setFromField( "from" );
+      sender.setMessageField( "message" );
+      sender.setStatusField( "status" );
+      sender.setAttemptsField( "attempts" );
+      sender.setAsyncSend( Boolean.parseBoolean( System.getProperty( "async", "true" ) ) );
+      sender.setMaxInFlight( System.getProperty( "maxInFlight", "20" ) );
+      sender.setMaxConnections( System.getProperty( "maxConnections", "" ) );
+      sender.setMaxAttempts( System.getProperty( "maxAttempts", "3" ) );
+      if ( callbackServer != null ) {
+        sender.setStatusCallbackUrl( "http://127.0.0.1:" + callbackServer.getPort() + "/sms/status" );
+      }
+
+      TransMeta transMeta = new TransMeta();
+      transMeta.setName( "SMS Sender throughput" );
+      StepMeta inputStep = new StepMeta( "Injector", INPUT_STEP, new InjectorMeta() );
+      StepMeta senderStep = new StepMeta( "SmsSender", SENDER_STEP, sender );
+      transMeta.addStep( inputStep );
+      transMeta.addStep( senderStep );
+      transMeta.addTransHop( new TransHopMeta( inputStep, senderStep ) );
+
+      Trans trans = new Trans( transMeta );
+      trans.setLogLevel( LogLevel.BASIC );
+      trans.prepareExecution( null );
+
+      // Put times are indexed by the id field, which the step passes through.
+      final long[] putTimes = new long[ rows ];
+      final long[] latencies = new long[ rows ];
+      final AtomicInteger written = new AtomicInteger();
+      trans.getStepInterface( SENDER_STEP, 0 ).addRowListener( new RowAdapter() {
+        @Override
+        public void rowWrittenEvent( RowMetaInterface rowMeta, Object[] row ) {
+          int id = ( (Long) row[ 0 ] ).intValue();
+          latencies[ written.getAndIncrement() ] = System.nanoTime() - putTimes[ id ];
+        }
+      } );
+
+      RowMetaInterface rowMeta = new RowMeta();
+      rowMeta.addValueMeta( new ValueMetaInteger( "id" ) );
+      rowMeta.addValueMeta( new ValueMetaString( "to" ) );
+      rowMeta.addValueMeta( new ValueMetaString( "from" ) );
+      rowMeta.addValueMeta( new ValueMetaString( "message" ) );
+
+      RowProducer producer = trans.addRowProducer( INPUT_STEP, 0 );
+      trans.startThreads();
+      long start = System.nanoTime();
+      for ( int i = 0; i < rows; i++ ) {
+        putTimes[ i ] = System.nanoTime();
+        producer.putRow( rowMeta, new Object[] {
+          (long) i, String.format( "+1555%07d", i ), "+15550000000", "Message " + i } );
+      }
+      producer.finished();
+      trans.waitUntilFinished();
+      long elapsed = System.nanoTime() - start;
+
+      int count = written.get();
+      long[] sorted = Arrays.copyOf( latencies, count );
+      Arrays.sort( sorted );
+      System.out.printf( "Rows written: %d of %d, errors: %d%n", count, rows, trans.getErrors() );
+      System.out.printf( "Throughput: %.1f rows/s%n", count / ( elapsed / 1e9 ) );
+      System.out.printf( "Row latency (ms): p50 %.1f, p90 %.1f, p99 %.1f, max %.1f%n",
+        percentile( sorted, 0.50 ), percentile( sorted, 0.90 ), percentile( sorted, 0.99 ),
+        percentile( sorted, 1.0 ) );
+      System.out.printf( "API requests: %d, created: %d, throttled: %d, errors: %d%n",
+        server.getRequests(), server.getCreated(), server.getThrottled(), server.getErrors() );
+
+      if ( callbackServer != null ) {
+        // Every message gets two callbacks, sent and delivered, or one when it failed right away.
+        Map<String, Integer> statuses = new TreeMap<>();
+        StatusCallbackServer.StatusCallback callback;
+        while ( ( callback = callbackServer.poll( 2000 ) ) != null ) {
+          statuses.merge( callback.status, 1, Integer::sum );
+        }
+        System.out.printf( "Status callbacks: %s, refused: %d, not delivered: %d%n", statuses,
+          callbackServer.getRejected(), server.getCallbackErrors() );
+      }
+    } finally {
+      if ( callbackServer != null ) {
+        callbackServer.stop();
+      }
+      server.stop();
+    }
+  }
+
+  private static double percentile( long[] sorted, double percentile ) {
+    if ( sorted.length == 0 ) {
+      return 0;
+    }
+    int index = (int) Math.min( sorted.length - 1, Math.ceil( percentile * sorted.length ) - 1 );
+    return sorted[ Math.max( 0, index ) ] / (double) TimeUnit.MILLISECONDS.toNanos( 1 );
+  }
+}
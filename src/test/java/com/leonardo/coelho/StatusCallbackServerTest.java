@@ -0,0 +1,125 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.leonardo.coelho;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class StatusCallbackServerTest {
+
+  private StatusCallbackServer server;
+
+  @After
+  public void tearDown() {
+    if ( server != null ) {
+      server.stop();
+    }
+  }
+
+  private StatusCallbackServer start( int queueCapacity ) throws Exception {
+    server = new StatusCallbackServer( "test", 0, "/status", queueCapacity, null, null );
+    server.start();
+    return server;
+  }
+
+  private int post( String method, String body ) throws Exception {
+    URL url = new URL( "http://localhost:" + server.getPort() + "/status" );
+    HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+    connection.setRequestMethod( method );
+    if ( body != null ) {
+      connection.setDoOutput( true );
+      connection.setRequestProperty( "Content-Type", "application/x-www-form-urlencoded" );
+      try ( OutputStream out = connection.getOutputStream() ) {
+        out.write( body.getBytes( StandardCharsets.UTF_8 ) );
+      }
+    }
+    int status = connection.getResponseCode();
+    connection.disconnect();
+    return status;
+  }
+
+  @Test
+  public void callbacksAreQueued() throws Exception {
+    start( 10 );
+    assertEquals( 204, post( "POST", "MessageSid=SM1&MessageStatus=delivered&AccountSid=AC1" ) );
+    assertEquals( 204, post( "POST", "MessageSid=SM2&MessageStatus=undelivered&ErrorCode=30003" ) );
+
+    StatusCallbackServer.StatusCallback callback = server.poll( 1000 );
+    assertEquals( "SM1", callback.messageSid );
+    assertEquals( "delivered", callback.status );
+    assertNull( callback.errorCode );
+    callback = server.poll( 1000 );
+    assertEquals( "SM2", callback.messageSid );
+    assertEquals( "undelivered", callback.status );
+    assertEquals( Long.valueOf( 30003 ), callback.errorCode );
+    assertNull( server.poll( 10 ) );
+    assertEquals( 0, server.getRejected() );
+  }
+
+  @Test
+  public void valuesAreUrlDecoded() throws Exception {
+    start( 10 );
+    assertEquals( 204, post( "POST", "MessageSid=SM%201&MessageStatus=sent+ok" ) );
+    StatusCallbackServer.StatusCallback callback = server.poll( 1000 );
+    assertEquals( "SM 1", callback.messageSid );
+    assertEquals( "sent ok", callback.status );
+  }
+
+  @Test
+  public void badRequestsAreRejected() throws Exception {
+    start( 10 );
+    assertEquals( 405, post( "GET", null ) );
+    assertEquals( 400, post( "POST", "MessageSid=SM1&MessageStatus=failed&ErrorCode=x" ) );
+    assertEquals( 1, server.getRejected() );
+    assertNull( server.poll( 10 ) );
+  }
+
+  @Test
+  public void fullQueueAnswersUnavailableRightAway() throws Exception {
+    start( 1 );
+    assertEquals( 204, post( "POST", "MessageSid=SM1&MessageStatus=sent" ) );
+    long start = System.currentTimeMillis();
+    assertEquals( 503, post( "POST", "MessageSid=SM2&MessageStatus=sent" ) );
+    assertTrue( System.currentTimeMillis() - start < 500 );
+    assertEquals( 1, server.getRejected() );
+    assertEquals( "SM1", server.poll( 1000 ).messageSid );
+  }
+
+  @Test
+  public void callbacksAfterStoppingAreRefused() throws Exception {
+    start( 10 );
+    assertEquals( 204, post( "POST", "MessageSid=SM1&MessageStatus=sent" ) );
+    server.stopAccepting();
+    assertEquals( 503, post( "POST", "MessageSid=SM2&MessageStatus=sent" ) );
+    assertEquals( 1, server.getRejected() );
+
+    // The callbacks accepted before are still there to write out.
+    assertEquals( "SM1", server.poll( 0 ).messageSid );
+    assertNull( server.poll( 0 ) );
+  }
+}
@@ -0,0 +1,121 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.leonardo.coelho;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class SuppressionListTest {
+
+  @Test
+  public void keyIgnoresSeparatorsAndChannel() {
+    assertEquals( 14155550100L, SuppressionList.toKey( "+14155550100" ) );
+    assertEquals( 14155550100L, SuppressionList.toKey( "+1 (415) 555-0100" ) );
+    assertEquals( 14155550100L, SuppressionList.toKey( "whatsapp:+1.415.555.0100" ) );
+    assertEquals( -1, SuppressionList.toKey( null ) );
+    assertEquals( -1, SuppressionList.toKey( "" ) );
+    assertEquals( -1, SuppressionList.toKey( "+1 415 CALL NOW" ) );
+    assertEquals( -1, SuppressionList.toKey( "+1234567890123456789" ) );
+  }
+
+  @Test
+  public void onlyTakesE164EntriesWhenNotNormalizing() {
+    SuppressionList.Builder builder = new SuppressionList.Builder( null, false, null );
+    builder.add( "+14155550100" );
+    builder.add( " +14155550100 " );
+    builder.add( "whatsapp:+14155550101" );
+    builder.add( "4155550102" );
+    builder.add( "STOP" );
+    builder.add( null );
+    SuppressionList list = builder.build();
+
+    assertEquals( 2, list.size() );
+    assertEquals( 3, list.getInvalid() );
+    assertTrue( list.contains( "+14155550100" ) );
+    assertTrue( list.contains( "+1 (415) 555-0100" ) );
+    assertTrue( list.contains( "+14155550101" ) );
+    assertFalse( list.contains( "+14155550102" ) );
+    assertFalse( list.contains( "not a number" ) );
+  }
+
+  @Test
+  public void normalizesEntriesLikeRecipients() {
+    SuppressionList.Builder builder = new SuppressionList.Builder( null, true, "US" );
+    builder.add( "(201) 555-0123" );
+    builder.add( "+1 201-555-0124" );
+    builder.add( "12" );
+    SuppressionList list = builder.build();
+
+    assertEquals( 2, list.size() );
+    assertEquals( 1, list.getInvalid() );
+    assertTrue( list.contains( "+12015550123" ) );
+    assertTrue( list.contains( "+12015550124" ) );
+  }
+
+  @Test
+  public void findsNumbersAcrossManyEntries() {
+    SuppressionList.Builder builder = new SuppressionList.Builder( null, false, null );
+    // In decreasing order and repeated, so the list has to sort and merge them.
+    for ( long i = 10000; i > 0; i-- ) {
+      builder.add( "+1415" + ( 5000000 + i * 2 ) );
+      builder.add( "+1415" + ( 5000000 + i * 2 ) );
+    }
+    SuppressionList list = builder.build();
+
+    assertEquals( 10000, list.size() );
+    for ( long i = 1; i <= 10000; i++ ) {
+      assertTrue( list.contains( "+1415" + ( 5000000 + i * 2 ) ) );
+      assertFalse( list.contains( "+1415" + ( 5000000 + i * 2 + 1 ) ) );
+    }
+  }
+
+  @Test
+  public void fileIsSharedUntilReleased() throws IOException {
+    File file = File.createTempFile( "suppression", ".csv" );
+    try {
+      Files.write( file.toPath(), Arrays.asList( "# Opted out", "", "+14155550100,2021-06-01", "4155550101" ),
+        StandardCharsets.UTF_8 );
+      SuppressionList list = SuppressionList.open( file.getPath(), false, null );
+      assertEquals( 1, list.size() );
+      assertEquals( 1, list.getInvalid() );
+      assertTrue( list.contains( "+14155550100" ) );
+
+      SuppressionList shared = SuppressionList.open( file.getPath(), false, null );
+      assertSame( list, shared );
+      shared.release();
+      list.release();
+      SuppressionList reloaded = SuppressionList.open( file.getPath(), false, null );
+      assertNotSame( list, reloaded );
+      reloaded.release();
+    } finally {
+      file.delete();
+    }
+  }
+}
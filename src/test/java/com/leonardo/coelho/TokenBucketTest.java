@@ -0,0 +1,102 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.leonardo.coelho;
+
+import org.junit.Test;
+import org.pentaho.di.core.logging.LogChannelInterface;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class TokenBucketTest {
+
+  private static final long INTERVAL = TimeUnit.MILLISECONDS.toNanos( 100 );
+
+  @Test
+  public void permitsAreSpacedByTheInterval() {
+    TokenBucket bucket = new TokenBucket( 10 );
+    assertEquals( 0, bucket.reserve() );
+    long second = bucket.reserve();
+    long third = bucket.reserve();
+    assertTrue( second > INTERVAL / 2 && second <= INTERVAL );
+    assertTrue( third > INTERVAL && third <= 2 * INTERVAL );
+    assertTrue( bucket.getWaitNanos() > 2 * INTERVAL );
+  }
+
+  @Test
+  public void noWaitOnceTheIntervalPassed() throws InterruptedException {
+    TokenBucket bucket = new TokenBucket( 100 );
+    bucket.reserve();
+    Thread.sleep( 20 );
+    assertEquals( 0, bucket.getWaitNanos() );
+    assertEquals( 0, bucket.reserve() );
+  }
+
+  @Test
+  public void bucketsAreSharedByKey() {
+    LogChannelInterface log = mock( LogChannelInterface.class );
+    TokenBucket bucket = TokenBucket.get( "test:shared", 5, log );
+    assertSame( bucket, TokenBucket.get( "test:shared", 5, log ) );
+    assertNotSame( bucket, TokenBucket.get( "test:other", 5, log ) );
+    verify( log, never() ).logBasic( anyString() );
+  }
+
+  @Test
+  public void bucketsAreDroppedOnceReleased() {
+    LogChannelInterface log = mock( LogChannelInterface.class );
+    TokenBucket bucket = TokenBucket.get( "test:released", 5, log );
+    TokenBucket.get( "test:released", 5, log );
+    bucket.release();
+    assertSame( bucket, TokenBucket.get( "test:released", 5, log ) );
+    bucket.release();
+    bucket.release();
+    assertNotSame( bucket, TokenBucket.get( "test:released", 5, log ) );
+  }
+
+  @Test
+  public void sharedBucketsKeepTheLowestRate() {
+    LogChannelInterface log = mock( LogChannelInterface.class );
+    TokenBucket bucket = TokenBucket.get( "test:lowest", 5, log );
+    TokenBucket.get( "test:lowest", 2, log );
+    TokenBucket.get( "test:lowest", 10, log );
+    assertEquals( 2, bucket.getRate(), 0 );
+    verify( log, times( 2 ) ).logBasic( anyString() );
+  }
+
+  @Test
+  public void acquireWaitsForTheSlowestBucket() throws InterruptedException {
+    TokenBucket fast = new TokenBucket( 1000 );
+    TokenBucket slow = new TokenBucket( 10 );
+    long start = System.nanoTime();
+    TokenBucket.acquire( fast, null, slow );
+    TokenBucket.acquire( fast, null, slow );
+    long elapsed = System.nanoTime() - start;
+    assertTrue( elapsed >= INTERVAL * 9 / 10 );
+    assertTrue( elapsed < INTERVAL * 10 );
+  }
+}